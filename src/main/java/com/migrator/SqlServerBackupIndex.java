@@ -0,0 +1,309 @@
+package com.migrator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.compress.utils.BoundedInputStream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Índice del backup (formato 2): posición y tamaño en el archivo de la estructura, de cada
+// tabla y sus segmentos y de los objetos, más la metadata. Permite mostrar el resumen o
+// leer una tabla sin descomprimir el resto.
+//
+// Se guarda como un miembro comprimido con un marco 'X' después de los objetos. El archivo
+// termina con un pie de tamaño fijo sin comprimir cuyo marco 'Z' indica dónde empieza el
+// índice; el pie va envuelto según el códec (ver SqlServerCompressionCodec.writeFooter), por lo
+// que el archivo sigue siendo válido para gzip, zstd o lz4. Los backups sin índice se leen de
+// forma secuencial como antes.
+public class SqlServerBackupIndex {
+
+    static final int FRAME_INDEX = 'X';
+    static final int FRAME_FOOTER = 'Z';
+
+    // Contenido del pie: marco 'Z' + posición del índice (8 bytes) + MAGIC
+    private static final int FOOTER_CONTENT_SIZE = 1 + 8 + SqlServerBackupWriter.MAGIC.length;
+
+    @JsonProperty("structure")
+    private Section structure;
+
+    @JsonProperty("objects")
+    private Section objects;
+
+    @JsonProperty("tables")
+    private List<TableEntry> tables;
+
+    @JsonProperty("object_counts")
+    private Map<String, Integer> objectCounts;
+
+    @JsonProperty("metadata")
+    private SqlServerExportData.Metadata metadata;
+
+    public SqlServerBackupIndex() {
+        this.tables = new ArrayList<>();
+        this.objectCounts = new LinkedHashMap<>();
+    }
+
+    // Lee el índice del backup; null si el archivo no lo tiene (formato 1 o backups anteriores)
+    public static SqlServerBackupIndex read(String backupFile, ObjectMapper objectMapper) throws IOException {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.detect(backupFile);
+        int footerSize = codec.getFooterSize(FOOTER_CONTENT_SIZE);
+        RandomAccessFile file = new RandomAccessFile(backupFile, "r");
+        try {
+            long indexOffset = readFooter(file, codec);
+            if (indexOffset < 0) {
+                return null;
+            }
+
+            file.seek(indexOffset);
+            InputStream raw = new BoundedInputStream(
+                    new BufferedInputStream(new FileInputStream(file.getFD()), 64 * 1024),
+                    file.length() - footerSize - indexOffset);
+            DataInputStream in = new DataInputStream(codec.decompress(raw));
+            if (in.readUnsignedByte() != FRAME_INDEX) {
+                throw new IOException("Formato de backup inválido: índice dañado");
+            }
+            byte[] json = new byte[in.readInt()];
+            in.readFully(json);
+            return objectMapper.readValue(json, SqlServerBackupIndex.class);
+        } finally {
+            file.close();
+        }
+    }
+
+    // Devuelve los bytes (comprimidos) de las secciones indicadas, una tras otra
+    static InputStream openRanges(String backupFile, List<? extends Section> sections) throws IOException {
+        return new RangeInputStream(new RandomAccessFile(backupFile, "r"), sections);
+    }
+
+    // Escribe el pie de tamaño fijo, sin comprimir
+    static void writeFooter(OutputStream out, SqlServerCompressionCodec codec, long indexOffset) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(FOOTER_CONTENT_SIZE);
+        DataOutputStream contentOut = new DataOutputStream(content);
+        contentOut.writeByte(FRAME_FOOTER);
+        contentOut.writeLong(indexOffset);
+        contentOut.write(SqlServerBackupWriter.MAGIC);
+        codec.writeFooter(out, content.toByteArray());
+    }
+
+    // Devuelve la posición del índice, o -1 si el archivo no termina con un pie válido
+    private static long readFooter(RandomAccessFile file, SqlServerCompressionCodec codec) throws IOException {
+        int footerSize = codec.getFooterSize(FOOTER_CONTENT_SIZE);
+        if (file.length() < footerSize) {
+            return -1;
+        }
+        byte[] footer = new byte[footerSize];
+        file.seek(file.length() - footerSize);
+        file.readFully(footer);
+
+        int payload = codec.getFooterPayloadOffset();
+        if (!codec.isFooter(footer) || footer[payload] != FRAME_FOOTER) {
+            return -1;
+        }
+        byte[] magic = Arrays.copyOfRange(footer, payload + 9, payload + 9 + SqlServerBackupWriter.MAGIC.length);
+        if (!Arrays.equals(magic, SqlServerBackupWriter.MAGIC)) {
+            return -1;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer, payload + 1, 8));
+        long indexOffset = in.readLong();
+        if (indexOffset < 0 || indexOffset > file.length() - footerSize) {
+            return -1;
+        }
+        return indexOffset;
+    }
+
+    // Busca una tabla por nombre; null si no está en el backup
+    public TableEntry getTable(String tableName) {
+        for (TableEntry table : tables) {
+            if (table.getName().equals(tableName)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    // Divide una tabla en rangos que se pueden descomprimir por separado: su marco 'T', cada
+    // bloque de sus segmentos y su marco 'E'. null si algún segmento no registra sus bloques.
+    static List<Section> getBlockRanges(TableEntry table) {
+        List<Section> ranges = new ArrayList<>();
+        long position = table.getOffset();
+        for (Segment segment : table.getSegments()) {
+            List<Section> blocks = getBlockRanges(segment);
+            if (blocks == null) {
+                return null;
+            }
+            if (segment.getOffset() > position) {
+                ranges.add(new Section(position, segment.getOffset() - position, 0));
+            }
+            ranges.addAll(blocks);
+            position = segment.getOffset() + segment.getCompressedSize();
+        }
+        long end = table.getOffset() + table.getCompressedSize();
+        if (end > position) {
+            ranges.add(new Section(position, end - position, 0));
+        }
+        return ranges;
+    }
+
+    // Rango de cada bloque de un segmento en el archivo; null si el segmento no registra sus bloques
+    static List<Section> getBlockRanges(Segment segment) {
+        if (segment.getBlocks() == null) {
+            return null;
+        }
+        List<Section> ranges = new ArrayList<>(segment.getBlocks().size());
+        long blockOffset = segment.getOffset();
+        for (Long blockSize : segment.getBlocks()) {
+            ranges.add(new Section(blockOffset, blockSize, 0));
+            blockOffset += blockSize;
+        }
+        return ranges;
+    }
+
+    // Getters y setters
+    public Section getStructure() { return structure; }
+    public void setStructure(Section structure) { this.structure = structure; }
+    public Section getObjects() { return objects; }
+    public void setObjects(Section objects) { this.objects = objects; }
+    public List<TableEntry> getTables() { return tables; }
+    public void setTables(List<TableEntry> tables) { this.tables = tables; }
+    public Map<String, Integer> getObjectCounts() { return objectCounts; }
+    public void setObjectCounts(Map<String, Integer> objectCounts) { this.objectCounts = objectCounts; }
+    public SqlServerExportData.Metadata getMetadata() { return metadata; }
+    public void setMetadata(SqlServerExportData.Metadata metadata) { this.metadata = metadata; }
+
+    // Lee sólo los rangos de las secciones, saltando el resto del archivo
+    private static class RangeInputStream extends InputStream {
+
+        private final RandomAccessFile file;
+        private final List<? extends Section> sections;
+        private int current = -1;
+        private long remaining;
+
+        RangeInputStream(RandomAccessFile file, List<? extends Section> sections) {
+            this.file = file;
+            this.sections = sections;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (remaining == 0) {
+                if (++current >= sections.size()) {
+                    return -1;
+                }
+                Section section = sections.get(current);
+                file.seek(section.getOffset());
+                remaining = section.getCompressedSize();
+            }
+            int count = file.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count == -1) {
+                throw new EOFException("El backup está truncado");
+            }
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    // Rango de bytes del archivo ocupado por una sección (uno o más miembros GZIP)
+    public static class Section {
+        @JsonProperty("offset")
+        private long offset;
+
+        @JsonProperty("compressed_size")
+        private long compressedSize;
+
+        @JsonProperty("uncompressed_size")
+        private long uncompressedSize;
+
+        public Section() {}
+
+        public Section(long offset, long compressedSize, long uncompressedSize) {
+            this.offset = offset;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+
+        // Getters y setters
+        public long getOffset() { return offset; }
+        public void setOffset(long offset) { this.offset = offset; }
+        public long getCompressedSize() { return compressedSize; }
+        public void setCompressedSize(long compressedSize) { this.compressedSize = compressedSize; }
+        public long getUncompressedSize() { return uncompressedSize; }
+        public void setUncompressedSize(long uncompressedSize) { this.uncompressedSize = uncompressedSize; }
+    }
+
+    // Tabla completa: desde su marco 'T' hasta su marco 'E', con la lista de segmentos
+    public static class TableEntry extends Section {
+        @JsonProperty("name")
+        private String name;
+
+        @JsonProperty("row_count")
+        private long rowCount;
+
+        @JsonProperty("segments")
+        private List<Segment> segments;
+
+        public TableEntry() {
+            this.segments = new ArrayList<>();
+        }
+
+        // Getters y setters
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+        public long getRowCount() { return rowCount; }
+        public void setRowCount(long rowCount) { this.rowCount = rowCount; }
+        public List<Segment> getSegments() { return segments; }
+        public void setSegments(List<Segment> segments) { this.segments = segments; }
+    }
+
+    // Segmento de datos: un marco 'D' comprimido en bloques, cada uno un miembro GZIP. El CRC32
+    // se calcula sobre los bytes comprimidos del segmento tal como están en el archivo y blocks
+    // guarda el tamaño comprimido de cada bloque (ambos null en backups anteriores).
+    public static class Segment extends Section {
+        @JsonProperty("row_count")
+        private long rowCount;
+
+        @JsonProperty("crc32")
+        private Long checksum;
+
+        @JsonProperty("blocks")
+        private List<Long> blocks;
+
+        // Sólo durante la exportación, para el reporte de velocidad
+        @JsonIgnore
+        private long compressionNanos;
+
+        public Segment() {}
+
+        public Segment(long rowCount, long uncompressedSize) {
+            this.rowCount = rowCount;
+            setUncompressedSize(uncompressedSize);
+        }
+
+        // Getters y setters
+        public long getRowCount() { return rowCount; }
+        public void setRowCount(long rowCount) { this.rowCount = rowCount; }
+        public Long getChecksum() { return checksum; }
+        public void setChecksum(Long checksum) { this.checksum = checksum; }
+        public List<Long> getBlocks() { return blocks; }
+        public void setBlocks(List<Long> blocks) { this.blocks = blocks; }
+        public long getCompressionNanos() { return compressionNanos; }
+        public void setCompressionNanos(long compressionNanos) { this.compressionNanos = compressionNanos; }
+    }
+}
@@ -0,0 +1,715 @@
+package com.migrator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Lee el backup token por token. Las secciones pequeñas (esquemas, tablas, objetos)
+// se deserializan completas; la sección "data" se entrega tabla por tabla en lotes.
+// El archivo puede tener varios miembros GZIP concatenados (ver SqlServerBackupWriter), o de
+// otro códec que se detecta por los primeros bytes (ver SqlServerCompressionCodec).
+// El formato se detecta por el inicio del contenido: JSON (formato 1) o MAGIC (formato 2,
+// filas binarias).
+public class SqlServerBackupReader implements SqlServerRowSource, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final TypeReference<Map<String, Object>> ROW_TYPE = new TypeReference<Map<String, Object>>() {};
+    private static final TypeReference<Map<String, SqlServerExportData.SchemaInfo>> SCHEMAS_TYPE =
+            new TypeReference<Map<String, SqlServerExportData.SchemaInfo>>() {};
+    private static final TypeReference<Map<String, SqlServerExportData.TableInfo>> TABLES_TYPE =
+            new TypeReference<Map<String, SqlServerExportData.TableInfo>>() {};
+    private static final TypeReference<Map<String, String>> DEFINITIONS_TYPE = new TypeReference<Map<String, String>>() {};
+    private static final TypeReference<List<String>> TABLE_ORDER_TYPE = new TypeReference<List<String>>() {};
+    private static final TypeReference<Map<String, SqlServerExportData.DeletedRows>> DELETED_ROWS_TYPE =
+            new TypeReference<Map<String, SqlServerExportData.DeletedRows>>() {};
+
+    private final ObjectMapper objectMapper;
+    private final InputStream fileStream;
+    private final InputStream contentStream;
+    // Pool que descomprime los bloques en paralelo (sólo con openTables y varios hilos)
+    private final ExecutorService decompressExecutor;
+    private SqlServerCompressionCodec codec;
+    private final SqlServerExportData exportData;
+    private final int formatVersion;
+
+    // Formato 1: parser JSON sobre todo el documento
+    private final JsonParser parser;
+    // Formato 2: marcos binarios
+    private final DataInputStream dataStream;
+    private SqlServerBinaryRowFormat rowFormat;
+    // Marca de la fila binaria en la posición actual
+    private int rowMarker;
+    // Último lote entregado por readRows, reservado en el presupuesto hasta el siguiente
+    private List<Object[]> deliveredRows;
+
+    // Columnas de la tabla que se está parseando; en backups antiguos (filas como objetos)
+    // se toman de la primera fila
+    private List<String> parsedColumns = new ArrayList<String>();
+    // Formato 1: columnas binarias según el encabezado de la tabla (vacía en backups sin tipos)
+    private List<Boolean> parsedBinaryColumns = new ArrayList<Boolean>();
+
+    private boolean inData;
+    private boolean tableFinished = true;
+    // La tabla actual está dividida en segmentos ({"segments":[[filas],[filas]]})
+    private boolean segmented;
+    private boolean inSegment;
+
+    // Lectura anticipada en segundo plano (opcional)
+    private BlockingQueue<DataEvent> prefetchQueue;
+    private Thread prefetchThread;
+    private boolean prefetchTableFinished = true;
+    private List<String> prefetchColumns = new ArrayList<String>();
+
+    public SqlServerBackupReader(String backupFile, ObjectMapper objectMapper) throws IOException {
+        this(new BufferedInputStream(new FileInputStream(backupFile), BUFFER_SIZE), null, objectMapper, false);
+    }
+
+    // Con framesOnly el contenido son marcos del formato 2 sin MAGIC ni encabezado
+    // (rangos del archivo elegidos a partir del índice, ver openTables). Sin códec se detecta
+    // por los primeros bytes del stream.
+    private SqlServerBackupReader(InputStream compressedStream, SqlServerCompressionCodec codec,
+                                  ObjectMapper objectMapper, boolean framesOnly) throws IOException {
+        this(compressedStream, null, codec != null ? codec : SqlServerCompressionCodec.detect(compressedStream),
+                null, objectMapper, framesOnly);
+    }
+
+    private SqlServerBackupReader(InputStream fileStream, InputStream contentStream, SqlServerCompressionCodec codec,
+                                  ExecutorService decompressExecutor, ObjectMapper objectMapper, boolean framesOnly)
+            throws IOException {
+        this.objectMapper = objectMapper;
+        this.fileStream = fileStream;
+        this.contentStream = contentStream != null ? contentStream : codec.decompress(fileStream);
+        this.codec = codec;
+        this.decompressExecutor = decompressExecutor;
+        this.exportData = new SqlServerExportData();
+
+        BufferedInputStream content = new BufferedInputStream(this.contentStream, BUFFER_SIZE);
+        if (framesOnly) {
+            this.dataStream = new DataInputStream(content);
+            this.formatVersion = SqlServerBackupWriter.FORMAT_BINARY;
+            this.parser = null;
+            return;
+        }
+
+        byte[] magic = new byte[SqlServerBackupWriter.MAGIC.length];
+        content.mark(magic.length);
+        int read = 0;
+        while (read < magic.length) {
+            int count = content.read(magic, read, magic.length - read);
+            if (count == -1) {
+                break;
+            }
+            read += count;
+        }
+
+        if (read == magic.length && Arrays.equals(magic, SqlServerBackupWriter.MAGIC)) {
+            this.dataStream = new DataInputStream(content);
+            this.formatVersion = dataStream.readUnsignedByte();
+            this.parser = null;
+            if (formatVersion != SqlServerBackupWriter.FORMAT_BINARY) {
+                throw new IOException("Versión de backup no soportada: " + formatVersion);
+            }
+        } else {
+            content.reset();
+            this.dataStream = null;
+            this.formatVersion = SqlServerBackupWriter.FORMAT_JSON;
+            this.parser = objectMapper.getFactory().createParser(content);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Formato de backup inválido: se esperaba un objeto JSON");
+            }
+        }
+    }
+
+    // Abre sólo la estructura, las tablas indicadas y los objetos del backup, leyendo
+    // directamente sus rangos del archivo según el índice; el resto no se descomprime.
+    // Con varios hilos y segmentos comprimidos en bloques, los bloques se descomprimen en
+    // paralelo por adelantado.
+    public static SqlServerBackupReader openTables(String backupFile, ObjectMapper objectMapper,
+                                                   SqlServerBackupIndex index, Collection<String> tableNames,
+                                                   int threads) throws IOException {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.detect(backupFile);
+        List<SqlServerBackupIndex.Section> sections = new ArrayList<SqlServerBackupIndex.Section>();
+        List<SqlServerBackupIndex.Section> blocks = threads > 1 ? new ArrayList<SqlServerBackupIndex.Section>() : null;
+        sections.add(index.getStructure());
+        for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+            if (tableNames.contains(table.getName())) {
+                sections.add(table);
+                List<SqlServerBackupIndex.Section> tableBlocks = SqlServerBackupIndex.getBlockRanges(table);
+                if (tableBlocks == null) {
+                    blocks = null;
+                } else if (blocks != null) {
+                    blocks.addAll(tableBlocks);
+                }
+            }
+        }
+        sections.add(index.getObjects());
+
+        if (blocks != null) {
+            blocks.add(0, index.getStructure());
+            blocks.add(index.getObjects());
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                InputStream content = new SqlServerBlockInputStream(backupFile, blocks, codec, executor,
+                        SqlServerMemoryBudget.getMaxPendingBlocks(threads * 2));
+                return new SqlServerBackupReader(content, content, codec, executor, objectMapper, true);
+            } catch (IOException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+
+        InputStream ranges = SqlServerBackupIndex.openRanges(backupFile, sections);
+        return new SqlServerBackupReader(new BufferedInputStream(ranges, BUFFER_SIZE), codec, objectMapper, true);
+    }
+
+    // Lee todas las secciones previas a "data" (o el documento completo si no tiene datos)
+    public SqlServerExportData readHeader() throws IOException {
+        if (dataStream != null) {
+            readFrames();
+        } else {
+            readSections();
+        }
+        return exportData;
+    }
+
+    public SqlServerExportData getExportData() {
+        return exportData;
+    }
+
+    public SqlServerCompressionCodec getCodec() {
+        return codec;
+    }
+
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    // Columnas de la tabla actual en el formato binario; null en backups JSON
+    public SqlServerBinaryRowFormat getRowFormat() {
+        return rowFormat;
+    }
+
+    // Inicia un hilo que parsea la sección de datos por adelantado, de modo que
+    // la inserción de un lote se solapa con el parseo de los siguientes
+    public void startPrefetch(final int batchSize, int queueCapacity) {
+        prefetchQueue = new ArrayBlockingQueue<DataEvent>(queueCapacity);
+        prefetchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String tableName;
+                    while ((tableName = parseNextTable()) != null) {
+                        prefetchQueue.put(DataEvent.table(tableName, parsedColumns));
+                        List<Object[]> rows;
+                        while (!(rows = parseRows(batchSize)).isEmpty()) {
+                            prefetchQueue.put(DataEvent.rows(rows));
+                        }
+                        prefetchQueue.put(DataEvent.endOfTable());
+                    }
+                    prefetchQueue.put(DataEvent.endOfData());
+                } catch (InterruptedException e) {
+                    // El consumidor cerró el lector
+                } catch (Exception e) {
+                    try {
+                        prefetchQueue.put(DataEvent.failure(e));
+                    } catch (InterruptedException ignored) {
+                        // El consumidor cerró el lector
+                    }
+                }
+            }
+        }, "backup-reader");
+        prefetchThread.setDaemon(true);
+        prefetchThread.start();
+    }
+
+    // Avanza a la siguiente tabla de la sección de datos; devuelve null al terminar,
+    // momento en el que las secciones posteriores a "data" ya están cargadas
+    public String nextTable() throws IOException {
+        if (prefetchQueue == null) {
+            return parseNextTable();
+        }
+        releaseDelivered();
+        DataEvent event = takeEvent();
+        while (event.kind == DataEvent.ROWS || event.kind == DataEvent.END_OF_TABLE) {
+            // Lotes no consumidos de la tabla anterior
+            if (event.kind == DataEvent.ROWS) {
+                SqlServerMemoryBudget.release(event.rows);
+                SqlServerLobValue.release(event.rows);
+            }
+            event = takeEvent();
+        }
+        if (event.kind != DataEvent.TABLE) {
+            return null;
+        }
+        prefetchTableFinished = false;
+        prefetchColumns = event.columns;
+        return event.tableName;
+    }
+
+    // Devuelve hasta maxRows filas de la tabla actual (menos si el lote llega al límite de
+    // SqlServerMemoryBudget); lista vacía cuando la tabla termina. El lote anterior ya fue
+    // consumido y deja de contar en el presupuesto.
+    @Override
+    public List<Object[]> readRows(int maxRows) throws IOException {
+        releaseDelivered();
+        if (prefetchQueue == null) {
+            deliveredRows = parseRows(maxRows);
+            return deliveredRows;
+        }
+        if (!prefetchTableFinished) {
+            DataEvent event = takeEvent();
+            if (event.kind == DataEvent.ROWS) {
+                deliveredRows = event.rows;
+                return event.rows;
+            }
+            prefetchTableFinished = true;
+        }
+        return new ArrayList<Object[]>();
+    }
+
+    private void releaseDelivered() {
+        if (deliveredRows != null) {
+            SqlServerMemoryBudget.release(deliveredRows);
+            deliveredRows = null;
+        }
+    }
+
+    @Override
+    public List<String> getColumns() {
+        return prefetchQueue != null ? prefetchColumns : parsedColumns;
+    }
+
+    // Copia las filas de la tabla actual sin deserializarlas, en el formato que lee
+    // SqlServerSegmentReader: un arreglo JSON o filas binarias terminadas en 0
+    public long copyTable(OutputStream target) throws IOException {
+        long count = 0;
+        if (dataStream != null) {
+            DataOutputStream out = new DataOutputStream(target);
+            while (nextRow()) {
+                rowFormat.copyRow(dataStream, out, rowMarker);
+                count++;
+            }
+            out.writeByte(0);
+            out.flush();
+            return count;
+        }
+
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(target);
+        generator.writeStartArray();
+        while (nextRow()) {
+            generator.copyCurrentStructure(parser);
+            count++;
+        }
+        generator.writeEndArray();
+        generator.flush();
+        return count;
+    }
+
+    // Recorre las filas de la tabla actual sin deserializarlas
+    public long skipTable() throws IOException {
+        long count = 0;
+        while (nextRow()) {
+            if (dataStream != null) {
+                rowFormat.copyRow(dataStream, null, rowMarker);
+            } else {
+                parser.skipChildren();
+            }
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseDelivered();
+        if (prefetchThread != null) {
+            prefetchThread.interrupt();
+            for (DataEvent event : prefetchQueue) {
+                if (event.kind == DataEvent.ROWS) {
+                    SqlServerMemoryBudget.release(event.rows);
+                    SqlServerLobValue.release(event.rows);
+                }
+            }
+        }
+        try {
+            if (parser != null) {
+                parser.close();
+            }
+        } finally {
+            if (decompressExecutor != null) {
+                decompressExecutor.shutdownNow();
+            }
+            contentStream.close();
+            fileStream.close();
+        }
+    }
+
+    private String parseNextTable() throws IOException {
+        if (!inData) {
+            return null;
+        }
+        if (!tableFinished) {
+            skipTable();
+        }
+        if (dataStream != null) {
+            return parseNextBinaryTable();
+        }
+
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_OBJECT) {
+            inData = false;
+            readSections();
+            return null;
+        }
+
+        String tableName = parser.getCurrentName();
+        token = parser.nextToken();
+        tableFinished = false;
+        inSegment = false;
+        parsedColumns = new ArrayList<String>();
+        parsedBinaryColumns = new ArrayList<Boolean>();
+
+        if (token == JsonToken.START_ARRAY) {
+            // Formato anterior: la tabla es directamente un arreglo de filas
+            segmented = false;
+        } else if (token == JsonToken.START_OBJECT) {
+            segmented = true;
+            if (!advanceToSegments()) {
+                tableFinished = true;
+            }
+        } else {
+            throw new IOException("Formato de backup inválido: se esperaban filas para " + tableName);
+        }
+        return tableName;
+    }
+
+    private String parseNextBinaryTable() throws IOException {
+        int frameType = dataStream.readUnsignedByte();
+        if (frameType == SqlServerBackupWriter.FRAME_OBJECTS) {
+            inData = false;
+            readObjects(readJsonFrame());
+            return null;
+        }
+        if (frameType != SqlServerBackupWriter.FRAME_TABLE) {
+            throw new IOException("Formato de backup inválido: marco inesperado '" + (char) frameType + "'");
+        }
+
+        JsonNode table = readJsonFrame();
+        List<String> columns = new ArrayList<String>();
+        List<String> types = new ArrayList<String>();
+        for (JsonNode column : table.get("columns")) {
+            columns.add(column.asText());
+        }
+        for (JsonNode type : table.get("types")) {
+            types.add(type.asText());
+        }
+        rowFormat = new SqlServerBinaryRowFormat(columns, types);
+        parsedColumns = columns;
+        tableFinished = false;
+        inSegment = false;
+        return table.get("name").asText();
+    }
+
+    private List<Object[]> parseRows(int maxRows) throws IOException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        long batchLimit = SqlServerMemoryBudget.getBatchLimit();
+        long batchSize = 0;
+        while (rows.size() < maxRows && batchSize < batchLimit && nextRow()) {
+            Object[] row;
+            if (dataStream != null) {
+                row = rowFormat.readRow(dataStream, rowMarker);
+            } else {
+                row = readJsonRow(parser, parsedColumns, parsedBinaryColumns, objectMapper);
+            }
+            rows.add(row);
+            batchSize += SqlServerMemoryBudget.estimateSize(row);
+        }
+        SqlServerMemoryBudget.reserve(batchSize);
+        return rows;
+    }
+
+    // Lee la fila JSON en la posición actual del parser. Las filas posicionales se leen
+    // valor por valor; las filas como objeto (backups anteriores) se ordenan según columns,
+    // que se completa con la primera fila si está vacía. El Base64 de las columnas binarias
+    // (binaryColumns, puede estar vacía) se decodifica mientras se lee, ver SqlServerLobValue.
+    static Object[] readJsonRow(JsonParser parser, List<String> columns, List<Boolean> binaryColumns,
+                                ObjectMapper objectMapper) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            Map<String, Object> values = objectMapper.readValue(parser, ROW_TYPE);
+            if (columns.isEmpty()) {
+                columns.addAll(values.keySet());
+            }
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = values.get(columns.get(i));
+            }
+            return row;
+        }
+
+        List<Object> values = new ArrayList<Object>(columns.size());
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.VALUE_NULL) {
+                values.add(null);
+            } else if (token == JsonToken.VALUE_STRING && values.size() < binaryColumns.size() &&
+                    binaryColumns.get(values.size())) {
+                values.add(SqlServerLobValue.readBinary(parser));
+            } else if (token == JsonToken.VALUE_STRING) {
+                values.add(parser.getText());
+            } else if (token == JsonToken.VALUE_NUMBER_INT) {
+                values.add(parser.getNumberValue());
+            } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+                // Sin pasar por double para no perder precisión en decimales
+                values.add(parser.getDecimalValue());
+            } else if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+                values.add(token == JsonToken.VALUE_TRUE);
+            } else {
+                values.add(objectMapper.readValue(parser, Object.class));
+            }
+        }
+        return values.toArray();
+    }
+
+    // Posiciona la lectura en el inicio de la siguiente fila; false cuando la tabla terminó
+    private boolean nextRow() throws IOException {
+        if (dataStream != null) {
+            return nextBinaryRow();
+        }
+        while (!tableFinished) {
+            JsonToken token = parser.nextToken();
+            if (!segmented || inSegment) {
+                if (token != JsonToken.END_ARRAY) {
+                    return true;
+                }
+                if (segmented) {
+                    inSegment = false;
+                } else {
+                    tableFinished = true;
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                inSegment = true;
+            } else {
+                // Fin de la lista de segmentos
+                skipRemainingFields();
+                tableFinished = true;
+            }
+        }
+        return false;
+    }
+
+    private boolean nextBinaryRow() throws IOException {
+        while (!tableFinished) {
+            if (inSegment) {
+                rowMarker = dataStream.readUnsignedByte();
+                if (rowMarker != SqlServerBinaryRowFormat.ROW_END) {
+                    return true;
+                }
+                inSegment = false;
+            } else {
+                int frameType = dataStream.readUnsignedByte();
+                if (frameType == SqlServerBackupWriter.FRAME_SEGMENT) {
+                    inSegment = true;
+                } else if (frameType == SqlServerBackupWriter.FRAME_TABLE_END) {
+                    tableFinished = true;
+                } else {
+                    throw new IOException("Formato de backup inválido: marco inesperado '" + (char) frameType + "'");
+                }
+            }
+        }
+        return false;
+    }
+
+    // Avanza dentro del objeto de la tabla hasta el arreglo "segments", leyendo las columnas
+    private boolean advanceToSegments() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("segments".equals(field) && token == JsonToken.START_ARRAY) {
+                return true;
+            } else if ("columns".equals(field) && token == JsonToken.START_ARRAY) {
+                JsonNode columns = objectMapper.readTree(parser);
+                for (JsonNode column : columns) {
+                    parsedColumns.add(column.get("name").asText());
+                    String type = column.path("type").asText().toLowerCase();
+                    parsedBinaryColumns.add("varbinary".equals(type) || "binary".equals(type) || "image".equals(type));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    private void skipRemainingFields() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    // Lee secciones hasta encontrar "data" o el final del documento
+    private void readSections() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String section = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("data".equals(section)) {
+                inData = true;
+                return;
+            } else if ("metadata".equals(section)) {
+                exportData.setMetadata(objectMapper.readValue(parser, SqlServerExportData.Metadata.class));
+            } else if ("schemas".equals(section)) {
+                exportData.setSchemas(objectMapper.readValue(parser, SCHEMAS_TYPE));
+            } else if ("tables".equals(section)) {
+                exportData.setTables(objectMapper.readValue(parser, TABLES_TYPE));
+            } else if ("table_order".equals(section)) {
+                exportData.setTableOrder(objectMapper.readValue(parser, TABLE_ORDER_TYPE));
+            } else if ("stored_procedures".equals(section)) {
+                exportData.setStoredProcedures(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else if ("functions".equals(section)) {
+                exportData.setFunctions(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else if ("views".equals(section)) {
+                exportData.setViews(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else if ("triggers".equals(section)) {
+                exportData.setTriggers(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else if ("indexes".equals(section)) {
+                exportData.setIndexes(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else if ("constraints".equals(section)) {
+                exportData.setConstraints(objectMapper.readValue(parser, DEFINITIONS_TYPE));
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Formato de backup inválido: documento incompleto");
+        }
+    }
+
+    // Lee los marcos iniciales del formato 2: encabezado y estructura
+    private void readFrames() throws IOException {
+        int frameType;
+        while ((frameType = dataStream.readUnsignedByte()) != SqlServerBackupWriter.FRAME_STRUCTURE) {
+            if (frameType != SqlServerBackupWriter.FRAME_HEADER) {
+                throw new IOException("Formato de backup inválido: marco inesperado '" + (char) frameType + "'");
+            }
+            // El encabezado describe el formato y el códec (con su nivel, que no se puede detectar)
+            JsonNode header = readJsonFrame();
+            if (header.hasNonNull("codec") && header.path("codec").asText().equals(codec.getName())) {
+                codec = SqlServerCompressionCodec.forName(codec.getName(), header.path("level").asInt(-1));
+            }
+        }
+
+        JsonNode structure = readJsonFrame();
+        exportData.setSchemas(objectMapper.<Map<String, SqlServerExportData.SchemaInfo>>convertValue(
+                structure.get("schemas"), SCHEMAS_TYPE));
+        exportData.setTables(objectMapper.<Map<String, SqlServerExportData.TableInfo>>convertValue(
+                structure.get("tables"), TABLES_TYPE));
+        exportData.setTableOrder(objectMapper.<List<String>>convertValue(structure.get("table_order"), TABLE_ORDER_TYPE));
+        inData = true;
+    }
+
+    private void readObjects(JsonNode objects) {
+        exportData.setStoredProcedures(objectMapper.<Map<String, String>>convertValue(
+                objects.get("stored_procedures"), DEFINITIONS_TYPE));
+        exportData.setFunctions(objectMapper.<Map<String, String>>convertValue(objects.get("functions"), DEFINITIONS_TYPE));
+        exportData.setViews(objectMapper.<Map<String, String>>convertValue(objects.get("views"), DEFINITIONS_TYPE));
+        exportData.setTriggers(objectMapper.<Map<String, String>>convertValue(objects.get("triggers"), DEFINITIONS_TYPE));
+        exportData.setIndexes(objectMapper.<Map<String, String>>convertValue(objects.get("indexes"), DEFINITIONS_TYPE));
+        exportData.setConstraints(objectMapper.<Map<String, String>>convertValue(
+                objects.get("constraints"), DEFINITIONS_TYPE));
+        if (objects.has("deleted_rows")) {
+            exportData.setDeletedRows(objectMapper.<Map<String, SqlServerExportData.DeletedRows>>convertValue(
+                    objects.get("deleted_rows"), DELETED_ROWS_TYPE));
+        }
+        exportData.setMetadata(objectMapper.convertValue(objects.get("metadata"), SqlServerExportData.Metadata.class));
+    }
+
+    private JsonNode readJsonFrame() throws IOException {
+        byte[] json = new byte[dataStream.readInt()];
+        dataStream.readFully(json);
+        return objectMapper.readTree(json);
+    }
+
+    private DataEvent takeEvent() throws IOException {
+        DataEvent event;
+        try {
+            event = prefetchQueue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Lectura del backup interrumpida");
+        }
+        if (event.kind == DataEvent.FAILURE) {
+            if (event.error instanceof IOException) {
+                throw (IOException) event.error;
+            }
+            throw new IOException("Error leyendo el backup: " + event.error.getMessage(), event.error);
+        }
+        if (event.kind == DataEvent.END_OF_DATA) {
+            // Reinsertar el marcador para que llamadas posteriores también lo vean
+            prefetchQueue.offer(event);
+        }
+        return event;
+    }
+
+    private static class DataEvent {
+        static final int TABLE = 0;
+        static final int ROWS = 1;
+        static final int END_OF_TABLE = 2;
+        static final int END_OF_DATA = 3;
+        static final int FAILURE = 4;
+
+        final int kind;
+        String tableName;
+        List<String> columns;
+        List<Object[]> rows;
+        Exception error;
+
+        DataEvent(int kind) {
+            this.kind = kind;
+        }
+
+        static DataEvent table(String tableName, List<String> columns) {
+            DataEvent event = new DataEvent(TABLE);
+            event.tableName = tableName;
+            event.columns = columns;
+            return event;
+        }
+
+        static DataEvent rows(List<Object[]> rows) {
+            DataEvent event = new DataEvent(ROWS);
+            event.rows = rows;
+            return event;
+        }
+
+        static DataEvent endOfTable() {
+            return new DataEvent(END_OF_TABLE);
+        }
+
+        static DataEvent endOfData() {
+            return new DataEvent(END_OF_DATA);
+        }
+
+        static DataEvent failure(Exception error) {
+            DataEvent event = new DataEvent(FAILURE);
+            event.error = error;
+            return event;
+        }
+    }
+}
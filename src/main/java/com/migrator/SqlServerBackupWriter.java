@@ -0,0 +1,630 @@
+package com.migrator;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.compress.utils.CountingOutputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Escribe el backup de forma incremental: las filas van del ResultSet al stream GZIP
+// sin quedar en memoria.
+//
+// El archivo es una secuencia de miembros comprimidos con el códec elegido (por defecto un
+// GZIP multi-miembro, ver SqlServerCompressionCodec). Los datos de cada tabla se guardan con sus columnas
+// y uno o más segmentos ("tabla":{"columns":[..],"segments":[[filas],[filas]]}); cada fila
+// es un arreglo posicional de valores simples (binarios en Base64, fechas como texto) cuyo
+// tipo se deduce de la columna. Cada segmento es un miembro GZIP que contiene sólo su
+// arreglo de filas; la puntuación del documento que los une va en miembros pequeños
+// intermedios. Así cada segmento puede comprimirse por separado (incluso en otro hilo),
+// concatenarse en orden y leerse de forma independiente.
+//
+// Con filas binarias (formato 2) el contenido descomprimido no es JSON sino MAGIC + versión
+// seguido de marcos que empiezan con un byte de tipo. Los marcos de estructura y objetos
+// llevan un documento JSON precedido por su largo; cada tabla abre con sus columnas ('T'),
+// sigue con sus segmentos ('D': filas precedidas por su marca y terminadas en 0, ver
+// SqlServerBinaryRowFormat) y cierra con 'E'. Los miembros GZIP empiezan siempre en un marco:
+// la estructura, cada tabla ('T' y 'E'), cada segmento y los objetos van en miembros propios,
+// cuya posición se registra en el índice del final del archivo (ver SqlServerBackupIndex).
+//
+// Los segmentos se comprimen en bloques independientes de 1 MB (ver
+// SqlServerBlockOutputStream), en paralelo si hay más de un hilo de compresión; el índice
+// guarda el tamaño de cada bloque para poder descomprimirlos también en paralelo. El códec y
+// su nivel se registran en el marco 'H' y en la metadata; al leer se detectan por los
+// primeros bytes del archivo.
+public class SqlServerBackupWriter implements Closeable {
+
+    static final byte[] MAGIC = "SQLMIGR".getBytes(StandardCharsets.US_ASCII);
+    static final int FORMAT_JSON = 1;
+    static final int FORMAT_BINARY = 2;
+
+    static final int FRAME_HEADER = 'H';
+    static final int FRAME_STRUCTURE = 'S';
+    static final int FRAME_TABLE = 'T';
+    static final int FRAME_SEGMENT = 'D';
+    static final int FRAME_TABLE_END = 'E';
+    static final int FRAME_OBJECTS = 'O';
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final CountingOutputStream fileStream;
+    // CRC32 de los bytes escritos desde el inicio del segmento actual
+    private final CRC32 checksum = new CRC32();
+    private final boolean binaryRows;
+    private final SqlServerCompressionCodec codec;
+    private final int compressionThreads;
+    // null = comprimir los bloques en el hilo que escribe
+    private final ExecutorService compressionExecutor;
+    // Sólo en el formato 2
+    private final SqlServerBackupIndex index;
+    private SqlServerBackupIndex.TableEntry currentTableEntry;
+
+    // Puntuación o marcos pendientes de escribir antes del próximo segmento o del cierre
+    private final ByteArrayOutputStream pendingGlue = new ByteArrayOutputStream();
+    private SqlServerExportData.TableInfo currentTableInfo;
+    private SqlServerBinaryRowFormat currentRowFormat;
+    private int tableCount;
+    private int segmentCount;
+    private long totalRecords;
+    // Compresión de los segmentos de la tabla actual (o la última terminada)
+    private long tableUncompressedBytes;
+    private long tableCompressedBytes;
+    private long tableCompressionNanos;
+
+    public SqlServerBackupWriter(String backupFile, ObjectMapper objectMapper, boolean binaryRows,
+                                 SqlServerCompressionCodec codec, int compressionThreads) throws IOException {
+        this(new FileOutputStream(backupFile), 0, objectMapper, binaryRows, codec, compressionThreads);
+    }
+
+    private SqlServerBackupWriter(FileOutputStream file, long offset, ObjectMapper objectMapper, boolean binaryRows,
+                                  SqlServerCompressionCodec codec, int compressionThreads) {
+        this.objectMapper = objectMapper;
+        this.fileStream = new OffsetCountingOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(file, BUFFER_SIZE), checksum), offset);
+        this.binaryRows = binaryRows;
+        this.codec = codec;
+        this.compressionThreads = compressionThreads;
+        this.compressionExecutor = compressionThreads > 1 ? Executors.newFixedThreadPool(compressionThreads) : null;
+        this.index = binaryRows ? new SqlServerBackupIndex() : null;
+    }
+
+    // Reabre un backup interrumpido: descarta lo escrito después del punto de control y
+    // continúa con el estado que tenía el writer en ese momento. tables son las entradas del
+    // índice de las tablas ya escritas (formato 2).
+    public static SqlServerBackupWriter resume(String backupFile, ObjectMapper objectMapper, boolean binaryRows,
+                                               SqlServerCompressionCodec codec, int compressionThreads,
+                                               Checkpoint checkpoint, List<SqlServerBackupIndex.TableEntry> tables)
+            throws IOException {
+        RandomAccessFile file = new RandomAccessFile(backupFile, "rw");
+        try {
+            if (file.length() < checkpoint.getOffset()) {
+                throw new IOException("El backup es más corto que el último punto de control: " + backupFile);
+            }
+            file.setLength(checkpoint.getOffset());
+        } finally {
+            file.close();
+        }
+
+        SqlServerBackupWriter writer = new SqlServerBackupWriter(new FileOutputStream(backupFile, true),
+                checkpoint.getOffset(), objectMapper, binaryRows, codec, compressionThreads);
+        writer.tableCount = checkpoint.getTableCount();
+        writer.totalRecords = checkpoint.getTotalRecords();
+        writer.pendingGlue.write(checkpoint.getPendingGlue().getBytes(StandardCharsets.UTF_8));
+        if (binaryRows) {
+            writer.index.setStructure(checkpoint.getStructure());
+            writer.index.getTables().addAll(tables);
+        }
+        return writer;
+    }
+
+    // Estado del writer entre dos tablas, para poder continuar el backup desde ahí. Escribe
+    // en el archivo lo que esté en el buffer.
+    public Checkpoint checkpoint() throws IOException {
+        fileStream.flush();
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.setOffset(fileStream.getBytesWritten());
+        checkpoint.setTableCount(tableCount);
+        checkpoint.setTotalRecords(totalRecords);
+        checkpoint.setPendingGlue(pendingGlue.toString("UTF-8"));
+        if (binaryRows) {
+            checkpoint.setStructure(index.getStructure());
+            if (!index.getTables().isEmpty()) {
+                checkpoint.setTable(index.getTables().get(index.getTables().size() - 1));
+            }
+        }
+        return checkpoint;
+    }
+
+    // Escribe esquemas, estructuras y orden de tablas, y abre la sección de datos
+    public void writeStructure(SqlServerExportData exportData) throws IOException {
+        if (binaryRows) {
+            Map<String, Object> header = new LinkedHashMap<String, Object>();
+            header.put("format_version", FORMAT_BINARY);
+            header.put("row_format", "binary");
+            header.put("codec", codec.getName());
+            header.put("level", codec.getLevel());
+
+            Map<String, Object> structure = new LinkedHashMap<String, Object>();
+            structure.put("schemas", exportData.getSchemas());
+            structure.put("tables", exportData.getTables());
+            structure.put("table_order", exportData.getTableOrder());
+
+            DataOutputStream out = openRawMember(fileStream);
+            out.write(MAGIC);
+            out.writeByte(FORMAT_BINARY);
+            writeJsonFrame(out, FRAME_HEADER, header);
+            out.close();
+
+            long offset = fileStream.getBytesWritten();
+            out = openRawMember(fileStream);
+            int size = writeJsonFrame(out, FRAME_STRUCTURE, structure);
+            out.close();
+            index.setStructure(new SqlServerBackupIndex.Section(offset, fileStream.getBytesWritten() - offset, size));
+            return;
+        }
+
+        JsonGenerator generator = openMember(fileStream);
+        generator.writeRaw('{');
+        writeField(generator, "schemas", exportData.getSchemas(), true);
+        writeField(generator, "tables", exportData.getTables(), false);
+        writeField(generator, "table_order", exportData.getTableOrder(), false);
+        writeFieldName(generator, "data", false);
+        generator.writeRaw('{');
+        closeMember(generator);
+    }
+
+    public void beginTable(String tableName, SqlServerExportData.TableInfo tableInfo) throws IOException {
+        currentTableInfo = tableInfo;
+        if (binaryRows) {
+            currentRowFormat = SqlServerBinaryRowFormat.forTable(tableInfo);
+            currentTableEntry = new SqlServerBackupIndex.TableEntry();
+            currentTableEntry.setName(tableName);
+            currentTableEntry.setOffset(fileStream.getBytesWritten());
+            Map<String, Object> table = new LinkedHashMap<String, Object>();
+            table.put("name", tableName);
+            table.put("columns", currentRowFormat.getColumnNames());
+            table.put("types", currentRowFormat.getColumnTypes());
+            writeJsonFrame(new DataOutputStream(pendingGlue), FRAME_TABLE, table);
+        } else {
+            List<Map<String, String>> columns = new ArrayList<Map<String, String>>();
+            for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+                Map<String, String> columnHeader = new LinkedHashMap<String, String>();
+                columnHeader.put("name", column.getColumnName());
+                columnHeader.put("type", column.getDataType());
+                columns.add(columnHeader);
+            }
+            appendGlue((tableCount == 0 ? "" : ",") + objectMapper.writeValueAsString(tableName) +
+                    ":{\"columns\":" + objectMapper.writeValueAsString(columns) + ",\"segments\":[");
+        }
+        tableCount++;
+        segmentCount = 0;
+        tableUncompressedBytes = 0;
+        tableCompressedBytes = 0;
+        tableCompressionNanos = 0;
+    }
+
+    // Escribe un segmento de la tabla actual directamente en el archivo
+    public long writeSegment(ResultSet rs) throws SQLException, IOException {
+        beginSegment();
+        long offset = fileStream.getBytesWritten();
+        checksum.reset();
+        SqlServerBackupIndex.Segment segment = binaryRows
+                ? writeBinarySegmentMember(fileStream, currentRowFormat, rs)
+                : writeJsonSegmentMember(fileStream, currentTableInfo, rs);
+        addSegment(segment, offset);
+        return segment.getRowCount();
+    }
+
+    // Escribe un segmento como miembro GZIP en otro stream (por ejemplo el archivo temporal
+    // de un hilo de exportación) para agregarlo luego con appendSegment. No modifica el
+    // estado del writer, por lo que puede usarse desde varios hilos (comparten el pool de
+    // compresión).
+    public SqlServerBackupIndex.Segment writeSegmentMember(OutputStream target, SqlServerExportData.TableInfo tableInfo, ResultSet rs)
+            throws SQLException, IOException {
+        if (binaryRows) {
+            return writeBinarySegmentMember(target, SqlServerBinaryRowFormat.forTable(tableInfo), rs);
+        }
+        return writeJsonSegmentMember(target, tableInfo, rs);
+    }
+
+    // Agrega un segmento escrito previamente con writeSegmentMember en un archivo temporal
+    public void appendSegment(File partFile, SqlServerBackupIndex.Segment segment) throws IOException {
+        beginSegment();
+        long offset = fileStream.getBytesWritten();
+        checksum.reset();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(partFile);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                fileStream.write(buffer, 0, read);
+            }
+        } finally {
+            if (in != null) in.close();
+        }
+        addSegment(segment, offset);
+    }
+
+    public void endTable() throws IOException {
+        if (binaryRows) {
+            // El cierre de la tabla va en un miembro propio para que la tabla ocupe un rango continuo
+            pendingGlue.write(FRAME_TABLE_END);
+            flushGlue();
+            currentTableEntry.setCompressedSize(fileStream.getBytesWritten() - currentTableEntry.getOffset());
+            index.getTables().add(currentTableEntry);
+            currentTableEntry = null;
+        } else {
+            appendGlue("]}");
+        }
+    }
+
+    // Cierra la sección de datos y escribe los objetos de base de datos y la metadata
+    public void finish(SqlServerExportData exportData) throws IOException {
+        if (binaryRows) {
+            Map<String, Object> objects = new LinkedHashMap<String, Object>();
+            objects.put("stored_procedures", exportData.getStoredProcedures());
+            objects.put("functions", exportData.getFunctions());
+            objects.put("views", exportData.getViews());
+            objects.put("triggers", exportData.getTriggers());
+            objects.put("indexes", exportData.getIndexes());
+            objects.put("constraints", exportData.getConstraints());
+            objects.put("deleted_rows", exportData.getDeletedRows());
+            objects.put("metadata", exportData.getMetadata());
+
+            flushGlue();
+            long offset = fileStream.getBytesWritten();
+            DataOutputStream out = openRawMember(fileStream);
+            int size = writeJsonFrame(out, FRAME_OBJECTS, objects);
+            out.close();
+            index.setObjects(new SqlServerBackupIndex.Section(offset, fileStream.getBytesWritten() - offset, size));
+
+            index.setMetadata(exportData.getMetadata());
+            index.getObjectCounts().put("stored_procedures", exportData.getStoredProcedures().size());
+            index.getObjectCounts().put("functions", exportData.getFunctions().size());
+            index.getObjectCounts().put("views", exportData.getViews().size());
+            index.getObjectCounts().put("triggers", exportData.getTriggers().size());
+            index.getObjectCounts().put("indexes", exportData.getIndexes().size());
+            index.getObjectCounts().put("constraints", exportData.getConstraints().size());
+
+            long indexOffset = fileStream.getBytesWritten();
+            out = openRawMember(fileStream);
+            writeJsonFrame(out, SqlServerBackupIndex.FRAME_INDEX, index);
+            out.close();
+            SqlServerBackupIndex.writeFooter(fileStream, codec, indexOffset);
+            fileStream.flush();
+            return;
+        }
+
+        JsonGenerator generator = openMember(fileStream);
+        generator.writeRaw(pendingGlue.toString("UTF-8"));
+        pendingGlue.reset();
+        generator.writeRaw('}');
+        writeField(generator, "stored_procedures", exportData.getStoredProcedures(), false);
+        writeField(generator, "functions", exportData.getFunctions(), false);
+        writeField(generator, "views", exportData.getViews(), false);
+        writeField(generator, "triggers", exportData.getTriggers(), false);
+        writeField(generator, "indexes", exportData.getIndexes(), false);
+        writeField(generator, "constraints", exportData.getConstraints(), false);
+        writeField(generator, "metadata", exportData.getMetadata(), false);
+        generator.writeRaw('}');
+        closeMember(generator);
+        fileStream.flush();
+    }
+
+    public long getTotalRecords() {
+        return totalRecords;
+    }
+
+    // Relación de compresión y velocidad de compresión (MB/s por hilo) de la última tabla
+    public String describeTableCompression() {
+        if (tableCompressedBytes == 0) {
+            return codec.getName();
+        }
+        String ratio = String.format(Locale.ROOT, "%.1f:1", (double) tableUncompressedBytes / tableCompressedBytes);
+        if (tableCompressionNanos == 0) {
+            return codec.getName() + " " + ratio;
+        }
+        double megabytesPerSecond = (tableUncompressedBytes / (1024.0 * 1024.0)) / (tableCompressionNanos / 1e9);
+        return codec.getName() + " " + ratio + ", " + String.format(Locale.ROOT, "%.1f MB/s", megabytesPerSecond);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (compressionExecutor != null) {
+            compressionExecutor.shutdownNow();
+        }
+        fileStream.close();
+    }
+
+    // Escribe las filas del ResultSet como bloques GZIP que contienen sólo [filas]
+    private SqlServerBackupIndex.Segment writeJsonSegmentMember(OutputStream target,
+                                                                SqlServerExportData.TableInfo tableInfo, ResultSet rs)
+            throws SQLException, IOException {
+        int columnCount = rs.getMetaData().getColumnCount();
+        if (columnCount != tableInfo.getColumns().size()) {
+            throw new SQLException("Las columnas consultadas no coinciden con la estructura de la tabla");
+        }
+
+        // Las mismas columnas que en el formato 2 se leen como stream
+        SqlServerBinaryRowFormat lobColumns = SqlServerBinaryRowFormat.forTable(tableInfo);
+
+        SqlServerBlockOutputStream blocks = openBlockMember(target);
+        JsonGenerator generator = createGenerator(blocks);
+        generator.writeStartArray();
+
+        long rowCount = 0;
+        while (rs.next()) {
+            writeRow(generator, rs, columnCount, lobColumns);
+            rowCount++;
+        }
+
+        generator.writeEndArray();
+        generator.flush();
+        long size = ((CountingOutputStream) generator.getOutputTarget()).getBytesWritten();
+        closeMember(generator);
+        SqlServerBackupIndex.Segment segment = new SqlServerBackupIndex.Segment(rowCount, size);
+        segment.setBlocks(blocks.getBlockSizes());
+        segment.setCompressionNanos(blocks.getCompressionNanos());
+        return segment;
+    }
+
+    // Escribe las filas del ResultSet como bloques GZIP con un único marco de segmento
+    private SqlServerBackupIndex.Segment writeBinarySegmentMember(OutputStream target,
+                                                                 SqlServerBinaryRowFormat rowFormat, ResultSet rs)
+            throws SQLException, IOException {
+        if (rs.getMetaData().getColumnCount() != rowFormat.getColumnNames().size()) {
+            throw new SQLException("Las columnas consultadas no coinciden con la estructura de la tabla");
+        }
+
+        SqlServerBlockOutputStream blocks = openBlockMember(target);
+        CountingOutputStream counter = new CountingOutputStream(blocks);
+        DataOutputStream out = new DataOutputStream(counter);
+        out.writeByte(FRAME_SEGMENT);
+
+        long rowCount = 0;
+        while (rs.next()) {
+            rowFormat.writeRow(out, rs);
+            rowCount++;
+        }
+
+        out.writeByte(SqlServerBinaryRowFormat.ROW_END);
+        out.close();
+        SqlServerBackupIndex.Segment segment = new SqlServerBackupIndex.Segment(rowCount, counter.getBytesWritten());
+        segment.setBlocks(blocks.getBlockSizes());
+        segment.setCompressionNanos(blocks.getCompressionNanos());
+        return segment;
+    }
+
+    // Escribe la puntuación pendiente como un miembro propio antes de un segmento
+    private void beginSegment() throws IOException {
+        if (segmentCount++ > 0 && !binaryRows) {
+            appendGlue(",");
+        }
+        flushGlue();
+    }
+
+    private void flushGlue() throws IOException {
+        if (pendingGlue.size() > 0) {
+            DataOutputStream out = openRawMember(fileStream);
+            pendingGlue.writeTo(out);
+            out.close();
+            pendingGlue.reset();
+        }
+    }
+
+    // Registra en el índice un segmento recién escrito a partir de offset
+    private void addSegment(SqlServerBackupIndex.Segment segment, long offset) {
+        totalRecords += segment.getRowCount();
+        tableUncompressedBytes += segment.getUncompressedSize();
+        tableCompressedBytes += fileStream.getBytesWritten() - offset;
+        tableCompressionNanos += segment.getCompressionNanos();
+        if (currentTableEntry != null) {
+            segment.setOffset(offset);
+            segment.setCompressedSize(fileStream.getBytesWritten() - offset);
+            segment.setChecksum(checksum.getValue());
+            currentTableEntry.getSegments().add(segment);
+            currentTableEntry.setRowCount(currentTableEntry.getRowCount() + segment.getRowCount());
+            currentTableEntry.setUncompressedSize(currentTableEntry.getUncompressedSize() + segment.getUncompressedSize());
+        }
+    }
+
+    private void appendGlue(String glue) throws IOException {
+        pendingGlue.write(glue.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Devuelve el tamaño del marco escrito
+    private int writeJsonFrame(DataOutputStream out, int frameType, Object value) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(value);
+        out.writeByte(frameType);
+        out.writeInt(json.length);
+        out.write(json);
+        return 5 + json.length;
+    }
+
+    private JsonGenerator openMember(OutputStream target) throws IOException {
+        return createGenerator(codec.compress(new UncloseableOutputStream(target)));
+    }
+
+    private JsonGenerator createGenerator(OutputStream compressed) throws IOException {
+        // El contador permite conocer el tamaño sin comprimir del miembro
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(
+                new CountingOutputStream(compressed), JsonEncoding.UTF8);
+        // Cada miembro es un fragmento del documento: no cerrar objetos ni separar valores
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    // Miembro para contenido binario; al cerrarlo se finaliza el miembro sin cerrar el archivo
+    private DataOutputStream openRawMember(OutputStream target) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+                codec.compress(new UncloseableOutputStream(target)), BUFFER_SIZE));
+    }
+
+    // Segmento comprimido en bloques; al cerrarlo se escriben los bloques sin cerrar el archivo
+    private SqlServerBlockOutputStream openBlockMember(OutputStream target) {
+        return new SqlServerBlockOutputStream(target, codec, compressionExecutor, SqlServerMemoryBudget.getMaxPendingBlocks(compressionThreads * 2));
+    }
+
+    private static void closeMember(JsonGenerator generator) throws IOException {
+        // Cierra el generador y finaliza el miembro GZIP sin cerrar el archivo
+        generator.close();
+    }
+
+    private void writeField(JsonGenerator generator, String name, Object value, boolean first) throws IOException {
+        writeFieldName(generator, name, first);
+        objectMapper.writeValue(generator, value);
+    }
+
+    private void writeFieldName(JsonGenerator generator, String name, boolean first) throws IOException {
+        generator.writeRaw((first ? "" : ",") + objectMapper.writeValueAsString(name) + ":");
+    }
+
+    private static void writeRow(JsonGenerator generator, ResultSet rs, int columnCount,
+                                 SqlServerBinaryRowFormat lobColumns) throws SQLException, IOException {
+        generator.writeStartArray();
+        for (int i = 1; i <= columnCount; i++) {
+            if (lobColumns.isLob(i - 1)) {
+                writeLobValue(generator, rs, i, lobColumns.isBinary(i - 1));
+            } else {
+                writeValue(generator, rs.getObject(i));
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    // Objetos grandes: el generador codifica el stream (Base64 o texto escapado) a medida que lo lee
+    private static void writeLobValue(JsonGenerator generator, ResultSet rs, int column, boolean binary)
+            throws SQLException, IOException {
+        if (binary) {
+            InputStream value = rs.getBinaryStream(column);
+            if (value == null) {
+                generator.writeNull();
+                return;
+            }
+            try {
+                generator.writeBinary(value, -1);
+            } finally {
+                value.close();
+            }
+        } else {
+            Reader value = rs.getCharacterStream(column);
+            if (value == null) {
+                generator.writeNull();
+                return;
+            }
+            try {
+                generator.writeString(value, -1);
+            } finally {
+                value.close();
+            }
+        }
+    }
+
+    // El tipo de cada valor lo da el encabezado de columnas: no hace falta marcarlo
+    private static void writeValue(JsonGenerator generator, Object value) throws SQLException, IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof byte[]) {
+            // VARBINARY, BINARY, IMAGE - Base64
+            generator.writeBinary((byte[]) value);
+        } else if (value instanceof Timestamp || value instanceof Time || value instanceof Date) {
+            generator.writeString(value.toString());
+        } else if (value instanceof Clob) {
+            Reader clob = ((Clob) value).getCharacterStream();
+            try {
+                generator.writeString(clob, -1);
+            } finally {
+                clob.close();
+            }
+        } else if (value instanceof Blob) {
+            InputStream blob = ((Blob) value).getBinaryStream();
+            try {
+                generator.writeBinary(blob, -1);
+            } finally {
+                blob.close();
+            }
+        } else {
+            // Tipos normales (VARCHAR, INT, etc.)
+            generator.writeObject(value);
+        }
+    }
+
+    // Punto de control: posición en el archivo, tablas y registros escritos, puntuación
+    // pendiente (formato 1) y, en el formato 2, la sección de estructura y la última tabla
+    public static class Checkpoint {
+        @JsonProperty("offset")
+        private long offset;
+
+        @JsonProperty("table_count")
+        private int tableCount;
+
+        @JsonProperty("total_records")
+        private long totalRecords;
+
+        @JsonProperty("pending_glue")
+        private String pendingGlue;
+
+        @JsonProperty("structure")
+        private SqlServerBackupIndex.Section structure;
+
+        @JsonProperty("table")
+        private SqlServerBackupIndex.TableEntry table;
+
+        // Getters y setters
+        public long getOffset() { return offset; }
+        public void setOffset(long offset) { this.offset = offset; }
+        public int getTableCount() { return tableCount; }
+        public void setTableCount(int tableCount) { this.tableCount = tableCount; }
+        public long getTotalRecords() { return totalRecords; }
+        public void setTotalRecords(long totalRecords) { this.totalRecords = totalRecords; }
+        public String getPendingGlue() { return pendingGlue; }
+        public void setPendingGlue(String pendingGlue) { this.pendingGlue = pendingGlue; }
+        public SqlServerBackupIndex.Section getStructure() { return structure; }
+        public void setStructure(SqlServerBackupIndex.Section structure) { this.structure = structure; }
+        public SqlServerBackupIndex.TableEntry getTable() { return table; }
+        public void setTable(SqlServerBackupIndex.TableEntry table) { this.table = table; }
+    }
+
+    // Cuenta los bytes a partir de una posición inicial (al continuar un archivo existente)
+    private static class OffsetCountingOutputStream extends CountingOutputStream {
+
+        OffsetCountingOutputStream(OutputStream out, long offset) {
+            super(out);
+            count(offset);
+        }
+    }
+
+    // Permite cerrar el stream GZIP de un miembro sin cerrar el archivo subyacente
+    private static class UncloseableOutputStream extends FilterOutputStream {
+
+        UncloseableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,707 @@
+package com.migrator;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+// Codificación binaria de filas para el formato de backup 2. Las columnas se describen una
+// sola vez por tabla; cada fila lleva un mapa de bits de nulos seguido de los valores no
+// nulos en su representación nativa:
+//   bit/tinyint: 1 byte, smallint: 2, int: 4, bigint: 8, real: 4, float: 8
+//   decimal/money: escala (1 byte) + valor sin escala (bytes con largo)
+//   date: día desde 1970 (4), time: nanosegundos del día (8)
+//   datetime/datetime2/smalldatetime: segundos desde 1970 (8) + nanosegundos (4)
+//   datetimeoffset: fecha y hora local como datetime (12) + desplazamiento en minutos (2)
+//   binarios y tipos CLR (hierarchyid, geometry, geography): bytes con largo
+//   texto, xml y uniqueidentifier: UTF-8 con largo
+// Los largos se escriben como enteros variables (7 bits por byte). Las fechas se leen y se
+// escriben sin pasar por la zona horaria local, para que las horas que no existen en ella
+// (cambios de horario) no se desplacen. Otros tipos (sql_variant) no se pueden exportar en
+// este formato: ver findUnsupportedColumns.
+//
+// En las tablas con objetos grandes (max, text, ntext, image, xml) las filas usan otra
+// marca (ROW_STREAMED): cada valor va precedido por 0 (nulo) o 1, y los binarios y textos se
+// escriben en trozos con largo terminados por un trozo vacío. Así los objetos grandes se
+// copian del stream del ResultSet al backup de a LOB_CHUNK_SIZE bytes, sin conocer su
+// tamaño ni tenerlos completos en memoria; al importar, los grandes se leen como
+// SqlServerLobValue.
+public class SqlServerBinaryRowFormat {
+
+    // Marca antes de cada fila de un segmento; ROW_END cierra el segmento
+    static final int ROW_END = 0;
+    static final int ROW = 1;
+    static final int ROW_STREAMED = 2;
+
+    static final int LOB_CHUNK_SIZE = 64 * 1024;
+
+    static final int KIND_BOOLEAN = 1;
+    static final int KIND_BYTE = 2;
+    static final int KIND_SHORT = 3;
+    static final int KIND_INT = 4;
+    static final int KIND_LONG = 5;
+    static final int KIND_FLOAT = 6;
+    static final int KIND_DOUBLE = 7;
+    static final int KIND_DECIMAL = 8;
+    static final int KIND_DATE = 9;
+    static final int KIND_TIME = 10;
+    static final int KIND_TIMESTAMP = 11;
+    static final int KIND_BYTES = 12;
+    static final int KIND_STRING = 13;
+    static final int KIND_DATETIMEOFFSET = 14;
+    static final int KIND_UNSUPPORTED = -1;
+
+    private final List<String> columnNames;
+    private final List<String> columnTypes;
+    private final int[] kinds;
+    private final int nullBitmapSize;
+    // Columnas que se leen como stream al exportar (sólo en formatos creados con forTable)
+    private final boolean[] lobs;
+    private boolean hasLobs;
+    private byte[] lobBuffer;
+    private char[] lobCharBuffer;
+
+    public SqlServerBinaryRowFormat(List<String> columnNames, List<String> columnTypes) {
+        this.columnNames = columnNames;
+        this.columnTypes = columnTypes;
+        this.kinds = new int[columnNames.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = kindOf(columnTypes.get(i).toLowerCase());
+            if (kinds[i] == KIND_UNSUPPORTED) {
+                throw new IllegalArgumentException("Tipo de columna no soportado en el formato binario: " +
+                        columnNames.get(i) + " (" + columnTypes.get(i) + ")");
+            }
+        }
+        this.nullBitmapSize = (kinds.length + 7) / 8;
+        this.lobs = new boolean[kinds.length];
+    }
+
+    public static SqlServerBinaryRowFormat forTable(SqlServerExportData.TableInfo tableInfo) {
+        List<String> names = new ArrayList<String>();
+        List<String> types = new ArrayList<String>();
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            names.add(column.getColumnName());
+            types.add(column.getDataType());
+        }
+        SqlServerBinaryRowFormat rowFormat = new SqlServerBinaryRowFormat(names, types);
+        for (int i = 0; i < tableInfo.getColumns().size(); i++) {
+            if (isLobColumn(tableInfo.getColumns().get(i))) {
+                rowFormat.lobs[i] = true;
+                rowFormat.hasLobs = true;
+            }
+        }
+        return rowFormat;
+    }
+
+    // Columnas de la tabla que este formato no puede representar, como "columna (tipo)"
+    public static List<String> findUnsupportedColumns(SqlServerExportData.TableInfo tableInfo) {
+        List<String> unsupported = new ArrayList<String>();
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (kindOf(column.getDataType().toLowerCase()) == KIND_UNSUPPORTED) {
+                unsupported.add(column.getColumnName() + " (" + column.getDataType() + ")");
+            }
+        }
+        return unsupported;
+    }
+
+    // Tipos max (largo -1) y los tipos grandes anteriores; los tipos CLR (geometry,
+    // hierarchyid) se siguen leyendo completos
+    static boolean isLobColumn(SqlServerExportData.ColumnInfo column) {
+        String dataType = column.getDataType().toLowerCase();
+        if (column.getMaxLength() == -1) {
+            return "varchar".equals(dataType) || "nvarchar".equals(dataType) || "varbinary".equals(dataType) ||
+                    "xml".equals(dataType);
+        }
+        return "text".equals(dataType) || "ntext".equals(dataType) || "image".equals(dataType);
+    }
+
+    public boolean isLob(int column) {
+        return lobs[column];
+    }
+
+    public boolean isBinary(int column) {
+        return kinds[column] == KIND_BYTES;
+    }
+
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    public List<String> getColumnTypes() {
+        return columnTypes;
+    }
+
+    // Escribe la marca y la fila actual del ResultSet; las columnas deben seguir el orden de la tabla
+    public void writeRow(DataOutputStream out, ResultSet rs) throws SQLException, IOException {
+        if (hasLobs) {
+            writeStreamedRow(out, rs);
+            return;
+        }
+
+        out.writeByte(ROW);
+        byte[] nulls = new byte[nullBitmapSize];
+        Object[] values = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            values[i] = readColumn(rs, i + 1, kinds[i]);
+            if (values[i] == null) {
+                nulls[i >> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+
+        out.write(nulls);
+        for (int i = 0; i < kinds.length; i++) {
+            if (values[i] != null) {
+                writeValue(out, kinds[i], values[i]);
+            }
+        }
+    }
+
+    // Las columnas se leen en orden: el driver sólo mantiene abierto el stream de la última
+    private void writeStreamedRow(DataOutputStream out, ResultSet rs) throws SQLException, IOException {
+        out.writeByte(ROW_STREAMED);
+        for (int i = 0; i < kinds.length; i++) {
+            if (lobs[i]) {
+                if (kinds[i] == KIND_BYTES) {
+                    writeBinaryStream(out, rs.getBinaryStream(i + 1));
+                } else {
+                    writeCharacterStream(out, rs.getCharacterStream(i + 1));
+                }
+                continue;
+            }
+
+            Object value = readColumn(rs, i + 1, kinds[i]);
+            if (value == null) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+                if (kinds[i] == KIND_BYTES) {
+                    writeChunks(out, (byte[]) value);
+                } else if (kinds[i] == KIND_STRING) {
+                    writeChunks(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    writeValue(out, kinds[i], value);
+                }
+            }
+        }
+    }
+
+    private void writeBinaryStream(DataOutputStream out, InputStream value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        if (lobBuffer == null) {
+            lobBuffer = new byte[LOB_CHUNK_SIZE];
+        }
+
+        out.writeByte(1);
+        try {
+            int size;
+            while ((size = readFully(value, lobBuffer)) > 0) {
+                writeVarInt(out, size);
+                out.write(lobBuffer, 0, size);
+            }
+        } finally {
+            value.close();
+        }
+        writeVarInt(out, 0);
+    }
+
+    // El texto se codifica en UTF-8 por trozos; un par sustituto cortado por el trozo pasa
+    // al siguiente
+    private void writeCharacterStream(DataOutputStream out, Reader value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        if (lobCharBuffer == null) {
+            lobCharBuffer = new char[LOB_CHUNK_SIZE / 4];
+        }
+
+        out.writeByte(1);
+        try {
+            int carried = 0;
+            while (true) {
+                int size = carried + readFully(value, lobCharBuffer, carried);
+                if (size == 0) {
+                    break;
+                }
+                boolean finished = size < lobCharBuffer.length;
+                int length = size;
+                if (!finished && Character.isHighSurrogate(lobCharBuffer[size - 1])) {
+                    length--;
+                }
+
+                byte[] chunk = new String(lobCharBuffer, 0, length).getBytes(StandardCharsets.UTF_8);
+                writeVarInt(out, chunk.length);
+                out.write(chunk);
+
+                carried = size - length;
+                if (carried > 0) {
+                    lobCharBuffer[0] = lobCharBuffer[size - 1];
+                }
+                if (finished) {
+                    break;
+                }
+            }
+        } finally {
+            value.close();
+        }
+        writeVarInt(out, 0);
+    }
+
+    // Lee la fila que sigue a la marca con los tipos que espera la importación, en el orden
+    // de getColumnNames()
+    public Object[] readRow(DataInputStream in, int marker) throws IOException {
+        if (marker == ROW_STREAMED) {
+            Object[] row = new Object[kinds.length];
+            for (int i = 0; i < kinds.length; i++) {
+                if (in.readUnsignedByte() != 0) {
+                    row[i] = readStreamedValue(in, kinds[i]);
+                }
+            }
+            return row;
+        }
+        checkMarker(marker);
+
+        byte[] nulls = new byte[nullBitmapSize];
+        in.readFully(nulls);
+
+        Object[] row = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            if ((nulls[i >> 3] & (1 << (i & 7))) == 0) {
+                row[i] = readValue(in, kinds[i]);
+            }
+        }
+        return row;
+    }
+
+    // Lee la fila actual del ResultSet con los mismos tipos que readRow, para cargarla en otro
+    // servidor sin pasar por el backup; los objetos grandes se leen como stream (ver
+    // SqlServerLobValue)
+    public Object[] readRow(ResultSet rs) throws SQLException, IOException {
+        Object[] row = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            if (lobs[i]) {
+                row[i] = kinds[i] == KIND_BYTES
+                        ? SqlServerLobValue.readStream(rs.getBinaryStream(i + 1))
+                        : SqlServerLobValue.readReader(rs.getCharacterStream(i + 1));
+                continue;
+            }
+
+            Object value = readColumn(rs, i + 1, kinds[i]);
+            row[i] = value != null ? toImportValue(kinds[i], value) : null;
+        }
+        return row;
+    }
+
+    // Copia la marca y la fila sin decodificarla (out puede ser null para sólo saltarla)
+    public void copyRow(DataInputStream in, DataOutputStream out, int marker) throws IOException {
+        if (out != null) {
+            out.writeByte(marker);
+        }
+
+        if (marker == ROW_STREAMED) {
+            for (int i = 0; i < kinds.length; i++) {
+                int present = in.readUnsignedByte();
+                if (out != null) {
+                    out.writeByte(present);
+                }
+                if (present == 0) {
+                    continue;
+                }
+                if (kinds[i] == KIND_BYTES || kinds[i] == KIND_STRING) {
+                    copyChunks(in, out);
+                } else {
+                    copyValue(in, out, kinds[i]);
+                }
+            }
+            return;
+        }
+        checkMarker(marker);
+
+        byte[] nulls = new byte[nullBitmapSize];
+        in.readFully(nulls);
+        if (out != null) {
+            out.write(nulls);
+        }
+
+        for (int i = 0; i < kinds.length; i++) {
+            if ((nulls[i >> 3] & (1 << (i & 7))) == 0) {
+                copyValue(in, out, kinds[i]);
+            }
+        }
+    }
+
+    private static void checkMarker(int marker) throws IOException {
+        if (marker != ROW) {
+            throw new IOException("Formato de backup inválido: marca de fila " + marker);
+        }
+    }
+
+    private static Object readColumn(ResultSet rs, int index, int kind) throws SQLException {
+        Object value;
+        switch (kind) {
+            case KIND_BOOLEAN:
+                value = rs.getBoolean(index);
+                break;
+            case KIND_BYTE:
+            case KIND_SHORT:
+                value = rs.getShort(index);
+                break;
+            case KIND_INT:
+                value = rs.getInt(index);
+                break;
+            case KIND_LONG:
+                value = rs.getLong(index);
+                break;
+            case KIND_FLOAT:
+                value = rs.getFloat(index);
+                break;
+            case KIND_DOUBLE:
+                value = rs.getDouble(index);
+                break;
+            case KIND_DECIMAL:
+                value = rs.getBigDecimal(index);
+                break;
+            // Las fechas como java.time: el driver las arma sin la zona horaria local, que
+            // getTimestamp sí aplica
+            case KIND_DATE:
+                value = rs.getObject(index, LocalDate.class);
+                break;
+            case KIND_TIME:
+                value = rs.getObject(index, LocalTime.class);
+                break;
+            case KIND_TIMESTAMP:
+                value = rs.getObject(index, LocalDateTime.class);
+                break;
+            case KIND_DATETIMEOFFSET:
+                value = rs.getObject(index, OffsetDateTime.class);
+                break;
+            case KIND_BYTES:
+                value = rs.getBytes(index);
+                break;
+            default:
+                value = rs.getString(index);
+                break;
+        }
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void writeValue(DataOutputStream out, int kind, Object value) throws IOException {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case KIND_BYTE:
+                out.writeByte(((Short) value).intValue());
+                break;
+            case KIND_SHORT:
+                out.writeShort((Short) value);
+                break;
+            case KIND_INT:
+                out.writeInt((Integer) value);
+                break;
+            case KIND_LONG:
+                out.writeLong((Long) value);
+                break;
+            case KIND_FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case KIND_DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case KIND_DECIMAL:
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeByte(decimal.scale());
+                writeBytes(out, decimal.unscaledValue().toByteArray());
+                break;
+            case KIND_DATE:
+                out.writeInt((int) ((LocalDate) value).toEpochDay());
+                break;
+            case KIND_TIME:
+                out.writeLong(((LocalTime) value).toNanoOfDay());
+                break;
+            case KIND_TIMESTAMP:
+                writeDateTime(out, (LocalDateTime) value);
+                break;
+            case KIND_DATETIMEOFFSET:
+                OffsetDateTime offsetDateTime = (OffsetDateTime) value;
+                writeDateTime(out, offsetDateTime.toLocalDateTime());
+                out.writeShort(offsetDateTime.getOffset().getTotalSeconds() / 60);
+                break;
+            case KIND_BYTES:
+                writeBytes(out, (byte[]) value);
+                break;
+            default:
+                writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+                break;
+        }
+    }
+
+    private static Object readValue(DataInputStream in, int kind) throws IOException {
+        switch (kind) {
+            case KIND_BOOLEAN:
+                return in.readBoolean();
+            case KIND_BYTE:
+                return (short) in.readUnsignedByte();
+            case KIND_SHORT:
+                return in.readShort();
+            case KIND_INT:
+                return in.readInt();
+            case KIND_LONG:
+                return in.readLong();
+            case KIND_FLOAT:
+                return in.readFloat();
+            case KIND_DOUBLE:
+                return in.readDouble();
+            case KIND_DECIMAL:
+                int scale = in.readByte();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case KIND_DATE:
+                return toImportValue(kind, LocalDate.ofEpochDay(in.readInt()));
+            case KIND_TIME:
+                return toImportValue(kind, LocalTime.ofNanoOfDay(in.readLong()));
+            case KIND_TIMESTAMP:
+                return readDateTime(in);
+            case KIND_DATETIMEOFFSET:
+                LocalDateTime dateTime = readDateTime(in);
+                return toImportValue(kind, OffsetDateTime.of(dateTime, ZoneOffset.ofTotalSeconds(in.readShort() * 60)));
+            case KIND_BYTES:
+                return readBytes(in);
+            default:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Fecha y hora de reloj, sin zona: segundos como si fuera UTC y nanosegundos
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    // Valor con el tipo que espera la importación. datetime queda como LocalDateTime (ver
+    // formatDateTime); time y datetimeoffset van como texto para no perder la fracción de
+    // segundo ni el desplazamiento, que java.sql.Time y Timestamp no tienen
+    private static Object toImportValue(int kind, Object value) {
+        switch (kind) {
+            case KIND_DATE:
+                return Date.valueOf((LocalDate) value);
+            case KIND_TIME:
+                return formatTime((LocalTime) value);
+            case KIND_DATETIMEOFFSET:
+                OffsetDateTime offsetDateTime = (OffsetDateTime) value;
+                int minutes = offsetDateTime.getOffset().getTotalSeconds() / 60;
+                return formatDateTime(offsetDateTime.toLocalDateTime(), 'T') + (minutes < 0 ? "-" : "+") +
+                        String.format("%02d:%02d", Math.abs(minutes) / 60, Math.abs(minutes) % 60);
+            default:
+                return value;
+        }
+    }
+
+    // Fecha y hora como texto que SQL Server convierte sin zona horaria: con 'T' (ISO 8601) no
+    // depende de SET DATEFORMAT; bulk copy lo interpreta con espacio. La fracción lleva como
+    // máximo 7 dígitos, sin ceros al final, para que también la acepten datetime y smalldatetime.
+    static String formatDateTime(LocalDateTime value, char separator) {
+        return value.toLocalDate().toString() + separator + formatTime(value.toLocalTime());
+    }
+
+    private static String formatTime(LocalTime value) {
+        StringBuilder text = new StringBuilder(
+                String.format("%02d:%02d:%02d", value.getHour(), value.getMinute(), value.getSecond()));
+        if (value.getNano() != 0) {
+            String fraction = String.format("%09d", value.getNano()).substring(0, 7);
+            int end = fraction.length();
+            while (end > 1 && fraction.charAt(end - 1) == '0') {
+                end--;
+            }
+            text.append('.').append(fraction, 0, end);
+        }
+        return text.toString();
+    }
+
+    // Binarios y textos grandes como SqlServerLobValue
+    private static Object readStreamedValue(DataInputStream in, int kind) throws IOException {
+        if (kind == KIND_BYTES || kind == KIND_STRING) {
+            return SqlServerLobValue.readChunks(in, kind == KIND_BYTES);
+        }
+        return readValue(in, kind);
+    }
+
+    private static void copyValue(DataInputStream in, DataOutputStream out, int kind) throws IOException {
+        int size;
+        switch (kind) {
+            case KIND_BOOLEAN:
+            case KIND_BYTE:
+                size = 1;
+                break;
+            case KIND_SHORT:
+                size = 2;
+                break;
+            case KIND_INT:
+            case KIND_FLOAT:
+            case KIND_DATE:
+                size = 4;
+                break;
+            case KIND_LONG:
+            case KIND_DOUBLE:
+            case KIND_TIME:
+                size = 8;
+                break;
+            case KIND_TIMESTAMP:
+                size = 12;
+                break;
+            case KIND_DATETIMEOFFSET:
+                size = 14;
+                break;
+            case KIND_DECIMAL:
+                int scale = in.readByte();
+                if (out != null) {
+                    out.writeByte(scale);
+                }
+                copyBytes(in, out);
+                return;
+            default:
+                copyBytes(in, out);
+                return;
+        }
+
+        byte[] buffer = new byte[size];
+        in.readFully(buffer);
+        if (out != null) {
+            out.write(buffer);
+        }
+    }
+
+    private static void copyBytes(DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] value = readBytes(in);
+        if (out != null) {
+            writeBytes(out, value);
+        }
+    }
+
+    // Un valor ya leído como un único trozo
+    private static void writeChunks(DataOutputStream out, byte[] value) throws IOException {
+        if (value.length > 0) {
+            writeBytes(out, value);
+        }
+        writeVarInt(out, 0);
+    }
+
+    private static void copyChunks(DataInputStream in, DataOutputStream out) throws IOException {
+        int size;
+        while ((size = readVarInt(in)) > 0) {
+            byte[] chunk = new byte[size];
+            in.readFully(chunk);
+            if (out != null) {
+                writeBytes(out, chunk);
+            }
+        }
+        if (out != null) {
+            writeVarInt(out, 0);
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int size = 0;
+        int read;
+        while (size < buffer.length && (read = in.read(buffer, size, buffer.length - size)) != -1) {
+            size += read;
+        }
+        return size;
+    }
+
+    private static int readFully(Reader in, char[] buffer, int offset) throws IOException {
+        int size = 0;
+        int read;
+        while (offset + size < buffer.length && (read = in.read(buffer, offset + size, buffer.length - offset - size)) != -1) {
+            size += read;
+        }
+        return size;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        writeVarInt(out, value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[readVarInt(in)];
+        in.readFully(value);
+        return value;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int kindOf(String dataType) {
+        if ("bit".equals(dataType)) {
+            return KIND_BOOLEAN;
+        } else if ("tinyint".equals(dataType)) {
+            return KIND_BYTE;
+        } else if ("smallint".equals(dataType)) {
+            return KIND_SHORT;
+        } else if ("int".equals(dataType)) {
+            return KIND_INT;
+        } else if ("bigint".equals(dataType)) {
+            return KIND_LONG;
+        } else if ("real".equals(dataType)) {
+            return KIND_FLOAT;
+        } else if ("float".equals(dataType)) {
+            return KIND_DOUBLE;
+        } else if ("decimal".equals(dataType) || "numeric".equals(dataType) ||
+                "money".equals(dataType) || "smallmoney".equals(dataType)) {
+            return KIND_DECIMAL;
+        } else if ("date".equals(dataType)) {
+            return KIND_DATE;
+        } else if ("time".equals(dataType)) {
+            return KIND_TIME;
+        } else if ("datetime".equals(dataType) || "datetime2".equals(dataType) || "smalldatetime".equals(dataType)) {
+            return KIND_TIMESTAMP;
+        } else if ("datetimeoffset".equals(dataType)) {
+            return KIND_DATETIMEOFFSET;
+        } else if ("binary".equals(dataType) || "varbinary".equals(dataType) || "image".equals(dataType) ||
+                "timestamp".equals(dataType) || "rowversion".equals(dataType)) {
+            return KIND_BYTES;
+        } else if ("hierarchyid".equals(dataType) || "geometry".equals(dataType) || "geography".equals(dataType)) {
+            // Tipos CLR: su serialización binaria, que SQL Server vuelve a convertir al insertarla
+            return KIND_BYTES;
+        } else if ("char".equals(dataType) || "varchar".equals(dataType) || "text".equals(dataType) ||
+                "nchar".equals(dataType) || "nvarchar".equals(dataType) || "ntext".equals(dataType) ||
+                "sysname".equals(dataType) || "xml".equals(dataType) || "uniqueidentifier".equals(dataType)) {
+            return KIND_STRING;
+        }
+        return KIND_UNSUPPORTED;
+    }
+}
@@ -0,0 +1,124 @@
+package com.migrator;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Descomprime en paralelo una secuencia de rangos del archivo, cada uno formado por uno o más
+// miembros completos del códec (por ejemplo los bloques de SqlServerBlockOutputStream), y
+// entrega el contenido en orden. Cada rango se lee y se descomprime completo en memoria,
+// por lo que deben ser de tamaño acotado.
+public class SqlServerBlockInputStream extends InputStream {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final List<? extends SqlServerBackupIndex.Section> ranges;
+    private final SqlServerCompressionCodec codec;
+    private final ExecutorService executor;
+    // Rangos descomprimiéndose por adelantado como máximo
+    private final int maxPending;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private int nextRange;
+    private byte[] current = new byte[0];
+    private int position;
+
+    public SqlServerBlockInputStream(String backupFile, List<? extends SqlServerBackupIndex.Section> ranges,
+                                     SqlServerCompressionCodec codec, ExecutorService executor, int maxPending)
+            throws IOException {
+        this.file = new RandomAccessFile(backupFile, "r");
+        this.channel = file.getChannel();
+        this.ranges = ranges;
+        this.codec = codec;
+        this.executor = executor;
+        this.maxPending = maxPending;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (position == current.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (position == current.length) {
+            if (!nextBlock()) {
+                return -1;
+            }
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        file.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        while (pending.size() < maxPending && nextRange < ranges.size()) {
+            final SqlServerBackupIndex.Section range = ranges.get(nextRange++);
+            pending.add(executor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return decompress(range);
+                }
+            }));
+        }
+        if (pending.isEmpty()) {
+            return false;
+        }
+
+        try {
+            current = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Descompresión interrumpida");
+        } catch (ExecutionException e) {
+            throw new IOException("Error descomprimiendo bloque: " + e.getCause().getMessage(), e.getCause());
+        }
+        position = 0;
+        return true;
+    }
+
+    private byte[] decompress(SqlServerBackupIndex.Section range) throws IOException {
+        // Lectura posicional: varios hilos pueden leer del mismo canal a la vez
+        ByteBuffer compressed = ByteBuffer.allocate((int) range.getCompressedSize());
+        while (compressed.hasRemaining()) {
+            if (channel.read(compressed, range.getOffset() + compressed.position()) == -1) {
+                throw new EOFException("El backup está truncado");
+            }
+        }
+
+        InputStream in = codec.decompress(new ByteArrayInputStream(compressed.array()));
+        ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(compressed.capacity() * 4, 1024));
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+            content.write(buffer, 0, count);
+        }
+        in.close();
+        return content.toByteArray();
+    }
+}
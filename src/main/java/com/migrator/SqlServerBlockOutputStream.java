@@ -0,0 +1,158 @@
+package com.migrator;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Comprime en bloques independientes: cada BLOCK_SIZE bytes se convierten en un miembro propio
+// del códec, en un pool de hilos si se indica, y los miembros se escriben en orden. El
+// resultado es un stream multi-miembro normal (por ejemplo GZIP); getBlockSizes() devuelve el
+// tamaño comprimido de cada miembro para poder descomprimirlos luego en paralelo (ver
+// SqlServerBlockInputStream).
+//
+// Al cerrarlo se escriben los bloques pendientes pero no se cierra el stream de destino.
+public class SqlServerBlockOutputStream extends OutputStream {
+
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final OutputStream target;
+    private final SqlServerCompressionCodec codec;
+    // null = comprimir en el hilo que escribe
+    private final ExecutorService executor;
+    // Bloques comprimiéndose a la vez como máximo; limita la memoria usada
+    private final int maxPending;
+
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+    private final List<Long> blockSizes = new ArrayList<Long>();
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int position;
+    private boolean closed;
+    // Tiempo de CPU dedicado a comprimir, sumando todos los hilos
+    private final AtomicLong compressionNanos = new AtomicLong();
+
+    public SqlServerBlockOutputStream(OutputStream target, SqlServerCompressionCodec codec,
+                                      ExecutorService executor, int maxPending) {
+        this.target = target;
+        this.codec = codec;
+        this.executor = executor;
+        this.maxPending = maxPending;
+        SqlServerMemoryBudget.reserve(BLOCK_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position == buffer.length) {
+            submitBlock();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (position == buffer.length) {
+                submitBlock();
+            }
+            int count = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    // Tamaño comprimido de cada miembro escrito, en orden; completo después de close()
+    public List<Long> getBlockSizes() {
+        return blockSizes;
+    }
+
+    public long getCompressionNanos() {
+        return compressionNanos.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (position > 0 || (blockSizes.isEmpty() && pending.isEmpty())) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeNextBlock();
+        }
+        // El buffer sin usar que quedó después del último bloque
+        SqlServerMemoryBudget.release(BLOCK_SIZE);
+        target.flush();
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] block = buffer;
+        final int length = position;
+        buffer = new byte[BLOCK_SIZE];
+        position = 0;
+        // Cada bloque cuenta en el presupuesto de memoria hasta que se escribe
+        SqlServerMemoryBudget.reserve(BLOCK_SIZE);
+
+        if (executor == null) {
+            writeBlock(compress(block, length));
+            return;
+        }
+
+        pending.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compress(block, length);
+            }
+        }));
+        while (pending.size() > maxPending) {
+            writeNextBlock();
+        }
+    }
+
+    private void writeNextBlock() throws IOException {
+        Future<byte[]> next = pending.removeFirst();
+        try {
+            writeBlock(next.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Compresión interrumpida");
+        } catch (ExecutionException e) {
+            throw new IOException("Error comprimiendo bloque: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void writeBlock(byte[] member) throws IOException {
+        target.write(member);
+        blockSizes.add((long) member.length);
+        SqlServerMemoryBudget.release(BLOCK_SIZE);
+    }
+
+    private byte[] compress(byte[] block, int length) throws IOException {
+        long start = cpuTime();
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        OutputStream compressed = codec.compress(member);
+        compressed.write(block, 0, length);
+        compressed.close();
+        compressionNanos.addAndGet(cpuTime() - start);
+        return member.toByteArray();
+    }
+
+    // Con varios hilos en pocos núcleos el tiempo transcurrido incluye las esperas; el tiempo de
+    // CPU del hilo mide sólo la compresión
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+}
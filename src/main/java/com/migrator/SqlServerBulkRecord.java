@@ -0,0 +1,252 @@
+package com.migrator;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Adapta las filas del backup a SQLServerBulkCopy. Las filas se piden a la fuente por
+// lotes a medida que el driver las consume, de modo que la tabla no queda en memoria.
+//
+// El driver no convierte tipos para fuentes de este tipo: cada valor debe entregarse con
+// la clase que corresponde al tipo JDBC declarado (Integer para INTEGER, BigDecimal para
+// DECIMAL, String para fechas, etc.), por eso se normalizan en getRowData. Los objetos
+// grandes (SqlServerLobValue) se entregan como InputStream o Reader, que el driver envía
+// por partes a las columnas max; cada uno se libera al pasar a la fila siguiente.
+//
+// La interfaz del driver es Serializable, pero la fuente sólo se usa en la carga en curso.
+public abstract class SqlServerBulkRecord implements ISQLServerBulkData {
+
+    private static final long serialVersionUID = 1L;
+
+    // Tipos que no se pueden cargar con bulk copy desde esta fuente; esas tablas usan INSERT.
+    // Las columnas rowversion se leen como binarias pero no se mapean (las genera el servidor).
+    private static final Set<String> UNSUPPORTED_TYPES = new HashSet<String>(Arrays.asList(
+            "datetimeoffset", "sql_variant", "hierarchyid", "geography", "geometry"));
+
+    private final List<String> columns;
+    private final String[] columnTypes;
+    private final int[] jdbcTypes;
+    private final int[] precisions;
+    private final int[] scales;
+    private final Set<Integer> ordinals = new LinkedHashSet<Integer>();
+
+    private final SqlServerRowSource rowSource;
+    private final int fetchSize;
+    private List<Object[]> batch;
+    private int position = -1;
+    private long rowCount;
+
+    public SqlServerBulkRecord(SqlServerExportData.TableInfo tableInfo, List<String> columns,
+                               List<Object[]> firstBatch, SqlServerRowSource rowSource, int fetchSize) {
+        this.columns = columns;
+        this.columnTypes = new String[columns.size()];
+        this.jdbcTypes = new int[columns.size()];
+        this.precisions = new int[columns.size()];
+        this.scales = new int[columns.size()];
+        this.batch = firstBatch;
+        this.rowSource = rowSource;
+        this.fetchSize = fetchSize;
+
+        Map<String, SqlServerExportData.ColumnInfo> columnInfos = new HashMap<String, SqlServerExportData.ColumnInfo>();
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            columnInfos.put(column.getColumnName(), column);
+        }
+
+        for (int i = 0; i < columns.size(); i++) {
+            SqlServerExportData.ColumnInfo column = columnInfos.get(columns.get(i));
+            String dataType = column != null ? column.getDataType().toLowerCase() : "nvarchar";
+            columnTypes[i] = dataType;
+            jdbcTypes[i] = toJdbcType(dataType);
+            if (column != null && (jdbcTypes[i] == Types.DECIMAL || jdbcTypes[i] == Types.NUMERIC)) {
+                precisions[i] = column.getPrecision();
+                scales[i] = column.getScale();
+            }
+            ordinals.add(i + 1);
+        }
+    }
+
+    // Indica si todas las columnas de la tabla se pueden cargar con bulk copy
+    public static boolean isSupported(SqlServerExportData.TableInfo tableInfo) {
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (UNSUPPORTED_TYPES.contains(column.getDataType().toLowerCase())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Convierte el valor leído del backup al tipo de la columna destino
+    protected abstract Object convertValue(Object value, String columnType);
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public Set<Integer> getColumnOrdinals() {
+        return ordinals;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns.get(column - 1);
+    }
+
+    @Override
+    public int getColumnType(int column) {
+        return jdbcTypes[column - 1];
+    }
+
+    @Override
+    public int getPrecision(int column) {
+        return precisions[column - 1];
+    }
+
+    @Override
+    public int getScale(int column) {
+        return scales[column - 1];
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        // El driver ya envió la fila anterior
+        if (position >= 0 && position < batch.size()) {
+            SqlServerLobValue.release(batch.get(position));
+        }
+        position++;
+        if (position >= batch.size()) {
+            try {
+                batch = rowSource.readRows(fetchSize);
+            } catch (IOException e) {
+                throw new SQLException("Error leyendo el backup: " + e.getMessage(), e);
+            }
+            position = 0;
+            if (batch.isEmpty()) {
+                return false;
+            }
+        }
+        rowCount++;
+        return true;
+    }
+
+    @Override
+    public Object[] getRowData() throws SQLException {
+        Object[] row = batch.get(position);
+        Object[] data = new Object[columns.size()];
+        for (int i = 0; i < data.length; i++) {
+            if (row[i] instanceof SqlServerLobValue) {
+                SqlServerLobValue lob = (SqlServerLobValue) row[i];
+                try {
+                    data[i] = lob.isBinary() ? lob.openStream() : lob.openReader();
+                } catch (IOException e) {
+                    throw new SQLException("Error leyendo el backup: " + e.getMessage(), e);
+                }
+                continue;
+            }
+            // Las fechas del formato binario van como texto con espacio, el que interpreta el driver
+            Object value = row[i] instanceof LocalDateTime
+                    ? SqlServerBinaryRowFormat.formatDateTime((LocalDateTime) row[i], ' ')
+                    : convertValue(row[i], columnTypes[i]);
+            data[i] = normalize(value, jdbcTypes[i]);
+        }
+        return data;
+    }
+
+    // Libera los objetos grandes que queden en el lote actual (por ejemplo, si la carga falló)
+    public void release() {
+        if (position < batch.size()) {
+            SqlServerLobValue.release(batch.subList(Math.max(position, 0), batch.size()));
+        }
+    }
+
+    private static Object normalize(Object value, int jdbcType) {
+        if (value == null) {
+            return null;
+        }
+        switch (jdbcType) {
+            case Types.BIT:
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                if (value instanceof Number) {
+                    return ((Number) value).intValue() != 0;
+                }
+                return "1".equals(value.toString()) || Boolean.parseBoolean(value.toString());
+            case Types.TINYINT:
+            case Types.SMALLINT:
+                return value instanceof Number ? ((Number) value).shortValue() : Short.valueOf(value.toString());
+            case Types.INTEGER:
+                return value instanceof Number ? ((Number) value).intValue() : Integer.valueOf(value.toString());
+            case Types.BIGINT:
+                return value instanceof Number ? ((Number) value).longValue() : Long.valueOf(value.toString());
+            case Types.REAL:
+                return value instanceof Number ? ((Number) value).floatValue() : Float.valueOf(value.toString());
+            case Types.DOUBLE:
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(value.toString());
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+            case Types.DATE:
+            case Types.TIME:
+            case Types.TIMESTAMP:
+                // El driver interpreta las fechas de estas fuentes a partir de su texto
+                return value.toString();
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return value;
+            default:
+                return value instanceof String ? value : value.toString();
+        }
+    }
+
+    private static int toJdbcType(String dataType) {
+        if ("bit".equals(dataType)) {
+            return Types.BIT;
+        } else if ("tinyint".equals(dataType)) {
+            return Types.TINYINT;
+        } else if ("smallint".equals(dataType)) {
+            return Types.SMALLINT;
+        } else if ("int".equals(dataType)) {
+            return Types.INTEGER;
+        } else if ("bigint".equals(dataType)) {
+            return Types.BIGINT;
+        } else if ("decimal".equals(dataType) || "money".equals(dataType) || "smallmoney".equals(dataType)) {
+            return Types.DECIMAL;
+        } else if ("numeric".equals(dataType)) {
+            return Types.NUMERIC;
+        } else if ("real".equals(dataType)) {
+            return Types.REAL;
+        } else if ("float".equals(dataType)) {
+            return Types.DOUBLE;
+        } else if ("date".equals(dataType)) {
+            return Types.DATE;
+        } else if ("time".equals(dataType)) {
+            return Types.TIME;
+        } else if ("datetime".equals(dataType) || "datetime2".equals(dataType) || "smalldatetime".equals(dataType)) {
+            return Types.TIMESTAMP;
+        } else if ("binary".equals(dataType) || "timestamp".equals(dataType) || "rowversion".equals(dataType)) {
+            return Types.BINARY;
+        } else if ("varbinary".equals(dataType)) {
+            return Types.VARBINARY;
+        } else if ("image".equals(dataType)) {
+            return Types.LONGVARBINARY;
+        } else if ("char".equals(dataType) || "uniqueidentifier".equals(dataType)) {
+            return Types.CHAR;
+        } else if ("varchar".equals(dataType)) {
+            return Types.VARCHAR;
+        } else if ("text".equals(dataType)) {
+            return Types.LONGVARCHAR;
+        } else if ("nchar".equals(dataType)) {
+            return Types.NCHAR;
+        } else if ("ntext".equals(dataType) || "xml".equals(dataType)) {
+            return Types.LONGNVARCHAR;
+        }
+        return Types.NVARCHAR;
+    }
+}
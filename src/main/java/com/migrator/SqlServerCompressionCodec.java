@@ -0,0 +1,249 @@
+package com.migrator;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.*;
+import java.util.zip.CRC32;
+
+// Códec de compresión del backup. Todos admiten concatenar miembros comprimidos por separado,
+// por lo que la estructura del archivo es la misma con cualquiera de ellos: gzip (miembros
+// GZIP, legibles con gzip/zcat), zstd y lz4 (frames estándar, legibles con zstd -dc y lz4 -dc)
+// o none (sin comprimir). Al leer, el códec se detecta por los primeros bytes del archivo.
+public class SqlServerCompressionCodec {
+
+    static final String GZIP = "gzip";
+    static final String ZSTD = "zstd";
+    static final String LZ4 = "lz4";
+    static final String NONE = "none";
+
+    // Frame "skippable" de zstd y lz4: los descompresores lo ignoran
+    private static final int SKIPPABLE_FRAME_MAGIC = 0x184D2A50;
+    // Cierre del pie sin compresión, después del largo: "SQLZ" en little endian
+    private static final int UNCOMPRESSED_FOOTER_MAGIC = 0x5A4C5153;
+
+    private final String name;
+    private final int level;
+
+    private SqlServerCompressionCodec(String name, int level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    // level < 0 = nivel por defecto del códec
+    public static SqlServerCompressionCodec forName(String name, int level) {
+        int minLevel;
+        int maxLevel;
+        int defaultLevel;
+        if (GZIP.equals(name)) {
+            minLevel = 1;
+            maxLevel = 9;
+            defaultLevel = 6;
+        } else if (ZSTD.equals(name)) {
+            minLevel = 1;
+            maxLevel = 22;
+            defaultLevel = 3;
+        } else if (LZ4.equals(name)) {
+            // Como la herramienta lz4: 1-2 = compresor rápido, 3-12 = LZ4 HC
+            minLevel = 1;
+            maxLevel = 12;
+            defaultLevel = 1;
+        } else if (NONE.equals(name)) {
+            minLevel = 0;
+            maxLevel = 0;
+            defaultLevel = 0;
+        } else {
+            throw new IllegalArgumentException("--codec debe ser 'gzip', 'zstd', 'lz4' o 'none'");
+        }
+
+        if (level < 0) {
+            level = defaultLevel;
+        }
+        if (level < minLevel || level > maxLevel) {
+            throw new IllegalArgumentException("--level para " + name + " debe estar entre " + minLevel + " y " + maxLevel);
+        }
+        return new SqlServerCompressionCodec(name, level);
+    }
+
+    // Detecta el códec por los primeros bytes del contenido; el nivel no se puede deducir
+    static SqlServerCompressionCodec detect(byte[] head, int length) {
+        if (length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) {
+            return new SqlServerCompressionCodec(GZIP, -1);
+        }
+        if (length >= 4) {
+            int magic = readIntLittleEndian(head, 0);
+            if (magic == 0xFD2FB528) {
+                return new SqlServerCompressionCodec(ZSTD, -1);
+            }
+            if (magic == 0x184D2204) {
+                return new SqlServerCompressionCodec(LZ4, -1);
+            }
+        }
+        return new SqlServerCompressionCodec(NONE, -1);
+    }
+
+    static SqlServerCompressionCodec detect(String backupFile) throws IOException {
+        InputStream in = new FileInputStream(backupFile);
+        try {
+            return detect(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Lee los primeros bytes sin consumirlos si el stream admite mark
+    static SqlServerCompressionCodec detect(InputStream in) throws IOException {
+        byte[] head = new byte[4];
+        if (in.markSupported()) {
+            in.mark(head.length);
+        }
+        int read = 0;
+        while (read < head.length) {
+            int count = in.read(head, read, head.length - read);
+            if (count == -1) {
+                break;
+            }
+            read += count;
+        }
+        if (in.markSupported()) {
+            in.reset();
+        }
+        return detect(head, read);
+    }
+
+    // Stream que comprime un miembro; al cerrarlo se finaliza el miembro y se cierra out
+    public OutputStream compress(OutputStream out) throws IOException {
+        if (GZIP.equals(name)) {
+            GzipParameters parameters = new GzipParameters();
+            parameters.setCompressionLevel(level);
+            return new GzipCompressorOutputStream(out, parameters);
+        }
+        if (ZSTD.equals(name)) {
+            return new ZstdCompressorOutputStream(out, level);
+        }
+        if (LZ4.equals(name)) {
+            LZ4Compressor compressor = level < 3
+                    ? LZ4Factory.fastestInstance().fastCompressor()
+                    : LZ4Factory.fastestInstance().highCompressor(level);
+            return new LZ4FrameOutputStream(out, LZ4FrameOutputStream.BLOCKSIZE.SIZE_1MB, -1L, compressor,
+                    XXHashFactory.fastestInstance().hash32(), LZ4FrameOutputStream.FLG.Bits.BLOCK_INDEPENDENCE,
+                    LZ4FrameOutputStream.FLG.Bits.CONTENT_CHECKSUM);
+        }
+        return out;
+    }
+
+    // Stream que descomprime uno o más miembros concatenados
+    public InputStream decompress(InputStream in) throws IOException {
+        if (GZIP.equals(name)) {
+            return new GzipCompressorInputStream(in, true);
+        }
+        if (ZSTD.equals(name)) {
+            return new ZstdCompressorInputStream(in);
+        }
+        if (LZ4.equals(name)) {
+            return new LZ4FrameInputStream(in);
+        }
+        return in;
+    }
+
+    // Tamaño en el archivo del pie que envuelve un contenido de payloadLength bytes
+    int getFooterSize(int payloadLength) {
+        // gzip: CRC y largo al final; none: largo y UNCOMPRESSED_FOOTER_MAGIC
+        return getFooterPayloadOffset() + payloadLength + (GZIP.equals(name) || NONE.equals(name) ? 8 : 0);
+    }
+
+    // Posición del contenido dentro del pie
+    int getFooterPayloadOffset() {
+        if (GZIP.equals(name)) {
+            // Encabezado GZIP (10) + encabezado del bloque deflate sin compresión (5)
+            return 15;
+        }
+        return NONE.equals(name) ? 0 : 8;
+    }
+
+    // Escribe el pie de tamaño fijo sin comprimir, de forma que el archivo siga siendo válido
+    // para el descompresor estándar: un miembro GZIP con un bloque sin compresión o un frame
+    // skippable de zstd/lz4. Sin compresión el contenido va seguido de su largo y una marca, para
+    // que el final de un backup sin pie no se confunda con uno
+    void writeFooter(OutputStream out, byte[] payload) throws IOException {
+        if (GZIP.equals(name)) {
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            // Encabezado GZIP: deflate, sin flags ni fecha, sistema desconocido
+            out.write(new byte[]{0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+            // Bloque final sin compresión: largo y su complemento en little endian
+            out.write(1);
+            writeLittleEndian(out, payload.length, 2);
+            writeLittleEndian(out, ~payload.length & 0xffff, 2);
+            out.write(payload);
+            writeLittleEndian(out, crc.getValue(), 4);
+            writeLittleEndian(out, payload.length, 4);
+        } else if (NONE.equals(name)) {
+            out.write(payload);
+            writeLittleEndian(out, payload.length, 4);
+            writeLittleEndian(out, UNCOMPRESSED_FOOTER_MAGIC, 4);
+        } else {
+            writeLittleEndian(out, SKIPPABLE_FRAME_MAGIC, 4);
+            writeLittleEndian(out, payload.length, 4);
+            out.write(payload);
+        }
+    }
+
+    // Comprueba la envoltura del pie escrita por writeFooter
+    boolean isFooter(byte[] footer) {
+        if (GZIP.equals(name)) {
+            return (footer[0] & 0xff) == 0x1f && (footer[1] & 0xff) == 0x8b && footer[10] == 1;
+        }
+        if (NONE.equals(name)) {
+            return readIntLittleEndian(footer, footer.length - 4) == UNCOMPRESSED_FOOTER_MAGIC &&
+                    readIntLittleEndian(footer, footer.length - 8) == footer.length - 8;
+        }
+        return readIntLittleEndian(footer, 0) == SKIPPABLE_FRAME_MAGIC &&
+                readIntLittleEndian(footer, 4) == footer.length - 8;
+    }
+
+    // Extensión del archivo de backup según el códec
+    public String getFileExtension() {
+        if (GZIP.equals(name)) {
+            return ".gz";
+        }
+        if (ZSTD.equals(name)) {
+            return ".zst";
+        }
+        return LZ4.equals(name) ? ".lz4" : ".raw";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // -1 si el códec se detectó al leer
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return level < 0 || NONE.equals(name) ? name : name + " (nivel " + level + ")";
+    }
+
+    private static void writeLittleEndian(OutputStream out, long value, int bytes) throws IOException {
+        for (int i = 0; i < bytes; i++) {
+            out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+
+    private static int readIntLittleEndian(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 |
+                (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,208 @@
+package com.migrator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Conexiones de una operación contra un servidor, abiertas una sola vez al comienzo.
+//
+// El pool tiene tantas conexiones como la operación usa a la vez (la conexión principal y una
+// por hilo): warmUp() las abre de a WARMUP_CONCURRENCY logins, las valida y les aplica
+// SESSION_SETTINGS, de modo que el trabajo de cada tabla no paga el login y el servidor no
+// recibe una ráfaga de conexiones. Al devolverlas se deshace la transacción abierta y se
+// restablece el auto-commit; las que estuvieron inactivas más de IDLE_VALIDATION_MILLIS se
+// validan antes de entregarlas y se reemplazan si el servidor las cerró.
+public class SqlServerConnectionPool implements AutoCloseable {
+
+    // Logins simultáneos al abrir el pool
+    private static final int WARMUP_CONCURRENCY = 4;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final long IDLE_VALIDATION_MILLIS = 30000;
+
+    // Se aplican una vez por conexión. Los valores por defecto del driver ya son los ANSI;
+    // ARITHABORT ON es el del resto de los clientes (SSMS) y evita planes distintos para las
+    // mismas consultas, y TEXTSIZE sin límite lee completos los text/ntext/image.
+    private static final String SESSION_SETTINGS = "SET ARITHABORT ON; SET TEXTSIZE 2147483647";
+
+    private final SqlServerConfig config;
+    private final int size;
+    private final BlockingQueue<PooledConnection> idle;
+    private final List<Connection> all = new ArrayList<Connection>();
+    private boolean closed;
+
+    public SqlServerConnectionPool(SqlServerConfig config, int size) {
+        this.config = config;
+        this.size = Math.max(1, size);
+        this.idle = new LinkedBlockingQueue<PooledConnection>();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Abre y prepara todas las conexiones; si alguna falla se cierran las ya abiertas
+    public void warmUp() throws SQLException {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(size, WARMUP_CONCURRENCY));
+        try {
+            List<Future<Connection>> results = new ArrayList<Future<Connection>>();
+            for (int i = 0; i < size; i++) {
+                results.add(executor.submit(new Callable<Connection>() {
+                    @Override
+                    public Connection call() throws Exception {
+                        return openConnection();
+                    }
+                }));
+            }
+
+            SQLException error = null;
+            for (Future<Connection> result : results) {
+                try {
+                    Connection connection = result.get();
+                    register(connection);
+                    idle.add(new PooledConnection(connection));
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                                : new SQLException("Error abriendo conexión: " + e.getCause().getMessage(), e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    if (error == null) {
+                        error = new SQLException("Apertura de conexiones interrumpida", e);
+                    }
+                }
+            }
+            if (error != null) {
+                close();
+                throw error;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("🔌 Pool de conexiones: " + size + " conexión(es) lista(s) en " +
+                (System.currentTimeMillis() - startTime) + " ms");
+    }
+
+    // Entrega una conexión libre, esperando si todas están en uso
+    public Connection borrow() throws SQLException {
+        PooledConnection pooled;
+        try {
+            pooled = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Espera de conexión interrumpida", e);
+        }
+
+        Connection connection = pooled.connection;
+        if (connection != null && System.currentTimeMillis() - pooled.idleSince > IDLE_VALIDATION_MILLIS
+                && !connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            System.out.println("🔌 Conexión cerrada por el servidor, se abre otra");
+            discard(connection);
+            connection = null;
+        }
+        if (connection == null) {
+            try {
+                connection = openConnection();
+                register(connection);
+            } catch (SQLException e) {
+                // El lugar del pool sigue disponible para otro intento
+                idle.add(new PooledConnection(null));
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    // Devuelve la conexión al pool sin transacción abierta y con auto-commit
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (connection.isClosed()) {
+                discard(connection);
+                connection = null;
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            connection = null;
+        }
+        idle.add(new PooledConnection(connection));
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Connection connection : all) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Ignorar errores al cerrar
+            }
+        }
+        all.clear();
+        idle.clear();
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(config.buildConnectionUrl(),
+                config.getUsername(), config.getPassword());
+        Statement stmt = null;
+        try {
+            stmt = connection.createStatement();
+            stmt.execute(SESSION_SETTINGS);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        } finally {
+            if (stmt != null) stmt.close();
+        }
+        return connection;
+    }
+
+    private synchronized void register(Connection connection) throws SQLException {
+        if (closed) {
+            connection.close();
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+        all.add(connection);
+    }
+
+    private synchronized void discard(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        all.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    // Conexión libre y desde cuándo; null = lugar libre sin conexión abierta
+    private static class PooledConnection {
+        final Connection connection;
+        final long idleSince;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
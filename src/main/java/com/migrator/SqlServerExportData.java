@@ -42,6 +42,10 @@ public class SqlServerExportData {
     @JsonProperty("table_order")
     private List<String> tableOrder;
 
+    // Sólo en backups incrementales: claves de las filas borradas desde el backup base
+    @JsonProperty("deleted_rows")
+    private Map<String, DeletedRows> deletedRows;
+
     public SqlServerExportData() {
         this.metadata = new Metadata();
         this.schemas = new HashMap<>();
@@ -54,6 +58,7 @@ public class SqlServerExportData {
         this.indexes = new HashMap<>();
         this.constraints = new HashMap<>();
         this.tableOrder = new ArrayList<>();
+        this.deletedRows = new HashMap<>();
     }
 
     public static class Metadata {
@@ -78,6 +83,42 @@ public class SqlServerExportData {
         @JsonProperty("total_records")
         private long totalRecords;
 
+        // Origen de row_count de las tablas: "partition_stats", "partitions" o "exact"
+        @JsonProperty("row_count_source")
+        private String rowCountSource;
+
+        @JsonProperty("compression_codec")
+        private String compressionCodec;
+
+        @JsonProperty("compression_level")
+        private Integer compressionLevel;
+
+        // Identifica el backup; un incremental guarda el del backup sobre el que se aplica
+        @JsonProperty("backup_id")
+        private String backupId;
+
+        @JsonProperty("backup_type")
+        private String backupType;
+
+        @JsonProperty("base_backup_id")
+        private String baseBackupId;
+
+        // Marcas tomadas al inicio de la exportación, base del siguiente incremental
+        @JsonProperty("change_tracking_version")
+        private Long changeTrackingVersion;
+
+        @JsonProperty("rowversion_mark")
+        private Long rowversionMark;
+
+        // En incrementales, cómo se obtuvo cada tabla: change_tracking, rowversion o full
+        @JsonProperty("table_changes")
+        private Map<String, String> tableChanges;
+
+        // En incrementales, tablas cuyas filas borradas no quedan registradas (cambios por
+        // rowversion): al restaurar siguen en el destino
+        @JsonProperty("untracked_deletes")
+        private List<String> untrackedDeletes;
+
         public Metadata() {
             this.exportDate = LocalDateTime.now();
             this.version = "1.0-SQLSERVER";
@@ -98,6 +139,26 @@ public class SqlServerExportData {
         public void setTotalTables(int totalTables) { this.totalTables = totalTables; }
         public long getTotalRecords() { return totalRecords; }
         public void setTotalRecords(long totalRecords) { this.totalRecords = totalRecords; }
+        public String getRowCountSource() { return rowCountSource; }
+        public void setRowCountSource(String rowCountSource) { this.rowCountSource = rowCountSource; }
+        public String getCompressionCodec() { return compressionCodec; }
+        public void setCompressionCodec(String compressionCodec) { this.compressionCodec = compressionCodec; }
+        public Integer getCompressionLevel() { return compressionLevel; }
+        public void setCompressionLevel(Integer compressionLevel) { this.compressionLevel = compressionLevel; }
+        public String getBackupId() { return backupId; }
+        public void setBackupId(String backupId) { this.backupId = backupId; }
+        public String getBackupType() { return backupType; }
+        public void setBackupType(String backupType) { this.backupType = backupType; }
+        public String getBaseBackupId() { return baseBackupId; }
+        public void setBaseBackupId(String baseBackupId) { this.baseBackupId = baseBackupId; }
+        public Long getChangeTrackingVersion() { return changeTrackingVersion; }
+        public void setChangeTrackingVersion(Long changeTrackingVersion) { this.changeTrackingVersion = changeTrackingVersion; }
+        public Long getRowversionMark() { return rowversionMark; }
+        public void setRowversionMark(Long rowversionMark) { this.rowversionMark = rowversionMark; }
+        public Map<String, String> getTableChanges() { return tableChanges; }
+        public void setTableChanges(Map<String, String> tableChanges) { this.tableChanges = tableChanges; }
+        public List<String> getUntrackedDeletes() { return untrackedDeletes; }
+        public void setUntrackedDeletes(List<String> untrackedDeletes) { this.untrackedDeletes = untrackedDeletes; }
     }
 
     public static class SchemaInfo {
@@ -140,13 +201,26 @@ public class SqlServerExportData {
         @JsonProperty("foreign_keys")
         private List<ForeignKeyInfo> foreignKeys;
 
+        // Filas según las estadísticas de particiones, o COUNT(*) con --exact-count
         @JsonProperty("row_count")
         private long rowCount;
 
+        // Páginas de 8 KB reservadas y usadas por la tabla y sus índices
+        @JsonProperty("reserved_pages")
+        private long reservedPages;
+
+        @JsonProperty("used_pages")
+        private long usedPages;
+
+        // Columnas por las que están ordenados los datos en el backup (vacía = sin orden)
+        @JsonProperty("sort_order")
+        private List<String> sortOrder;
+
         public TableInfo() {
             this.columns = new ArrayList<>();
             this.primaryKey = new ArrayList<>();
             this.foreignKeys = new ArrayList<>();
+            this.sortOrder = new ArrayList<>();
         }
 
         // Getters y setters
@@ -164,6 +238,12 @@ public class SqlServerExportData {
         public void setForeignKeys(List<ForeignKeyInfo> foreignKeys) { this.foreignKeys = foreignKeys; }
         public long getRowCount() { return rowCount; }
         public void setRowCount(long rowCount) { this.rowCount = rowCount; }
+        public long getReservedPages() { return reservedPages; }
+        public void setReservedPages(long reservedPages) { this.reservedPages = reservedPages; }
+        public long getUsedPages() { return usedPages; }
+        public void setUsedPages(long usedPages) { this.usedPages = usedPages; }
+        public List<String> getSortOrder() { return sortOrder; }
+        public void setSortOrder(List<String> sortOrder) { this.sortOrder = sortOrder; }
     }
 
     public static class ColumnInfo {
@@ -259,6 +339,26 @@ public class SqlServerExportData {
         public void setUpdateRule(String updateRule) { this.updateRule = updateRule; }
     }
 
+    // Claves primarias de las filas borradas de una tabla, en el orden de columns
+    public static class DeletedRows {
+        @JsonProperty("columns")
+        private List<String> columns;
+
+        @JsonProperty("keys")
+        private List<List<Object>> keys;
+
+        public DeletedRows() {
+            this.columns = new ArrayList<>();
+            this.keys = new ArrayList<>();
+        }
+
+        // Getters y setters
+        public List<String> getColumns() { return columns; }
+        public void setColumns(List<String> columns) { this.columns = columns; }
+        public List<List<Object>> getKeys() { return keys; }
+        public void setKeys(List<List<Object>> keys) { this.keys = keys; }
+    }
+
     // Getters y setters principales
     public Metadata getMetadata() { return metadata; }
     public void setMetadata(Metadata metadata) { this.metadata = metadata; }
@@ -282,4 +382,6 @@ public class SqlServerExportData {
     public void setConstraints(Map<String, String> constraints) { this.constraints = constraints; }
     public List<String> getTableOrder() { return tableOrder; }
     public void setTableOrder(List<String> tableOrder) { this.tableOrder = tableOrder; }
+    public Map<String, DeletedRows> getDeletedRows() { return deletedRows; }
+    public void setDeletedRows(Map<String, DeletedRows> deletedRows) { this.deletedRows = deletedRows; }
 }
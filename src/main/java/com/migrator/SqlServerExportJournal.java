@@ -0,0 +1,298 @@
+package com.migrator;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Journal de una exportación en curso, junto al backup ("<backup>.journal"), que permite
+// continuarla con --resume si se interrumpe.
+//
+// Es un archivo de líneas JSON al que sólo se agregan líneas. La primera guarda la
+// estructura exportada, el plan de segmentos de cada tabla y el punto de control inicial
+// del writer (después de la estructura); con ellos la exportación continuada escribe
+// exactamente el mismo archivo. Después se agrega una línea por cada segmento terminado en
+// un archivo temporal ("chunk") y por cada tabla agregada al backup ("checkpoint"). Al
+// continuar, el backup se trunca al último punto de control y sólo se exportan los
+// segmentos que faltan. Una última línea incompleta (corte durante la escritura) se ignora.
+public class SqlServerExportJournal implements Closeable {
+
+    @JsonProperty("backup_file")
+    private String backupFile;
+
+    @JsonProperty("backup_format")
+    private String backupFormat;
+
+    @JsonProperty("codec")
+    private String codec;
+
+    @JsonProperty("level")
+    private int level;
+
+    @JsonProperty("export_data")
+    private SqlServerExportData exportData;
+
+    @JsonProperty("chunks")
+    private List<Chunk> chunks;
+
+    @JsonProperty("checkpoint")
+    private SqlServerBackupWriter.Checkpoint checkpoint;
+
+    // Estado reconstruido al leer el journal: tablas ya escritas en el backup
+    @JsonIgnore
+    private final List<SqlServerBackupIndex.TableEntry> writtenTables = new ArrayList<SqlServerBackupIndex.TableEntry>();
+
+    @JsonIgnore
+    private ObjectMapper objectMapper;
+
+    @JsonIgnore
+    private OutputStream out;
+
+    public SqlServerExportJournal() {
+        this.chunks = new ArrayList<>();
+    }
+
+    public static String journalFile(String backupFile) {
+        return backupFile + ".journal";
+    }
+
+    // Crea el journal escribiendo su primera línea
+    public static SqlServerExportJournal create(String backupFile, String backupFormat, SqlServerCompressionCodec codec,
+                                                SqlServerExportData exportData, List<Chunk> chunks,
+                                                SqlServerBackupWriter.Checkpoint checkpoint,
+                                                ObjectMapper objectMapper) throws IOException {
+        SqlServerExportJournal journal = new SqlServerExportJournal();
+        journal.backupFile = backupFile;
+        journal.backupFormat = backupFormat;
+        journal.codec = codec.getName();
+        journal.level = codec.getLevel();
+        journal.exportData = exportData;
+        journal.chunks = chunks;
+        journal.checkpoint = checkpoint;
+        journal.objectMapper = objectMapper;
+        journal.out = new FileOutputStream(journalFile(backupFile));
+        journal.append(journal);
+        return journal;
+    }
+
+    // Lee el journal y aplica sus líneas; las siguientes se agregan al final
+    public static SqlServerExportJournal open(String journalFile, ObjectMapper objectMapper) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journalFile), StandardCharsets.UTF_8));
+        SqlServerExportJournal journal;
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("El journal está vacío: " + journalFile);
+            }
+            journal = objectMapper.readValue(line, SqlServerExportJournal.class);
+
+            while ((line = reader.readLine()) != null) {
+                Event event;
+                try {
+                    event = objectMapper.readValue(line, Event.class);
+                } catch (IOException e) {
+                    // Línea cortada por la interrupción
+                    break;
+                }
+                if (event.chunk != null) {
+                    journal.chunks.get(event.chunk).setSegment(event.segment);
+                } else if (event.checkpoint != null) {
+                    journal.checkpoint = event.checkpoint;
+                    if (event.checkpoint.getTable() != null) {
+                        journal.writtenTables.add(event.checkpoint.getTable());
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        journal.objectMapper = objectMapper;
+        journal.out = new FileOutputStream(journalFile, true);
+        return journal;
+    }
+
+    // Segmento terminado en su archivo temporal; puede llamarse desde varios hilos
+    public synchronized void chunkCompleted(int chunkIndex, SqlServerBackupIndex.Segment segment) throws IOException {
+        chunks.get(chunkIndex).setSegment(segment);
+        Event event = new Event();
+        event.chunk = chunkIndex;
+        event.segment = segment;
+        append(event);
+    }
+
+    // Tabla agregada completa al backup
+    public synchronized void tableWritten(SqlServerBackupWriter.Checkpoint checkpoint) throws IOException {
+        this.checkpoint = checkpoint;
+        if (checkpoint.getTable() != null) {
+            writtenTables.add(checkpoint.getTable());
+        }
+        Event event = new Event();
+        event.checkpoint = checkpoint;
+        append(event);
+    }
+
+    // Segmento ya terminado cuyo archivo temporal sigue disponible; null si hay que exportarlo
+    public synchronized SqlServerBackupIndex.Segment getCompletedSegment(int chunkIndex) {
+        Chunk chunk = chunks.get(chunkIndex);
+        if (chunk.getSegment() == null || !new File(chunk.getPartFile()).isFile()) {
+            return null;
+        }
+        return chunk.getSegment();
+    }
+
+    // Una línea por evento, forzada a disco antes de seguir
+    private void append(Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+        if (out instanceof FileOutputStream) {
+            ((FileOutputStream) out).getFD().sync();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // Cierra y borra el journal al terminar la exportación
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(new File(journalFile(backupFile)).toPath());
+    }
+
+    // Valores de los límites de rango con su tipo, para volver a usarlos como parámetros
+    public static List<Map<String, String>> encodeParameters(List<Object> parameters) {
+        List<Map<String, String>> encoded = new ArrayList<Map<String, String>>();
+        for (Object parameter : parameters) {
+            Map<String, String> value = new LinkedHashMap<String, String>();
+            value.put("type", parameter == null ? "null" : parameter.getClass().getSimpleName());
+            value.put("value", parameter == null ? null : parameter.toString());
+            encoded.add(value);
+        }
+        return encoded;
+    }
+
+    public static List<Object> decodeParameters(List<Map<String, String>> encoded) {
+        List<Object> parameters = new ArrayList<Object>();
+        for (Map<String, String> value : encoded) {
+            String type = value.get("type");
+            String text = value.get("value");
+            if ("null".equals(type)) {
+                parameters.add(null);
+            } else if ("Integer".equals(type)) {
+                parameters.add(Integer.valueOf(text));
+            } else if ("Long".equals(type)) {
+                parameters.add(Long.valueOf(text));
+            } else if ("Short".equals(type)) {
+                parameters.add(Short.valueOf(text));
+            } else if ("Byte".equals(type)) {
+                parameters.add(Byte.valueOf(text));
+            } else if ("BigDecimal".equals(type)) {
+                parameters.add(new BigDecimal(text));
+            } else if ("Timestamp".equals(type)) {
+                parameters.add(Timestamp.valueOf(text));
+            } else if ("Date".equals(type)) {
+                parameters.add(Date.valueOf(text));
+            } else {
+                // Texto y uniqueidentifier
+                parameters.add(text);
+            }
+        }
+        return parameters;
+    }
+
+    // Getters
+    public String getBackupFile() { return backupFile; }
+    public String getBackupFormat() { return backupFormat; }
+    public String getCodec() { return codec; }
+    public int getLevel() { return level; }
+    public SqlServerExportData getExportData() { return exportData; }
+    public List<Chunk> getChunks() { return chunks; }
+    public SqlServerBackupWriter.Checkpoint getCheckpoint() { return checkpoint; }
+    public List<SqlServerBackupIndex.TableEntry> getWrittenTables() { return writtenTables; }
+
+    // Segmento planificado de una tabla: su rango (where_clause y parámetros), su archivo
+    // temporal y, una vez terminado, el segmento escrito en él
+    public static class Chunk {
+        @JsonProperty("table")
+        private String table;
+
+        @JsonProperty("join_clause")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String joinClause;
+
+        @JsonProperty("where_clause")
+        private String whereClause;
+
+        @JsonProperty("parameters")
+        private List<Map<String, String>> parameters;
+
+        @JsonProperty("estimated_rows")
+        private long estimatedRows;
+
+        @JsonProperty("part_file")
+        private String partFile;
+
+        @JsonProperty("segment")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private SqlServerBackupIndex.Segment segment;
+
+        public Chunk() {}
+
+        public Chunk(String table, String joinClause, String whereClause, List<Object> parameters,
+                     long estimatedRows, String partFile) {
+            this.table = table;
+            this.joinClause = joinClause;
+            this.whereClause = whereClause;
+            this.parameters = encodeParameters(parameters);
+            this.estimatedRows = estimatedRows;
+            this.partFile = partFile;
+        }
+
+        // Getters y setters
+        public String getTable() { return table; }
+        public void setTable(String table) { this.table = table; }
+        public String getJoinClause() { return joinClause; }
+        public void setJoinClause(String joinClause) { this.joinClause = joinClause; }
+        public String getWhereClause() { return whereClause; }
+        public void setWhereClause(String whereClause) { this.whereClause = whereClause; }
+        public List<Map<String, String>> getParameters() { return parameters; }
+        public void setParameters(List<Map<String, String>> parameters) { this.parameters = parameters; }
+        public long getEstimatedRows() { return estimatedRows; }
+        public void setEstimatedRows(long estimatedRows) { this.estimatedRows = estimatedRows; }
+        public String getPartFile() { return partFile; }
+        public void setPartFile(String partFile) { this.partFile = partFile; }
+        public SqlServerBackupIndex.Segment getSegment() { return segment; }
+        public void setSegment(SqlServerBackupIndex.Segment segment) { this.segment = segment; }
+    }
+
+    // Línea del journal posterior a la primera
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Event {
+        @JsonProperty("chunk")
+        Integer chunk;
+
+        @JsonProperty("segment")
+        SqlServerBackupIndex.Segment segment;
+
+        @JsonProperty("checkpoint")
+        SqlServerBackupWriter.Checkpoint checkpoint;
+    }
+}
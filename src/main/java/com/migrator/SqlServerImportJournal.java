@@ -0,0 +1,163 @@
+package com.migrator;
+
+import java.io.File;
+import java.sql.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Journal de una importación, guardado en una tabla del destino ([dbo].[__migrator_import_journal]).
+//
+// Cada unidad de la importación (estructura, datos de cada tabla, objetos, cada incremental) se
+// confirma en su propia transacción junto con su fila en el journal, por lo que el journal
+// nunca indica como cargada una unidad que se revirtió. Al confirmar cada lote, la fila
+// "rows:<tabla>" guarda las filas ya confirmadas de la tabla en curso. Con --resume se omiten las unidades
+// registradas para el backup; al terminar, sus filas se borran (y la tabla, si queda vacía).
+public class SqlServerImportJournal {
+
+    public static final String TABLE_NAME = "__migrator_import_journal";
+    public static final String UNIT_STRUCTURE = "structure";
+    public static final String UNIT_OBJECTS = "objects";
+
+    private static final String QUOTED_TABLE_NAME = "[dbo].[" + TABLE_NAME + "]";
+
+    private final String backupKey;
+    // Unidades confirmadas y sus registros cargados
+    private final Map<String, Long> completedUnits = Collections.synchronizedMap(new HashMap<String, Long>());
+
+    private SqlServerImportJournal(String backupKey) {
+        this.backupKey = backupKey;
+    }
+
+    // Identifica el backup por nombre y tamaño de archivo
+    public static String backupKey(String backupFile) {
+        File file = new File(backupFile);
+        return file.getName() + ":" + file.length();
+    }
+
+    // Identifica una migración directa (--migrate) por el servidor y la base de datos de origen
+    public static String migrationKey(SqlServerConfig source) {
+        return "migrate:" + source.getServer() +
+                (source.getInstance() != null ? "\\" + source.getInstance() : "") +
+                ":" + source.getPort() + "/" + source.getDatabase();
+    }
+
+    public static String tableUnit(String tableName) {
+        return "table:" + tableName;
+    }
+
+    // Filas de la tabla ya confirmadas cuando la importación confirma cada lote
+    public static String progressUnit(String tableName) {
+        return "rows:" + tableName;
+    }
+
+    public static String incrementalUnit(String incrementalFile) {
+        return "incremental:" + backupKey(incrementalFile);
+    }
+
+    // Crea la tabla del journal si no existe y lee las unidades ya confirmadas del backup
+    public static SqlServerImportJournal open(Connection connection, String backupKey) throws SQLException {
+        SqlServerImportJournal journal = new SqlServerImportJournal(backupKey);
+
+        Statement stmt = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            stmt.execute("IF OBJECT_ID('" + QUOTED_TABLE_NAME + "', 'U') IS NULL " +
+                    "CREATE TABLE " + QUOTED_TABLE_NAME + " (" +
+                    "backup_key NVARCHAR(150) NOT NULL, " +
+                    "unit_name NVARCHAR(300) NOT NULL, " +
+                    "row_count BIGINT NOT NULL, " +
+                    "completed_at DATETIME2 NOT NULL DEFAULT SYSDATETIME(), " +
+                    "PRIMARY KEY (backup_key, unit_name))");
+
+            pstmt = connection.prepareStatement("SELECT unit_name, row_count FROM " + QUOTED_TABLE_NAME +
+                    " WHERE backup_key = ?");
+            pstmt.setString(1, backupKey);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                journal.completedUnits.put(rs.getString("unit_name"), rs.getLong("row_count"));
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
+            if (stmt != null) stmt.close();
+        }
+        return journal;
+    }
+
+    public boolean hasEntries() {
+        return !completedUnits.isEmpty();
+    }
+
+    public boolean isCompleted(String unit) {
+        return completedUnits.containsKey(unit);
+    }
+
+    public long getRowCount(String unit) {
+        Long rowCount = completedUnits.get(unit);
+        return rowCount != null ? rowCount : 0;
+    }
+
+    // Registra la unidad en la transacción actual de la conexión; queda confirmada con ella
+    public void markCompleted(Connection connection, String unit, long rowCount) throws SQLException {
+        PreparedStatement pstmt = null;
+
+        try {
+            pstmt = connection.prepareStatement("INSERT INTO " + QUOTED_TABLE_NAME +
+                    " (backup_key, unit_name, row_count) VALUES (?, ?, ?)");
+            pstmt.setString(1, backupKey);
+            pstmt.setString(2, unit);
+            pstmt.setLong(3, rowCount);
+            pstmt.executeUpdate();
+        } finally {
+            if (pstmt != null) pstmt.close();
+        }
+        completedUnits.put(unit, rowCount);
+    }
+
+    // Actualiza en la transacción actual las filas confirmadas de una tabla cargada por lotes
+    public void markProgress(Connection connection, String tableName, long rowCount) throws SQLException {
+        String unit = progressUnit(tableName);
+        PreparedStatement pstmt = null;
+
+        try {
+            pstmt = connection.prepareStatement("UPDATE " + QUOTED_TABLE_NAME +
+                    " SET row_count = ?, completed_at = SYSDATETIME() WHERE backup_key = ? AND unit_name = ?");
+            pstmt.setLong(1, rowCount);
+            pstmt.setString(2, backupKey);
+            pstmt.setString(3, unit);
+            if (pstmt.executeUpdate() == 0) {
+                pstmt.close();
+                pstmt = null;
+                markCompleted(connection, unit, rowCount);
+                return;
+            }
+        } finally {
+            if (pstmt != null) pstmt.close();
+        }
+        completedUnits.put(unit, rowCount);
+    }
+
+    // Borra el journal del backup al terminar la importación, y la tabla si no quedan otros
+    public void delete(Connection connection) throws SQLException {
+        PreparedStatement pstmt = null;
+        Statement stmt = null;
+
+        try {
+            pstmt = connection.prepareStatement("DELETE FROM " + QUOTED_TABLE_NAME + " WHERE backup_key = ?");
+            pstmt.setString(1, backupKey);
+            pstmt.executeUpdate();
+
+            stmt = connection.createStatement();
+            stmt.execute("IF NOT EXISTS (SELECT 1 FROM " + QUOTED_TABLE_NAME + ") DROP TABLE " + QUOTED_TABLE_NAME);
+        } finally {
+            if (stmt != null) stmt.close();
+            if (pstmt != null) pstmt.close();
+        }
+        completedUnits.clear();
+    }
+}
@@ -0,0 +1,229 @@
+package com.migrator;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+// Objeto grande leído del backup. Los valores de hasta INLINE_LIMIT bytes (menos con
+// --max-memory, ver SqlServerMemoryBudget) se devuelven como
+// byte[] o String, igual que el resto; los mayores se decodifican a un archivo temporal a
+// medida que se leen y la importación los envía con setBinaryStream / setCharacterStream
+// (o como stream en bulk copy), por lo que ninguno queda completo en memoria.
+//
+// Quien consume las filas libera los valores con release cuando el servidor ya los leyó.
+public class SqlServerLobValue implements Closeable {
+
+    static final int INLINE_LIMIT = 1024 * 1024;
+
+    private final File file;
+    private final boolean binary;
+    // Bytes de los binarios, caracteres (UTF-16) de los textos
+    private final long length;
+    private Closeable openStream;
+
+    private SqlServerLobValue(File file, boolean binary, long length) {
+        this.file = file;
+        this.binary = binary;
+        this.length = length;
+    }
+
+    // Lee un valor en trozos (ver SqlServerBinaryRowFormat)
+    static Object readChunks(DataInputStream in, boolean binary) throws IOException {
+        SpillOutputStream value = new SpillOutputStream(binary);
+        try {
+            int size;
+            byte[] buffer = null;
+            while ((size = SqlServerBinaryRowFormat.readVarInt(in)) > 0) {
+                if (buffer == null || buffer.length < size) {
+                    buffer = new byte[size];
+                }
+                in.readFully(buffer, 0, size);
+                value.write(buffer, 0, size);
+            }
+            return value.toValue();
+        } catch (IOException e) {
+            value.discard();
+            throw e;
+        }
+    }
+
+    // Decodifica el Base64 del texto JSON en la posición actual del parser
+    static Object readBinary(JsonParser parser) throws IOException {
+        SpillOutputStream value = new SpillOutputStream(true);
+        try {
+            parser.readBinaryValue(value);
+            return value.toValue();
+        } catch (IOException e) {
+            value.discard();
+            throw e;
+        }
+    }
+
+    // Copia el stream de una columna del ResultSet (copia directa entre servidores); null si
+    // el valor es nulo
+    static Object readStream(InputStream in) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        SpillOutputStream value = new SpillOutputStream(true);
+        try {
+            byte[] buffer = new byte[SqlServerBinaryRowFormat.LOB_CHUNK_SIZE];
+            int size;
+            while ((size = in.read(buffer)) > 0) {
+                value.write(buffer, 0, size);
+            }
+            return value.toValue();
+        } catch (IOException e) {
+            value.discard();
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+
+    static Object readReader(Reader in) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        SpillOutputStream value = new SpillOutputStream(false);
+        try {
+            // El encoder conserva un par sustituto cortado entre dos lecturas
+            Writer writer = new OutputStreamWriter(value, StandardCharsets.UTF_8);
+            char[] buffer = new char[SqlServerBinaryRowFormat.LOB_CHUNK_SIZE / 4];
+            int size;
+            while ((size = in.read(buffer)) > 0) {
+                writer.write(buffer, 0, size);
+            }
+            writer.flush();
+            return value.toValue();
+        } catch (IOException e) {
+            value.discard();
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public InputStream openStream() throws IOException {
+        closeStream();
+        InputStream stream = new BufferedInputStream(new FileInputStream(file), SqlServerBinaryRowFormat.LOB_CHUNK_SIZE);
+        openStream = stream;
+        return stream;
+    }
+
+    public Reader openReader() throws IOException {
+        closeStream();
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8),
+                SqlServerBinaryRowFormat.LOB_CHUNK_SIZE);
+        openStream = reader;
+        return reader;
+    }
+
+    // Cierra el stream entregado y borra el archivo temporal
+    @Override
+    public void close() throws IOException {
+        closeStream();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private void closeStream() throws IOException {
+        if (openStream != null) {
+            openStream.close();
+            openStream = null;
+        }
+    }
+
+    // Libera los objetos grandes de las filas
+    public static void release(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            release(row);
+        }
+    }
+
+    public static void release(Object[] row) {
+        for (Object value : row) {
+            if (value instanceof SqlServerLobValue) {
+                try {
+                    ((SqlServerLobValue) value).close();
+                } catch (IOException e) {
+                    // Ignorar errores al borrar el archivo temporal
+                }
+            }
+        }
+    }
+
+    // Guarda el valor en memoria hasta INLINE_LIMIT bytes y después en un archivo temporal.
+    // Los textos llegan en UTF-8; se cuentan sus caracteres para enviarlos con su largo.
+    private static class SpillOutputStream extends OutputStream {
+        private final boolean binary;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileStream;
+        private long size;
+        private long chars;
+
+        SpillOutputStream(boolean binary) {
+            this.binary = binary;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!binary) {
+                for (int i = off; i < off + len; i++) {
+                    // Un carácter por byte inicial; los de 4 bytes son un par sustituto
+                    if ((b[i] & 0xC0) != 0x80) {
+                        chars++;
+                    }
+                    if ((b[i] & 0xF8) == 0xF0) {
+                        chars++;
+                    }
+                }
+            }
+
+            size += len;
+            if (fileStream == null && size > SqlServerMemoryBudget.getInlineLimit()) {
+                file = File.createTempFile("sqlmigr-lob-", ".tmp");
+                fileStream = new BufferedOutputStream(new FileOutputStream(file), SqlServerBinaryRowFormat.LOB_CHUNK_SIZE);
+                memory.writeTo(fileStream);
+                memory = null;
+            }
+            if (fileStream != null) {
+                fileStream.write(b, off, len);
+            } else {
+                memory.write(b, off, len);
+            }
+        }
+
+        Object toValue() throws IOException {
+            if (fileStream == null) {
+                return binary ? memory.toByteArray() : new String(memory.toByteArray(), StandardCharsets.UTF_8);
+            }
+            fileStream.close();
+            SqlServerMemoryBudget.recordSpill(size);
+            return new SqlServerLobValue(file, binary, binary ? size : chars);
+        }
+
+        void discard() throws IOException {
+            if (fileStream != null) {
+                fileStream.close();
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.migrator;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Presupuesto de memoria de los buffers de una ejecución (--max-memory), compartido por
+// todos sus hilos.
+//
+// Los buffers que crecen con los datos se dimensionan con él: los lotes de filas leídas del
+// backup (el lote actual, los leídos por adelantado y el del bulk copy) se cortan al llegar a
+// getBatchLimit() bytes, los objetos grandes mayores que getInlineLimit() se decodifican a un
+// archivo temporal (ver SqlServerLobValue) y los bloques pendientes de compresión se limitan
+// con getMaxPendingBlocks(). Los tamaños de las filas son estimaciones del heap que ocupan.
+//
+// Sin presupuesto sólo se registra el uso, que se informa al final con el volumen enviado a disco.
+public class SqlServerMemoryBudget {
+
+    // Lotes de filas que un consumidor puede tener en memoria a la vez
+    private static final int BATCHES_IN_FLIGHT = 8;
+
+    private static volatile long maxBytes;
+    private static volatile int consumers = 1;
+
+    private static final AtomicLong usedBytes = new AtomicLong();
+    private static final AtomicLong peakBytes = new AtomicLong();
+    private static final AtomicLong spilledBytes = new AtomicLong();
+    private static final AtomicLong spilledValues = new AtomicLong();
+
+    private SqlServerMemoryBudget() {
+    }
+
+    // Inicia el presupuesto de una ejecución (0 = sin límite) repartido entre los hilos que
+    // leen o escriben datos a la vez
+    public static void configure(long budgetBytes, int threads) {
+        maxBytes = budgetBytes;
+        consumers = Math.max(1, threads);
+        usedBytes.set(0);
+        peakBytes.set(0);
+        spilledBytes.set(0);
+        spilledValues.set(0);
+    }
+
+    public static boolean isLimited() {
+        return maxBytes > 0;
+    }
+
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static long getBatchLimit() {
+        return isLimited() ? Math.max(1, maxBytes / consumers / BATCHES_IN_FLIGHT) : Long.MAX_VALUE;
+    }
+
+    public static int getInlineLimit() {
+        return (int) Math.min(SqlServerLobValue.INLINE_LIMIT, getBatchLimit() / 4);
+    }
+
+    // Cada bloque pendiente ocupa su contenido y el resultado comprimido
+    public static int getMaxPendingBlocks(int requested) {
+        if (!isLimited()) {
+            return requested;
+        }
+        long blocks = maxBytes / consumers / 4 / (2L * SqlServerBlockOutputStream.BLOCK_SIZE);
+        return (int) Math.max(1, Math.min(requested, blocks));
+    }
+
+    public static void reserve(long bytes) {
+        long used = usedBytes.addAndGet(bytes);
+        long peak;
+        while (used > (peak = peakBytes.get()) && !peakBytes.compareAndSet(peak, used)) {
+            // Otro hilo actualizó el pico: volver a comparar
+        }
+    }
+
+    public static void release(long bytes) {
+        usedBytes.addAndGet(-bytes);
+    }
+
+    public static void reserve(List<Object[]> rows) {
+        reserve(estimateSize(rows));
+    }
+
+    public static void release(List<Object[]> rows) {
+        release(estimateSize(rows));
+    }
+
+    public static void recordSpill(long bytes) {
+        spilledBytes.addAndGet(bytes);
+        spilledValues.incrementAndGet();
+    }
+
+    public static long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    public static long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    public static long getSpilledValues() {
+        return spilledValues.get();
+    }
+
+    public static long estimateSize(List<Object[]> rows) {
+        long size = 0;
+        for (Object[] row : rows) {
+            size += estimateSize(row);
+        }
+        return size;
+    }
+
+    // Tamaño aproximado en el heap: encabezados de objeto y contenido de textos y binarios
+    public static long estimateSize(Object[] row) {
+        long size = 16 + 8L * row.length;
+        for (Object value : row) {
+            if (value == null) {
+                continue;
+            } else if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value instanceof BigDecimal) {
+                size += 64;
+            } else {
+                size += 24;
+            }
+        }
+        return size;
+    }
+}
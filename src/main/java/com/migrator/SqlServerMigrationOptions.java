@@ -0,0 +1,366 @@
+package com.migrator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SqlServerMigrationOptions {
+    private static final long MIN_MAX_MEMORY = 64L * 1024 * 1024;
+
+    // Número de tablas exportadas en paralelo, cada una con su propia conexión
+    private int exportThreads = 1;
+    // Filas por segmento al dividir tablas grandes por rangos de clave (0 = no dividir)
+    private long chunkRows = 1000000;
+    // Exportar cada tabla ordenada por su clave primaria (el índice clustered en el destino)
+    private boolean orderedExport = false;
+    // Contar las filas con COUNT(*) en lugar de tomarlas de las estadísticas de particiones
+    private boolean exactCount = false;
+    // Formato de las filas en el backup: "binary" (formato 2) o "json" (formato 1)
+    private String backupFormat = "binary";
+    // Número de tablas importadas en paralelo, respetando el orden de las foreign keys
+    private int importThreads = 1;
+    // Motor de carga de datos: "bulk" (SQLServerBulkCopy) o "insert" (PreparedStatement por lotes)
+    private String importEngine = "bulk";
+    // Filas por lote enviado por bulk copy (0 = toda la tabla en un solo lote)
+    private int bulkBatchSize = 10000;
+    // Opciones de bulk copy: bloqueo de tabla, conservar valores IDENTITY y validar CHECK constraints
+    private boolean tableLock = false;
+    private boolean keepIdentity = true;
+    private boolean checkConstraints = false;
+    // Confirmación de la importación: "batch" (cada lote de bulkBatchSize filas), "table" o "database"
+    private String commitMode = "table";
+    // Carga con TABLOCK en tablas vacías para que el destino registre la carga en forma mínima
+    private boolean minimalLogging = false;
+    // Tablas a restaurar (schema.tabla); vacía = todas
+    private List<String> tables = new ArrayList<String>();
+    // Verificación: sólo el resumen del índice, e hilos para verificar los segmentos
+    private boolean verifySummary = false;
+    private int verifyThreads = Runtime.getRuntime().availableProcessors();
+    // Hilos que comprimen (export) o descomprimen (import y verify) los bloques de los segmentos
+    private int compressionThreads = Runtime.getRuntime().availableProcessors();
+    // Códec de compresión del backup (gzip, zstd, lz4 o none) y su nivel (-1 = por defecto del códec)
+    private String codec = "gzip";
+    private int level = -1;
+    // Export incremental: backup base del que se toman las marcas (null = backup completo)
+    private String since = null;
+    // Import: backups incrementales que se aplican en orden después del backup indicado
+    private List<String> incrementals = new ArrayList<String>();
+    // Continuar la última exportación interrumpida a partir de su journal
+    private boolean resume = false;
+    // Presupuesto de memoria de los buffers de datos, con sufijo k, m o g (null = sin límite)
+    private String maxMemory = null;
+
+    public SqlServerMigrationOptions() {
+        // Valores por defecto: comportamiento secuencial
+    }
+
+    public void validateOptions() {
+        if (exportThreads <= 0) {
+            throw new IllegalArgumentException("--export-threads debe ser mayor que 0");
+        }
+        if (chunkRows < 0) {
+            throw new IllegalArgumentException("--chunk-rows no puede ser negativo");
+        }
+        if (importThreads <= 0) {
+            throw new IllegalArgumentException("--import-threads debe ser mayor que 0");
+        }
+        if (!"binary".equals(backupFormat) && !"json".equals(backupFormat)) {
+            throw new IllegalArgumentException("--format debe ser 'binary' o 'json'");
+        }
+        if (!"bulk".equals(importEngine) && !"insert".equals(importEngine)) {
+            throw new IllegalArgumentException("--import-engine debe ser 'bulk' o 'insert'");
+        }
+        if (bulkBatchSize < 0) {
+            throw new IllegalArgumentException("--bulk-batch-size no puede ser negativo");
+        }
+        if (!"batch".equals(commitMode) && !"table".equals(commitMode) && !"database".equals(commitMode)) {
+            throw new IllegalArgumentException("--commit debe ser 'batch', 'table' o 'database'");
+        }
+        if (isDatabaseCommit() && importThreads > 1) {
+            throw new IllegalArgumentException("--commit=database no admite --import-threads mayor que 1");
+        }
+        if (minimalLogging && !isBulkCopy()) {
+            throw new IllegalArgumentException("--minimal-logging requiere --import-engine=bulk");
+        }
+        if (verifyThreads <= 0) {
+            throw new IllegalArgumentException("--verify-threads debe ser mayor que 0");
+        }
+        if (compressionThreads <= 0) {
+            throw new IllegalArgumentException("--compression-threads debe ser mayor que 0");
+        }
+        // Valida el códec y el rango del nivel
+        getCompressionCodec();
+        if (since != null && !isBinaryFormat()) {
+            throw new IllegalArgumentException("--since requiere --format=binary");
+        }
+        if (maxMemory != null && getMaxMemoryBytes() < MIN_MAX_MEMORY) {
+            throw new IllegalArgumentException("--max-memory debe ser al menos 64m");
+        }
+    }
+
+    // Getters y setters
+    public int getExportThreads() {
+        return exportThreads;
+    }
+
+    public void setExportThreads(int exportThreads) {
+        this.exportThreads = exportThreads;
+    }
+
+    public long getChunkRows() {
+        return chunkRows;
+    }
+
+    public void setChunkRows(long chunkRows) {
+        this.chunkRows = chunkRows;
+    }
+
+    public boolean isOrderedExport() {
+        return orderedExport;
+    }
+
+    public void setOrderedExport(boolean orderedExport) {
+        this.orderedExport = orderedExport;
+    }
+
+    public boolean isExactCount() {
+        return exactCount;
+    }
+
+    public void setExactCount(boolean exactCount) {
+        this.exactCount = exactCount;
+    }
+
+    public String getBackupFormat() {
+        return backupFormat;
+    }
+
+    public void setBackupFormat(String backupFormat) {
+        this.backupFormat = backupFormat;
+    }
+
+    public boolean isBinaryFormat() {
+        return "binary".equals(backupFormat);
+    }
+
+    public int getImportThreads() {
+        return importThreads;
+    }
+
+    public void setImportThreads(int importThreads) {
+        this.importThreads = importThreads;
+    }
+
+    public String getImportEngine() {
+        return importEngine;
+    }
+
+    public void setImportEngine(String importEngine) {
+        this.importEngine = importEngine;
+    }
+
+    public boolean isBulkCopy() {
+        return "bulk".equals(importEngine);
+    }
+
+    public String getCommitMode() {
+        return commitMode;
+    }
+
+    public void setCommitMode(String commitMode) {
+        this.commitMode = commitMode;
+    }
+
+    // Confirmar cada lote; sin tamaño de lote equivale a confirmar cada tabla
+    public boolean isBatchCommit() {
+        return "batch".equals(commitMode) && bulkBatchSize > 0;
+    }
+
+    public boolean isDatabaseCommit() {
+        return "database".equals(commitMode);
+    }
+
+    public boolean isMinimalLogging() {
+        return minimalLogging;
+    }
+
+    public void setMinimalLogging(boolean minimalLogging) {
+        this.minimalLogging = minimalLogging;
+    }
+
+    public int getBulkBatchSize() {
+        return bulkBatchSize;
+    }
+
+    public void setBulkBatchSize(int bulkBatchSize) {
+        this.bulkBatchSize = bulkBatchSize;
+    }
+
+    public boolean isTableLock() {
+        return tableLock;
+    }
+
+    public void setTableLock(boolean tableLock) {
+        this.tableLock = tableLock;
+    }
+
+    public boolean isKeepIdentity() {
+        return keepIdentity;
+    }
+
+    public void setKeepIdentity(boolean keepIdentity) {
+        this.keepIdentity = keepIdentity;
+    }
+
+    public boolean isCheckConstraints() {
+        return checkConstraints;
+    }
+
+    public void setCheckConstraints(boolean checkConstraints) {
+        this.checkConstraints = checkConstraints;
+    }
+
+    public List<String> getTables() {
+        return tables;
+    }
+
+    public void setTables(List<String> tables) {
+        this.tables = tables;
+    }
+
+    public boolean hasTableFilter() {
+        return !tables.isEmpty();
+    }
+
+    public boolean isVerifySummary() {
+        return verifySummary;
+    }
+
+    public void setVerifySummary(boolean verifySummary) {
+        this.verifySummary = verifySummary;
+    }
+
+    public int getVerifyThreads() {
+        return verifyThreads;
+    }
+
+    public void setVerifyThreads(int verifyThreads) {
+        this.verifyThreads = verifyThreads;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    public void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public String getSince() {
+        return since;
+    }
+
+    public void setSince(String since) {
+        this.since = since;
+    }
+
+    public boolean isIncremental() {
+        return since != null;
+    }
+
+    public List<String> getIncrementals() {
+        return incrementals;
+    }
+
+    public void setIncrementals(List<String> incrementals) {
+        this.incrementals = incrementals;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public String getMaxMemory() {
+        return maxMemory;
+    }
+
+    public void setMaxMemory(String maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    // Bytes de --max-memory (0 = sin límite); sin sufijo se interpreta en bytes
+    public long getMaxMemoryBytes() {
+        if (maxMemory == null) {
+            return 0;
+        }
+        String value = maxMemory.trim().toLowerCase();
+        long unit = 1;
+        if (value.endsWith("k")) {
+            unit = 1024L;
+        } else if (value.endsWith("m")) {
+            unit = 1024L * 1024;
+        } else if (value.endsWith("g")) {
+            unit = 1024L * 1024 * 1024;
+        }
+        if (unit > 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--max-memory inválido: " + maxMemory + " (ejemplos: 512m, 2g)");
+        }
+    }
+
+    public SqlServerCompressionCodec getCompressionCodec() {
+        return SqlServerCompressionCodec.forName(codec, level);
+    }
+
+    @Override
+    public String toString() {
+        return "SqlServerMigrationOptions{" +
+                "exportThreads=" + exportThreads +
+                ", chunkRows=" + chunkRows +
+                ", orderedExport=" + orderedExport +
+                ", exactCount=" + exactCount +
+                ", backupFormat='" + backupFormat + '\'' +
+                ", importThreads=" + importThreads +
+                ", importEngine='" + importEngine + '\'' +
+                ", bulkBatchSize=" + bulkBatchSize +
+                ", tableLock=" + tableLock +
+                ", keepIdentity=" + keepIdentity +
+                ", checkConstraints=" + checkConstraints +
+                ", commitMode='" + commitMode + '\'' +
+                ", minimalLogging=" + minimalLogging +
+                ", tables=" + tables +
+                ", verifySummary=" + verifySummary +
+                ", verifyThreads=" + verifyThreads +
+                ", compressionThreads=" + compressionThreads +
+                ", codec='" + codec + '\'' +
+                ", level=" + level +
+                ", since='" + since + '\'' +
+                ", incrementals=" + incrementals +
+                ", resume=" + resume +
+                ", maxMemory='" + maxMemory + '\'' +
+                '}';
+    }
+}
@@ -3,8 +3,10 @@ package com.migrator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -15,12 +17,32 @@ import java.sql.Date;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
 
 @Service
 public class SqlServerMigrationService {
 
     private final ObjectMapper objectMapper;
     private static final int BATCH_SIZE = 1000;
+    private static final int PREFETCH_BATCHES = 4;
+    // Lotes leídos del origen que esperan su carga en una migración directa
+    private static final int PIPE_BATCHES = 4;
+    private static final int MAX_CHUNKS_PER_TABLE = 256;
+    private static final int KEY_SAMPLE_ROWS_PER_CHUNK = 1000;
+    private static final long PAGE_SIZE = 8192;
+    private static final int MAX_PENDING_LOBS = 32;
+    // Origen de los cambios de cada tabla en un backup incremental (metadata "table_changes")
+    private static final String CHANGES_TRACKING = "change_tracking";
+    private static final String CHANGES_ROWVERSION = "rowversion";
+    private static final String CHANGES_FULL = "full";
+    // Tipos de columna que admiten división por rangos (comparables y con orden estable)
+    private static final Set<String> SPLITTABLE_KEY_TYPES = new HashSet<String>(Arrays.asList(
+            "tinyint", "smallint", "int", "bigint", "decimal", "numeric",
+            "date", "datetime", "datetime2", "smalldatetime",
+            "char", "varchar", "nchar", "nvarchar", "uniqueidentifier"));
 
     public SqlServerMigrationService() {
         this.objectMapper = new ObjectMapper();
@@ -28,229 +50,862 @@ public class SqlServerMigrationService {
     }
 
     public String exportDatabase(SqlServerConfig config) throws Exception {
+        return exportDatabase(config, new SqlServerMigrationOptions());
+    }
+
+    public String exportDatabase(SqlServerConfig config, SqlServerMigrationOptions options) throws Exception {
         System.out.println("🚀 Iniciando exportación de SQL Server...");
         System.out.println("📡 Conectando a: " + config.getServer() +
                 (config.getInstance() != null ? "\\" + config.getInstance() : "") +
                 ":" + config.getPort());
         System.out.println("🗄️  Base de datos: " + config.getDatabase());
 
+        SqlServerMemoryBudget.configure(options.getMaxMemoryBytes(), options.getExportThreads());
         SqlServerExportData exportData = new SqlServerExportData();
 
+        // Al continuar, el journal define el backup, su formato, su estructura y el plan de segmentos
+        SqlServerExportJournal journal = null;
+        if (options.isResume()) {
+            journal = openLatestJournal(config.getDatabase());
+            exportData = journal.getExportData();
+            System.out.println("⏯️  Continuando la exportación: " + journal.getBackupFile());
+        }
+
+        // Un incremental parte de las marcas registradas en el backup indicado con --since
+        SqlServerExportData.Metadata baseMetadata = null;
+        if (journal == null && options.isIncremental()) {
+            baseMetadata = readBaseMetadata(options.getSince());
+            System.out.println("🧩 Exportación incremental desde: " + options.getSince());
+        }
+
+        String backupFile;
+        SqlServerCompressionCodec codec;
+        boolean binaryFormat;
+        if (journal != null) {
+            backupFile = journal.getBackupFile();
+            codec = SqlServerCompressionCodec.forName(journal.getCodec(), journal.getLevel());
+            binaryFormat = "binary".equals(journal.getBackupFormat());
+        } else {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            codec = options.getCompressionCodec();
+            binaryFormat = options.isBinaryFormat();
+            backupFile = "sqlserver_backup_" + config.getDatabase() + "_" + timestamp +
+                    (options.isIncremental() ? "_incr" : "") + codec.getFileExtension();
+        }
+        File workDir = new File(backupFile + ".parts");
+
+        // La conexión principal y una por hilo de exportación
+        SqlServerConnectionPool pool = new SqlServerConnectionPool(config, options.getExportThreads() + 1);
         Connection connection = null;
+        SqlServerBackupWriter backupWriter = null;
+        boolean completed = false;
         try {
-            connection = DriverManager.getConnection(
-                    config.buildConnectionUrl(), config.getUsername(), config.getPassword());
-
-            // Obtener información del servidor y base de datos
-            setDatabaseMetadata(connection, exportData, config);
+            pool.warmUp();
+            connection = pool.borrow();
 
-            // Exportar esquemas
-            exportSchemas(connection, exportData);
+            List<ExportChunk> plan;
+            if (journal == null) {
+                // Obtener información del servidor y base de datos
+                setDatabaseMetadata(connection, exportData, config);
 
-            // Obtener tablas y analizar dependencias
-            List<String> tables = getUserTables(connection);
-            System.out.println("📊 Encontradas " + tables.size() + " tablas de usuario");
+                // Marcas de cambios antes de leer los datos: lo que cambie durante la exportación
+                // vuelve a entrar en el siguiente incremental
+                captureChangeMarks(connection, exportData, baseMetadata);
 
-            Map<String, List<String>> dependencies = analyzeDependencies(connection, tables);
-            List<String> orderedTables = topologicalSort(dependencies, tables);
-            exportData.setTableOrder(orderedTables);
+                // Exportar esquemas
+                exportSchemas(connection, exportData);
 
-            System.out.println("🔗 Orden de exportación:");
-            for (int i = 0; i < orderedTables.size(); i++) {
-                System.out.println("   " + (i + 1) + ". " + orderedTables.get(i));
-            }
+                // Obtener tablas y analizar dependencias
+                List<String> tables = getUserTables(connection);
+                System.out.println("📊 Encontradas " + tables.size() + " tablas de usuario");
 
-            // Exportar estructura de tablas
-            exportTableStructures(connection, orderedTables, exportData);
+                Map<String, List<String>> dependencies = analyzeDependencies(connection, tables);
+                List<String> orderedTables = topologicalSort(dependencies, tables);
+                exportData.setTableOrder(orderedTables);
 
-            // Exportar datos
-            exportTableData(connection, orderedTables, exportData);
+                System.out.println("🔗 Orden de exportación:");
+                for (int i = 0; i < orderedTables.size(); i++) {
+                    System.out.println("   " + (i + 1) + ". " + orderedTables.get(i));
+                }
 
-            // Exportar objetos de base de datos
-            exportStoredProcedures(connection, exportData);
-            exportFunctions(connection, exportData);
-            exportViews(connection, exportData);
-            exportTriggers(connection, exportData);
-            exportIndexes(connection, exportData);
-            exportConstraints(connection, exportData);
+                // Exportar estructura de tablas
+                exportTableStructures(connection, orderedTables, exportData, options);
+                if (binaryFormat) {
+                    checkBinaryColumnTypes(exportData, "; usa --format=json para exportarlas");
+                }
 
-            // Establecer estadísticas finales
-            exportData.getMetadata().setTotalTables(tables.size());
-            long totalRecords = 0;
-            for (List<Map<String, Object>> tableData : exportData.getData().values()) {
-                totalRecords += tableData.size();
-            }
-            exportData.getMetadata().setTotalRecords(totalRecords);
+                if (options.isOrderedExport()) {
+                    // El orden queda registrado en la estructura del backup
+                    for (SqlServerExportData.TableInfo tableInfo : exportData.getTables().values()) {
+                        tableInfo.setSortOrder(new ArrayList<String>(tableInfo.getPrimaryKey()));
+                    }
+                }
 
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    // Ignorar errores al cerrar
+                Map<String, TableChanges> tableChanges = null;
+                if (baseMetadata != null) {
+                    tableChanges = planIncrementalExport(connection, orderedTables, exportData, baseMetadata);
+                }
+                plan = planExport(connection, orderedTables, exportData, tableChanges, workDir, options);
+
+                // Exportar datos directamente al archivo comprimido
+                exportData.getMetadata().setCompressionCodec(codec.getName());
+                exportData.getMetadata().setCompressionLevel(codec.getLevel());
+                backupWriter = new SqlServerBackupWriter(backupFile, objectMapper, binaryFormat,
+                        codec, options.getCompressionThreads());
+                backupWriter.writeStructure(exportData);
+
+                List<SqlServerExportJournal.Chunk> journalChunks = new ArrayList<SqlServerExportJournal.Chunk>();
+                for (ExportChunk chunk : plan) {
+                    journalChunks.add(new SqlServerExportJournal.Chunk(chunk.tableName, chunk.joinClause,
+                            chunk.whereClause, chunk.parameters, chunk.estimatedRows, chunk.partFile.getPath()));
                 }
+                journal = SqlServerExportJournal.create(backupFile, binaryFormat ? "binary" : "json", codec,
+                        exportData, journalChunks, backupWriter.checkpoint(), objectMapper);
+            } else {
+                plan = new ArrayList<ExportChunk>();
+                for (SqlServerExportJournal.Chunk chunk : journal.getChunks()) {
+                    plan.add(new ExportChunk(chunk.getTable(), chunk.getJoinClause(), chunk.getWhereClause(),
+                            SqlServerExportJournal.decodeParameters(chunk.getParameters()),
+                            chunk.getEstimatedRows(), new File(chunk.getPartFile())));
+                }
+
+                // Descartar lo escrito después de la última tabla completa
+                backupWriter = SqlServerBackupWriter.resume(backupFile, objectMapper, binaryFormat, codec,
+                        options.getCompressionThreads(), journal.getCheckpoint(), journal.getWrittenTables());
+                System.out.println("⏭️  Tablas ya exportadas: " + journal.getCheckpoint().getTableCount() +
+                        " de " + exportData.getTableOrder().size());
             }
-        }
 
-        // Comprimir y guardar
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String backupFile = "sqlserver_backup_" + config.getDatabase() + "_" + timestamp + ".gz";
+            // Con varios segmentos hay trabajo en paralelo aunque se exporte una sola tabla
+            List<String> orderedTables = exportData.getTableOrder();
+            if (options.getExportThreads() > 1 && plan.size() > 1) {
+                exportTableDataParallel(pool, connection, orderedTables, exportData, backupWriter, plan,
+                        journal, workDir, options);
+            } else {
+                exportTableData(connection, orderedTables, exportData, backupWriter, plan, journal);
+            }
 
-        FileOutputStream fos = null;
-        GzipCompressorOutputStream gzos = null;
-        OutputStreamWriter writer = null;
+            // Exportar objetos de base de datos
+            exportDatabaseObjects(connection, exportData);
 
-        try {
-            fos = new FileOutputStream(backupFile);
-            gzos = new GzipCompressorOutputStream(fos);
-            writer = new OutputStreamWriter(gzos, "UTF-8");
+            // Establecer estadísticas finales
+            exportData.getMetadata().setTotalTables(orderedTables.size());
+            exportData.getMetadata().setTotalRecords(backupWriter.getTotalRecords());
 
-            objectMapper.writeValue(writer, exportData);
+            backupWriter.finish(exportData);
+            backupWriter.close();
+            journal.delete();
+            deleteWorkDir(workDir);
+            completed = true;
 
         } finally {
-            if (writer != null) writer.close();
-            if (gzos != null) gzos.close();
-            if (fos != null) fos.close();
+            if (backupWriter != null) {
+                try {
+                    backupWriter.close();
+                } catch (IOException e) {
+                    // Ignorar errores al cerrar
+                }
+            }
+            pool.release(connection);
+            pool.close();
+            if (!completed) {
+                if (journal != null) {
+                    // Se conservan el backup parcial, el journal y los segmentos terminados
+                    journal.close();
+                    System.err.println("💾 Exportación interrumpida. Para continuarla usa --resume " +
+                            "(journal: " + SqlServerExportJournal.journalFile(backupFile) + ")");
+                } else {
+                    // No dejar un backup incompleto que parezca válido
+                    Files.deleteIfExists(Paths.get(backupFile));
+                }
+            }
         }
 
         long fileSize = Files.size(Paths.get(backupFile)) / (1024 * 1024);
         System.out.println("✅ Exportación completada: " + backupFile + " (" + fileSize + " MB)");
         System.out.println("📈 Estadísticas: " + exportData.getMetadata().getTotalTables() +
                 " tablas, " + exportData.getMetadata().getTotalRecords() + " registros totales");
+        printMemoryUsage();
 
         return backupFile;
     }
 
     public boolean importDatabase(String backupFile, SqlServerConfig config) throws Exception {
+        return importDatabase(backupFile, config, new SqlServerMigrationOptions());
+    }
+
+    public boolean importDatabase(String backupFile, SqlServerConfig config, SqlServerMigrationOptions options) throws Exception {
         System.out.println("🔄 Iniciando importación desde " + backupFile + "...");
         System.out.println("🎯 Destino: " + config.getServer() +
                 (config.getInstance() != null ? "\\" + config.getInstance() : "") +
                 ":" + config.getPort());
         System.out.println("🗄️  Base de datos: " + config.getDatabase());
 
-        SqlServerExportData exportData;
-
-        // Leer archivo comprimido
-        FileInputStream fis = null;
-        GzipCompressorInputStream gzis = null;
-        InputStreamReader reader = null;
-
+        SqlServerMemoryBudget.configure(options.getMaxMemoryBytes(), options.getImportThreads());
+        SqlServerBackupReader backupReader = null;
+        // La conexión principal y una por hilo de importación
+        SqlServerConnectionPool pool = new SqlServerConnectionPool(config, options.getImportThreads() + 1);
+        Connection connection = null;
         try {
-            fis = new FileInputStream(backupFile);
-            gzis = new GzipCompressorInputStream(fis);
-            reader = new InputStreamReader(gzis, "UTF-8");
+            pool.warmUp();
+            connection = pool.borrow();
+            connection.setAutoCommit(false);
 
-            exportData = objectMapper.readValue(reader, SqlServerExportData.class);
+            // Unidades ya confirmadas por una importación anterior de este backup
+            SqlServerImportJournal journal = SqlServerImportJournal.open(connection,
+                    SqlServerImportJournal.backupKey(backupFile));
+            connection.commit();
+            if (journal.hasEntries() && !options.isResume()) {
+                throw new IllegalStateException("El destino tiene una importación interrumpida de este backup; " +
+                        "usa --resume para continuarla");
+            }
+            if (options.isResume()) {
+                System.out.println(journal.hasEntries()
+                        ? "⏯️  Continuando la importación interrumpida de este backup"
+                        : "ℹ️  No hay una importación interrumpida de este backup: se importa completo");
+            }
 
-        } finally {
-            if (reader != null) reader.close();
-            if (gzis != null) gzis.close();
-            if (fis != null) fis.close();
-        }
+            // Con un backup con índice se leen sus rangos (con --tables, sólo los de esas tablas;
+            // al continuar, sólo los de las tablas aún no cargadas) y los bloques de datos se
+            // descomprimen en paralelo
+            Set<String> selectedTables = null;
+            boolean skipsTables = false;
+            SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, objectMapper);
+            if (index != null) {
+                List<String> indexedTables = new ArrayList<String>();
+                for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+                    indexedTables.add(table.getName());
+                }
+                if (options.hasTableFilter()) {
+                    selectedTables = resolveTableNames(options.getTables(), indexedTables);
+                }
+                // La importación en paralelo lee los segmentos de cada tabla por separado: el
+                // lector principal sólo recorre la estructura y los objetos
+                List<String> tablesToRead = new ArrayList<String>();
+                if (options.getImportThreads() <= 1) {
+                    for (String tableName : selectedTables != null ? selectedTables : indexedTables) {
+                        if (!journal.isCompleted(SqlServerImportJournal.tableUnit(tableName))) {
+                            tablesToRead.add(tableName);
+                        }
+                    }
+                }
+                backupReader = SqlServerBackupReader.openTables(backupFile, objectMapper, index,
+                        tablesToRead, options.getCompressionThreads());
+            } else if (options.hasTableFilter()) {
+                System.out.println("ℹ️  El backup no tiene índice: se recorre completo para extraer las tablas pedidas");
+                skipsTables = true;
+            }
 
-        System.out.println("📅 Backup creado: " + exportData.getMetadata().getExportDate());
-        System.out.println("📊 Contiene: " + exportData.getMetadata().getTotalTables() +
-                " tablas, " + exportData.getMetadata().getTotalRecords() + " registros");
+            // La cadena de incrementales se valida antes de tocar el destino
+            List<SqlServerExportData.Metadata> incrementalChain =
+                    readIncrementalChain(backupFile, index, options.getIncrementals(), selectedTables);
 
-        Connection connection = null;
-        try {
-            connection = DriverManager.getConnection(
-                    config.buildConnectionUrl(), config.getUsername(), config.getPassword());
+            // Leer estructura del backup; los datos se leen en lotes durante la inserción
+            if (backupReader == null) {
+                backupReader = new SqlServerBackupReader(backupFile, objectMapper);
+            }
+            SqlServerExportData exportData = backupReader.readHeader();
+            System.out.println("📦 Formato del backup: " + describeFormat(backupReader.getFormatVersion()) +
+                    ", compresión " + backupReader.getCodec());
 
-            connection.setAutoCommit(false);
+            if (options.hasTableFilter()) {
+                if (selectedTables == null) {
+                    selectedTables = resolveTableNames(options.getTables(), exportData.getTables().keySet());
+                }
+                restrictToTables(exportData, selectedTables);
+                System.out.println("📋 Restauración parcial: " + selectedTables.size() + " tabla(s)");
+            }
+
+            // En backups generados en streaming la metadata va al final del archivo
+            boolean backupInfoPrinted = exportData.getMetadata().getDatabaseName() != null;
+            if (backupInfoPrinted) {
+                printBackupInfo(exportData);
+            }
 
             try {
-                // Verificar si la base de datos está vacía
-                if (!isDatabaseEmpty(connection)) {
-                    System.out.println("⚠️  La base de datos no está vacía. Continuando...");
-                }
+                if (!journal.isCompleted(SqlServerImportJournal.UNIT_STRUCTURE)) {
+                    // Verificar si la base de datos está vacía
+                    if (!isDatabaseEmpty(connection)) {
+                        System.out.println("⚠️  La base de datos no está vacía. Continuando...");
+                    }
+
+                    if (selectedTables != null) {
+                        warnMissingParentTables(connection, exportData, selectedTables);
+                    }
 
-                // Crear esquemas
-                createSchemas(connection, exportData);
+                    // Crear esquemas
+                    createSchemas(connection, exportData);
 
-                // Crear tablas
-                createTables(connection, exportData);
+                    // Crear tablas
+                    createTables(connection, exportData);
 
-                // Insertar datos
-                insertData(connection, exportData);
+                    // Las tablas deben estar confirmadas para que las vean las demás conexiones
+                    journal.markCompleted(connection, SqlServerImportJournal.UNIT_STRUCTURE, 0);
+                    commitUnit(connection, options);
+                } else {
+                    System.out.println("⏭️  Esquemas y tablas ya creados");
+                    clearPartialTables(connection, exportData, journal, true);
+                    commitUnit(connection, options);
+                }
 
-                // Crear constraints
-                createConstraints(connection, exportData);
+                if (options.isMinimalLogging()) {
+                    checkRecoveryModel(connection);
+                }
 
-                // Crear índices
-                createIndexes(connection, exportData);
+                if (options.getImportThreads() > 1) {
+                    if (!insertDataParallel(pool, backupReader, index, exportData, backupFile, journal, options)) {
+                        System.err.println("❌ Error durante la importación: no se pudieron cargar todas las tablas");
+                        System.err.println("💾 Las tablas ya confirmadas se conservan: corrige la causa y continúa con --resume");
+                        return false;
+                    }
+                } else {
+                    // Insertar datos mientras se parsea el archivo. Si hay que saltar tablas no
+                    // conviene parsearlas por adelantado: se recorren sin deserializar.
+                    if (!skipsTables) {
+                        backupReader.startPrefetch(BATCH_SIZE, PREFETCH_BATCHES);
+                    }
+                    insertData(connection, backupReader, exportData, journal, options);
+                }
+                printLogUsage(connection);
 
-                // Crear stored procedures
-                createStoredProcedures(connection, exportData);
+                if (!backupInfoPrinted) {
+                    printBackupInfo(exportData);
+                }
 
-                // Crear funciones
-                createFunctions(connection, exportData);
+                if (selectedTables != null) {
+                    // Los objetos se leen al final del archivo: conservar sólo los de las tablas pedidas
+                    restrictToTables(exportData, selectedTables);
+                    System.out.println("ℹ️  Restauración parcial: no se crean stored procedures, funciones ni vistas");
+                }
 
-                // Crear vistas
-                createViews(connection, exportData);
+                if (!journal.isCompleted(SqlServerImportJournal.UNIT_OBJECTS)) {
+                    createDatabaseObjects(connection, exportData);
+                    journal.markCompleted(connection, SqlServerImportJournal.UNIT_OBJECTS, 0);
+                    commitUnit(connection, options);
+                }
 
-                // Crear triggers
-                createTriggers(connection, exportData);
+                // Cada incremental se aplica y se confirma por separado, en orden
+                for (int i = 0; i < incrementalChain.size(); i++) {
+                    String incrementalFile = options.getIncrementals().get(i);
+                    String unit = SqlServerImportJournal.incrementalUnit(incrementalFile);
+                    if (journal.isCompleted(unit)) {
+                        System.out.println("⏭️  Incremental ya aplicado: " + incrementalFile);
+                        continue;
+                    }
+                    System.out.println("🧩 Aplicando incremental " + (i + 1) + "/" + incrementalChain.size() + ": " +
+                            incrementalFile);
+                    applyIncremental(connection, incrementalFile, incrementalChain.get(i), selectedTables);
+                    journal.markCompleted(connection, unit, 0);
+                    commitUnit(connection, options);
+                }
 
+                journal.delete(connection);
                 connection.commit();
+
                 System.out.println("🎉 Importación completada exitosamente");
+                printMemoryUsage();
                 return true;
 
             } catch (Exception e) {
                 connection.rollback();
                 System.err.println("❌ Error durante la importación: " + e.getMessage());
+                if (journal.hasEntries() && !options.isDatabaseCommit()) {
+                    System.err.println("💾 Lo ya confirmado se conserva: corrige la causa y continúa con --resume");
+                } else {
+                    // No quedó nada que continuar: no dejar la tabla del journal en el destino
+                    try {
+                        journal.delete(connection);
+                        connection.commit();
+                    } catch (SQLException cleanupError) {
+                        // Ignorar errores al limpiar
+                    }
+                }
                 e.printStackTrace();
                 return false;
             }
         } finally {
-            if (connection != null) {
+            if (backupReader != null) {
                 try {
-                    connection.close();
-                } catch (SQLException e) {
+                    backupReader.close();
+                } catch (IOException e) {
                     // Ignorar errores al cerrar
                 }
             }
+            pool.release(connection);
+            pool.close();
+        }
+    }
+
+    // Migración directa (--migrate): lee la estructura, los objetos y los datos del origen y los
+    // carga en el destino sin archivo intermedio, en el mismo orden que importDatabase. La
+    // lectura de cada tabla se superpone con su carga. El avance queda en el journal del
+    // destino, como en una importación, y --resume continúa una migración interrumpida.
+    public boolean migrateDatabase(SqlServerConfig source, SqlServerConfig target,
+                                   SqlServerMigrationOptions options) throws Exception {
+        System.out.println("🔀 Iniciando migración directa de SQL Server...");
+        System.out.println("📡 Origen: " + source.getServer() +
+                (source.getInstance() != null ? "\\" + source.getInstance() : "") +
+                ":" + source.getPort() + " / " + source.getDatabase());
+        System.out.println("🎯 Destino: " + target.getServer() +
+                (target.getInstance() != null ? "\\" + target.getInstance() : "") +
+                ":" + target.getPort() + " / " + target.getDatabase());
+
+        SqlServerMemoryBudget.configure(options.getMaxMemoryBytes(), 1);
+        // Una conexión en cada servidor: el origen se lee de a una tabla mientras se carga
+        SqlServerConnectionPool sourcePool = new SqlServerConnectionPool(source, 1);
+        SqlServerConnectionPool targetPool = new SqlServerConnectionPool(target, 1);
+        Connection sourceConnection = null;
+        Connection connection = null;
+        try {
+            sourcePool.warmUp();
+            targetPool.warmUp();
+            sourceConnection = sourcePool.borrow();
+            connection = targetPool.borrow();
+            connection.setAutoCommit(false);
+
+            // Unidades ya confirmadas por una migración anterior desde el mismo origen
+            SqlServerImportJournal journal = SqlServerImportJournal.open(connection,
+                    SqlServerImportJournal.migrationKey(source));
+            connection.commit();
+            if (journal.hasEntries() && !options.isResume()) {
+                throw new IllegalStateException("El destino tiene una migración interrumpida desde este origen; " +
+                        "usa --resume para continuarla");
+            }
+            if (options.isResume()) {
+                System.out.println(journal.hasEntries()
+                        ? "⏯️  Continuando la migración interrumpida"
+                        : "ℹ️  No hay una migración interrumpida desde este origen: se migra completa");
+            }
+
+            // Estructura y objetos del origen; los datos se leen tabla por tabla durante la carga
+            SqlServerExportData exportData = new SqlServerExportData();
+            setDatabaseMetadata(sourceConnection, exportData, source);
+            exportSchemas(sourceConnection, exportData);
+
+            List<String> tables = getUserTables(sourceConnection);
+            System.out.println("📊 Encontradas " + tables.size() + " tablas de usuario");
+            Map<String, List<String>> dependencies = analyzeDependencies(sourceConnection, tables);
+            exportData.setTableOrder(topologicalSort(dependencies, tables));
+
+            exportTableStructures(sourceConnection, exportData.getTableOrder(), exportData, options);
+            if (options.isOrderedExport()) {
+                for (SqlServerExportData.TableInfo tableInfo : exportData.getTables().values()) {
+                    tableInfo.setSortOrder(new ArrayList<String>(tableInfo.getPrimaryKey()));
+                }
+            }
+            exportDatabaseObjects(sourceConnection, exportData);
+
+            Set<String> selectedTables = null;
+            if (options.hasTableFilter()) {
+                selectedTables = resolveTableNames(options.getTables(), exportData.getTables().keySet());
+                restrictToTables(exportData, selectedTables);
+                System.out.println("📋 Migración parcial: " + selectedTables.size() + " tabla(s)");
+            }
+            // La copia directa lee las filas con el formato binario
+            checkBinaryColumnTypes(exportData, "; exclúyelas con --tables o usa --export y --import con --format=json");
+
+            try {
+                if (!journal.isCompleted(SqlServerImportJournal.UNIT_STRUCTURE)) {
+                    if (!isDatabaseEmpty(connection)) {
+                        System.out.println("⚠️  La base de datos destino no está vacía. Continuando...");
+                    }
+                    if (selectedTables != null) {
+                        warnMissingParentTables(connection, exportData, selectedTables);
+                    }
+
+                    createSchemas(connection, exportData);
+                    createTables(connection, exportData);
+
+                    journal.markCompleted(connection, SqlServerImportJournal.UNIT_STRUCTURE, 0);
+                    commitUnit(connection, options);
+                } else {
+                    System.out.println("⏭️  Esquemas y tablas ya creados");
+                    // Las filas confirmadas por lotes se pueden saltar sólo si el origen las
+                    // entrega en el orden de la clave
+                    clearPartialTables(connection, exportData, journal, options.isOrderedExport());
+                    commitUnit(connection, options);
+                }
+
+                if (options.isMinimalLogging()) {
+                    checkRecoveryModel(connection);
+                }
+
+                long totalRecords = copyTableData(sourceConnection, connection, exportData, journal, options);
+                printLogUsage(connection);
+
+                if (selectedTables != null) {
+                    System.out.println("ℹ️  Migración parcial: no se crean stored procedures, funciones ni vistas");
+                }
+
+                if (!journal.isCompleted(SqlServerImportJournal.UNIT_OBJECTS)) {
+                    createDatabaseObjects(connection, exportData);
+                    journal.markCompleted(connection, SqlServerImportJournal.UNIT_OBJECTS, 0);
+                    commitUnit(connection, options);
+                }
+
+                journal.delete(connection);
+                connection.commit();
+
+                System.out.println("🎉 Migración completada exitosamente");
+                System.out.println("📈 Estadísticas: " + exportData.getTableOrder().size() + " tablas, " +
+                        totalRecords + " registros totales");
+                printMemoryUsage();
+                return true;
+
+            } catch (Exception e) {
+                connection.rollback();
+                System.err.println("❌ Error durante la migración: " + e.getMessage());
+                if (journal.hasEntries() && !options.isDatabaseCommit()) {
+                    System.err.println("💾 Lo ya confirmado se conserva: corrige la causa y continúa con --resume");
+                } else {
+                    // No quedó nada que continuar: no dejar la tabla del journal en el destino
+                    try {
+                        journal.delete(connection);
+                        connection.commit();
+                    } catch (SQLException cleanupError) {
+                        // Ignorar errores al limpiar
+                    }
+                }
+                e.printStackTrace();
+                return false;
+            }
+        } finally {
+            sourcePool.release(sourceConnection);
+            sourcePool.close();
+            targetPool.release(connection);
+            targetPool.close();
         }
     }
 
     public boolean verifyBackup(String backupFile) throws Exception {
+        return verifyBackup(backupFile, new SqlServerMigrationOptions());
+    }
+
+    // Con --summary sólo se lee el índice del backup (si lo tiene), sin descomprimir los datos.
+    // Si el índice tiene checksums, los segmentos se verifican en paralelo; si no, se recorre
+    // el archivo completo.
+    public boolean verifyBackup(String backupFile, SqlServerMigrationOptions options) throws Exception {
         System.out.println("🔍 Verificando backup: " + backupFile);
 
-        FileInputStream fis = null;
-        GzipCompressorInputStream gzis = null;
-        InputStreamReader reader = null;
+        SqlServerMemoryBudget.configure(options.getMaxMemoryBytes(), options.getVerifyThreads());
+        SqlServerBackupReader backupReader = null;
 
         try {
-            fis = new FileInputStream(backupFile);
-            gzis = new GzipCompressorInputStream(fis);
-            reader = new InputStreamReader(gzis, "UTF-8");
+            SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, objectMapper);
+            if (options.isVerifySummary()) {
+                if (index != null) {
+                    return printBackupSummary(index);
+                }
+                System.out.println("ℹ️  El backup no tiene índice, se recorre completo");
+            }
 
-            SqlServerExportData exportData = objectMapper.readValue(reader, SqlServerExportData.class);
+            SqlServerExportData exportData;
+            long verifiedRecords = 0;
+
+            if (index != null && hasSegmentChecksums(index)) {
+                // Sólo la estructura, los objetos y la metadata; los segmentos se verifican aparte
+                backupReader = SqlServerBackupReader.openTables(backupFile, objectMapper, index,
+                        Collections.<String>emptyList(), 1);
+                exportData = backupReader.readHeader();
+                backupReader.nextTable();
+
+                Set<String> damagedTables = verifySegmentsParallel(backupFile, index, exportData,
+                        backupReader.getCodec(), options.getVerifyThreads(), options.getCompressionThreads());
+                if (!damagedTables.isEmpty()) {
+                    System.err.println("❌ Tablas dañadas (" + damagedTables.size() + "): " +
+                            joinStringList(new ArrayList<String>(damagedTables), ", "));
+                    return false;
+                }
+                for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+                    verifiedRecords += table.getRowCount();
+                }
+            } else {
+                backupReader = new SqlServerBackupReader(backupFile, objectMapper);
+                exportData = backupReader.readHeader();
+
+                // Recorrer los datos sin cargarlos en memoria
+                String tableName;
+                while ((tableName = backupReader.nextTable()) != null) {
+                    long tableRecords = backupReader.skipTable();
+                    verifiedRecords += tableRecords;
+
+                    SqlServerBackupIndex.TableEntry entry = index != null ? index.getTable(tableName) : null;
+                    if (index != null && (entry == null || entry.getRowCount() != tableRecords)) {
+                        System.err.println("❌ Registros leídos de " + tableName + " (" + tableRecords +
+                                ") no coinciden con el índice");
+                        return false;
+                    }
+                }
+            }
 
             System.out.println("✅ Archivo válido");
+            System.out.println("📦 Formato: " + describeFormat(backupReader.getFormatVersion()));
+            System.out.println("🗜️  Compresión: " + describeCompression(exportData.getMetadata(), backupReader.getCodec()));
             System.out.println("📅 Fecha de creación: " + exportData.getMetadata().getExportDate());
             System.out.println("🗄️  Base de datos origen: " + exportData.getMetadata().getDatabaseName());
             System.out.println("🔢 Versión SQL Server: " + exportData.getMetadata().getSqlServerVersion());
             System.out.println("📊 Tablas: " + exportData.getMetadata().getTotalTables());
             System.out.println("📈 Registros totales: " + exportData.getMetadata().getTotalRecords());
+            long usedPages = 0;
+            for (SqlServerExportData.TableInfo tableInfo : exportData.getTables().values()) {
+                usedPages += tableInfo.getUsedPages();
+            }
+            if (usedPages > 0) {
+                System.out.println("📏 Tamaño en el origen: " + formatFileSize(usedPages * PAGE_SIZE) + " (tablas e índices)");
+            }
             System.out.println("🏗️  Stored Procedures: " + exportData.getStoredProcedures().size());
             System.out.println("🔧 Funciones: " + exportData.getFunctions().size());
             System.out.println("👁️  Vistas: " + exportData.getViews().size());
             System.out.println("⚡ Triggers: " + exportData.getTriggers().size());
             System.out.println("🔍 Índices: " + exportData.getIndexes().size());
 
+            if (verifiedRecords != exportData.getMetadata().getTotalRecords()) {
+                System.err.println("❌ Registros leídos (" + verifiedRecords + ") no coinciden con la metadata");
+                return false;
+            }
+
             return true;
 
         } catch (Exception e) {
             System.err.println("❌ Error verificando backup: " + e.getMessage());
             return false;
         } finally {
-            if (reader != null) reader.close();
-            if (gzis != null) gzis.close();
-            if (fis != null) fis.close();
+            if (backupReader != null) backupReader.close();
+        }
+    }
+
+    private boolean hasSegmentChecksums(SqlServerBackupIndex index) {
+        for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+            for (SqlServerBackupIndex.Segment segment : table.getSegments()) {
+                if (segment.getChecksum() == null) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Recalcula el CRC32 de cada segmento y cuenta sus filas, repartiendo los segmentos entre
+    // varios hilos; los bloques de cada segmento se descomprimen a su vez en otro pool.
+    // Devuelve las tablas con algún segmento dañado.
+    private Set<String> verifySegmentsParallel(final String backupFile, SqlServerBackupIndex index,
+                                               SqlServerExportData exportData, final SqlServerCompressionCodec codec,
+                                               int threads, final int compressionThreads) throws InterruptedException {
+        int segmentCount = 0;
+        for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+            segmentCount += table.getSegments().size();
+        }
+        System.out.println("🧮 Verificando checksums de " + segmentCount + " segmentos con " + threads + " hilos...");
+
+        Set<String> damagedTables = new LinkedHashSet<String>();
+        Map<SqlServerBackupIndex.Segment, Future<Long>> results = new HashMap<SqlServerBackupIndex.Segment, Future<Long>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final ExecutorService blockExecutor = compressionThreads > 1 ? Executors.newFixedThreadPool(compressionThreads) : null;
+
+        try {
+            for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+                SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(table.getName());
+                if (tableInfo == null) {
+                    System.err.println("❌ " + table.getName() + ": no está en la estructura del backup");
+                    damagedTables.add(table.getName());
+                    continue;
+                }
+
+                final SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(tableInfo);
+                for (final SqlServerBackupIndex.Segment segment : table.getSegments()) {
+                    results.put(segment, executor.submit(new Callable<Long>() {
+                        @Override
+                        public Long call() throws Exception {
+                            return verifySegment(backupFile, segment, rowFormat, codec, blockExecutor,
+                                    SqlServerMemoryBudget.getMaxPendingBlocks(compressionThreads * 2));
+                        }
+                    }));
+                }
+            }
+
+            for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+                for (SqlServerBackupIndex.Segment segment : table.getSegments()) {
+                    Future<Long> result = results.get(segment);
+                    if (result == null) {
+                        continue;
+                    }
+                    try {
+                        result.get();
+                    } catch (ExecutionException e) {
+                        System.err.println("❌ " + table.getName() + ": segmento en la posición " + segment.getOffset() +
+                                " dañado (" + e.getCause().getMessage() + ")");
+                        damagedTables.add(table.getName());
+                    }
+                }
+                if (!damagedTables.contains(table.getName())) {
+                    System.out.println("✓ " + table.getName() + " (" + table.getRowCount() + " registros, " +
+                            table.getSegments().size() + " segmento(s))");
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            if (blockExecutor != null) {
+                blockExecutor.shutdownNow();
+            }
+        }
+        return damagedTables;
+    }
+
+    // Lee el segmento desde el archivo calculando el CRC32 de sus bytes comprimidos, y recorre
+    // sus filas sin deserializarlas. Si el índice registra sus bloques y hay un pool, el CRC32
+    // se calcula primero y los bloques se descomprimen en paralelo. Devuelve el número de filas.
+    private long verifySegment(String backupFile, SqlServerBackupIndex.Segment segment,
+                               SqlServerBinaryRowFormat rowFormat, SqlServerCompressionCodec codec,
+                               ExecutorService blockExecutor, int maxPendingBlocks) throws IOException {
+        CRC32 checksum = new CRC32();
+        CheckedInputStream checkedStream = new CheckedInputStream(
+                SqlServerBackupIndex.openRanges(backupFile, Collections.singletonList(segment)), checksum);
+        InputStream content = null;
+        try {
+            List<SqlServerBackupIndex.Section> blocks = blockExecutor != null ? SqlServerBackupIndex.getBlockRanges(segment) : null;
+            if (blocks != null) {
+                long blocksSize = 0;
+                for (SqlServerBackupIndex.Section block : blocks) {
+                    blocksSize += block.getCompressedSize();
+                }
+                if (blocksSize != segment.getCompressedSize()) {
+                    throw new IOException("los bloques no coinciden con el tamaño del segmento");
+                }
+                drain(checkedStream);
+                if (checksum.getValue() != segment.getChecksum()) {
+                    throw new IOException("el checksum no coincide");
+                }
+                content = new SqlServerBlockInputStream(backupFile, blocks, codec, blockExecutor, maxPendingBlocks);
+            } else {
+                content = codec.decompress(checkedStream);
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(content, 64 * 1024));
+            if (in.readUnsignedByte() != SqlServerBackupWriter.FRAME_SEGMENT) {
+                throw new IOException("no empieza con un marco de datos");
+            }
+
+            long rowCount = 0;
+            int marker;
+            while ((marker = in.readUnsignedByte()) != SqlServerBinaryRowFormat.ROW_END) {
+                rowFormat.copyRow(in, null, marker);
+                rowCount++;
+            }
+            if (in.read() != -1) {
+                throw new IOException("tiene datos después del final");
+            }
+
+            // Incluir en el checksum los bytes que el descompresor no haya consumido
+            drain(checkedStream);
+
+            if (checksum.getValue() != segment.getChecksum()) {
+                throw new IOException("el checksum no coincide");
+            }
+            if (rowCount != segment.getRowCount()) {
+                throw new IOException(rowCount + " filas leídas, el índice indica " + segment.getRowCount());
+            }
+            return rowCount;
+        } finally {
+            if (content != null) content.close();
+            checkedStream.close();
+        }
+    }
+
+    private void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // Descartar
+        }
+    }
+
+    // Resumen del backup a partir del índice: no lee la estructura ni los datos
+    private boolean printBackupSummary(SqlServerBackupIndex index) {
+        SqlServerExportData.Metadata metadata = index.getMetadata();
+        Map<String, Integer> objectCounts = index.getObjectCounts();
+
+        System.out.println("✅ Índice válido (resumen, los datos no fueron descomprimidos)");
+        System.out.println("📦 Formato: " + describeFormat(SqlServerBackupWriter.FORMAT_BINARY));
+        System.out.println("🗜️  Compresión: " + describeCompression(metadata, null));
+        System.out.println("📅 Fecha de creación: " + metadata.getExportDate());
+        System.out.println("🗄️  Base de datos origen: " + metadata.getDatabaseName());
+        System.out.println("🔢 Versión SQL Server: " + metadata.getSqlServerVersion());
+        if ("incremental".equals(metadata.getBackupType())) {
+            System.out.println("🧩 Incremental sobre el backup " + metadata.getBaseBackupId());
+            List<String> untrackedDeletes = getUntrackedDeletes(metadata);
+            if (!untrackedDeletes.isEmpty()) {
+                System.out.println("⚠️  Sin borrados (rowversion): " + joinStringList(untrackedDeletes, ", "));
+            }
+        }
+        System.out.println("📊 Tablas: " + metadata.getTotalTables());
+        System.out.println("📈 Registros totales: " + metadata.getTotalRecords());
+        System.out.println("🏗️  Stored Procedures: " + objectCounts.get("stored_procedures"));
+        System.out.println("🔧 Funciones: " + objectCounts.get("functions"));
+        System.out.println("👁️  Vistas: " + objectCounts.get("views"));
+        System.out.println("⚡ Triggers: " + objectCounts.get("triggers"));
+        System.out.println("🔍 Índices: " + objectCounts.get("indexes"));
+
+        long indexedRecords = 0;
+        long compressedSize = 0;
+        long uncompressedSize = 0;
+        System.out.println("📋 Tablas en el backup:");
+        for (SqlServerBackupIndex.TableEntry table : index.getTables()) {
+            System.out.println("   " + table.getName() + ": " + table.getRowCount() + " registros, " +
+                    table.getSegments().size() + " segmento(s), " + formatFileSize(table.getCompressedSize()) +
+                    " comprimido / " + formatFileSize(table.getUncompressedSize()) + " sin comprimir");
+            indexedRecords += table.getRowCount();
+            compressedSize += table.getCompressedSize();
+            uncompressedSize += table.getUncompressedSize();
+        }
+        System.out.println("💾 Datos: " + formatFileSize(compressedSize) + " comprimido / " +
+                formatFileSize(uncompressedSize) + " sin comprimir");
+
+        if (indexedRecords != metadata.getTotalRecords()) {
+            System.err.println("❌ Registros del índice (" + indexedRecords + ") no coinciden con la metadata");
+            return false;
+        }
+        return true;
+    }
+
+    // Pico de los buffers de filas y bloques, y lo que se envió a archivos temporales
+    private void printMemoryUsage() {
+        String budget = SqlServerMemoryBudget.isLimited()
+                ? "presupuesto " + formatFileSize(SqlServerMemoryBudget.getMaxBytes()) : "sin límite";
+        System.out.println("🧠 Memoria de buffers: pico " + formatFileSize(SqlServerMemoryBudget.getPeakBytes()) +
+                " (" + budget + "); a disco: " + formatFileSize(SqlServerMemoryBudget.getSpilledBytes()) +
+                " en " + SqlServerMemoryBudget.getSpilledValues() + " valor(es)");
+    }
+
+    private String formatFileSize(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        } else if (bytes < 1024 * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+        } else {
+            return String.format("%.1f GB", bytes / (1024.0 * 1024.0 * 1024.0));
         }
     }
 
+    // El códec detectado al leer no incluye el nivel; la metadata sí (backups nuevos)
+    private String describeCompression(SqlServerExportData.Metadata metadata, SqlServerCompressionCodec detected) {
+        if (metadata.getCompressionCodec() != null) {
+            int level = metadata.getCompressionLevel() != null ? metadata.getCompressionLevel() : -1;
+            return SqlServerCompressionCodec.forName(metadata.getCompressionCodec(), level).toString();
+        }
+        return detected != null ? detected.toString() : SqlServerCompressionCodec.GZIP;
+    }
+
+    private String describeFormat(int formatVersion) {
+        return formatVersion == SqlServerBackupWriter.FORMAT_BINARY ? "binario (v2)" : "JSON (v1)";
+    }
+
+    private void printBackupInfo(SqlServerExportData exportData) {
+        System.out.println("📅 Backup creado: " + exportData.getMetadata().getExportDate());
+        System.out.println("📊 Contiene: " + exportData.getMetadata().getTotalTables() +
+                " tablas, " + exportData.getMetadata().getTotalRecords() + " registros");
+    }
+
     // Método utilitario para crear nombres de tabla quoted correctamente
     private String buildQuotedTableName(String fullTableName) {
         String[] parts = fullTableName.split("\\.");
@@ -330,7 +985,7 @@ public class SqlServerMigrationService {
 
         String sql = "SELECT SCHEMA_NAME(t.schema_id) + '.' + t.name as full_table_name " +
                 "FROM sys.tables t " +
-                "WHERE t.is_ms_shipped = 0 " +
+                "WHERE t.is_ms_shipped = 0 AND t.name <> '" + SqlServerImportJournal.TABLE_NAME + "' " +
                 "ORDER BY SCHEMA_NAME(t.schema_id), t.name";
 
         Statement stmt = null;
@@ -433,71 +1088,100 @@ public class SqlServerMigrationService {
         result.add(table);
     }
 
-    private void exportTableStructures(Connection connection, List<String> tables, SqlServerExportData exportData) throws SQLException {
+    // Lee el catálogo de todas las tablas con unas pocas consultas sobre sys.* (columnas, claves
+    // primarias, foreign keys y tamaños) y arma las estructuras en memoria, en lugar de consultar
+    // cada tabla por separado
+    private void exportTableStructures(Connection connection, List<String> tables, SqlServerExportData exportData,
+                                       SqlServerMigrationOptions options) throws SQLException {
         System.out.println("🏗️  Exportando estructuras de tablas...");
 
+        Map<String, SqlServerExportData.TableInfo> tableInfos = new HashMap<String, SqlServerExportData.TableInfo>();
         for (String fullTableName : tables) {
             String[] parts = fullTableName.split("\\.");
-            String schemaName = parts[0];
-            String tableName = parts[1];
 
             SqlServerExportData.TableInfo tableInfo = new SqlServerExportData.TableInfo();
-            tableInfo.setSchemaName(schemaName);
-            tableInfo.setTableName(tableName);
+            tableInfo.setSchemaName(parts[0]);
+            tableInfo.setTableName(parts[1]);
+            tableInfos.put(fullTableName, tableInfo);
+        }
 
-            // Exportar columnas
-            exportTableColumns(connection, schemaName, tableName, tableInfo);
+        // Exportar columnas, primary keys y foreign keys
+        exportTableColumns(connection, tableInfos);
+        exportPrimaryKeys(connection, tableInfos);
+        exportForeignKeys(connection, tableInfos);
 
-            // Exportar primary key
-            exportPrimaryKey(connection, schemaName, tableName, tableInfo);
+        // Filas y páginas de las estadísticas de particiones, sin leer las tablas
+        String rowCountSource = exportTableSizes(connection, tableInfos);
+        if (options.isExactCount()) {
+            rowCountSource = "exact";
+        }
+        exportData.getMetadata().setRowCountSource(rowCountSource);
 
-            // Exportar foreign keys
-            exportForeignKeys(connection, schemaName, tableName, tableInfo);
+        long totalRows = 0;
+        long totalPages = 0;
+        for (String fullTableName : tables) {
+            SqlServerExportData.TableInfo tableInfo = tableInfos.get(fullTableName);
 
             // Generar CREATE TABLE statement
             generateCreateTableStatement(tableInfo);
 
-            // Obtener row count
-            getRowCount(connection, fullTableName, tableInfo);
+            if (options.isExactCount()) {
+                getRowCount(connection, fullTableName, tableInfo);
+            }
+            totalRows += tableInfo.getRowCount();
+            totalPages += tableInfo.getUsedPages();
 
             exportData.getTables().put(fullTableName, tableInfo);
-            System.out.println("✓ Estructura exportada: " + fullTableName + " (" + tableInfo.getRowCount() + " filas)");
+            System.out.println("✓ Estructura exportada: " + fullTableName + " (" + tableInfo.getRowCount() + " filas" +
+                    (tableInfo.getUsedPages() > 0 ? ", " + formatFileSize(tableInfo.getUsedPages() * PAGE_SIZE) : "") + ")");
         }
+
+        System.out.println("📏 Tamaño estimado: " + totalRows + " filas, " + formatFileSize(totalPages * PAGE_SIZE) +
+                ("exact".equals(rowCountSource) ? " (filas contadas con COUNT(*))" : " (según las estadísticas de particiones)"));
     }
 
-    private void exportTableColumns(Connection connection, String schemaName, String tableName, SqlServerExportData.TableInfo tableInfo) throws SQLException {
+    // Columnas de todas las tablas. Los valores siguen las reglas de INFORMATION_SCHEMA.COLUMNS
+    // (tipo base de los tipos de usuario, longitud en caracteres, precisión sólo de los numéricos).
+    private void exportTableColumns(Connection connection, Map<String, SqlServerExportData.TableInfo> tableInfos) throws SQLException {
         String sql = "SELECT " +
-                "c.COLUMN_NAME, " +
-                "c.DATA_TYPE, " +
-                "c.CHARACTER_MAXIMUM_LENGTH, " +
-                "c.NUMERIC_PRECISION, " +
-                "c.NUMERIC_SCALE, " +
-                "c.IS_NULLABLE, " +
-                "c.COLUMN_DEFAULT, " +
-                "COLUMNPROPERTY(OBJECT_ID(c.TABLE_SCHEMA + '.' + c.TABLE_NAME), c.COLUMN_NAME, 'IsIdentity') as IS_IDENTITY, " +
-                "IDENT_SEED(c.TABLE_SCHEMA + '.' + c.TABLE_NAME) as IDENTITY_SEED, " +
-                "IDENT_INCR(c.TABLE_SCHEMA + '.' + c.TABLE_NAME) as IDENTITY_INCREMENT " +
-                "FROM INFORMATION_SCHEMA.COLUMNS c " +
-                "WHERE c.TABLE_SCHEMA = ? AND c.TABLE_NAME = ? " +
-                "ORDER BY c.ORDINAL_POSITION";
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name as full_table_name, " +
+                "c.name as COLUMN_NAME, " +
+                "ISNULL(TYPE_NAME(c.system_type_id), ty.name) as DATA_TYPE, " +
+                "COLUMNPROPERTY(c.object_id, c.name, 'charmaxlen') as CHARACTER_MAXIMUM_LENGTH, " +
+                "CASE WHEN c.system_type_id IN (48, 52, 56, 59, 60, 62, 106, 108, 122, 127) THEN c.precision END as NUMERIC_PRECISION, " +
+                "CASE WHEN c.system_type_id IN (48, 52, 56, 60, 106, 108, 122, 127) THEN c.scale END as NUMERIC_SCALE, " +
+                "c.is_nullable as IS_NULLABLE, " +
+                "OBJECT_DEFINITION(c.default_object_id) as COLUMN_DEFAULT, " +
+                "c.is_identity as IS_IDENTITY, " +
+                "CAST(ic.seed_value AS BIGINT) as IDENTITY_SEED, " +
+                "CAST(ic.increment_value AS BIGINT) as IDENTITY_INCREMENT " +
+                "FROM sys.columns c " +
+                "INNER JOIN sys.tables t ON c.object_id = t.object_id " +
+                "INNER JOIN sys.types ty ON c.user_type_id = ty.user_type_id " +
+                "LEFT JOIN sys.identity_columns ic ON c.object_id = ic.object_id AND c.column_id = ic.column_id " +
+                "WHERE t.is_ms_shipped = 0 " +
+                "ORDER BY c.object_id, c.column_id";
 
-        PreparedStatement pstmt = null;
+        Statement stmt = null;
         ResultSet rs = null;
 
         try {
-            pstmt = connection.prepareStatement(sql);
-            pstmt.setString(1, schemaName);
-            pstmt.setString(2, tableName);
-            rs = pstmt.executeQuery();
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
 
             while (rs.next()) {
+                SqlServerExportData.TableInfo tableInfo = tableInfos.get(rs.getString("full_table_name"));
+                if (tableInfo == null) {
+                    continue;
+                }
+
                 SqlServerExportData.ColumnInfo columnInfo = new SqlServerExportData.ColumnInfo();
                 columnInfo.setColumnName(rs.getString("COLUMN_NAME"));
                 columnInfo.setDataType(rs.getString("DATA_TYPE"));
                 columnInfo.setMaxLength(rs.getInt("CHARACTER_MAXIMUM_LENGTH"));
                 columnInfo.setPrecision(rs.getInt("NUMERIC_PRECISION"));
                 columnInfo.setScale(rs.getInt("NUMERIC_SCALE"));
-                columnInfo.setNullable("YES".equals(rs.getString("IS_NULLABLE")));
+                columnInfo.setNullable(rs.getBoolean("IS_NULLABLE"));
                 columnInfo.setDefaultValue(rs.getString("COLUMN_DEFAULT"));
                 columnInfo.setIdentity(rs.getBoolean("IS_IDENTITY"));
 
@@ -510,37 +1194,45 @@ public class SqlServerMigrationService {
             }
         } finally {
             if (rs != null) rs.close();
-            if (pstmt != null) pstmt.close();
+            if (stmt != null) stmt.close();
         }
     }
 
-    private void exportPrimaryKey(Connection connection, String schemaName, String tableName, SqlServerExportData.TableInfo tableInfo) throws SQLException {
-        String sql = "SELECT c.COLUMN_NAME " +
-                "FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc " +
-                "INNER JOIN INFORMATION_SCHEMA.CONSTRAINT_COLUMN_USAGE c ON tc.CONSTRAINT_NAME = c.CONSTRAINT_NAME " +
-                "WHERE tc.TABLE_SCHEMA = ? AND tc.TABLE_NAME = ? AND tc.CONSTRAINT_TYPE = 'PRIMARY KEY' " +
-                "ORDER BY c.ORDINAL_POSITION";
+    // Columnas de la clave primaria de todas las tablas, en el orden de la clave
+    private void exportPrimaryKeys(Connection connection, Map<String, SqlServerExportData.TableInfo> tableInfos) throws SQLException {
+        String sql = "SELECT " +
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name as full_table_name, " +
+                "c.name as COLUMN_NAME " +
+                "FROM sys.indexes i " +
+                "INNER JOIN sys.index_columns ic ON i.object_id = ic.object_id AND i.index_id = ic.index_id " +
+                "INNER JOIN sys.columns c ON ic.object_id = c.object_id AND ic.column_id = c.column_id " +
+                "INNER JOIN sys.tables t ON i.object_id = t.object_id " +
+                "WHERE i.is_primary_key = 1 AND t.is_ms_shipped = 0 " +
+                "ORDER BY i.object_id, ic.key_ordinal";
 
-        PreparedStatement pstmt = null;
+        Statement stmt = null;
         ResultSet rs = null;
 
         try {
-            pstmt = connection.prepareStatement(sql);
-            pstmt.setString(1, schemaName);
-            pstmt.setString(2, tableName);
-            rs = pstmt.executeQuery();
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
 
             while (rs.next()) {
-                tableInfo.getPrimaryKey().add(rs.getString("COLUMN_NAME"));
+                SqlServerExportData.TableInfo tableInfo = tableInfos.get(rs.getString("full_table_name"));
+                if (tableInfo != null) {
+                    tableInfo.getPrimaryKey().add(rs.getString("COLUMN_NAME"));
+                }
             }
         } finally {
             if (rs != null) rs.close();
-            if (pstmt != null) pstmt.close();
+            if (stmt != null) stmt.close();
         }
     }
 
-    private void exportForeignKeys(Connection connection, String schemaName, String tableName, SqlServerExportData.TableInfo tableInfo) throws SQLException {
+    // Foreign keys de todas las tablas
+    private void exportForeignKeys(Connection connection, Map<String, SqlServerExportData.TableInfo> tableInfos) throws SQLException {
         String sql = "SELECT " +
+                "s1.name + '.' + t1.name as full_table_name, " +
                 "fk.name as CONSTRAINT_NAME, " +
                 "c1.name as COLUMN_NAME, " +
                 "s2.name as REFERENCED_SCHEMA, " +
@@ -556,18 +1248,21 @@ public class SqlServerMigrationService {
                 "INNER JOIN sys.schemas s1 ON t1.schema_id = s1.schema_id " +
                 "INNER JOIN sys.tables t2 ON fk.referenced_object_id = t2.object_id " +
                 "INNER JOIN sys.schemas s2 ON t2.schema_id = s2.schema_id " +
-                "WHERE s1.name = ? AND t1.name = ?";
+                "ORDER BY fk.parent_object_id, fk.name, fkc.constraint_column_id";
 
-        PreparedStatement pstmt = null;
+        Statement stmt = null;
         ResultSet rs = null;
 
         try {
-            pstmt = connection.prepareStatement(sql);
-            pstmt.setString(1, schemaName);
-            pstmt.setString(2, tableName);
-            rs = pstmt.executeQuery();
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
 
             while (rs.next()) {
+                SqlServerExportData.TableInfo tableInfo = tableInfos.get(rs.getString("full_table_name"));
+                if (tableInfo == null) {
+                    continue;
+                }
+
                 SqlServerExportData.ForeignKeyInfo fkInfo = new SqlServerExportData.ForeignKeyInfo();
                 fkInfo.setConstraintName(rs.getString("CONSTRAINT_NAME"));
                 fkInfo.setColumnName(rs.getString("COLUMN_NAME"));
@@ -581,7 +1276,7 @@ public class SqlServerMigrationService {
             }
         } finally {
             if (rs != null) rs.close();
-            if (pstmt != null) pstmt.close();
+            if (stmt != null) stmt.close();
         }
     }
 
@@ -594,20 +1289,7 @@ public class SqlServerMigrationService {
         for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
             StringBuilder columnDef = new StringBuilder();
             columnDef.append("    [").append(column.getColumnName()).append("] ");
-            columnDef.append(column.getDataType().toUpperCase());
-
-            // Agregar tamaño/precisión
-            if (column.getDataType().toLowerCase().contains("varchar") ||
-                    column.getDataType().toLowerCase().contains("char")) {
-                if (column.getMaxLength() > 0) {
-                    columnDef.append("(").append(column.getMaxLength()).append(")");
-                } else {
-                    columnDef.append("(MAX)");
-                }
-            } else if (column.getDataType().toLowerCase().contains("decimal") ||
-                    column.getDataType().toLowerCase().contains("numeric")) {
-                columnDef.append("(").append(column.getPrecision()).append(",").append(column.getScale()).append(")");
-            }
+            columnDef.append(buildColumnType(column));
 
             // Identity
             if (column.isIdentity()) {
@@ -646,6 +1328,78 @@ public class SqlServerMigrationService {
         tableInfo.setCreateStatement(sql.toString());
     }
 
+    // Tipo de la columna con su tamaño/precisión
+    private String buildColumnType(SqlServerExportData.ColumnInfo column) {
+        StringBuilder type = new StringBuilder(column.getDataType().toUpperCase());
+
+        if (column.getDataType().toLowerCase().contains("varchar") ||
+                column.getDataType().toLowerCase().contains("char")) {
+            if (column.getMaxLength() > 0) {
+                type.append("(").append(column.getMaxLength()).append(")");
+            } else {
+                type.append("(MAX)");
+            }
+        } else if (column.getDataType().toLowerCase().contains("decimal") ||
+                column.getDataType().toLowerCase().contains("numeric")) {
+            type.append("(").append(column.getPrecision()).append(",").append(column.getScale()).append(")");
+        }
+        return type.toString();
+    }
+
+    // Filas y páginas reservadas y usadas de todas las tablas, de sys.dm_db_partition_stats. Las
+    // filas son las del heap o del índice clustered; las páginas incluyen los índices y los LOB.
+    // Sin permiso VIEW DATABASE STATE las filas se toman de sys.partitions, sin páginas.
+    // Devuelve el origen de los valores.
+    private String exportTableSizes(Connection connection, Map<String, SqlServerExportData.TableInfo> tableInfos) throws SQLException {
+        String sql = "SELECT " +
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name as full_table_name, " +
+                "SUM(CASE WHEN ps.index_id IN (0, 1) THEN ps.row_count ELSE 0 END) as row_count, " +
+                "SUM(ps.reserved_page_count) as reserved_pages, " +
+                "SUM(ps.used_page_count) as used_pages " +
+                "FROM sys.dm_db_partition_stats ps " +
+                "INNER JOIN sys.tables t ON ps.object_id = t.object_id " +
+                "WHERE t.is_ms_shipped = 0 " +
+                "GROUP BY t.schema_id, t.name";
+
+        String source = "partition_stats";
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            try {
+                rs = stmt.executeQuery(sql);
+            } catch (SQLException e) {
+                System.out.println("⚠️  Sin acceso a sys.dm_db_partition_stats (" + e.getMessage() +
+                        "), filas tomadas de sys.partitions");
+                source = "partitions";
+                rs = stmt.executeQuery("SELECT " +
+                        "SCHEMA_NAME(t.schema_id) + '.' + t.name as full_table_name, " +
+                        "SUM(p.rows) as row_count, " +
+                        "CAST(0 AS BIGINT) as reserved_pages, " +
+                        "CAST(0 AS BIGINT) as used_pages " +
+                        "FROM sys.partitions p " +
+                        "INNER JOIN sys.tables t ON p.object_id = t.object_id " +
+                        "WHERE t.is_ms_shipped = 0 AND p.index_id IN (0, 1) " +
+                        "GROUP BY t.schema_id, t.name");
+            }
+
+            while (rs.next()) {
+                SqlServerExportData.TableInfo tableInfo = tableInfos.get(rs.getString("full_table_name"));
+                if (tableInfo != null) {
+                    tableInfo.setRowCount(rs.getLong("row_count"));
+                    tableInfo.setReservedPages(rs.getLong("reserved_pages"));
+                    tableInfo.setUsedPages(rs.getLong("used_pages"));
+                }
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+        return source;
+    }
+
+    // Conteo exacto con --exact-count; recorre toda la tabla
     private void getRowCount(Connection connection, String fullTableName, SqlServerExportData.TableInfo tableInfo) throws SQLException {
         String quotedTableName = buildQuotedTableName(fullTableName);
 
@@ -665,103 +1419,358 @@ public class SqlServerMigrationService {
         }
     }
 
-    private void exportTableData(Connection connection, List<String> tables, SqlServerExportData exportData) throws SQLException {
+    // Busca el journal más reciente de una exportación interrumpida de la base de datos
+    private SqlServerExportJournal openLatestJournal(String database) throws IOException {
+        final String prefix = "sqlserver_backup_" + database + "_";
+        File[] journals = new File(".").listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(".journal");
+            }
+        });
+        if (journals == null || journals.length == 0) {
+            throw new IllegalArgumentException("No hay una exportación interrumpida de '" + database +
+                    "' para continuar (" + prefix + "*.journal)");
+        }
+
+        File latest = journals[0];
+        for (File journal : journals) {
+            if (journal.lastModified() > latest.lastModified()) {
+                latest = journal;
+            }
+        }
+        return SqlServerExportJournal.open(latest.getPath(), objectMapper);
+    }
+
+    // Planifica los segmentos de cada tabla en el orden de exportación. Con varios hilos las
+    // tablas grandes se dividen en rangos de su clave; los cambios de una tabla en un
+    // incremental se leen en un único segmento.
+    private List<ExportChunk> planExport(Connection connection, List<String> tables, SqlServerExportData exportData,
+                                         Map<String, TableChanges> tableChanges, File workDir,
+                                         SqlServerMigrationOptions options) throws SQLException {
+        boolean split = options.getExportThreads() > 1;
+        List<ExportChunk> plan = new ArrayList<ExportChunk>();
+        for (int i = 0; i < tables.size(); i++) {
+            String fullTableName = tables.get(i);
+            SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(fullTableName);
+            TableChanges changes = tableChanges != null ? tableChanges.get(fullTableName) : null;
+            if (changes != null && (changes.joinClause != null || changes.whereClause != null)) {
+                plan.add(new ExportChunk(fullTableName, changes.joinClause, changes.whereClause, changes.parameters,
+                        tableInfo.getRowCount(), new File(workDir, String.format("table_%05d_%04d.gz", i, 0))));
+            } else {
+                plan.addAll(planTableChunks(connection, fullTableName, tableInfo,
+                        split ? options.getChunkRows() : 0, workDir, i));
+            }
+        }
+        return plan;
+    }
+
+    // Posiciones en el plan de los segmentos de cada tabla
+    private Map<String, List<Integer>> groupChunksByTable(List<ExportChunk> plan) {
+        Map<String, List<Integer>> chunksByTable = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < plan.size(); i++) {
+            List<Integer> chunks = chunksByTable.get(plan.get(i).tableName);
+            if (chunks == null) {
+                chunks = new ArrayList<Integer>();
+                chunksByTable.put(plan.get(i).tableName, chunks);
+            }
+            chunks.add(i);
+        }
+        return chunksByTable;
+    }
+
+    private void exportTableData(Connection connection, List<String> tables, SqlServerExportData exportData,
+                                 SqlServerBackupWriter backupWriter, List<ExportChunk> plan,
+                                 SqlServerExportJournal journal) throws SQLException, IOException {
         System.out.println("📦 Exportando datos de tablas...");
 
-        for (String fullTableName : tables) {
-            String quotedTableName = buildQuotedTableName(fullTableName);
+        Map<String, List<Integer>> chunksByTable = groupChunksByTable(plan);
+        long[] weights = progressWeights(exportData, tables);
+        for (int t = journal.getCheckpoint().getTableCount(); t < tables.size(); t++) {
+            String fullTableName = tables.get(t);
+            List<Integer> chunks = chunksByTable.get(fullTableName);
+            long tableRows = 0;
+
+            backupWriter.beginTable(fullTableName, exportData.getTables().get(fullTableName));
+            for (int chunkIndex : chunks) {
+                ExportChunk chunk = plan.get(chunkIndex);
+                // Un segmento terminado por una exportación paralela anterior se agrega tal cual
+                SqlServerBackupIndex.Segment segment = journal.getCompletedSegment(chunkIndex);
+                if (segment != null) {
+                    backupWriter.appendSegment(chunk.partFile, segment);
+                    tableRows += segment.getRowCount();
+                } else {
+                    tableRows += writeChunk(connection, chunk, exportData.getTables().get(fullTableName), backupWriter);
+                }
+            }
+            backupWriter.endTable();
+            journal.tableWritten(backupWriter.checkpoint());
+            deletePartFiles(plan, chunks);
+
+            System.out.println("✓ Datos exportados: " + fullTableName + " (" + tableRows + " registros" +
+                    (chunks.size() > 1 ? ", " + chunks.size() + " segmentos" : "") + ", " +
+                    backupWriter.describeTableCompression() + ") " + describeProgress(weights, t + 1));
+        }
+    }
 
-            Statement stmt = null;
-            ResultSet rs = null;
+    // Exporta varias tablas a la vez, cada hilo con su propia conexión. Las tablas grandes se
+    // dividen en rangos de su clave primaria que también se leen en paralelo. Cada rango se
+    // comprime en un archivo temporal y se agrega al backup en el orden original como un
+    // segmento independiente, por lo que el resultado no depende del orden de ejecución.
+    // Los archivos temporales terminados quedan registrados en el journal y se conservan
+    // hasta que su tabla está en el backup, para reutilizarlos al continuar con --resume.
+    private void exportTableDataParallel(final SqlServerConnectionPool pool, Connection connection, List<String> tables,
+                                         final SqlServerExportData exportData, final SqlServerBackupWriter backupWriter,
+                                         final List<ExportChunk> plan, final SqlServerExportJournal journal,
+                                         File workDir, SqlServerMigrationOptions options) throws Exception {
+        int threads = options.getExportThreads();
+        System.out.println("📦 Exportando datos de tablas con " + threads + " hilos...");
+
+        if (!workDir.isDirectory() && !workDir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio temporal: " + workDir);
+        }
 
-            try {
-                stmt = connection.createStatement();
-                rs = stmt.executeQuery("SELECT * FROM " + quotedTableName);
-
-                ResultSetMetaData rsmd = rs.getMetaData();
-                int columnCount = rsmd.getColumnCount();
-
-                List<Map<String, Object>> tableData = new ArrayList<Map<String, Object>>();
-
-                while (rs.next()) {
-                    Map<String, Object> row = new HashMap<String, Object>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        String columnName = rsmd.getColumnLabel(i);
-                        Object value = rs.getObject(i);
-                        int columnType = rsmd.getColumnType(i);
-
-                        // Convertir tipos especiales para JSON con metadatos de tipo
-                        if (value == null) {
-                            row.put(columnName, null);
-                        } else if (value instanceof byte[]) {
-                            // VARBINARY, BINARY, IMAGE - convertir a Base64 con marcador
-                            Map<String, Object> binaryData = new HashMap<String, Object>();
-                            binaryData.put("_type", "VARBINARY");
-                            binaryData.put("_value", Base64.getEncoder().encodeToString((byte[]) value));
-                            row.put(columnName, binaryData);
-                        } else if (value instanceof Timestamp) {
-                            Map<String, Object> timestampData = new HashMap<String, Object>();
-                            timestampData.put("_type", "TIMESTAMP");
-                            timestampData.put("_value", value.toString());
-                            row.put(columnName, timestampData);
-                        } else if (value instanceof Time) {
-                            Map<String, Object> timeData = new HashMap<String, Object>();
-                            timeData.put("_type", "TIME");
-                            timeData.put("_value", value.toString());
-                            row.put(columnName, timeData);
-                        } else if (value instanceof Date) {
-                            Map<String, Object> dateData = new HashMap<String, Object>();
-                            dateData.put("_type", "DATE");
-                            dateData.put("_value", value.toString());
-                            row.put(columnName, dateData);
-                        } else if (columnType == java.sql.Types.LONGVARCHAR || columnType == java.sql.Types.LONGNVARCHAR) {
-                            // TEXT, NTEXT
-                            Map<String, Object> textData = new HashMap<String, Object>();
-                            textData.put("_type", "TEXT");
-                            textData.put("_value", value.toString());
-                            row.put(columnName, textData);
-                        } else if (value instanceof java.sql.Clob) {
-                            // CLOB data
-                            java.sql.Clob clob = (java.sql.Clob) value;
-                            Map<String, Object> clobData = new HashMap<String, Object>();
-                            clobData.put("_type", "CLOB");
-                            clobData.put("_value", clob.getSubString(1, (int) clob.length()));
-                            row.put(columnName, clobData);
-                        } else if (value instanceof java.sql.Blob) {
-                            // BLOB data
-                            java.sql.Blob blob = (java.sql.Blob) value;
-                            Map<String, Object> blobData = new HashMap<String, Object>();
-                            blobData.put("_type", "BLOB");
-                            blobData.put("_value", Base64.getEncoder().encodeToString(blob.getBytes(1, (int) blob.length())));
-                            row.put(columnName, blobData);
-                        } else {
-                            // Tipos normales (VARCHAR, INT, etc.)
-                            row.put(columnName, value);
+        // Segmentos pendientes y segmentos ya terminados en una ejecución anterior
+        Map<String, List<Integer>> chunksByTable = groupChunksByTable(plan);
+        int writtenTables = journal.getCheckpoint().getTableCount();
+        List<Integer> schedule = new ArrayList<Integer>();
+        Map<Integer, SqlServerBackupIndex.Segment> reused = new HashMap<Integer, SqlServerBackupIndex.Segment>();
+        for (int t = writtenTables; t < tables.size(); t++) {
+            for (int chunkIndex : chunksByTable.get(tables.get(t))) {
+                SqlServerBackupIndex.Segment segment = journal.getCompletedSegment(chunkIndex);
+                if (segment != null) {
+                    reused.put(chunkIndex, segment);
+                } else {
+                    schedule.add(chunkIndex);
+                }
+            }
+        }
+        if (!reused.isEmpty()) {
+            System.out.println("♻️  Segmentos ya exportados que se reutilizan: " + reused.size());
+        }
+
+        // Primero los segmentos más grandes, para que ninguno quede rezagado al final
+        Collections.sort(schedule, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(plan.get(b).estimatedRows, plan.get(a).estimatedRows);
+            }
+        });
+
+        final List<Connection> workerConnections = Collections.synchronizedList(new ArrayList<Connection>());
+        final ThreadLocal<Connection> workerConnection = new ThreadLocal<Connection>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        Map<Integer, Future<SqlServerBackupIndex.Segment>> results =
+                new HashMap<Integer, Future<SqlServerBackupIndex.Segment>>();
+
+        try {
+            for (final int chunkIndex : schedule) {
+                results.put(chunkIndex, executor.submit(new Callable<SqlServerBackupIndex.Segment>() {
+                    @Override
+                    public SqlServerBackupIndex.Segment call() throws Exception {
+                        Connection workerConn = workerConnection.get();
+                        if (workerConn == null) {
+                            workerConn = pool.borrow();
+                            workerConnections.add(workerConn);
+                            workerConnection.set(workerConn);
+                        }
+                        ExportChunk chunk = plan.get(chunkIndex);
+                        SqlServerBackupIndex.Segment segment = exportChunk(workerConn, chunk,
+                                exportData.getTables().get(chunk.tableName), backupWriter);
+                        journal.chunkCompleted(chunkIndex, segment);
+                        return segment;
+                    }
+                }));
+            }
+
+            // Agregar los segmentos al backup en el orden de dependencias
+            long[] weights = progressWeights(exportData, tables);
+            for (int t = writtenTables; t < tables.size(); t++) {
+                String fullTableName = tables.get(t);
+                List<Integer> chunks = chunksByTable.get(fullTableName);
+                long tableRows = 0;
+
+                backupWriter.beginTable(fullTableName, exportData.getTables().get(fullTableName));
+                for (int chunkIndex : chunks) {
+                    SqlServerBackupIndex.Segment segment = reused.get(chunkIndex);
+                    if (segment == null) {
+                        try {
+                            segment = results.get(chunkIndex).get();
+                        } catch (ExecutionException e) {
+                            System.err.println("❌ Error exportando datos de " + fullTableName + ": " + e.getCause().getMessage());
+                            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
                         }
                     }
-                    tableData.add(row);
+
+                    backupWriter.appendSegment(plan.get(chunkIndex).partFile, segment);
+                    tableRows += segment.getRowCount();
                 }
+                backupWriter.endTable();
+                journal.tableWritten(backupWriter.checkpoint());
+                deletePartFiles(plan, chunks);
 
-                exportData.getData().put(fullTableName, tableData);
-                System.out.println("✓ Datos exportados: " + fullTableName + " (" + tableData.size() + " registros)");
+                System.out.println("✓ Datos exportados: " + fullTableName + " (" + tableRows + " registros" +
+                        (chunks.size() > 1 ? ", " + chunks.size() + " segmentos" : "") + ", " +
+                        backupWriter.describeTableCompression() + ") " + describeProgress(weights, t + 1));
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            for (Connection workerConn : workerConnections) {
+                pool.release(workerConn);
+            }
+            // Los archivos de segmentos interrumpidos no sirven para continuar
+            for (int chunkIndex : schedule) {
+                if (journal.getCompletedSegment(chunkIndex) == null) {
+                    Files.deleteIfExists(plan.get(chunkIndex).partFile.toPath());
+                }
+            }
+        }
+    }
 
-            } finally {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
+    // Peso de cada tabla para estimar el avance: sus páginas usadas, o sus filas si el backup
+    // no tiene tamaños
+    private long[] progressWeights(SqlServerExportData exportData, List<String> tables) {
+        boolean usePages = false;
+        for (String fullTableName : tables) {
+            if (exportData.getTables().get(fullTableName).getUsedPages() > 0) {
+                usePages = true;
+                break;
             }
         }
+
+        long[] weights = new long[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tables.get(i));
+            weights[i] = usePages ? tableInfo.getUsedPages() : tableInfo.getRowCount();
+        }
+        return weights;
     }
 
-    private void exportStoredProcedures(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("🏗️  Exportando stored procedures...");
+    private String describeProgress(long[] weights, int writtenTables) {
+        long total = 0;
+        long written = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            if (i < writtenTables) {
+                written += weights[i];
+            }
+        }
+        long percent = total > 0 ? written * 100 / total : 100;
+        return "[" + writtenTables + "/" + weights.length + " tablas, ~" + percent + "%]";
+    }
 
-        String sql = "SELECT " +
-                "SCHEMA_NAME(p.schema_id) + '.' + p.name as proc_name, " +
-                "m.definition " +
-                "FROM sys.procedures p " +
-                "INNER JOIN sys.sql_modules m ON p.object_id = m.object_id " +
-                "WHERE p.is_ms_shipped = 0";
+    private void deletePartFiles(List<ExportChunk> plan, List<Integer> chunks) throws IOException {
+        for (int chunkIndex : chunks) {
+            Files.deleteIfExists(plan.get(chunkIndex).partFile.toPath());
+        }
+    }
+
+    private void deleteWorkDir(File workDir) throws IOException {
+        File[] leftovers = workDir.listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                Files.deleteIfExists(leftover.toPath());
+            }
+        }
+        Files.deleteIfExists(workDir.toPath());
+    }
+
+    // Divide una tabla grande en rangos de la primera columna de su clave primaria.
+    // Las tablas sin una clave utilizable se exportan en un único segmento.
+    private List<ExportChunk> planTableChunks(Connection connection, String fullTableName,
+                                              SqlServerExportData.TableInfo tableInfo, long chunkRows,
+                                              File workDir, int tableIndex) throws SQLException {
+        List<ExportChunk> chunks = new ArrayList<ExportChunk>();
+        long rowCount = tableInfo.getRowCount();
+
+        String splitColumn = getSplitColumn(tableInfo);
+        List<Object> bounds = new ArrayList<Object>();
+        if (chunkRows > 0 && splitColumn != null && rowCount > chunkRows) {
+            int chunkCount = (int) Math.min(MAX_CHUNKS_PER_TABLE, (rowCount + chunkRows - 1) / chunkRows);
+            bounds = sampleKeyBounds(connection, fullTableName, splitColumn, chunkCount, rowCount);
+        }
+
+        if (bounds.isEmpty()) {
+            chunks.add(new ExportChunk(fullTableName, null, new ArrayList<Object>(), rowCount,
+                    new File(workDir, String.format("table_%05d_%04d.gz", tableIndex, 0))));
+            return chunks;
+        }
+
+        String column = "[" + splitColumn + "]";
+        String bound = buildKeyBoundParameter(tableInfo, splitColumn);
+        long estimatedRows = rowCount / (bounds.size() + 1);
+        for (int i = 0; i <= bounds.size(); i++) {
+            String whereClause;
+            List<Object> parameters = new ArrayList<Object>();
+            if (i == 0) {
+                whereClause = column + " <= " + bound;
+                parameters.add(bounds.get(0));
+            } else if (i == bounds.size()) {
+                whereClause = column + " > " + bound;
+                parameters.add(bounds.get(i - 1));
+            } else {
+                whereClause = column + " > " + bound + " AND " + column + " <= " + bound;
+                parameters.add(bounds.get(i - 1));
+                parameters.add(bounds.get(i));
+            }
+            chunks.add(new ExportChunk(fullTableName, whereClause, parameters, estimatedRows,
+                    new File(workDir, String.format("table_%05d_%04d.gz", tableIndex, i))));
+        }
+
+        System.out.println("✂️  " + fullTableName + " dividida en " + chunks.size() + " segmentos por " + column);
+        return chunks;
+    }
+
+    private String getSplitColumn(SqlServerExportData.TableInfo tableInfo) {
+        if (tableInfo.getPrimaryKey().isEmpty()) {
+            return null;
+        }
+
+        String keyColumn = tableInfo.getPrimaryKey().get(0);
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (column.getColumnName().equals(keyColumn) &&
+                    SPLITTABLE_KEY_TYPES.contains(column.getDataType().toLowerCase())) {
+                return keyColumn;
+            }
+        }
+        return null;
+    }
+
+    // Parámetro de un límite de rango. El driver envía los String como nvarchar, y comparar
+    // una clave char/varchar con nvarchar convierte la columna (en collations SQL_* cada rango
+    // recorre la tabla completa); convertido a varchar el rango se resuelve con la clave.
+    private String buildKeyBoundParameter(SqlServerExportData.TableInfo tableInfo, String keyColumn) {
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (column.getColumnName().equals(keyColumn)) {
+                String dataType = column.getDataType().toLowerCase();
+                if ("char".equals(dataType) || "varchar".equals(dataType)) {
+                    int maxLength = column.getMaxLength();
+                    return "CAST(? AS varchar(" + (maxLength > 0 ? String.valueOf(maxLength) : "max") + "))";
+                }
+            }
+        }
+        return "?";
+    }
+
+    // Obtiene los límites superiores de cada rango con NTILE sobre una muestra de la clave
+    private List<Object> sampleKeyBounds(Connection connection, String fullTableName, String keyColumn,
+                                         int chunkCount, long rowCount) throws SQLException {
+        String column = "[" + keyColumn + "]";
+        String source = buildQuotedTableName(fullTableName);
+
+        double samplePercent = 100.0 * KEY_SAMPLE_ROWS_PER_CHUNK * chunkCount / rowCount;
+        if (samplePercent < 100) {
+            source += " TABLESAMPLE SYSTEM (" + String.format(Locale.ROOT, "%.4f", Math.max(samplePercent, 0.0001)) + " PERCENT)";
+        }
+
+        String sql = "SELECT MAX(k) AS upper_bound " +
+                "FROM (SELECT " + column + " AS k, NTILE(" + chunkCount + ") OVER (ORDER BY " + column + ") AS tile " +
+                "FROM " + source + ") s " +
+                "GROUP BY tile ORDER BY tile";
 
+        List<Object> bounds = new ArrayList<Object>();
         Statement stmt = null;
         ResultSet rs = null;
 
@@ -770,68 +1779,158 @@ public class SqlServerMigrationService {
             rs = stmt.executeQuery(sql);
 
             while (rs.next()) {
-                String procName = rs.getString("proc_name");
-                String definition = rs.getString("definition");
-                exportData.getStoredProcedures().put(procName, definition);
-                System.out.println("✓ Stored procedure exportado: " + procName);
+                Object bound = rs.getObject("upper_bound");
+                if (bound != null && (bounds.isEmpty() || !bound.equals(bounds.get(bounds.size() - 1)))) {
+                    bounds.add(bound);
+                }
             }
         } finally {
             if (rs != null) rs.close();
             if (stmt != null) stmt.close();
         }
+
+        // El último rango queda abierto por arriba
+        if (!bounds.isEmpty()) {
+            bounds.remove(bounds.size() - 1);
+        }
+        return bounds;
     }
 
-    private void exportFunctions(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("🔧 Exportando funciones...");
+    // Consulta de un segmento; con --ordered, en el orden de la clave primaria. Los rangos de
+    // una tabla dividida son de la primera columna de la clave, por lo que la tabla completa
+    // queda ordenada al agregar sus segmentos en el orden del plan.
+    // La tabla se lee con el alias t; el join (cambios de un incremental) usa otros alias
+    private String buildChunkQuery(ExportChunk chunk, SqlServerExportData.TableInfo tableInfo) {
+        String sql = "SELECT t.* FROM " + buildQuotedTableName(chunk.tableName) + " AS t";
+        if (chunk.joinClause != null) {
+            sql += " " + chunk.joinClause;
+        }
+        if (chunk.whereClause != null) {
+            sql += " WHERE " + chunk.whereClause;
+        }
+        if (!tableInfo.getSortOrder().isEmpty()) {
+            List<String> orderColumns = new ArrayList<String>();
+            for (String column : tableInfo.getSortOrder()) {
+                orderColumns.add("t.[" + column + "]");
+            }
+            sql += " ORDER BY " + joinStringList(orderColumns, ", ");
+        }
+        return sql;
+    }
 
-        String sql = "SELECT " +
-                "SCHEMA_NAME(f.schema_id) + '.' + f.name as func_name, " +
-                "m.definition " +
-                "FROM sys.objects f " +
-                "INNER JOIN sys.sql_modules m ON f.object_id = m.object_id " +
-                "WHERE f.type IN ('FN', 'IF', 'TF') AND f.is_ms_shipped = 0";
+    private SqlServerBackupIndex.Segment exportChunk(Connection connection, ExportChunk chunk,
+                                                     SqlServerExportData.TableInfo tableInfo,
+                                                     SqlServerBackupWriter backupWriter) throws SQLException, IOException {
+        String sql = buildChunkQuery(chunk, tableInfo);
 
-        Statement stmt = null;
+        PreparedStatement pstmt = null;
         ResultSet rs = null;
+        OutputStream out = null;
 
         try {
-            stmt = connection.createStatement();
-            rs = stmt.executeQuery(sql);
+            pstmt = connection.prepareStatement(sql);
+            for (int i = 0; i < chunk.parameters.size(); i++) {
+                pstmt.setObject(i + 1, chunk.parameters.get(i));
+            }
+            rs = pstmt.executeQuery();
 
-            while (rs.next()) {
-                String funcName = rs.getString("func_name");
-                String definition = rs.getString("definition");
-                exportData.getFunctions().put(funcName, definition);
-                System.out.println("✓ Función exportada: " + funcName);
+            out = new BufferedOutputStream(new FileOutputStream(chunk.partFile), 64 * 1024);
+            return backupWriter.writeSegmentMember(out, tableInfo, rs);
+
+        } finally {
+            if (out != null) out.close();
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
+        }
+    }
+
+    // Escribe un segmento de la tabla actual directamente en el backup (exportación secuencial)
+    private long writeChunk(Connection connection, ExportChunk chunk, SqlServerExportData.TableInfo tableInfo,
+                            SqlServerBackupWriter backupWriter) throws SQLException, IOException {
+        String sql = buildChunkQuery(chunk, tableInfo);
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            pstmt = connection.prepareStatement(sql);
+            for (int i = 0; i < chunk.parameters.size(); i++) {
+                pstmt.setObject(i + 1, chunk.parameters.get(i));
             }
+            rs = pstmt.executeQuery();
+
+            return backupWriter.writeSegment(rs);
+
         } finally {
             if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
+            if (pstmt != null) pstmt.close();
         }
     }
 
-    private void exportViews(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("👁️  Exportando vistas...");
+    // Rango de filas de una tabla que se exporta como un segmento independiente
+    private static class ExportChunk {
+        final String tableName;
+        final String joinClause;
+        final String whereClause;
+        final List<Object> parameters;
+        final long estimatedRows;
+        final File partFile;
+
+        ExportChunk(String tableName, String whereClause, List<Object> parameters, long estimatedRows, File partFile) {
+            this(tableName, null, whereClause, parameters, estimatedRows, partFile);
+        }
 
-        String sql = "SELECT " +
-                "SCHEMA_NAME(v.schema_id) + '.' + v.name as view_name, " +
-                "m.definition " +
-                "FROM sys.views v " +
-                "INNER JOIN sys.sql_modules m ON v.object_id = m.object_id " +
-                "WHERE v.is_ms_shipped = 0";
+        ExportChunk(String tableName, String joinClause, String whereClause, List<Object> parameters,
+                    long estimatedRows, File partFile) {
+            this.tableName = tableName;
+            this.joinClause = joinClause;
+            this.whereClause = whereClause;
+            this.parameters = parameters;
+            this.estimatedRows = estimatedRows;
+            this.partFile = partFile;
+        }
+    }
+
+    // Metadata del backup base de un incremental: se lee del índice sin descomprimir los datos
+    private SqlServerExportData.Metadata readBaseMetadata(String baseFile) throws IOException {
+        if (!new File(baseFile).exists()) {
+            throw new IllegalArgumentException("El backup base no existe: " + baseFile);
+        }
+        SqlServerBackupIndex index = SqlServerBackupIndex.read(baseFile, objectMapper);
+        if (index == null || index.getMetadata() == null) {
+            throw new IllegalArgumentException("El backup base no tiene índice (se requiere formato binary): " + baseFile);
+        }
+        SqlServerExportData.Metadata metadata = index.getMetadata();
+        if (metadata.getBackupId() == null) {
+            throw new IllegalArgumentException("El backup base no registra marcas de cambios (versión anterior): " + baseFile);
+        }
+        return metadata;
+    }
+
+    // Registra el identificador del backup y las marcas desde las que exportará el siguiente
+    // incremental: la versión actual de change tracking (null si la base no lo tiene activo) y
+    // MIN_ACTIVE_ROWVERSION, que deja fuera las transacciones aún abiertas
+    private void captureChangeMarks(Connection connection, SqlServerExportData exportData,
+                                    SqlServerExportData.Metadata baseMetadata) throws SQLException {
+        SqlServerExportData.Metadata metadata = exportData.getMetadata();
+        metadata.setBackupId(UUID.randomUUID().toString());
+        metadata.setBackupType(baseMetadata != null ? "incremental" : "full");
+        if (baseMetadata != null) {
+            metadata.setBaseBackupId(baseMetadata.getBackupId());
+        }
 
         Statement stmt = null;
         ResultSet rs = null;
 
         try {
             stmt = connection.createStatement();
-            rs = stmt.executeQuery(sql);
+            rs = stmt.executeQuery("SELECT CHANGE_TRACKING_CURRENT_VERSION() AS ct_version, " +
+                    "CAST(MIN_ACTIVE_ROWVERSION() AS BIGINT) AS rowversion_mark");
 
-            while (rs.next()) {
-                String viewName = rs.getString("view_name");
-                String definition = rs.getString("definition");
-                exportData.getViews().put(viewName, definition);
-                System.out.println("✓ Vista exportada: " + viewName);
+            if (rs.next()) {
+                long ctVersion = rs.getLong("ct_version");
+                metadata.setChangeTrackingVersion(rs.wasNull() ? null : ctVersion);
+                metadata.setRowversionMark(rs.getLong("rowversion_mark"));
             }
         } finally {
             if (rs != null) rs.close();
@@ -839,85 +1938,1485 @@ public class SqlServerMigrationService {
         }
     }
 
-    private void exportTriggers(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("⚡ Exportando triggers...");
+    // Decide cómo exportar cada tabla del incremental. Con change tracking se exportan las filas
+    // insertadas o actualizadas (CHANGETABLE unida a la tabla por la clave primaria, de modo que
+    // el servidor recorre sólo las claves cambiadas) y las claves de las borradas; con una columna rowversion, las
+    // filas modificadas desde la marca del backup base (los borrados no se detectan). Las tablas
+    // sin clave primaria o sin ninguno de los dos mecanismos se exportan completas.
+    private Map<String, TableChanges> planIncrementalExport(Connection connection, List<String> tables,
+                                                            SqlServerExportData exportData,
+                                                            SqlServerExportData.Metadata baseMetadata) throws SQLException {
+        Map<String, TableChanges> plan = new HashMap<String, TableChanges>();
+        Map<String, String> modes = new LinkedHashMap<String, String>();
+        List<String> untrackedDeletes = new ArrayList<String>();
 
-        String sql = "SELECT " +
-                "SCHEMA_NAME(t.schema_id) + '.' + OBJECT_NAME(tr.parent_id) + '.' + tr.name as trigger_name, " +
-                "m.definition " +
-                "FROM sys.triggers tr " +
-                "INNER JOIN sys.sql_modules m ON tr.object_id = m.object_id " +
-                "INNER JOIN sys.tables t ON tr.parent_id = t.object_id " +
-                "WHERE tr.is_ms_shipped = 0";
+        for (String fullTableName : tables) {
+            SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(fullTableName);
+            String quotedTableName = buildQuotedTableName(fullTableName);
+            List<String> keyColumns = tableInfo.getPrimaryKey();
+            TableChanges changes = new TableChanges(CHANGES_FULL, null, null, new ArrayList<Object>());
+
+            Long baseVersion = baseMetadata.getChangeTrackingVersion();
+            Long minValidVersion = keyColumns.isEmpty() || baseVersion == null
+                    ? null : getChangeTrackingMinValidVersion(connection, fullTableName);
+            String rowversionColumn = getRowversionColumn(tableInfo);
+
+            if (minValidVersion != null && minValidVersion <= baseVersion) {
+                // Las claves borradas no tienen fila en la tabla: el join las deja fuera. Una clave
+                // borrada y vuelta a insertar se exporta y se carga después de los borrados.
+                List<String> joins = new ArrayList<String>();
+                for (String keyColumn : keyColumns) {
+                    joins.add("ct.[" + keyColumn + "] = t.[" + keyColumn + "]");
+                }
+                String joinClause = "INNER JOIN CHANGETABLE(CHANGES " + quotedTableName + ", ?) AS ct ON " +
+                        joinStringList(joins, " AND ");
+                changes = new TableChanges(CHANGES_TRACKING, joinClause, null,
+                        new ArrayList<Object>(Arrays.asList((Object) baseVersion)));
+
+                SqlServerExportData.DeletedRows deletedRows = exportDeletedKeys(connection, fullTableName, keyColumns, baseVersion);
+                if (!deletedRows.getKeys().isEmpty()) {
+                    exportData.getDeletedRows().put(fullTableName, deletedRows);
+                }
+            } else if (!keyColumns.isEmpty() && rowversionColumn != null && baseMetadata.getRowversionMark() != null) {
+                if (minValidVersion != null) {
+                    System.out.println("⚠️  " + fullTableName + ": la versión de change tracking del backup base ya no es válida, se usa rowversion");
+                }
+                String whereClause = "[" + rowversionColumn + "] >= CAST(CAST(? AS BIGINT) AS BINARY(8))";
+                changes = new TableChanges(CHANGES_ROWVERSION, null, whereClause,
+                        new ArrayList<Object>(Arrays.asList((Object) baseMetadata.getRowversionMark())));
+                System.out.println("ℹ️  " + fullTableName + ": cambios por rowversion [" + rowversionColumn + "], los borrados no se detectan");
+                untrackedDeletes.add(fullTableName);
+            } else if (minValidVersion != null) {
+                System.out.println("⚠️  " + fullTableName + ": la versión de change tracking del backup base ya no es válida, se exporta completa");
+            } else {
+                System.out.println("ℹ️  " + fullTableName + ": sin change tracking ni rowversion con clave primaria, se exporta completa");
+            }
 
-        Statement stmt = null;
+            plan.put(fullTableName, changes);
+            modes.put(fullTableName, changes.mode);
+        }
+
+        exportData.getMetadata().setTableChanges(modes);
+        exportData.getMetadata().setUntrackedDeletes(untrackedDeletes);
+        return plan;
+    }
+
+    // Versión mínima válida de change tracking de la tabla; null si no tiene change tracking
+    private Long getChangeTrackingMinValidVersion(Connection connection, String fullTableName) throws SQLException {
+        PreparedStatement pstmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = connection.createStatement();
-            rs = stmt.executeQuery(sql);
+            pstmt = connection.prepareStatement("SELECT CHANGE_TRACKING_MIN_VALID_VERSION(OBJECT_ID(?)) AS min_valid_version");
+            pstmt.setString(1, buildQuotedTableName(fullTableName));
+            rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                long version = rs.getLong("min_valid_version");
+                return rs.wasNull() ? null : version;
+            }
+            return null;
+        } finally {
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
+        }
+    }
+
+    private String getRowversionColumn(SqlServerExportData.TableInfo tableInfo) {
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (isRowversionType(column.getDataType().toLowerCase())) {
+                return column.getColumnName();
+            }
+        }
+        return null;
+    }
+
+    // Las columnas rowversion (timestamp es su nombre anterior) las genera el servidor: no se
+    // pueden insertar ni actualizar
+    private static boolean isRowversionType(String dataType) {
+        return "timestamp".equals(dataType) || "rowversion".equals(dataType);
+    }
+
+    // Claves primarias de las filas borradas desde la versión base según change tracking
+    private SqlServerExportData.DeletedRows exportDeletedKeys(Connection connection, String fullTableName,
+                                                              List<String> keyColumns, long baseVersion) throws SQLException {
+        List<String> selectColumns = new ArrayList<String>();
+        for (String keyColumn : keyColumns) {
+            selectColumns.add("ct.[" + keyColumn + "]");
+        }
+        String sql = "SELECT " + joinStringList(selectColumns, ", ") +
+                " FROM CHANGETABLE(CHANGES " + buildQuotedTableName(fullTableName) + ", ?) AS ct" +
+                " WHERE ct.SYS_CHANGE_OPERATION = 'D'";
+
+        SqlServerExportData.DeletedRows deletedRows = new SqlServerExportData.DeletedRows();
+        deletedRows.getColumns().addAll(keyColumns);
+
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+
+        try {
+            pstmt = connection.prepareStatement(sql);
+            pstmt.setLong(1, baseVersion);
+            rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                List<Object> key = new ArrayList<Object>(keyColumns.size());
+                for (int i = 1; i <= keyColumns.size(); i++) {
+                    key.add(toKeyValue(rs.getObject(i)));
+                }
+                deletedRows.getKeys().add(key);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
+        }
+
+        if (!deletedRows.getKeys().isEmpty()) {
+            System.out.println("🗑️  " + fullTableName + ": " + deletedRows.getKeys().size() + " fila(s) borrada(s)");
+        }
+        return deletedRows;
+    }
+
+    // Las claves se guardan en JSON: fechas como texto y binarios en Base64, que
+    // convertValueForColumn vuelve a convertir al aplicar el incremental
+    private Object toKeyValue(Object value) {
+        if (value instanceof java.util.Date) {
+            return value.toString();
+        }
+        if (value instanceof byte[]) {
+            return Base64.getEncoder().encodeToString((byte[]) value);
+        }
+        return value;
+    }
+
+    // Cómo se exportan los cambios de una tabla en un backup incremental
+    private static class TableChanges {
+        final String mode;
+        final String joinClause;
+        final String whereClause;
+        final List<Object> parameters;
+
+        TableChanges(String mode, String joinClause, String whereClause, List<Object> parameters) {
+            this.mode = mode;
+            this.joinClause = joinClause;
+            this.whereClause = whereClause;
+            this.parameters = parameters;
+        }
+    }
+
+    private void exportDatabaseObjects(Connection connection, SqlServerExportData exportData) throws SQLException {
+        exportStoredProcedures(connection, exportData);
+        exportFunctions(connection, exportData);
+        exportViews(connection, exportData);
+        exportTriggers(connection, exportData);
+        exportIndexes(connection, exportData);
+        exportConstraints(connection, exportData);
+    }
+
+    private void exportStoredProcedures(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("🏗️  Exportando stored procedures...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(p.schema_id) + '.' + p.name as proc_name, " +
+                "m.definition " +
+                "FROM sys.procedures p " +
+                "INNER JOIN sys.sql_modules m ON p.object_id = m.object_id " +
+                "WHERE p.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String procName = rs.getString("proc_name");
+                String definition = rs.getString("definition");
+                exportData.getStoredProcedures().put(procName, definition);
+                System.out.println("✓ Stored procedure exportado: " + procName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void exportFunctions(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("🔧 Exportando funciones...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(f.schema_id) + '.' + f.name as func_name, " +
+                "m.definition " +
+                "FROM sys.objects f " +
+                "INNER JOIN sys.sql_modules m ON f.object_id = m.object_id " +
+                "WHERE f.type IN ('FN', 'IF', 'TF') AND f.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String funcName = rs.getString("func_name");
+                String definition = rs.getString("definition");
+                exportData.getFunctions().put(funcName, definition);
+                System.out.println("✓ Función exportada: " + funcName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void exportViews(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("👁️  Exportando vistas...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(v.schema_id) + '.' + v.name as view_name, " +
+                "m.definition " +
+                "FROM sys.views v " +
+                "INNER JOIN sys.sql_modules m ON v.object_id = m.object_id " +
+                "WHERE v.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String viewName = rs.getString("view_name");
+                String definition = rs.getString("definition");
+                exportData.getViews().put(viewName, definition);
+                System.out.println("✓ Vista exportada: " + viewName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void exportTriggers(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("⚡ Exportando triggers...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(t.schema_id) + '.' + OBJECT_NAME(tr.parent_id) + '.' + tr.name as trigger_name, " +
+                "m.definition " +
+                "FROM sys.triggers tr " +
+                "INNER JOIN sys.sql_modules m ON tr.object_id = m.object_id " +
+                "INNER JOIN sys.tables t ON tr.parent_id = t.object_id " +
+                "WHERE tr.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String triggerName = rs.getString("trigger_name");
+                String definition = rs.getString("definition");
+                exportData.getTriggers().put(triggerName, definition);
+                System.out.println("✓ Trigger exportado: " + triggerName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void exportIndexes(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("🔍 Exportando índices...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name + '.' + i.name as index_name, " +
+                "'CREATE ' + " +
+                "CASE WHEN i.is_unique = 1 THEN 'UNIQUE ' ELSE '' END + " +
+                "'INDEX [' + i.name + '] ON [' + SCHEMA_NAME(t.schema_id) + '].[' + t.name + '] (' + " +
+                "STUFF(( " +
+                "SELECT ', [' + c.name + ']' + " +
+                "CASE WHEN ic.is_descending_key = 1 THEN ' DESC' ELSE ' ASC' END " +
+                "FROM sys.index_columns ic " +
+                "INNER JOIN sys.columns c ON ic.object_id = c.object_id AND ic.column_id = c.column_id " +
+                "WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id " +
+                "ORDER BY ic.key_ordinal " +
+                "FOR XML PATH('') " +
+                "), 1, 2, '') + ')' as create_statement " +
+                "FROM sys.indexes i " +
+                "INNER JOIN sys.tables t ON i.object_id = t.object_id " +
+                "WHERE i.type > 0 AND i.is_primary_key = 0 AND i.is_unique_constraint = 0 AND t.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String indexName = rs.getString("index_name");
+                String createStatement = rs.getString("create_statement");
+                exportData.getIndexes().put(indexName, createStatement);
+                System.out.println("✓ Índice exportado: " + indexName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void exportConstraints(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("🔒 Exportando constraints...");
+
+        String sql = "SELECT " +
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name + '.' + cc.name as constraint_name, " +
+                "'ALTER TABLE [' + SCHEMA_NAME(t.schema_id) + '].[' + t.name + '] ADD CONSTRAINT [' + cc.name + '] CHECK ' + cc.definition as create_statement " +
+                "FROM sys.check_constraints cc " +
+                "INNER JOIN sys.tables t ON cc.parent_object_id = t.object_id " +
+                "WHERE t.is_ms_shipped = 0";
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery(sql);
+
+            while (rs.next()) {
+                String constraintName = rs.getString("constraint_name");
+                String createStatement = rs.getString("create_statement");
+                exportData.getConstraints().put(constraintName, createStatement);
+                System.out.println("✓ Constraint exportado: " + constraintName);
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    // Métodos de importación
+
+    private boolean isDatabaseEmpty(Connection connection) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery("SELECT COUNT(*) as table_count FROM sys.tables WHERE is_ms_shipped = 0 " +
+                    "AND name <> '" + SqlServerImportJournal.TABLE_NAME + "'");
+
+            if (rs.next()) {
+                return rs.getInt("table_count") == 0;
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+        return true;
+    }
+
+    private void createSchemas(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("📁 Creando esquemas...");
+
+        Statement stmt = null;
+
+        try {
+            stmt = connection.createStatement();
+            for (SqlServerExportData.SchemaInfo schemaInfo : exportData.getSchemas().values()) {
+                if (!"dbo".equals(schemaInfo.getSchemaName())) {
+                    String sql = "CREATE SCHEMA [" + schemaInfo.getSchemaName() + "]";
+                    try {
+                        stmt.execute(sql);
+                        System.out.println("✓ Esquema creado: " + schemaInfo.getSchemaName());
+                    } catch (SQLException e) {
+                        if (!e.getMessage().contains("already exists")) {
+                            throw e;
+                        }
+                        System.out.println("⚠️  Esquema ya existe: " + schemaInfo.getSchemaName());
+                    }
+                }
+            }
+        } finally {
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    private void createTables(Connection connection, SqlServerExportData exportData) throws SQLException {
+        System.out.println("🏗️  Creando tablas...");
+
+        Statement stmt = null;
+
+        try {
+            stmt = connection.createStatement();
+            for (String tableName : getTableCreationOrder(exportData)) {
+                if (exportData.getTables().containsKey(tableName)) {
+                    SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
+
+                    try {
+                        stmt.execute(tableInfo.getCreateStatement());
+                        System.out.println("✓ Tabla creada: " + tableName);
+                    } catch (SQLException e) {
+                        System.err.println("❌ Error creando tabla " + tableName + ": " + e.getMessage());
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    // En backups antiguos "table_order" aparece después de los datos; como las foreign keys
+    // se crean al final, el orden de creación no es obligatorio y se usa el de "tables"
+    private List<String> getTableCreationOrder(SqlServerExportData exportData) {
+        if (!exportData.getTableOrder().isEmpty()) {
+            return exportData.getTableOrder();
+        }
+        return new ArrayList<String>(exportData.getTables().keySet());
+    }
+
+    // Copia cada tabla del origen al destino en el orden de dependencias. Un hilo lee la tabla
+    // del origen mientras la carga envía al destino los lotes ya leídos (ver SqlServerTablePipe).
+    // Devuelve los registros copiados, incluidos los de una migración anterior.
+    private long copyTableData(Connection sourceConnection, Connection connection, SqlServerExportData exportData,
+                               SqlServerImportJournal journal, SqlServerMigrationOptions options) throws SQLException, IOException {
+        System.out.println("🔀 Copiando datos" + (options.isBulkCopy() ? " con bulk copy" : "") + "...");
+
+        List<String> tables = exportData.getTableOrder();
+        long[] weights = progressWeights(exportData, tables);
+        long totalRecords = 0;
+        for (int t = 0; t < tables.size(); t++) {
+            String tableName = tables.get(t);
+            String unit = SqlServerImportJournal.tableUnit(tableName);
+            if (journal.isCompleted(unit)) {
+                System.out.println("⏭️  Datos ya copiados: " + tableName + " (" + journal.getRowCount(unit) + " registros)");
+                totalRecords += journal.getRowCount(unit);
+                continue;
+            }
+
+            SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
+            ExportChunk chunk = new ExportChunk(tableName, null, new ArrayList<Object>(), tableInfo.getRowCount(), null);
+            SqlServerTablePipe pipe = new SqlServerTablePipe(SqlServerBinaryRowFormat.forTable(tableInfo), PIPE_BATCHES);
+            long rowCount;
+            try {
+                pipe.start(sourceConnection, buildChunkQuery(chunk, tableInfo), chunk.parameters, BATCH_SIZE);
+                rowCount = insertTableData(connection, tableName, exportData, pipe, journal, options);
+            } finally {
+                pipe.close();
+            }
+            journal.markCompleted(connection, unit, rowCount);
+            commitUnit(connection, options);
+            totalRecords += rowCount;
+
+            System.out.println("   ⏱️  Espera del destino por el origen " + formatSeconds(pipe.getLoaderWaitNanos()) +
+                    ", del origen por el destino " + formatSeconds(pipe.getReaderWaitNanos()) + " " +
+                    describeProgress(weights, t + 1));
+        }
+        return totalRecords;
+    }
+
+    private String formatSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+    }
+
+    private void insertData(Connection connection, SqlServerBackupReader backupReader, SqlServerExportData exportData,
+                            SqlServerImportJournal journal, SqlServerMigrationOptions options) throws SQLException, IOException {
+        System.out.println("📥 Insertando datos" + (options.isBulkCopy() ? " con bulk copy" : "") + "...");
+
+        // Las tablas llegan en el orden del archivo; las foreign keys se crean después de los datos.
+        // Las que no están en la estructura (restauración parcial) o ya se cargaron en una
+        // importación anterior se saltan sin deserializarlas. Cada tabla se confirma por separado
+        // (salvo con --commit=database).
+        String tableName;
+        while ((tableName = backupReader.nextTable()) != null) {
+            String unit = SqlServerImportJournal.tableUnit(tableName);
+            if (!exportData.getTables().containsKey(tableName)) {
+                continue;
+            }
+            if (journal.isCompleted(unit)) {
+                System.out.println("⏭️  Datos ya cargados: " + tableName + " (" + journal.getRowCount(unit) + " registros)");
+                continue;
+            }
+            long rowCount = insertTableData(connection, tableName, exportData, backupReader, journal, options);
+            journal.markCompleted(connection, unit, rowCount);
+            commitUnit(connection, options);
+        }
+    }
+
+    // Confirma una unidad de la importación; con --commit=database todo se confirma al final
+    private void commitUnit(Connection connection, SqlServerMigrationOptions options) throws SQLException {
+        if (!options.isDatabaseCommit()) {
+            connection.commit();
+        }
+    }
+
+    // Con --commit=batch confirma lo cargado de la tabla junto con su avance en el journal
+    private void commitBatch(Connection connection, SqlServerImportJournal journal, String tableName,
+                             long rowCount) throws SQLException {
+        journal.markProgress(connection, tableName, rowCount);
+        connection.commit();
+    }
+
+    // Descarta las primeras filas de la fuente (ya confirmadas por una importación anterior)
+    private void skipRows(SqlServerRowSource rowSource, long rowCount) throws IOException {
+        long remaining = rowCount;
+        while (remaining > 0) {
+            List<Object[]> rows = rowSource.readRows((int) Math.min(BATCH_SIZE, remaining));
+            if (rows.isEmpty()) {
+                break;
+            }
+            remaining -= rows.size();
+            SqlServerLobValue.release(rows);
+        }
+    }
+
+    // La carga con TABLOCK en tablas vacías sólo se registra en forma mínima con los modelos
+    // de recuperación SIMPLE y BULK_LOGGED
+    private void checkRecoveryModel(Connection connection) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery("SELECT recovery_model_desc FROM sys.databases WHERE name = DB_NAME()");
+
+            if (rs.next()) {
+                String recoveryModel = rs.getString("recovery_model_desc");
+                if ("FULL".equalsIgnoreCase(recoveryModel)) {
+                    System.out.println("⚠️  Modelo de recuperación FULL: la carga se registra completa en el log. " +
+                            "Usa SIMPLE o BULK_LOGGED durante la restauración para el registro mínimo");
+                } else {
+                    System.out.println("📝 Carga con TABLOCK y registro mínimo (modelo de recuperación " + recoveryModel + ")");
+                }
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    // Espacio usado del log de transacciones del destino después de cargar los datos
+    private void printLogUsage(Connection connection) {
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            rs = stmt.executeQuery("SELECT used_log_space_in_bytes, total_log_size_in_bytes FROM sys.dm_db_log_space_usage");
+
+            if (rs.next()) {
+                System.out.println("📝 Log de transacciones: " + formatFileSize(rs.getLong("used_log_space_in_bytes")) +
+                        " usados de " + formatFileSize(rs.getLong("total_log_size_in_bytes")));
+            }
+        } catch (SQLException e) {
+            // Requiere VIEW DATABASE STATE; es sólo informativo
+        } finally {
+            try {
+                if (rs != null) rs.close();
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                // Ignorar errores al cerrar
+            }
+        }
+    }
+
+    // Al continuar una importación, vacía las tablas cuya carga no llegó a confirmarse
+    // Vacía las tablas que una importación anterior dejó a medias. Las cargadas por lotes
+    // continúan después de las filas confirmadas si la fuente entrega las filas siempre en el
+    // mismo orden (continueBatches); si no, también se vacían y se cargan de nuevo.
+    private void clearPartialTables(Connection connection, SqlServerExportData exportData,
+                                    SqlServerImportJournal journal, boolean continueBatches) throws SQLException {
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = connection.createStatement();
+            for (String tableName : exportData.getTables().keySet()) {
+                if (journal.isCompleted(SqlServerImportJournal.tableUnit(tableName))) {
+                    continue;
+                }
+                if (journal.isCompleted(SqlServerImportJournal.progressUnit(tableName))) {
+                    if (continueBatches) {
+                        // Cargada por lotes: continúa después de las filas confirmadas
+                        continue;
+                    }
+                    journal.markProgress(connection, tableName, 0);
+                }
+                String quotedTableName = buildQuotedTableName(tableName);
+                rs = stmt.executeQuery("SELECT TOP 1 1 FROM " + quotedTableName);
+                boolean hasRows = rs.next();
+                rs.close();
+                rs = null;
+                if (hasRows) {
+                    // Las foreign keys se crean después de los datos, por lo que TRUNCATE es posible
+                    stmt.execute("TRUNCATE TABLE " + quotedTableName);
+                    System.out.println("🧹 Tabla parcialmente cargada vaciada: " + tableName);
+                }
+            }
+        } finally {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        }
+    }
+
+    long insertTableData(Connection connection, String tableName, SqlServerExportData exportData,
+                         SqlServerRowSource rowSource, SqlServerImportJournal journal,
+                         SqlServerMigrationOptions options) throws SQLException, IOException {
+        // Filas ya confirmadas por lotes en una importación anterior: se saltan
+        long committedRows = journal.getRowCount(SqlServerImportJournal.progressUnit(tableName));
+        if (committedRows > 0) {
+            System.out.println("⏭️  " + tableName + ": " + committedRows + " registros ya confirmados");
+            skipRows(rowSource, committedRows);
+        }
+
+        List<Object[]> tableData = rowSource.readRows(unitReadSize(options, 0));
+
+        if (tableData.isEmpty()) {
+            return committedRows;
+        }
+
+        String quotedTableName = buildQuotedTableName(tableName);
+        SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
+
+        if (options.isBulkCopy()) {
+            if (SqlServerBulkRecord.isSupported(tableInfo)) {
+                return bulkCopyTableData(connection, tableName, tableInfo, tableData, rowSource, journal,
+                        committedRows, options);
+            }
+            System.out.println("ℹ️  " + tableName + " tiene tipos no soportados por bulk copy, se usa INSERT");
+        }
+
+        // Verificar si tiene columna IDENTITY
+        boolean hasIdentity = false;
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (column.isIdentity()) {
+                hasIdentity = true;
+                break;
+            }
+        }
+
+        Statement stmt = null;
+        PreparedStatement pstmt = null;
+        boolean identityInsert = false;
+
+        try {
+            stmt = connection.createStatement();
+
+            if (hasIdentity) {
+                stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " ON");
+                identityInsert = true;
+            }
+
+            List<String> columns = rowSource.getColumns();
+            int[] insertedColumns = columnPositions(columns, getRowversionColumns(tableInfo));
+
+            List<String> quotedColumns = new ArrayList<String>();
+            for (int position : insertedColumns) {
+                quotedColumns.add("[" + columns.get(position) + "]");
+            }
+            String columnList = joinStringList(quotedColumns, ", ");
+
+            List<String> placeholderList = new ArrayList<String>();
+            for (int i = 0; i < insertedColumns.length; i++) {
+                placeholderList.add("?");
+            }
+            String placeholders = joinStringList(placeholderList, ", ");
+
+            String insertSql = "INSERT INTO " + quotedTableName + " (" + columnList + ") VALUES (" + placeholders + ")";
+
+            pstmt = connection.prepareStatement(insertSql);
+
+            // Obtener información de tipos de columnas para conversión correcta
+            Map<String, String> columnTypes = getColumnTypes(connection, tableInfo);
+
+            long count = committedRows;
+            long lastCommit = committedRows;
+
+            // Cada lote leído del archivo se envía como un batch
+            while (!tableData.isEmpty()) {
+                try {
+                    bindBatch(pstmt, tableData, columns, insertedColumns, columnTypes);
+                } finally {
+                    SqlServerLobValue.release(tableData);
+                }
+                count += tableData.size();
+
+                if (options.isBatchCommit() && count - lastCommit >= options.getBulkBatchSize()) {
+                    commitBatch(connection, journal, tableName, count);
+                    lastCommit = count;
+                }
+
+                tableData = rowSource.readRows(unitReadSize(options, count - lastCommit));
+            }
+
+            if (identityInsert) {
+                identityInsert = false;
+                stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " OFF");
+            }
+
+            System.out.println("✓ Datos insertados: " + tableName + " (" + count + " registros" +
+                    (isSortedByPrimaryKey(tableInfo) ? ", en orden de la clave" : "") + ")");
+            return count;
+
+        } finally {
+            if (pstmt != null) pstmt.close();
+            if (stmt != null) {
+                try {
+                    restoreIdentityInsert(stmt, quotedTableName, identityInsert);
+                } finally {
+                    stmt.close();
+                }
+            }
+        }
+    }
+
+    // IDENTITY_INSERT es una opción de la sesión que el rollback no deshace. Si la carga falló
+    // con la opción activa se desactiva aquí: la conexión vuelve al pool y la siguiente tabla
+    // del mismo hilo no podría activarla para sí. Un error al desactivarla no oculta el original.
+    private void restoreIdentityInsert(Statement stmt, String quotedTableName, boolean identityInsert) {
+        if (!identityInsert) {
+            return;
+        }
+        try {
+            stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " OFF");
+        } catch (SQLException e) {
+            System.err.println("⚠️  No se pudo desactivar IDENTITY_INSERT en " + quotedTableName + ": " + e.getMessage());
+        }
+    }
+
+    // Filas a leer en el próximo lote. Con --commit=batch no se pasa del resto de la unidad
+    // actual (uncommittedRows ya cargadas), para confirmar cada --bulk-batch-size filas aunque
+    // sea menor que BATCH_SIZE.
+    private int unitReadSize(SqlServerMigrationOptions options, long uncommittedRows) {
+        if (!options.isBatchCommit()) {
+            return BATCH_SIZE;
+        }
+        return (int) Math.max(1, Math.min(BATCH_SIZE, options.getBulkBatchSize() - uncommittedRows));
+    }
+
+    // Carga la tabla con el protocolo de bulk load (SQLServerBulkCopy) dentro de la transacción
+    // actual. Con --commit=batch cada lote es una carga independiente que se confirma al terminar.
+    private long bulkCopyTableData(Connection connection, String tableName, SqlServerExportData.TableInfo tableInfo,
+                                   List<Object[]> firstBatch, SqlServerRowSource rowSource,
+                                   SqlServerImportJournal journal, long committedRows,
+                                   SqlServerMigrationOptions options) throws SQLException, IOException {
+        List<String> columns = rowSource.getColumns();
+
+        Set<String> skippedColumns = getRowversionColumns(tableInfo);
+        if (!options.isKeepIdentity()) {
+            // Sin KeepIdentity el servidor genera los valores: no mapear la columna IDENTITY
+            for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+                if (column.isIdentity()) {
+                    skippedColumns.add(column.getColumnName());
+                }
+            }
+        }
+
+        SQLServerBulkCopyOptions copyOptions = new SQLServerBulkCopyOptions();
+        copyOptions.setBatchSize(options.getBulkBatchSize());
+        copyOptions.setBulkCopyTimeout(0);
+        // TABLOCK sobre una tabla vacía permite al servidor registrar la carga en forma mínima
+        copyOptions.setTableLock(options.isTableLock() || options.isMinimalLogging());
+        copyOptions.setKeepIdentity(options.isKeepIdentity());
+        copyOptions.setCheckConstraints(options.isCheckConstraints());
+        copyOptions.setKeepNulls(true);
+        copyOptions.setUseInternalTransaction(false);
+
+        long count = committedRows;
+        List<Object[]> batch = firstBatch;
+        while (!batch.isEmpty()) {
+            SqlServerRowSource source = options.isBatchCommit()
+                    ? new RowWindow(rowSource, options.getBulkBatchSize() - batch.size())
+                    : rowSource;
+            SqlServerBulkRecord bulkRecord = new SqlServerBulkRecord(tableInfo, columns, batch, source, BATCH_SIZE) {
+                @Override
+                protected Object convertValue(Object value, String columnType) {
+                    return convertValueForColumn(value, columnType);
+                }
+            };
+
+            SQLServerBulkCopy bulkCopy = null;
+            try {
+                bulkCopy = new SQLServerBulkCopy(connection);
+                bulkCopy.setDestinationTableName(buildQuotedTableName(tableName));
+                bulkCopy.setBulkCopyOptions(copyOptions);
+                for (int i = 0; i < columns.size(); i++) {
+                    if (!skippedColumns.contains(columns.get(i))) {
+                        bulkCopy.addColumnMapping(i + 1, columns.get(i));
+                    }
+                }
+                bulkCopy.writeToServer(bulkRecord);
+            } finally {
+                bulkRecord.release();
+                if (bulkCopy != null) bulkCopy.close();
+            }
+            count += bulkRecord.getRowCount();
+
+            if (!options.isBatchCommit()) {
+                break;
+            }
+            commitBatch(connection, journal, tableName, count);
+            batch = rowSource.readRows(unitReadSize(options, 0));
+        }
+
+        System.out.println("✓ Datos insertados: " + tableName + " (" + count + " registros" +
+                (isSortedByPrimaryKey(tableInfo) ? ", en orden de la clave" : "") + ")");
+        return count;
+    }
+
+    // Los datos de un backup exportado con --ordered vienen en el orden de la clave primaria, que
+    // es el índice clustered de la tabla creada en el destino: las filas se agregan al final del
+    // índice, sin page splits
+    private boolean isSortedByPrimaryKey(SqlServerExportData.TableInfo tableInfo) {
+        return !tableInfo.getPrimaryKey().isEmpty() && tableInfo.getPrimaryKey().equals(tableInfo.getSortOrder());
+    }
+
+    // Limita una fuente de filas a un número de filas, para cargarla por lotes
+    private static class RowWindow implements SqlServerRowSource {
+        private final SqlServerRowSource rowSource;
+        private long remaining;
+
+        RowWindow(SqlServerRowSource rowSource, long maxRows) {
+            this.rowSource = rowSource;
+            this.remaining = Math.max(0, maxRows);
+        }
+
+        @Override
+        public List<Object[]> readRows(int maxRows) throws IOException {
+            if (remaining == 0) {
+                return new ArrayList<Object[]>();
+            }
+            List<Object[]> rows = rowSource.readRows((int) Math.min(maxRows, remaining));
+            remaining -= rows.size();
+            return rows;
+        }
+
+        @Override
+        public List<String> getColumns() {
+            return rowSource.getColumns();
+        }
+    }
+
+    // Carga varias tablas a la vez, cada hilo con su propia conexión y su propia transacción.
+    // Una tabla empieza a cargarse cuando sus datos están disponibles y sus tablas referenciadas
+    // (capas anteriores del grafo de foreign keys) ya fueron confirmadas. Con índice cada hilo
+    // lee los segmentos de su tabla directamente del backup; sin índice (formato 1 o backups
+    // anteriores) un hilo recorre el backup y deja los datos de cada tabla en un segmento temporal.
+    private boolean insertDataParallel(final SqlServerConnectionPool pool, final SqlServerBackupReader backupReader,
+                                       final SqlServerBackupIndex index, final SqlServerExportData exportData,
+                                       final String backupFile, final SqlServerImportJournal journal,
+                                       final SqlServerMigrationOptions options) throws Exception {
+        int threads = options.getImportThreads();
+        System.out.println("📥 Insertando datos con " + threads + " hilos" + (options.isBulkCopy() ? " y bulk copy" : "") +
+                (index != null ? ", leyendo los segmentos del backup" : "") + "...");
+
+        List<List<String>> layers = buildDependencyLayers(exportData);
+        final Map<String, Set<String>> parents = new HashMap<String, Set<String>>();
+        List<String> scheduleOrder = new ArrayList<String>();
+        Set<String> previousLayers = new HashSet<String>();
+        // Tablas ya cargadas en una importación anterior: cuentan como confirmadas
+        final Set<String> pendingTables = new HashSet<String>();
+        Set<String> committed = new HashSet<String>();
+        for (int i = 0; i < layers.size(); i++) {
+            System.out.println("🔗 Capa " + (i + 1) + ": " + joinStringList(layers.get(i), ", "));
+            for (String table : layers.get(i)) {
+                Set<String> tableParents = new HashSet<String>(getReferencedTables(exportData.getTables().get(table)));
+                tableParents.retainAll(previousLayers);
+                parents.put(table, tableParents);
+                if (journal.isCompleted(SqlServerImportJournal.tableUnit(table))) {
+                    committed.add(table);
+                } else {
+                    scheduleOrder.add(table);
+                    pendingTables.add(table);
+                }
+            }
+            previousLayers.addAll(layers.get(i));
+        }
+        if (!committed.isEmpty()) {
+            System.out.println("⏭️  Tablas ya cargadas: " + committed.size());
+        }
+
+        final File workDir = new File(backupFile + ".import");
+        final BlockingQueue<ImportEvent> events = new LinkedBlockingQueue<ImportEvent>();
+        final Map<String, File> spoolFiles = new ConcurrentHashMap<String, File>();
+        final Map<String, SqlServerBinaryRowFormat> rowFormats = new ConcurrentHashMap<String, SqlServerBinaryRowFormat>();
+        final Map<String, List<String>> spoolColumns = new ConcurrentHashMap<String, List<String>>();
+        final SqlServerCompressionCodec codec = backupReader.getCodec();
+        final int compressionThreads = options.getCompressionThreads();
+        final ExecutorService blockExecutor = index != null && compressionThreads > 1
+                ? Executors.newFixedThreadPool(compressionThreads) : null;
+        boolean spoolFinished = index != null;
+
+        if (index != null) {
+            // Los objetos van al final del archivo; el lector no tiene tablas que recorrer
+            while (backupReader.nextTable() != null) {
+                backupReader.skipTable();
+            }
+        } else {
+            if (!workDir.isDirectory() && !workDir.mkdirs()) {
+                throw new IOException("No se pudo crear el directorio temporal: " + workDir);
+            }
+            Thread spoolThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        spoolTableData(backupReader, pendingTables, workDir, spoolFiles,
+                                rowFormats, spoolColumns, events);
+                        events.add(ImportEvent.spoolFinished());
+                    } catch (Exception e) {
+                        events.add(ImportEvent.failed(null, e));
+                    }
+                }
+            }, "backup-spool");
+            spoolThread.setDaemon(true);
+            spoolThread.start();
+        }
+
+        final List<Connection> workerConnections = Collections.synchronizedList(new ArrayList<Connection>());
+        final ThreadLocal<Connection> workerConnection = new ThreadLocal<Connection>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        Set<String> spooled = new HashSet<String>();
+        Set<String> started = new HashSet<String>();
+        Set<String> failed = new HashSet<String>();
+        int running = 0;
+        int total = scheduleOrder.size() + committed.size();
+
+        try {
+            while (committed.size() + failed.size() < total || running > 0) {
+                for (String table : scheduleOrder) {
+                    if (started.contains(table) || failed.contains(table)) {
+                        continue;
+                    }
+
+                    // No cargar tablas cuyas referencias fallaron
+                    String failedParent = null;
+                    for (String parent : parents.get(table)) {
+                        if (failed.contains(parent)) {
+                            failedParent = parent;
+                            break;
+                        }
+                    }
+                    if (failedParent != null) {
+                        failed.add(table);
+                        System.err.println("⏭️  Tabla omitida: " + table + " (depende de " + failedParent + ")");
+                        continue;
+                    }
+
+                    boolean dataReady = spooled.contains(table) || spoolFinished;
+                    if (running < threads && dataReady && committed.containsAll(parents.get(table))) {
+                        started.add(table);
+                        running++;
+                        final String tableName = table;
+                        final File spoolFile = spoolFiles.get(table);
+                        final SqlServerBinaryRowFormat rowFormat = rowFormats.get(table);
+                        final List<String> columns = spoolColumns.get(table);
+                        executor.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                long startTime = System.currentTimeMillis();
+                                try {
+                                    Connection workerConn = workerConnection.get();
+                                    if (workerConn == null) {
+                                        workerConn = pool.borrow();
+                                        workerConn.setAutoCommit(false);
+                                        workerConnections.add(workerConn);
+                                        workerConnection.set(workerConn);
+                                    }
+                                    SqlServerSegmentReader segmentReader;
+                                    if (index != null) {
+                                        SqlServerBackupIndex.TableEntry entry = index.getTable(tableName);
+                                        segmentReader = entry == null ? null : SqlServerSegmentReader.openTable(
+                                                backupFile, entry, codec, blockExecutor,
+                                                SqlServerMemoryBudget.getMaxPendingBlocks(compressionThreads * 2),
+                                                objectMapper, SqlServerBinaryRowFormat.forTable(
+                                                        exportData.getTables().get(tableName)));
+                                    } else {
+                                        segmentReader = spoolFile == null ? null
+                                                : SqlServerSegmentReader.open(spoolFile, objectMapper, rowFormat, columns);
+                                    }
+                                    long rowCount = loadTableSegments(workerConn, tableName, segmentReader, spoolFile,
+                                            exportData, journal, options);
+                                    events.add(ImportEvent.loaded(tableName, rowCount, System.currentTimeMillis() - startTime));
+                                } catch (Exception e) {
+                                    events.add(ImportEvent.failed(tableName, e));
+                                }
+                            }
+                        });
+                    }
+                }
+
+                if (committed.size() + failed.size() >= total && running == 0) {
+                    break;
+                }
+
+                ImportEvent event = events.take();
+                if (event.kind == ImportEvent.SPOOLED) {
+                    spooled.add(event.tableName);
+                } else if (event.kind == ImportEvent.SPOOL_FINISHED) {
+                    spoolFinished = true;
+                } else if (event.kind == ImportEvent.LOADED) {
+                    running--;
+                    committed.add(event.tableName);
+                    System.out.println("✓ [" + (committed.size() + failed.size()) + "/" + total + "] " +
+                            event.tableName + " confirmada (" + event.rowCount + " registros, " +
+                            String.format(Locale.ROOT, "%.1f", event.elapsedMillis / 1000.0) + " s)");
+                } else if (event.tableName == null) {
+                    // Error leyendo el backup: no llegarán más datos
+                    throw event.error;
+                } else {
+                    running--;
+                    failed.add(event.tableName);
+                    System.err.println("❌ [" + (committed.size() + failed.size()) + "/" + total + "] " +
+                            event.tableName + ": " + event.error.getMessage());
+                }
+            }
+
+            // Esperar a que el lector termine para contar con los objetos del final del archivo
+            while (!spoolFinished) {
+                ImportEvent event = events.take();
+                if (event.kind == ImportEvent.SPOOL_FINISHED) {
+                    spoolFinished = true;
+                } else if (event.kind == ImportEvent.FAILED && event.tableName == null) {
+                    throw event.error;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            if (blockExecutor != null) {
+                blockExecutor.shutdownNow();
+            }
+            for (Connection workerConn : workerConnections) {
+                pool.release(workerConn);
+            }
+            for (File spoolFile : spoolFiles.values()) {
+                Files.deleteIfExists(spoolFile.toPath());
+            }
+            Files.deleteIfExists(workDir.toPath());
+        }
+
+        System.out.println("📊 Tablas cargadas: " + committed.size() + "/" + total +
+                (failed.isEmpty() ? "" : " (" + failed.size() + " con error u omitidas)"));
+        return failed.isEmpty();
+    }
+
+    // Copia los datos de cada tabla del backup a un segmento temporal comprimido
+    private void spoolTableData(SqlServerBackupReader backupReader, Set<String> tables, File workDir,
+                                Map<String, File> spoolFiles, Map<String, SqlServerBinaryRowFormat> rowFormats,
+                                Map<String, List<String>> spoolColumns, BlockingQueue<ImportEvent> events) throws IOException {
+        int index = 0;
+        String tableName;
+        while ((tableName = backupReader.nextTable()) != null) {
+            if (!tables.contains(tableName)) {
+                // Tabla no pedida en una restauración parcial
+                continue;
+            }
+            File spoolFile = new File(workDir, String.format("table_%05d.gz", index++));
+
+            OutputStream out = null;
+            try {
+                GzipParameters parameters = new GzipParameters();
+                parameters.setCompressionLevel(Deflater.BEST_SPEED);
+                out = new GzipCompressorOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(spoolFile), 64 * 1024), parameters);
+                backupReader.copyTable(out);
+            } finally {
+                if (out != null) out.close();
+            }
+
+            if (backupReader.getRowFormat() != null) {
+                rowFormats.put(tableName, backupReader.getRowFormat());
+            } else {
+                spoolColumns.put(tableName, new ArrayList<String>(backupReader.getColumns()));
+            }
+            spoolFiles.put(tableName, spoolFile);
+            events.add(ImportEvent.spooled(tableName));
+        }
+    }
+
+    // Carga la tabla desde sus segmentos (del backup o del segmento temporal spoolFile, que se
+    // borra al terminar) y la confirma junto con su entrada del journal
+    private long loadTableSegments(Connection connection, String tableName, SqlServerSegmentReader segmentReader,
+                                   File spoolFile, SqlServerExportData exportData, SqlServerImportJournal journal,
+                                   SqlServerMigrationOptions options) throws Exception {
+        if (segmentReader == null) {
+            // La tabla no tiene sección de datos en el backup
+            journal.markCompleted(connection, SqlServerImportJournal.tableUnit(tableName), 0);
+            connection.commit();
+            return 0;
+        }
+
+        try {
+            long rowCount = insertTableData(connection, tableName, exportData, segmentReader, journal, options);
+            journal.markCompleted(connection, SqlServerImportJournal.tableUnit(tableName), rowCount);
+            connection.commit();
+            return rowCount;
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            segmentReader.close();
+            if (spoolFile != null) {
+                Files.deleteIfExists(spoolFile.toPath());
+            }
+        }
+    }
+
+    // Traduce los nombres pedidos con --tables a los del backup (sin distinguir mayúsculas;
+    // sin esquema se asume dbo)
+    private Set<String> resolveTableNames(List<String> requested, Collection<String> available) {
+        Map<String, String> byLowerName = new HashMap<String, String>();
+        for (String tableName : available) {
+            byLowerName.put(tableName.toLowerCase(), tableName);
+        }
+
+        Set<String> resolved = new LinkedHashSet<String>();
+        for (String tableName : requested) {
+            String fullName = tableName.contains(".") ? tableName : "dbo." + tableName;
+            String match = byLowerName.get(fullName.replace("[", "").replace("]", "").toLowerCase());
+            if (match == null) {
+                throw new IllegalArgumentException("La tabla no está en el backup: " + tableName);
+            }
+            resolved.add(match);
+        }
+        return resolved;
+    }
+
+    // Rechaza antes de leer datos las columnas que el formato binario no puede representar
+    private void checkBinaryColumnTypes(SqlServerExportData exportData, String hint) {
+        List<String> unsupported = new ArrayList<String>();
+        for (String tableName : exportData.getTableOrder()) {
+            for (String column : SqlServerBinaryRowFormat.findUnsupportedColumns(exportData.getTables().get(tableName))) {
+                unsupported.add(tableName + "." + column);
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("Columnas con tipos no soportados en el formato binario: " +
+                    joinStringList(unsupported, ", ") + hint);
+        }
+    }
+
+    // Deja en exportData sólo las tablas indicadas, sus esquemas y sus índices, constraints
+    // y triggers. Los stored procedures, funciones y vistas no se restauran parcialmente.
+    private void restrictToTables(SqlServerExportData exportData, Set<String> tables) {
+        exportData.getTables().keySet().retainAll(tables);
+        exportData.getTableOrder().retainAll(tables);
+
+        Set<String> schemas = new HashSet<String>();
+        for (SqlServerExportData.TableInfo tableInfo : exportData.getTables().values()) {
+            schemas.add(tableInfo.getSchemaName());
+        }
+        exportData.getSchemas().keySet().retainAll(schemas);
+
+        retainTableObjects(exportData.getIndexes(), tables);
+        retainTableObjects(exportData.getConstraints(), tables);
+        retainTableObjects(exportData.getTriggers(), tables);
+        exportData.getStoredProcedures().clear();
+        exportData.getFunctions().clear();
+        exportData.getViews().clear();
+    }
+
+    // Los objetos de tabla se guardan como "esquema.tabla.nombre"
+    private void retainTableObjects(Map<String, String> objects, Set<String> tables) {
+        Iterator<String> names = objects.keySet().iterator();
+        while (names.hasNext()) {
+            String name = names.next();
+            int separator = name.lastIndexOf('.');
+            if (separator < 0 || !tables.contains(name.substring(0, separator))) {
+                names.remove();
+            }
+        }
+    }
+
+    // Avisa cuando una tabla restaurada referencia una tabla que no se restaura y que no
+    // existe en el destino: su foreign key no se podrá crear
+    private void warnMissingParentTables(Connection connection, SqlServerExportData exportData,
+                                         Set<String> tables) throws SQLException {
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = connection.prepareStatement("SELECT OBJECT_ID(?, 'U')");
+            for (String tableName : tables) {
+                for (String parent : getReferencedTables(exportData.getTables().get(tableName))) {
+                    if (tables.contains(parent)) {
+                        continue;
+                    }
+                    pstmt.setString(1, buildQuotedTableName(parent));
+                    ResultSet rs = pstmt.executeQuery();
+                    try {
+                        if (!rs.next() || rs.getObject(1) == null) {
+                            System.out.println("⚠️  " + tableName + " referencia a " + parent +
+                                    ", que no existe en el destino: su foreign key no se podrá crear");
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                }
+            }
+        } finally {
+            if (pstmt != null) pstmt.close();
+        }
+    }
+
+    private Set<String> getReferencedTables(SqlServerExportData.TableInfo tableInfo) {
+        Set<String> referenced = new HashSet<String>();
+        String tableName = tableInfo.getSchemaName() + "." + tableInfo.getTableName();
+        for (SqlServerExportData.ForeignKeyInfo fkInfo : tableInfo.getForeignKeys()) {
+            String referencedTable = fkInfo.getReferencedSchema() + "." + fkInfo.getReferencedTable();
+            if (!referencedTable.equals(tableName)) {
+                referenced.add(referencedTable);
+            }
+        }
+        return referenced;
+    }
+
+    // Agrupa las tablas en capas: cada tabla sólo referencia tablas de capas anteriores.
+    // Las tablas con dependencias circulares quedan juntas en la última capa.
+    List<List<String>> buildDependencyLayers(SqlServerExportData exportData) {
+        Map<String, Set<String>> pending = new HashMap<String, Set<String>>();
+        for (String table : getTableCreationOrder(exportData)) {
+            SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(table);
+            if (tableInfo != null) {
+                Set<String> referenced = getReferencedTables(tableInfo);
+                referenced.retainAll(exportData.getTables().keySet());
+                pending.put(table, referenced);
+            }
+        }
+
+        List<List<String>> layers = new ArrayList<List<String>>();
+        Set<String> placed = new HashSet<String>();
+        while (!pending.isEmpty()) {
+            List<String> layer = new ArrayList<String>();
+            for (Map.Entry<String, Set<String>> entry : pending.entrySet()) {
+                if (placed.containsAll(entry.getValue())) {
+                    layer.add(entry.getKey());
+                }
+            }
+            if (layer.isEmpty()) {
+                // Dependencia circular: cargar el resto en una última capa
+                layer.addAll(pending.keySet());
+            }
+            Collections.sort(layer);
+            for (String table : layer) {
+                pending.remove(table);
+            }
+            placed.addAll(layer);
+            layers.add(layer);
+        }
+        return layers;
+    }
+
+    // Metadata de los incrementales a aplicar sobre el backup completo. Cada uno debe haberse
+    // generado con --since sobre el anterior de la cadena (el primero, sobre el backup completo).
+    // Se advierte de las tablas restauradas (todas, o las de selectedTables) cuyos borrados no
+    // están en el incremental.
+    private List<SqlServerExportData.Metadata> readIncrementalChain(String backupFile, SqlServerBackupIndex index,
+                                                                    List<String> incrementalFiles,
+                                                                    Set<String> selectedTables) throws IOException {
+        List<SqlServerExportData.Metadata> chain = new ArrayList<SqlServerExportData.Metadata>();
+        if (incrementalFiles.isEmpty()) {
+            return chain;
+        }
+        if (index == null || index.getMetadata() == null || index.getMetadata().getBackupId() == null) {
+            throw new IllegalArgumentException("El backup no admite incrementales (se requiere formato binary con marcas de cambios): " +
+                    backupFile);
+        }
+
+        String previousId = index.getMetadata().getBackupId();
+        String previousFile = backupFile;
+        for (String incrementalFile : incrementalFiles) {
+            SqlServerBackupIndex incrementalIndex = SqlServerBackupIndex.read(incrementalFile, objectMapper);
+            SqlServerExportData.Metadata metadata = incrementalIndex != null ? incrementalIndex.getMetadata() : null;
+            if (metadata == null || !"incremental".equals(metadata.getBackupType())) {
+                throw new IllegalArgumentException("No es un backup incremental: " + incrementalFile);
+            }
+            if (!previousId.equals(metadata.getBaseBackupId())) {
+                throw new IllegalArgumentException("El incremental " + incrementalFile + " no se generó sobre " +
+                        previousFile + ": revisa el orden de --incrementals");
+            }
+            List<String> untrackedDeletes = getUntrackedDeletes(metadata);
+            if (selectedTables != null) {
+                untrackedDeletes.retainAll(selectedTables);
+            }
+            if (!untrackedDeletes.isEmpty()) {
+                System.err.println("⚠️  " + incrementalFile + " no registra las filas borradas de " +
+                        joinStringList(untrackedDeletes, ", ") + " (cambios por rowversion): " +
+                        "las borradas en el origen seguirán en el destino");
+            }
+            chain.add(metadata);
+            previousId = metadata.getBackupId();
+            previousFile = incrementalFile;
+        }
+        return chain;
+    }
 
-            while (rs.next()) {
-                String triggerName = rs.getString("trigger_name");
-                String definition = rs.getString("definition");
-                exportData.getTriggers().put(triggerName, definition);
-                System.out.println("✓ Trigger exportado: " + triggerName);
+    // Tablas del incremental cuyos borrados no se registraron. Los incrementales anteriores a
+    // untracked_deletes se reconocen por el modo de cada tabla.
+    private List<String> getUntrackedDeletes(SqlServerExportData.Metadata metadata) {
+        if (metadata.getUntrackedDeletes() != null) {
+            return new ArrayList<String>(metadata.getUntrackedDeletes());
+        }
+        List<String> tables = new ArrayList<String>();
+        if (metadata.getTableChanges() != null) {
+            for (Map.Entry<String, String> entry : metadata.getTableChanges().entrySet()) {
+                if (CHANGES_ROWVERSION.equals(entry.getValue())) {
+                    tables.add(entry.getKey());
+                }
             }
-        } finally {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
         }
+        return tables;
     }
 
-    private void exportIndexes(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("🔍 Exportando índices...");
+    // Aplica un backup incremental en una transacción, en tres pasos. Las filas de cada tabla se
+    // cargan en una tabla temporal propia. Luego se borran, de las tablas hijas a las padres, las
+    // filas eliminadas en el origen: las claves registradas por change tracking y, en las tablas
+    // exportadas completas, las filas que no están en el incremental. Por último se combinan con
+    // MERGE, de las tablas padres a las hijas (las existentes se actualizan, sin borrarlas, para
+    // no afectar a las foreign keys que las referencian).
+    //
+    // Ningún orden sirve para todos los casos: una fila hija que pasó de una fila padre borrada a
+    // otra sigue apuntando a la borrada hasta el MERGE de su tabla. Por eso las foreign keys que
+    // el orden no garantiza se desactivan mientras se aplican los cambios y se vuelven a validar
+    // al final (ver disableForeignKeys).
+    void applyIncremental(Connection connection, String incrementalFile, SqlServerExportData.Metadata metadata,
+                                  Set<String> selectedTables) throws Exception {
+        Map<String, String> tableChanges = metadata.getTableChanges() != null
+                ? metadata.getTableChanges() : new HashMap<String, String>();
+        Map<String, String> modes = new HashMap<String, String>();
+        Map<String, String> stages = new LinkedHashMap<String, String>();
+        Map<String, Long> stagedRows = new HashMap<String, Long>();
+        Set<String> createdTables = new LinkedHashSet<String>();
+
+        SqlServerBackupReader reader = new SqlServerBackupReader(incrementalFile, objectMapper);
+        try {
+            SqlServerExportData incremental = reader.readHeader();
 
-        String sql = "SELECT " +
-                "SCHEMA_NAME(t.schema_id) + '.' + t.name + '.' + i.name as index_name, " +
-                "'CREATE ' + " +
-                "CASE WHEN i.is_unique = 1 THEN 'UNIQUE ' ELSE '' END + " +
-                "'INDEX [' + i.name + '] ON [' + SCHEMA_NAME(t.schema_id) + '].[' + t.name + '] (' + " +
-                "STUFF(( " +
-                "SELECT ', [' + c.name + ']' + " +
-                "CASE WHEN ic.is_descending_key = 1 THEN ' DESC' ELSE ' ASC' END " +
-                "FROM sys.index_columns ic " +
-                "INNER JOIN sys.columns c ON ic.object_id = c.object_id AND ic.column_id = c.column_id " +
-                "WHERE ic.object_id = i.object_id AND ic.index_id = i.index_id " +
-                "ORDER BY ic.key_ordinal " +
-                "FOR XML PATH('') " +
-                "), 1, 2, '') + ')' as create_statement " +
-                "FROM sys.indexes i " +
-                "INNER JOIN sys.tables t ON i.object_id = t.object_id " +
-                "WHERE i.type > 0 AND i.is_primary_key = 0 AND i.is_unique_constraint = 0 AND t.is_ms_shipped = 0";
+            String tableName;
+            while ((tableName = reader.nextTable()) != null) {
+                if (selectedTables != null && !selectedTables.contains(tableName)) {
+                    continue;
+                }
+                SqlServerExportData.TableInfo tableInfo = incremental.getTables().get(tableName);
+                String mode = tableChanges.containsKey(tableName) ? tableChanges.get(tableName) : CHANGES_FULL;
 
-        Statement stmt = null;
-        ResultSet rs = null;
+                if (!tableExists(connection, tableName)) {
+                    // Tabla creada en el origen después del backup base
+                    Statement stmt = connection.createStatement();
+                    try {
+                        stmt.execute(tableInfo.getCreateStatement());
+                    } finally {
+                        stmt.close();
+                    }
+                    System.out.println("✓ Tabla creada: " + tableName);
+                    createdTables.add(tableName);
+                    mode = CHANGES_FULL;
+                }
 
-        try {
-            stmt = connection.createStatement();
-            rs = stmt.executeQuery(sql);
+                String stageName = "#incr_stage_" + stages.size();
+                stages.put(tableName, stageName);
+                modes.put(tableName, mode);
+                stagedRows.put(tableName, stageTableChanges(connection, stageName, tableInfo, reader));
+            }
 
-            while (rs.next()) {
-                String indexName = rs.getString("index_name");
-                String createStatement = rs.getString("create_statement");
-                exportData.getIndexes().put(indexName, createStatement);
-                System.out.println("✓ Índice exportado: " + indexName);
+            List<String> mergeOrder = getTableCreationOrder(incremental);
+            List<String> deleteOrder = new ArrayList<String>(mergeOrder);
+            Collections.reverse(deleteOrder);
+
+            Set<String> deletingTables = new HashSet<String>();
+            for (String table : mergeOrder) {
+                if (selectedTables != null && !selectedTables.contains(table)) {
+                    continue;
+                }
+                if ((stages.containsKey(table) && CHANGES_FULL.equals(modes.get(table))) ||
+                        incremental.getDeletedRows().containsKey(table)) {
+                    deletingTables.add(table);
+                }
+            }
+            List<DisabledForeignKey> disabledKeys = disableForeignKeys(connection, mergeOrder, stages.keySet(),
+                    deletingTables);
+
+            for (String table : deleteOrder) {
+                if (selectedTables != null && !selectedTables.contains(table)) {
+                    continue;
+                }
+                long deleted = 0;
+                if (stages.containsKey(table) && CHANGES_FULL.equals(modes.get(table))) {
+                    deleted += deleteMissingRows(connection, table, incremental.getTables().get(table), stages.get(table));
+                }
+                SqlServerExportData.DeletedRows deletedRows = incremental.getDeletedRows().get(table);
+                if (deletedRows != null) {
+                    deleted += deleteRows(connection, table, incremental.getTables().get(table), deletedRows);
+                }
+                if (deleted > 0) {
+                    System.out.println("🗑️  " + table + ": " + deleted + " fila(s) borrada(s)");
+                }
+            }
+
+            for (String table : mergeOrder) {
+                String stageName = stages.get(table);
+                if (stageName == null) {
+                    continue;
+                }
+                if (stagedRows.get(table) > 0) {
+                    mergeStagedRows(connection, table, incremental.getTables().get(table), stageName);
+                }
+                System.out.println("✓ Cambios aplicados: " + table + " (" + stagedRows.get(table) + " registros, " +
+                        modes.get(table) + ")");
+            }
+
+            enableForeignKeys(connection, disabledKeys);
+
+            if (!createdTables.isEmpty()) {
+                createTableObjects(connection, incremental, createdTables);
             }
         } finally {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
+            reader.close();
+            dropStages(connection, stages.values());
         }
     }
 
-    private void exportConstraints(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("🔒 Exportando constraints...");
+    // Constraints, foreign keys, índices y triggers de las tablas creadas por un incremental, como
+    // en la importación completa: después de sus datos y con la clave primaria ya en el CREATE TABLE
+    private void createTableObjects(Connection connection, SqlServerExportData incremental,
+                                    Set<String> tables) throws SQLException {
+        SqlServerExportData tableObjects = new SqlServerExportData();
+        for (String table : tables) {
+            tableObjects.getTables().put(table, incremental.getTables().get(table));
+        }
+        tableObjects.getConstraints().putAll(incremental.getConstraints());
+        tableObjects.getIndexes().putAll(incremental.getIndexes());
+        tableObjects.getTriggers().putAll(incremental.getTriggers());
+        retainTableObjects(tableObjects.getConstraints(), tables);
+        retainTableObjects(tableObjects.getIndexes(), tables);
+        retainTableObjects(tableObjects.getTriggers(), tables);
+
+        createConstraints(connection, tableObjects);
+        createIndexes(connection, tableObjects);
+        createTriggers(connection, tableObjects);
+    }
 
+    // Desactiva las foreign keys de una tabla con filas del incremental hacia una tabla de la que
+    // se borran filas, o hacia una que se combina después (dependencias circulares): el orden de
+    // aplicación no garantiza que se cumplan hasta el final. Las demás siguen activas; validar
+    // una foreign key recorre la tabla completa. Si falla la aplicación, el rollback las restaura.
+    private List<DisabledForeignKey> disableForeignKeys(Connection connection, List<String> mergeOrder,
+                                                        Set<String> stagedTables, Set<String> deletingTables)
+            throws SQLException {
+        List<DisabledForeignKey> disabledKeys = new ArrayList<DisabledForeignKey>();
         String sql = "SELECT " +
-                "SCHEMA_NAME(t.schema_id) + '.' + t.name + '.' + cc.name as constraint_name, " +
-                "'ALTER TABLE [' + SCHEMA_NAME(t.schema_id) + '].[' + t.name + '] ADD CONSTRAINT [' + cc.name + '] CHECK ' + cc.definition as create_statement " +
-                "FROM sys.check_constraints cc " +
-                "INNER JOIN sys.tables t ON cc.parent_object_id = t.object_id " +
-                "WHERE t.is_ms_shipped = 0";
+                "SCHEMA_NAME(t.schema_id) + '.' + t.name as table_name, " +
+                "SCHEMA_NAME(r.schema_id) + '.' + r.name as referenced_table, " +
+                "fk.name as constraint_name, " +
+                "fk.is_not_trusted " +
+                "FROM sys.foreign_keys fk " +
+                "INNER JOIN sys.tables t ON fk.parent_object_id = t.object_id " +
+                "INNER JOIN sys.tables r ON fk.referenced_object_id = r.object_id " +
+                "WHERE fk.is_disabled = 0";
 
         Statement stmt = null;
         ResultSet rs = null;
@@ -927,183 +3426,346 @@ public class SqlServerMigrationService {
             rs = stmt.executeQuery(sql);
 
             while (rs.next()) {
-                String constraintName = rs.getString("constraint_name");
-                String createStatement = rs.getString("create_statement");
-                exportData.getConstraints().put(constraintName, createStatement);
-                System.out.println("✓ Constraint exportado: " + constraintName);
+                String tableName = rs.getString("table_name");
+                String referencedTable = rs.getString("referenced_table");
+                if (stagedTables.contains(tableName) && (deletingTables.contains(referencedTable) ||
+                        mergeOrder.indexOf(referencedTable) > mergeOrder.indexOf(tableName))) {
+                    disabledKeys.add(new DisabledForeignKey(tableName, rs.getString("constraint_name"),
+                            !rs.getBoolean("is_not_trusted")));
+                }
+            }
+            rs.close();
+            rs = null;
+
+            for (DisabledForeignKey key : disabledKeys) {
+                stmt.execute("ALTER TABLE " + buildQuotedTableName(key.tableName) + " NOCHECK CONSTRAINT [" +
+                        key.constraintName + "]");
             }
         } finally {
             if (rs != null) rs.close();
             if (stmt != null) stmt.close();
         }
+        return disabledKeys;
     }
 
-    // Métodos de importación
-
-    private boolean isDatabaseEmpty(Connection connection) throws SQLException {
-        Statement stmt = null;
-        ResultSet rs = null;
-
+    // Reactiva las foreign keys desactivadas; las que eran de confianza se validan con las filas
+    // ya aplicadas (un error revierte el incremental)
+    private void enableForeignKeys(Connection connection, List<DisabledForeignKey> disabledKeys) throws SQLException {
+        if (disabledKeys.isEmpty()) {
+            return;
+        }
+        Statement stmt = connection.createStatement();
         try {
-            stmt = connection.createStatement();
-            rs = stmt.executeQuery("SELECT COUNT(*) as table_count FROM sys.tables WHERE is_ms_shipped = 0");
-
-            if (rs.next()) {
-                return rs.getInt("table_count") == 0;
+            for (DisabledForeignKey key : disabledKeys) {
+                stmt.execute("ALTER TABLE " + buildQuotedTableName(key.tableName) +
+                        (key.trusted ? " WITH CHECK" : "") + " CHECK CONSTRAINT [" + key.constraintName + "]");
+                System.out.println("🔗 Foreign key verificada: " + key.constraintName);
             }
         } finally {
-            if (rs != null) rs.close();
-            if (stmt != null) stmt.close();
+            stmt.close();
         }
-        return true;
     }
 
-    private void createSchemas(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("📁 Creando esquemas...");
+    // Foreign key desactivada mientras se aplica un incremental
+    private static class DisabledForeignKey {
+        final String tableName;
+        final String constraintName;
+        final boolean trusted;
 
-        Statement stmt = null;
+        DisabledForeignKey(String tableName, String constraintName, boolean trusted) {
+            this.tableName = tableName;
+            this.constraintName = constraintName;
+            this.trusted = trusted;
+        }
+    }
+
+    private boolean tableExists(Connection connection, String tableName) throws SQLException {
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
 
         try {
-            stmt = connection.createStatement();
-            for (SqlServerExportData.SchemaInfo schemaInfo : exportData.getSchemas().values()) {
-                if (!"dbo".equals(schemaInfo.getSchemaName())) {
-                    String sql = "CREATE SCHEMA [" + schemaInfo.getSchemaName() + "]";
-                    try {
-                        stmt.execute(sql);
-                        System.out.println("✓ Esquema creado: " + schemaInfo.getSchemaName());
-                    } catch (SQLException e) {
-                        if (!e.getMessage().contains("already exists")) {
-                            throw e;
-                        }
-                        System.out.println("⚠️  Esquema ya existe: " + schemaInfo.getSchemaName());
-                    }
-                }
-            }
+            pstmt = connection.prepareStatement("SELECT OBJECT_ID(?, 'U')");
+            pstmt.setString(1, buildQuotedTableName(tableName));
+            rs = pstmt.executeQuery();
+            return rs.next() && rs.getObject(1) != null;
         } finally {
-            if (stmt != null) stmt.close();
+            if (rs != null) rs.close();
+            if (pstmt != null) pstmt.close();
         }
     }
 
-    private void createTables(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("🏗️  Creando tablas...");
+    // Carga las filas de la tabla actual del incremental en la tabla temporal stageName, con las
+    // columnas de la tabla (las rowversion como BINARY(8), las genera el servidor al combinar)
+    private long stageTableChanges(Connection connection, String stageName, SqlServerExportData.TableInfo tableInfo,
+                                   SqlServerRowSource rowSource) throws SQLException, IOException {
+        List<String> stageColumns = new ArrayList<String>();
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            String dataType = column.getDataType().toLowerCase();
+            String stageType;
+            if (isRowversionType(dataType)) {
+                stageType = "BINARY(8)";
+            } else {
+                stageType = dataType.contains("binary") ? "VARBINARY(MAX)" : buildColumnType(column);
+            }
+            // Las tablas temporales toman la collation de tempdb; con la de la base las claves de
+            // texto se comparan con las de la tabla destino sin conflicto de collation
+            if ("char".equals(dataType) || "varchar".equals(dataType) ||
+                    "nchar".equals(dataType) || "nvarchar".equals(dataType)) {
+                stageType += " COLLATE DATABASE_DEFAULT";
+            }
+            stageColumns.add("[" + column.getColumnName() + "] " + stageType + " NULL");
+        }
 
         Statement stmt = null;
+        PreparedStatement pstmt = null;
+        long count = 0;
 
         try {
             stmt = connection.createStatement();
-            for (String tableName : exportData.getTableOrder()) {
-                if (exportData.getTables().containsKey(tableName)) {
-                    SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
+            stmt.execute("CREATE TABLE " + stageName + " (" + joinStringList(stageColumns, ", ") + ")");
+
+            List<Object[]> batch = rowSource.readRows(BATCH_SIZE);
+            if (!batch.isEmpty()) {
+                List<String> columns = rowSource.getColumns();
+                List<String> quotedColumns = new ArrayList<String>();
+                List<String> placeholders = new ArrayList<String>();
+                for (String col : columns) {
+                    quotedColumns.add("[" + col + "]");
+                    placeholders.add("?");
+                }
+                pstmt = connection.prepareStatement("INSERT INTO " + stageName + " (" + joinStringList(quotedColumns, ", ") +
+                        ") VALUES (" + joinStringList(placeholders, ", ") + ")");
 
+                Map<String, String> columnTypes = getColumnTypes(connection, tableInfo);
+                while (!batch.isEmpty()) {
                     try {
-                        stmt.execute(tableInfo.getCreateStatement());
-                        System.out.println("✓ Tabla creada: " + tableName);
-                    } catch (SQLException e) {
-                        System.err.println("❌ Error creando tabla " + tableName + ": " + e.getMessage());
-                        throw e;
+                        bindBatch(pstmt, batch, columns, columnPositions(columns, Collections.<String>emptySet()),
+                                columnTypes);
+                    } finally {
+                        SqlServerLobValue.release(batch);
                     }
+                    count += batch.size();
+                    batch = rowSource.readRows(BATCH_SIZE);
                 }
             }
+            return count;
+
         } finally {
+            if (pstmt != null) pstmt.close();
             if (stmt != null) stmt.close();
         }
     }
 
-    private void insertData(Connection connection, SqlServerExportData exportData) throws SQLException {
-        System.out.println("📥 Insertando datos...");
-
-        for (String tableName : exportData.getTableOrder()) {
-            if (exportData.getData().containsKey(tableName)) {
-                insertTableData(connection, tableName, exportData);
+    // Tabla exportada completa: borra del destino las filas que no están en el incremental. Sin
+    // clave primaria no se pueden identificar las filas y se borran todas (mergeStagedRows las
+    // vuelve a insertar).
+    private long deleteMissingRows(Connection connection, String tableName, SqlServerExportData.TableInfo tableInfo,
+                                   String stageName) throws SQLException {
+        String quotedTableName = buildQuotedTableName(tableName);
+        String sql;
+        if (tableInfo.getPrimaryKey().isEmpty()) {
+            sql = "DELETE FROM " + quotedTableName;
+        } else {
+            List<String> keyMatch = new ArrayList<String>();
+            for (String keyColumn : tableInfo.getPrimaryKey()) {
+                keyMatch.add("s.[" + keyColumn + "] = t.[" + keyColumn + "]");
             }
+            sql = "DELETE t FROM " + quotedTableName + " AS t WHERE NOT EXISTS (SELECT 1 FROM " + stageName +
+                    " AS s WHERE " + joinStringList(keyMatch, " AND ") + ")";
         }
-    }
 
-    private void insertTableData(Connection connection, String tableName, SqlServerExportData exportData) throws SQLException {
-        List<Map<String, Object>> tableData = exportData.getData().get(tableName);
-
-        if (tableData.isEmpty()) {
-            return;
+        Statement stmt = connection.createStatement();
+        try {
+            return stmt.executeUpdate(sql);
+        } finally {
+            stmt.close();
         }
+    }
 
+    // Combina las filas de stageName con la tabla destino: actualiza las existentes e inserta las
+    // nuevas. Sin clave primaria las filas se insertan (deleteMissingRows ya vació la tabla).
+    private void mergeStagedRows(Connection connection, String tableName, SqlServerExportData.TableInfo tableInfo,
+                                 String stageName) throws SQLException {
         String quotedTableName = buildQuotedTableName(tableName);
-        SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
-
-        // Verificar si tiene columna IDENTITY
+        List<String> writableColumns = new ArrayList<String>();
+        List<String> updatableColumns = new ArrayList<String>();
         boolean hasIdentity = false;
         for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            String dataType = column.getDataType().toLowerCase();
+            if (isRowversionType(dataType)) {
+                continue;
+            }
+            writableColumns.add("[" + column.getColumnName() + "]");
             if (column.isIdentity()) {
                 hasIdentity = true;
-                break;
+            } else if (!tableInfo.getPrimaryKey().contains(column.getColumnName())) {
+                updatableColumns.add("[" + column.getColumnName() + "]");
             }
         }
 
         Statement stmt = null;
-        PreparedStatement pstmt = null;
+        boolean identityInsert = false;
 
         try {
             stmt = connection.createStatement();
-
             if (hasIdentity) {
                 stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " ON");
+                identityInsert = true;
             }
 
-            Map<String, Object> firstRow = tableData.get(0);
-            List<String> columns = new ArrayList<String>(firstRow.keySet());
+            String columnList = joinStringList(writableColumns, ", ");
+            if (tableInfo.getPrimaryKey().isEmpty()) {
+                stmt.execute("INSERT INTO " + quotedTableName + " (" + columnList + ") SELECT " + columnList +
+                        " FROM " + stageName);
+            } else {
+                List<String> keyMatch = new ArrayList<String>();
+                for (String keyColumn : tableInfo.getPrimaryKey()) {
+                    keyMatch.add("t.[" + keyColumn + "] = s.[" + keyColumn + "]");
+                }
+                List<String> assignments = new ArrayList<String>();
+                for (String column : updatableColumns) {
+                    assignments.add("t." + column + " = s." + column);
+                }
+                List<String> sourceColumns = new ArrayList<String>();
+                for (String column : writableColumns) {
+                    sourceColumns.add("s." + column);
+                }
 
-            List<String> quotedColumns = new ArrayList<String>();
-            for (String col : columns) {
-                quotedColumns.add("[" + col + "]");
+                StringBuilder merge = new StringBuilder();
+                merge.append("MERGE ").append(quotedTableName).append(" AS t USING ").append(stageName)
+                        .append(" AS s ON ").append(joinStringList(keyMatch, " AND "));
+                if (!assignments.isEmpty()) {
+                    merge.append(" WHEN MATCHED THEN UPDATE SET ").append(joinStringList(assignments, ", "));
+                }
+                merge.append(" WHEN NOT MATCHED BY TARGET THEN INSERT (").append(columnList).append(") VALUES (")
+                        .append(joinStringList(sourceColumns, ", ")).append(");");
+                stmt.execute(merge.toString());
             }
-            String columnList = joinStringList(quotedColumns, ", ");
 
-            List<String> placeholderList = new ArrayList<String>();
-            for (int i = 0; i < columns.size(); i++) {
-                placeholderList.add("?");
+            if (identityInsert) {
+                identityInsert = false;
+                stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " OFF");
             }
-            String placeholders = joinStringList(placeholderList, ", ");
-
-            String insertSql = "INSERT INTO " + quotedTableName + " (" + columnList + ") VALUES (" + placeholders + ")";
-
-            pstmt = connection.prepareStatement(insertSql);
 
-            // Obtener información de tipos de columnas para conversión correcta
-            Map<String, String> columnTypes = getColumnTypes(connection, tableInfo);
+        } finally {
+            if (stmt != null) {
+                try {
+                    restoreIdentityInsert(stmt, quotedTableName, identityInsert);
+                } finally {
+                    stmt.close();
+                }
+            }
+        }
+    }
 
-            int count = 0;
+    // Borra las tablas temporales del incremental; un error no oculta el de la aplicación
+    private void dropStages(Connection connection, Collection<String> stageNames) {
+        if (stageNames.isEmpty()) {
+            return;
+        }
+        Statement stmt = null;
+        try {
+            stmt = connection.createStatement();
+            for (String stageName : stageNames) {
+                stmt.execute("IF OBJECT_ID('tempdb.." + stageName + "') IS NOT NULL DROP TABLE " + stageName);
+            }
+        } catch (SQLException e) {
+            System.err.println("⚠️  No se pudieron borrar las tablas temporales del incremental: " + e.getMessage());
+        } finally {
+            try {
+                if (stmt != null) stmt.close();
+            } catch (SQLException e) {
+                // Ignorar errores al cerrar
+            }
+        }
+    }
 
-            for (Map<String, Object> row : tableData) {
-                for (int i = 0; i < columns.size(); i++) {
-                    String columnName = columns.get(i);
-                    Object value = row.get(columnName);
-                    String columnType = columnTypes.get(columnName);
+    // Borra por clave primaria las filas eliminadas en el origen
+    private long deleteRows(Connection connection, String tableName, SqlServerExportData.TableInfo tableInfo,
+                            SqlServerExportData.DeletedRows deletedRows) throws SQLException {
+        List<String> conditions = new ArrayList<String>();
+        for (String keyColumn : deletedRows.getColumns()) {
+            conditions.add("[" + keyColumn + "] = ?");
+        }
+        Map<String, String> columnTypes = getColumnTypes(connection, tableInfo);
 
-                    // Convertir valores según el tipo de columna de destino
-                    Object convertedValue = convertValueForColumn(value, columnType);
+        PreparedStatement pstmt = null;
+        long count = 0;
 
-                    pstmt.setObject(i + 1, convertedValue);
+        try {
+            pstmt = connection.prepareStatement("DELETE FROM " + buildQuotedTableName(tableName) +
+                    " WHERE " + joinStringList(conditions, " AND "));
+            int pending = 0;
+            for (List<Object> key : deletedRows.getKeys()) {
+                for (int i = 0; i < key.size(); i++) {
+                    String columnType = columnTypes.get(deletedRows.getColumns().get(i));
+                    pstmt.setObject(i + 1, convertValueForColumn(key.get(i), columnType));
                 }
                 pstmt.addBatch();
-                count++;
-
-                if (count % BATCH_SIZE == 0) {
-                    pstmt.executeBatch();
+                if (++pending == BATCH_SIZE) {
+                    count += sumUpdateCounts(pstmt.executeBatch());
+                    pending = 0;
                 }
             }
-
-            if (count % BATCH_SIZE != 0) {
-                pstmt.executeBatch();
+            if (pending > 0) {
+                count += sumUpdateCounts(pstmt.executeBatch());
             }
+        } finally {
+            if (pstmt != null) pstmt.close();
+        }
+        return count;
+    }
 
-            if (hasIdentity) {
-                stmt.execute("SET IDENTITY_INSERT " + quotedTableName + " OFF");
+    private long sumUpdateCounts(int[] updateCounts) {
+        long total = 0;
+        for (int updateCount : updateCounts) {
+            if (updateCount > 0) {
+                total += updateCount;
             }
+        }
+        return total;
+    }
+
+    // Evento del importador paralelo: segmento listo, tabla confirmada o error
+    private static class ImportEvent {
+        static final int SPOOLED = 0;
+        static final int SPOOL_FINISHED = 1;
+        static final int LOADED = 2;
+        static final int FAILED = 3;
+
+        final int kind;
+        String tableName;
+        long rowCount;
+        long elapsedMillis;
+        Exception error;
+
+        ImportEvent(int kind) {
+            this.kind = kind;
+        }
 
-            System.out.println("✓ Datos insertados: " + tableName + " (" + tableData.size() + " registros)");
+        static ImportEvent spooled(String tableName) {
+            ImportEvent event = new ImportEvent(SPOOLED);
+            event.tableName = tableName;
+            return event;
+        }
 
-        } finally {
-            if (pstmt != null) pstmt.close();
-            if (stmt != null) stmt.close();
+        static ImportEvent spoolFinished() {
+            return new ImportEvent(SPOOL_FINISHED);
+        }
+
+        static ImportEvent loaded(String tableName, long rowCount, long elapsedMillis) {
+            ImportEvent event = new ImportEvent(LOADED);
+            event.tableName = tableName;
+            event.rowCount = rowCount;
+            event.elapsedMillis = elapsedMillis;
+            return event;
+        }
+
+        static ImportEvent failed(String tableName, Exception error) {
+            ImportEvent event = new ImportEvent(FAILED);
+            event.tableName = tableName;
+            event.error = error;
+            return event;
         }
     }
 
@@ -1117,11 +3779,80 @@ public class SqlServerMigrationService {
         return columnTypes;
     }
 
+    // Agrega las filas al batch y lo ejecuta. Los objetos grandes se envían como stream desde
+    // su archivo temporal; el servidor los lee al ejecutar el batch, por lo que se ejecuta
+    // (y se liberan sus objetos) antes de superar MAX_PENDING_LOBS streams abiertos.
+    // Los parámetros son las columnas de la fila en las posiciones boundColumns, en ese orden.
+    private void bindBatch(PreparedStatement pstmt, List<Object[]> rows, List<String> columns, int[] boundColumns,
+                           Map<String, String> columnTypes) throws SQLException, IOException {
+        int pendingLobs = 0;
+        int executedRows = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] row = rows.get(r);
+            for (int i = 0; i < boundColumns.length; i++) {
+                Object value = row[boundColumns[i]];
+                if (value instanceof SqlServerLobValue) {
+                    SqlServerLobValue lob = (SqlServerLobValue) value;
+                    if (lob.isBinary()) {
+                        pstmt.setBinaryStream(i + 1, lob.openStream(), lob.getLength());
+                    } else {
+                        pstmt.setCharacterStream(i + 1, lob.openReader(), lob.getLength());
+                    }
+                    pendingLobs++;
+                } else {
+                    // Convertir valores según el tipo de columna de destino
+                    pstmt.setObject(i + 1, convertValueForColumn(value,
+                            columnTypes.get(columns.get(boundColumns[i]))));
+                }
+            }
+            pstmt.addBatch();
+
+            if (pendingLobs >= MAX_PENDING_LOBS) {
+                pstmt.executeBatch();
+                SqlServerLobValue.release(rows.subList(executedRows, r + 1));
+                executedRows = r + 1;
+                pendingLobs = 0;
+            }
+        }
+        pstmt.executeBatch();
+    }
+
+    // Posiciones de las columnas de la fila que no están en skippedColumns
+    private int[] columnPositions(List<String> columns, Set<String> skippedColumns) {
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (!skippedColumns.contains(columns.get(i))) {
+                positions.add(i);
+            }
+        }
+        int[] result = new int[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positions.get(i);
+        }
+        return result;
+    }
+
+    private Set<String> getRowversionColumns(SqlServerExportData.TableInfo tableInfo) {
+        Set<String> rowversionColumns = new HashSet<String>();
+        for (SqlServerExportData.ColumnInfo column : tableInfo.getColumns()) {
+            if (isRowversionType(column.getDataType().toLowerCase())) {
+                rowversionColumns.add(column.getColumnName());
+            }
+        }
+        return rowversionColumns;
+    }
+
     private Object convertValueForColumn(Object value, String columnType) {
         if (value == null) {
             return null;
         }
 
+        // Fechas del formato binario: como texto ISO que convierte el servidor, sin pasar por
+        // la zona horaria local como Timestamp
+        if (value instanceof LocalDateTime) {
+            return SqlServerBinaryRowFormat.formatDateTime((LocalDateTime) value, 'T');
+        }
+
         // Si el valor es un Map, significa que tiene metadatos de tipo
         if (value instanceof Map) {
             Map<String, Object> valueMap = (Map<String, Object>) value;
@@ -1171,7 +3902,8 @@ public class SqlServerMigrationService {
 
         // Para valores que no tienen metadatos, hacer conversión basada en tipo de columna
         if (columnType != null) {
-            if (columnType.contains("varbinary") || columnType.contains("binary") || columnType.contains("image")) {
+            if (columnType.contains("varbinary") || columnType.contains("binary") || columnType.contains("image") ||
+                    isRowversionType(columnType)) {
                 // Si esperamos binario pero tenemos string, intentar decodificar Base64
                 if (value instanceof String && isBase64Encoded((String) value)) {
                     try {
@@ -1181,7 +3913,10 @@ public class SqlServerMigrationService {
                         return value;
                     }
                 }
-            } else if (columnType.contains("datetime") || columnType.contains("timestamp")) {
+            } else if (columnType.contains("datetimeoffset")) {
+                // Se inserta el texto con su desplazamiento, que Timestamp perdería
+                return value;
+            } else if (columnType.contains("datetime")) {
                 // Convertir strings a Timestamp
                 if (value instanceof String) {
                     try {
@@ -1221,6 +3956,27 @@ public class SqlServerMigrationService {
         return str.matches("^[A-Za-z0-9+/]*={0,2}$");
     }
 
+    // Objetos que se crean después de los datos, en el orden de la importación
+    private void createDatabaseObjects(Connection connection, SqlServerExportData exportData) throws SQLException {
+        // Crear constraints
+        createConstraints(connection, exportData);
+
+        // Crear índices
+        createIndexes(connection, exportData);
+
+        // Crear stored procedures
+        createStoredProcedures(connection, exportData);
+
+        // Crear funciones
+        createFunctions(connection, exportData);
+
+        // Crear vistas
+        createViews(connection, exportData);
+
+        // Crear triggers
+        createTriggers(connection, exportData);
+    }
+
     private void createConstraints(Connection connection, SqlServerExportData exportData) throws SQLException {
         System.out.println("🔒 Creando constraints...");
 
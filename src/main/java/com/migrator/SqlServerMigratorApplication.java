@@ -67,6 +67,13 @@ public class SqlServerMigratorApplication {
         System.out.println("    --username=usuario \\");
         System.out.println("    --password=contraseña");
         System.out.println(" ");
+        System.out.println("🔹 MIGRAR DIRECTAMENTE A OTRO SERVIDOR (sin archivo de backup):");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar \\");
+        System.out.println("    --migrate \\");
+        System.out.println("    --server=origen --database=MiBaseDatos \\");
+        System.out.println("    --username=usuario --password=contraseña \\");
+        System.out.println("    --target-server=destino --target-database=NuevaBaseDatos");
+        System.out.println(" ");
         System.out.println("🔹 VERIFICAR ARCHIVO DE BACKUP:");
         System.out.println("  java -jar sqlserver-migrator-cli.jar \\");
         System.out.println("    --verify \\");
@@ -80,6 +87,32 @@ public class SqlServerMigratorApplication {
         System.out.println("  --username=usuario         Usuario de SQL Server (requerido)");
         System.out.println("  --password=contraseña      Contraseña (requerido)");
         System.out.println("  --backup-file=archivo.gz   Archivo de backup (requerido para import/verify)");
+        System.out.println("  --target-server=hostname   En migrate, servidor destino (default: el de origen)");
+        System.out.println("  --target-port, --target-instance, --target-database, --target-username, --target-password");
+        System.out.println("                             En migrate, resto de la conexión destino (default: los de origen)");
+        System.out.println("  --export-threads=4         Tablas exportadas en paralelo (opcional, default: 1)");
+        System.out.println("  --chunk-rows=1000000       Filas por segmento al dividir tablas grandes por clave (0 = no dividir)");
+        System.out.println("  --format=binary            Formato de las filas en el backup: binary o json (default: binary)");
+        System.out.println("  --ordered                  En export, leer cada tabla ordenada por su clave primaria (carga sin page splits)");
+        System.out.println("  --exact-count              En export, contar las filas con COUNT(*) en lugar de las estadísticas de particiones");
+        System.out.println("  --import-threads=4         Tablas importadas en paralelo según sus foreign keys (opcional, default: 1)");
+        System.out.println("  --import-engine=bulk       Motor de carga: bulk (SQLServerBulkCopy) o insert (default: bulk)");
+        System.out.println("  --bulk-batch-size=10000    Filas por lote en bulk copy (0 = un solo lote por tabla)");
+        System.out.println("  --tablock                  Bulk copy con bloqueo de tabla (TABLOCK)");
+        System.out.println("  --check-constraints        Validar CHECK constraints durante el bulk copy");
+        System.out.println("  --commit=table             Confirmación en import: batch (cada lote), table o database (default: table)");
+        System.out.println("  --minimal-logging          Bulk copy con TABLOCK en tablas vacías para registro mínimo en el log");
+        System.out.println("  --no-keep-identity         Dejar que el servidor genere los valores IDENTITY");
+        System.out.println("  --tables=dbo.t1,dbo.t2     En import, restaurar sólo estas tablas (deben no existir en el destino)");
+        System.out.println("  --verify-threads=8         Hilos para verificar los checksums de los segmentos (default: núcleos)");
+        System.out.println("  --compression-threads=8    Hilos que comprimen/descomprimen los bloques de datos (default: núcleos)");
+        System.out.println("  --codec=gzip               Compresión del backup: gzip, zstd, lz4 o none (default: gzip)");
+        System.out.println("  --level=3                  Nivel del códec: gzip 1-9, zstd 1-22, lz4 1-12 (default: el del códec)");
+        System.out.println("  --since=backup.gz          En export, exportar sólo los cambios desde ese backup (incremental)");
+        System.out.println("  --incrementals=i1.gz,i2.gz En import, incrementales a aplicar en orden sobre el backup");
+        System.out.println("  --resume                   Continuar la última exportación interrumpida, o la importación interrumpida del backup");
+        System.out.println("  --max-memory=512m          Memoria para los buffers de datos; lo que no cabe va a archivos temporales");
+        System.out.println("  --summary                  En verify, mostrar el resumen desde el índice sin descomprimir los datos");
         System.out.println("  --force                    No pedir confirmación en import");
         System.out.println("  --debug                    Mostrar información detallada de errores");
         System.out.println("  --help, -h                 Mostrar esta ayuda");
@@ -91,6 +124,39 @@ public class SqlServerMigratorApplication {
         System.out.println("  # Importar sin confirmación");
         System.out.println("  java -jar sqlserver-migrator-cli.jar --import --force --backup-file=backup.gz ...");
         System.out.println(" ");
+        System.out.println("  # Exportar 8 tablas a la vez, cada una con su propia conexión");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --export --export-threads=8 ...");
+        System.out.println(" ");
+        System.out.println("  # Importar 4 tablas a la vez (cada tabla se confirma por separado)");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --import --import-threads=4 --backup-file=backup.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Backup rápido para una migración por red, o de máxima compresión para archivar");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --export --codec=lz4 ...");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --export --codec=zstd --level=19 ...");
+        System.out.println(" ");
+        System.out.println("  # Restaurar sólo dos tablas, leyendo del backup únicamente sus datos");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --import --tables=dbo.Clientes,dbo.Pedidos --backup-file=backup.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Backup diario incremental (change tracking o rowversion) y restauración de la cadena");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --export --since=backup_completo.gz ...");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --import --backup-file=backup_completo.gz --incrementals=incr1.gz,incr2.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Continuar una exportación cortada (se omiten las tablas y segmentos ya terminados)");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --export --resume --server=localhost --database=MiBaseDatos ...");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --import --resume --backup-file=backup.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Restauración grande: confirmar cada lote y cargar con registro mínimo (modelo SIMPLE o BULK_LOGGED)");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --import --commit=batch --bulk-batch-size=50000 --minimal-logging --backup-file=backup.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Importar un backup con objetos grandes en un equipo con poca memoria (java -Xmx1g)");
+        System.out.println("  java -Xmx1g -jar sqlserver-migrator-cli.jar --import --max-memory=512m --backup-file=backup.gz ...");
+        System.out.println(" ");
+        System.out.println("  # Migrar a otro servidor sin archivo intermedio: la lectura del origen y la carga van a la vez");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --migrate --server=prod --target-server=nuevo --ordered --minimal-logging ...");
+        System.out.println(" ");
+        System.out.println("  # Resumen instantáneo de un backup (tablas, registros y tamaños) leyendo sólo su índice");
+        System.out.println("  java -jar sqlserver-migrator-cli.jar --verify --summary --backup-file=backup.gz");
+        System.out.println(" ");
         System.out.println("  # Exportar con timeout aumentado");
         System.out.println("  java -Dsqlserver.timeout=120 -jar sqlserver-migrator-cli.jar --export ...");
     }
@@ -110,6 +176,9 @@ public class SqlServerMigratorApplication {
         } else if (hasArg(args, "--verify")) {
             handleVerifyCommand(args, migrationService);
 
+        } else if (hasArg(args, "--migrate")) {
+            handleMigrateCommand(args, migrationService);
+
         } else {
             System.err.println("❌ Comando no reconocido.");
             System.err.println("💡 Usa --help para ver las opciones disponibles.");
@@ -127,8 +196,30 @@ public class SqlServerMigratorApplication {
         SqlServerConfig config = buildConfigFromArgs(args);
         config.validateConfig();
 
+        SqlServerMigrationOptions options = buildOptionsFromArgs(args);
+        options.validateOptions();
+
         // Mostrar configuración
         printConnectionInfo("EXPORTACIÓN", config);
+        if (options.getExportThreads() > 1) {
+            System.out.println("🧵 Hilos de exportación: " + options.getExportThreads());
+        }
+        System.out.println("🗜️  Compresión: " + options.getCompressionCodec());
+        if (options.isOrderedExport()) {
+            System.out.println("🔢 Datos ordenados por clave primaria");
+        }
+        if (options.isExactCount()) {
+            System.out.println("🧮 Conteo exacto de filas (COUNT(*))");
+        }
+        if (options.isIncremental()) {
+            System.out.println("🧩 Incremental desde: " + options.getSince());
+        }
+        if (options.isResume()) {
+            System.out.println("⏯️  Continuar la última exportación interrumpida");
+        }
+        if (options.getMaxMemory() != null) {
+            System.out.println("🧠 Memoria máxima de buffers: " + options.getMaxMemory());
+        }
 
         // Confirmar operación
         if (!hasArg(args, "--force")) {
@@ -137,7 +228,7 @@ public class SqlServerMigratorApplication {
 
         // Ejecutar exportación
         long startTime = System.currentTimeMillis();
-        String backupFile = migrationService.exportDatabase(config);
+        String backupFile = migrationService.exportDatabase(config, options);
         long duration = System.currentTimeMillis() - startTime;
 
         // Mostrar resultados
@@ -158,6 +249,9 @@ public class SqlServerMigratorApplication {
         SqlServerConfig config = buildConfigFromArgs(args);
         config.validateConfig();
 
+        SqlServerMigrationOptions options = buildOptionsFromArgs(args);
+        options.validateOptions();
+
         // Verificar archivo
         java.io.File file = new java.io.File(backupFile);
         if (!file.exists()) {
@@ -168,6 +262,29 @@ public class SqlServerMigratorApplication {
         printConnectionInfo("IMPORTACIÓN", config);
         System.out.println("📂 Archivo de backup: " + backupFile);
         System.out.println("📏 Tamaño del archivo: " + formatFileSize(file.length()));
+        System.out.println("⚙️  Motor de carga: " + options.getImportEngine() +
+                (options.isMinimalLogging() ? " (TABLOCK, registro mínimo)" : ""));
+        System.out.println("💾 Confirmación: " + options.getCommitMode());
+        if (options.getImportThreads() > 1) {
+            System.out.println("🧵 Hilos de importación: " + options.getImportThreads());
+        }
+        if (options.hasTableFilter()) {
+            System.out.println("📋 Tablas a restaurar: " + options.getTables());
+        }
+        for (String incremental : options.getIncrementals()) {
+            if (!new java.io.File(incremental).exists()) {
+                throw new IllegalArgumentException("El backup incremental no existe: " + incremental);
+            }
+        }
+        if (!options.getIncrementals().isEmpty()) {
+            System.out.println("🧩 Incrementales a aplicar: " + options.getIncrementals());
+        }
+        if (options.isResume()) {
+            System.out.println("⏯️  Continuar la importación interrumpida de este backup");
+        }
+        if (options.getMaxMemory() != null) {
+            System.out.println("🧠 Memoria máxima de buffers: " + options.getMaxMemory());
+        }
 
         // Confirmar operación peligrosa
         if (!hasArg(args, "--force")) {
@@ -176,13 +293,17 @@ public class SqlServerMigratorApplication {
             System.out.println("   Esta operación MODIFICARÁ la base de datos '" + config.getDatabase() + "'");
             System.out.println("   Si contiene datos existentes, podrían ser afectados o perdidos.");
             System.out.println("   Se recomienda hacer un backup de la base de datos destino antes de continuar.");
+            if (!options.isDatabaseCommit()) {
+                System.out.println("   Cada " + (options.isBatchCommit() ? "lote" : "tabla") +
+                        " se confirma por separado: un error no revierte lo ya cargado (continuar con --resume).");
+            }
             System.out.println(" ");
             confirmOperation("continuar con la importación");
         }
 
         // Ejecutar importación
         long startTime = System.currentTimeMillis();
-        boolean success = migrationService.importDatabase(backupFile, config);
+        boolean success = migrationService.importDatabase(backupFile, config, options);
         long duration = System.currentTimeMillis() - startTime;
 
         if (success) {
@@ -205,6 +326,9 @@ public class SqlServerMigratorApplication {
 
         String backupFile = getArgValue(args, "--backup-file");
 
+        SqlServerMigrationOptions options = buildOptionsFromArgs(args);
+        options.validateOptions();
+
         // Verificar archivo
         java.io.File file = new java.io.File(backupFile);
         if (!file.exists()) {
@@ -217,7 +341,7 @@ public class SqlServerMigratorApplication {
 
         // Ejecutar verificación
         long startTime = System.currentTimeMillis();
-        boolean valid = migrationService.verifyBackup(backupFile);
+        boolean valid = migrationService.verifyBackup(backupFile, options);
         long duration = System.currentTimeMillis() - startTime;
 
         System.out.println(" ");
@@ -232,6 +356,81 @@ public class SqlServerMigratorApplication {
         }
     }
 
+    private void handleMigrateCommand(String[] args, SqlServerMigrationService migrationService) throws Exception {
+        System.out.println("🔀 INICIANDO MIGRACIÓN DIRECTA");
+        System.out.println(repeatString("═", 50));
+
+        // Validar argumentos requeridos
+        validateRequiredArgs(args, new String[]{"--server", "--database", "--username", "--password"});
+
+        SqlServerConfig source = buildConfigFromArgs(args);
+        source.validateConfig();
+        SqlServerConfig target = buildTargetConfigFromArgs(args, source);
+        target.validateConfig();
+        if (source.buildConnectionUrl().equalsIgnoreCase(target.buildConnectionUrl())) {
+            throw new IllegalArgumentException("El origen y el destino son la misma base de datos; " +
+                    "indica --target-server o --target-database");
+        }
+
+        SqlServerMigrationOptions options = buildOptionsFromArgs(args);
+        options.validateOptions();
+        // La copia directa lee y carga de a una tabla
+        if (options.getExportThreads() > 1 || options.getImportThreads() > 1) {
+            throw new IllegalArgumentException("--migrate copia las tablas de a una: " +
+                    "no admite --export-threads ni --import-threads mayores que 1");
+        }
+
+        // Mostrar configuración
+        printConnectionInfo("ORIGEN", source);
+        printConnectionInfo("DESTINO", target);
+        System.out.println("⚙️  Motor de carga: " + options.getImportEngine() +
+                (options.isMinimalLogging() ? " (TABLOCK, registro mínimo)" : ""));
+        System.out.println("💾 Confirmación: " + options.getCommitMode());
+        if (options.isOrderedExport()) {
+            System.out.println("🔢 Datos ordenados por clave primaria");
+        }
+        if (options.hasTableFilter()) {
+            System.out.println("📋 Tablas a migrar: " + options.getTables());
+        }
+        if (options.isResume()) {
+            System.out.println("⏯️  Continuar la migración interrumpida desde este origen");
+        }
+        if (options.getMaxMemory() != null) {
+            System.out.println("🧠 Memoria máxima de buffers: " + options.getMaxMemory());
+        }
+
+        // Confirmar operación peligrosa
+        if (!hasArg(args, "--force")) {
+            System.out.println(" ");
+            System.out.println("⚠️  ADVERTENCIA IMPORTANTE:");
+            System.out.println("   Esta operación MODIFICARÁ la base de datos '" + target.getDatabase() + "' en " +
+                    target.getServer());
+            System.out.println("   Si contiene datos existentes, podrían ser afectados o perdidos.");
+            System.out.println("   No se genera un archivo de backup: para conservar una copia usa --export.");
+            if (!options.isDatabaseCommit()) {
+                System.out.println("   Cada " + (options.isBatchCommit() ? "lote" : "tabla") +
+                        " se confirma por separado: un error no revierte lo ya cargado (continuar con --resume).");
+            }
+            System.out.println(" ");
+            confirmOperation("continuar con la migración");
+        }
+
+        // Ejecutar migración
+        long startTime = System.currentTimeMillis();
+        boolean success = migrationService.migrateDatabase(source, target, options);
+        long duration = System.currentTimeMillis() - startTime;
+
+        if (success) {
+            printSuccessResult("MIGRACIÓN", source.getDatabase() + " → " + target.getDatabase(), duration);
+            System.out.println("✅ La base de datos ha sido migrada correctamente");
+        } else {
+            System.out.println(" ");
+            System.out.println("❌ ERROR EN LA MIGRACIÓN");
+            System.out.println("🔍 Revisa los mensajes anteriores para más detalles");
+            System.exit(1);
+        }
+    }
+
     private SqlServerConfig buildConfigFromArgs(String[] args) {
         String server = getArgValue(args, "--server");
         String port = getArgValueOrDefault(args, "--port", "1433");
@@ -243,6 +442,64 @@ public class SqlServerMigratorApplication {
         return new SqlServerConfig(server, Integer.parseInt(port), database, username, password, instance);
     }
 
+    // Conexión destino de --migrate: cada valor no indicado se toma del origen
+    private SqlServerConfig buildTargetConfigFromArgs(String[] args, SqlServerConfig source) {
+        String server = getArgValueOrDefault(args, "--target-server", source.getServer());
+        String port = getArgValueOrDefault(args, "--target-port", String.valueOf(source.getPort()));
+        String database = getArgValueOrDefault(args, "--target-database", source.getDatabase());
+        String username = getArgValueOrDefault(args, "--target-username", source.getUsername());
+        String password = getArgValueOrDefault(args, "--target-password", source.getPassword());
+        String instance = getArgValueOrDefault(args, "--target-instance", source.getInstance());
+
+        return new SqlServerConfig(server, Integer.parseInt(port), database, username, password, instance);
+    }
+
+    private SqlServerMigrationOptions buildOptionsFromArgs(String[] args) {
+        SqlServerMigrationOptions options = new SqlServerMigrationOptions();
+        options.setExportThreads(Integer.parseInt(getArgValueOrDefault(args, "--export-threads", "1")));
+        options.setChunkRows(Long.parseLong(getArgValueOrDefault(args, "--chunk-rows", "1000000")));
+        options.setBackupFormat(getArgValueOrDefault(args, "--format", "binary").toLowerCase());
+        options.setOrderedExport(hasArg(args, "--ordered"));
+        options.setExactCount(hasArg(args, "--exact-count"));
+        options.setImportThreads(Integer.parseInt(getArgValueOrDefault(args, "--import-threads", "1")));
+        options.setImportEngine(getArgValueOrDefault(args, "--import-engine", "bulk").toLowerCase());
+        options.setBulkBatchSize(Integer.parseInt(getArgValueOrDefault(args, "--bulk-batch-size", "10000")));
+        options.setTableLock(hasArg(args, "--tablock"));
+        options.setCheckConstraints(hasArg(args, "--check-constraints"));
+        options.setCommitMode(getArgValueOrDefault(args, "--commit", "table").toLowerCase());
+        options.setMinimalLogging(hasArg(args, "--minimal-logging"));
+        options.setKeepIdentity(!hasArg(args, "--no-keep-identity"));
+        options.setVerifySummary(hasArg(args, "--summary"));
+        options.setVerifyThreads(Integer.parseInt(getArgValueOrDefault(args, "--verify-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        options.setCompressionThreads(Integer.parseInt(getArgValueOrDefault(args, "--compression-threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        options.setCodec(getArgValueOrDefault(args, "--codec", "gzip").toLowerCase());
+        options.setLevel(Integer.parseInt(getArgValueOrDefault(args, "--level", "-1")));
+        options.setSince(getArgValueOrDefault(args, "--since", null));
+        options.setResume(hasArg(args, "--resume"));
+        options.setMaxMemory(getArgValueOrDefault(args, "--max-memory", null));
+
+        String tables = getArgValueOrDefault(args, "--tables", null);
+        if (tables != null) {
+            for (String table : tables.split(",")) {
+                if (!table.trim().isEmpty()) {
+                    options.getTables().add(table.trim());
+                }
+            }
+        }
+
+        String incrementals = getArgValueOrDefault(args, "--incrementals", null);
+        if (incrementals != null) {
+            for (String incremental : incrementals.split(",")) {
+                if (!incremental.trim().isEmpty()) {
+                    options.getIncrementals().add(incremental.trim());
+                }
+            }
+        }
+        return options;
+    }
+
     private void printConnectionInfo(String operation, SqlServerConfig config) {
         System.out.println(" ");
         System.out.println("📡 CONFIGURACIÓN DE " + operation);
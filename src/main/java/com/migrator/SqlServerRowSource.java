@@ -0,0 +1,15 @@
+package com.migrator;
+
+import java.io.IOException;
+import java.util.List;
+
+// Origen de filas para la inserción por lotes. Las filas son posicionales: el valor i
+// corresponde a la columna i de getColumns().
+public interface SqlServerRowSource {
+
+    // Devuelve hasta maxRows filas; lista vacía cuando no quedan más
+    List<Object[]> readRows(int maxRows) throws IOException;
+
+    // Columnas de las filas entregadas; disponible después del primer lote
+    List<String> getColumns();
+}
@@ -0,0 +1,198 @@
+package com.migrator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Lee uno o más segmentos de datos comprimidos con GZIP de forma independiente del resto
+// del backup: arreglos JSON de filas, o filas binarias (1 + fila, terminadas en 0) cuando
+// se indica el formato de las columnas. En JSON las columnas vienen del encabezado de la
+// tabla; si no se conocen (backups anteriores) se toman de la primera fila.
+//
+// También lee directamente del backup los segmentos de una tabla según el índice (ver
+// openTable): cada uno es un marco 'D' con sus filas, comprimido con el códec del backup.
+public class SqlServerSegmentReader implements SqlServerRowSource, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final InputStream compressedStream;
+    private final InputStream contentStream;
+    private final JsonParser parser;
+    private final DataInputStream dataStream;
+    private final SqlServerBinaryRowFormat rowFormat;
+    private final List<String> columns;
+    // Segmentos del backup, cada uno precedido por su marco 'D'
+    private final boolean framed;
+
+    private boolean inSegment;
+    private boolean finished;
+    // Tamaño estimado del último lote entregado, reservado hasta el siguiente
+    private long deliveredSize;
+
+    public SqlServerSegmentReader(InputStream compressedStream, ObjectMapper objectMapper,
+                                  SqlServerBinaryRowFormat rowFormat, List<String> columns) throws IOException {
+        this(compressedStream, new GzipCompressorInputStream(compressedStream, true), objectMapper,
+                rowFormat, columns, false);
+    }
+
+    private SqlServerSegmentReader(InputStream compressedStream, InputStream content, ObjectMapper objectMapper,
+                                   SqlServerBinaryRowFormat rowFormat, List<String> columns, boolean framed)
+            throws IOException {
+        this.objectMapper = objectMapper;
+        this.compressedStream = compressedStream;
+        this.contentStream = content;
+        this.rowFormat = rowFormat;
+        this.framed = framed;
+        if (rowFormat != null) {
+            this.columns = rowFormat.getColumnNames();
+        } else {
+            this.columns = columns != null ? new ArrayList<String>(columns) : new ArrayList<String>();
+        }
+
+        if (rowFormat != null) {
+            this.dataStream = new DataInputStream(new BufferedInputStream(content, BUFFER_SIZE));
+            this.parser = null;
+        } else {
+            this.dataStream = null;
+            this.parser = objectMapper.getFactory().createParser(content);
+        }
+    }
+
+    public static SqlServerSegmentReader open(File segmentFile, ObjectMapper objectMapper,
+                                              SqlServerBinaryRowFormat rowFormat, List<String> columns) throws IOException {
+        return new SqlServerSegmentReader(new BufferedInputStream(new FileInputStream(segmentFile), BUFFER_SIZE),
+                objectMapper, rowFormat, columns);
+    }
+
+    // Abre los segmentos de la tabla leyendo sus rangos del backup según el índice. Con un pool
+    // y los bloques registrados en el índice, los bloques se descomprimen en paralelo.
+    public static SqlServerSegmentReader openTable(String backupFile, SqlServerBackupIndex.TableEntry table,
+                                                   SqlServerCompressionCodec codec, ExecutorService blockExecutor,
+                                                   int maxPendingBlocks, ObjectMapper objectMapper,
+                                                   SqlServerBinaryRowFormat rowFormat) throws IOException {
+        if (table.getSegments().isEmpty()) {
+            // Tabla sin filas: no hay nada que descomprimir
+            InputStream empty = new ByteArrayInputStream(new byte[0]);
+            return new SqlServerSegmentReader(empty, empty, objectMapper, rowFormat, null, true);
+        }
+
+        List<SqlServerBackupIndex.Section> blocks = blockExecutor != null
+                ? new ArrayList<SqlServerBackupIndex.Section>() : null;
+        for (SqlServerBackupIndex.Segment segment : table.getSegments()) {
+            List<SqlServerBackupIndex.Section> segmentBlocks = blocks != null
+                    ? SqlServerBackupIndex.getBlockRanges(segment) : null;
+            if (segmentBlocks == null) {
+                blocks = null;
+                break;
+            }
+            blocks.addAll(segmentBlocks);
+        }
+
+        if (blocks != null) {
+            InputStream content = new SqlServerBlockInputStream(backupFile, blocks, codec, blockExecutor,
+                    maxPendingBlocks);
+            return new SqlServerSegmentReader(content, content, objectMapper, rowFormat, null, true);
+        }
+        InputStream ranges = new BufferedInputStream(
+                SqlServerBackupIndex.openRanges(backupFile, table.getSegments()), BUFFER_SIZE);
+        try {
+            return new SqlServerSegmentReader(ranges, codec.decompress(ranges), objectMapper, rowFormat, null, true);
+        } catch (IOException e) {
+            ranges.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    // Devuelve hasta maxRows filas, menos si el lote llega al límite de SqlServerMemoryBudget.
+    // El lote anterior ya fue consumido y deja de contar en el presupuesto.
+    @Override
+    public List<Object[]> readRows(int maxRows) throws IOException {
+        releaseDelivered();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        long batchLimit = SqlServerMemoryBudget.getBatchLimit();
+        long batchSize = 0;
+        if (dataStream != null) {
+            while (!finished && rows.size() < maxRows && batchSize < batchLimit) {
+                if (framed && !inSegment) {
+                    int frameType = dataStream.read();
+                    if (frameType == -1) {
+                        finished = true;
+                    } else if (frameType == SqlServerBackupWriter.FRAME_SEGMENT) {
+                        inSegment = true;
+                    } else {
+                        throw new IOException("Formato de segmento inválido: marco inesperado '" + (char) frameType + "'");
+                    }
+                    continue;
+                }
+                int marker = dataStream.readUnsignedByte();
+                if (marker != SqlServerBinaryRowFormat.ROW_END) {
+                    Object[] row = rowFormat.readRow(dataStream, marker);
+                    rows.add(row);
+                    batchSize += SqlServerMemoryBudget.estimateSize(row);
+                } else if (framed) {
+                    inSegment = false;
+                } else {
+                    finished = true;
+                }
+            }
+            return deliver(rows, batchSize);
+        }
+
+        while (!finished && rows.size() < maxRows && batchSize < batchLimit) {
+            JsonToken token = parser.nextToken();
+            if (!inSegment) {
+                if (token == null) {
+                    finished = true;
+                } else if (token == JsonToken.START_ARRAY) {
+                    inSegment = true;
+                } else {
+                    throw new IOException("Formato de segmento inválido: se esperaba un arreglo de filas");
+                }
+            } else if (token == JsonToken.END_ARRAY) {
+                inSegment = false;
+            } else {
+                Object[] row = SqlServerBackupReader.readJsonRow(parser, columns, Collections.<Boolean>emptyList(), objectMapper);
+                rows.add(row);
+                batchSize += SqlServerMemoryBudget.estimateSize(row);
+            }
+        }
+        return deliver(rows, batchSize);
+    }
+
+    private List<Object[]> deliver(List<Object[]> rows, long batchSize) {
+        SqlServerMemoryBudget.reserve(batchSize);
+        deliveredSize = batchSize;
+        return rows;
+    }
+
+    private void releaseDelivered() {
+        SqlServerMemoryBudget.release(deliveredSize);
+        deliveredSize = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        releaseDelivered();
+        try {
+            if (parser != null) {
+                parser.close();
+            }
+            contentStream.close();
+        } finally {
+            compressedStream.close();
+        }
+    }
+}
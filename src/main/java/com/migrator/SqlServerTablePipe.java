@@ -0,0 +1,226 @@
+package com.migrator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Copia directa de una tabla entre servidores (--migrate): un hilo lee el ResultSet del origen
+// en lotes y los deja en una cola de capacidad fija, de la que la carga en el destino los toma
+// como de cualquier otra fuente de filas. La lectura y la carga avanzan a la vez; cuando la
+// cola se llena el lector espera, por lo que la memoria usada no depende del tamaño de la tabla.
+//
+// Los lotes se cortan también al llegar al límite de SqlServerMemoryBudget. Los tiempos de
+// espera de cada lado indican qué servidor limitó la copia.
+public class SqlServerTablePipe implements SqlServerRowSource, AutoCloseable {
+
+    private final SqlServerBinaryRowFormat rowFormat;
+    private final BlockingQueue<Batch> queue;
+    private Thread readerThread;
+    private volatile PreparedStatement statement;
+    private volatile boolean closed;
+
+    // Lote entregado y filas aún no entregadas de él (si se pidieron menos)
+    private List<Object[]> pending = new ArrayList<Object[]>();
+    private long deliveredSize;
+    private boolean finished;
+
+    private volatile long readRows;
+    // Esperas del lector con la cola llena y de la carga con la cola vacía
+    private volatile long readerWaitNanos;
+    private long loaderWaitNanos;
+
+    public SqlServerTablePipe(SqlServerBinaryRowFormat rowFormat, int queueCapacity) {
+        this.rowFormat = rowFormat;
+        this.queue = new ArrayBlockingQueue<Batch>(queueCapacity);
+    }
+
+    // Ejecuta la consulta en el hilo lector; los parámetros se asignan en orden
+    public void start(final Connection connection, final String sql, final List<Object> parameters,
+                      final int batchSize) {
+        readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ResultSet rs = null;
+                // Filas leídas que aún no están en la cola
+                List<Object[]> rows = new ArrayList<Object[]>();
+                try {
+                    statement = connection.prepareStatement(sql);
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    rs = statement.executeQuery();
+
+                    long batchLimit = SqlServerMemoryBudget.getBatchLimit();
+                    long size = 0;
+                    while (rs.next()) {
+                        Object[] row = rowFormat.readRow(rs);
+                        rows.add(row);
+                        size += SqlServerMemoryBudget.estimateSize(row);
+                        readRows++;
+                        if (rows.size() >= batchSize || size >= batchLimit) {
+                            put(new Batch(rows, size, null));
+                            rows = new ArrayList<Object[]>();
+                            size = 0;
+                        }
+                    }
+                    if (!rows.isEmpty()) {
+                        put(new Batch(rows, size, null));
+                        rows = new ArrayList<Object[]>();
+                    }
+                    put(new Batch(null, 0, null));
+                } catch (InterruptedException e) {
+                    // La carga cerró la copia
+                } catch (Exception e) {
+                    if (!closed) {
+                        try {
+                            put(new Batch(null, 0, e));
+                        } catch (InterruptedException ignored) {
+                            // La carga cerró la copia
+                        }
+                    }
+                } finally {
+                    SqlServerLobValue.release(rows);
+                    try {
+                        if (rs != null) rs.close();
+                        if (statement != null) statement.close();
+                    } catch (SQLException e) {
+                        // Ignorar errores al cerrar
+                    }
+                }
+            }
+        }, "table-pipe");
+        readerThread.setDaemon(true);
+        readerThread.start();
+    }
+
+    @Override
+    public List<String> getColumns() {
+        return rowFormat.getColumnNames();
+    }
+
+    // Devuelve hasta maxRows filas; lista vacía cuando el origen no tiene más. El lote anterior
+    // ya fue consumido y deja de contar en el presupuesto.
+    @Override
+    public List<Object[]> readRows(int maxRows) throws IOException {
+        if (pending.isEmpty()) {
+            SqlServerMemoryBudget.release(deliveredSize);
+            deliveredSize = 0;
+            if (finished) {
+                return new ArrayList<Object[]>();
+            }
+
+            Batch batch = take();
+            if (batch.error != null) {
+                finished = true;
+                throw new IOException("Error leyendo el origen: " + batch.error.getMessage(), batch.error);
+            }
+            if (batch.rows == null) {
+                finished = true;
+                return new ArrayList<Object[]>();
+            }
+            pending = batch.rows;
+            deliveredSize = batch.size;
+        }
+
+        if (pending.size() <= maxRows) {
+            List<Object[]> rows = pending;
+            pending = new ArrayList<Object[]>();
+            return rows;
+        }
+        List<Object[]> rows = new ArrayList<Object[]>(pending.subList(0, maxRows));
+        pending = new ArrayList<Object[]>(pending.subList(maxRows, pending.size()));
+        return rows;
+    }
+
+    public long getReadRows() {
+        return readRows;
+    }
+
+    public long getReaderWaitNanos() {
+        return readerWaitNanos;
+    }
+
+    public long getLoaderWaitNanos() {
+        return loaderWaitNanos;
+    }
+
+    // Detiene la lectura si no terminó y libera los lotes no cargados
+    @Override
+    public void close() {
+        closed = true;
+        if (readerThread != null) {
+            PreparedStatement running = statement;
+            if (running != null) {
+                try {
+                    // Sin cancelar, el lector podría quedar esperando al servidor
+                    running.cancel();
+                } catch (SQLException e) {
+                    // Ignorar errores al cancelar
+                }
+            }
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        SqlServerMemoryBudget.release(deliveredSize);
+        deliveredSize = 0;
+        SqlServerLobValue.release(pending);
+        pending = new ArrayList<Object[]>();
+        Batch batch;
+        while ((batch = queue.poll()) != null) {
+            if (batch.rows != null) {
+                SqlServerMemoryBudget.release(batch.size);
+                SqlServerLobValue.release(batch.rows);
+            }
+        }
+    }
+
+    private void put(Batch batch) throws InterruptedException {
+        SqlServerMemoryBudget.reserve(batch.size);
+        long start = System.nanoTime();
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            // Las filas las libera el lector
+            SqlServerMemoryBudget.release(batch.size);
+            throw e;
+        }
+        readerWaitNanos += System.nanoTime() - start;
+    }
+
+    private Batch take() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Copia interrumpida");
+        } finally {
+            loaderWaitNanos += System.nanoTime() - start;
+        }
+    }
+
+    // Lote de filas; sin filas marca el final del origen o, con error, su falla
+    private static class Batch {
+        final List<Object[]> rows;
+        final long size;
+        final Exception error;
+
+        Batch(List<Object[]> rows, long size, Exception error) {
+            this.rows = rows;
+            this.size = size;
+            this.error = error;
+        }
+    }
+}
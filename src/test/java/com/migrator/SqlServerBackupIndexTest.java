@@ -0,0 +1,133 @@
+package com.migrator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerBackupIndexTest {
+
+    @TempDir
+    File tempDir;
+
+    private final ObjectMapper objectMapper = SqlServerTestData.objectMapper();
+
+    @Test
+    void indexRecordsTablesAndSegments() throws Exception {
+        String backupFile = writeBackup(SqlServerCompressionCodec.forName("gzip", -1));
+
+        SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, objectMapper);
+
+        assertNotNull(index);
+        assertNotNull(index.getStructure());
+        assertNotNull(index.getObjects());
+        assertEquals(2, index.getTables().size());
+        assertEquals(5000, index.getMetadata().getTotalRecords());
+        assertEquals(Integer.valueOf(1), index.getObjectCounts().get("views"));
+
+        SqlServerBackupIndex.TableEntry clientes = index.getTable("dbo.Clientes");
+        assertEquals(5000, clientes.getRowCount());
+        assertEquals(3, clientes.getSegments().size());
+        long position = clientes.getOffset();
+        long rows = 0;
+        for (SqlServerBackupIndex.Segment segment : clientes.getSegments()) {
+            // Los segmentos están en orden dentro del rango de la tabla
+            assertTrue(segment.getOffset() >= position);
+            position = segment.getOffset() + segment.getCompressedSize();
+            rows += segment.getRowCount();
+            assertNotNull(segment.getChecksum());
+            assertNotNull(segment.getBlocks());
+        }
+        assertEquals(5000, rows);
+        assertTrue(position <= clientes.getOffset() + clientes.getCompressedSize());
+
+        SqlServerBackupIndex.TableEntry pedidos = index.getTable("dbo.Pedidos");
+        assertEquals(0, pedidos.getRowCount());
+        assertTrue(pedidos.getSegments().isEmpty());
+        assertTrue(pedidos.getOffset() >= clientes.getOffset() + clientes.getCompressedSize());
+        assertTrue(index.getObjects().getOffset() >= pedidos.getOffset() + pedidos.getCompressedSize());
+        assertNull(index.getTable("dbo.NoExiste"));
+    }
+
+    @Test
+    void tableSegmentsAreReadFromTheirRanges() throws Exception {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName("gzip", -1);
+        String backupFile = writeBackup(codec);
+        SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, objectMapper);
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes");
+
+        SqlServerSegmentReader reader = SqlServerSegmentReader.openTable(backupFile, index.getTable("dbo.Clientes"),
+                codec, null, 1, objectMapper,
+                SqlServerBinaryRowFormat.forTable(exportData.getTables().get("dbo.Clientes")));
+        List<Object[]> rows = new ArrayList<Object[]>();
+        try {
+            List<Object[]> batch;
+            while (!(batch = reader.readRows(1000)).isEmpty()) {
+                rows.addAll(batch);
+            }
+        } finally {
+            reader.close();
+        }
+
+        List<Object[]> expected = new ArrayList<Object[]>();
+        for (Object[][] segment : clientesSegments()) {
+            expected.addAll(Arrays.asList(segment));
+        }
+        assertArrayEquals(expected.toArray(), rows.toArray());
+    }
+
+    @Test
+    void backupWithoutFooterHasNoIndex() throws Exception {
+        String backupFile = writeBackup(SqlServerCompressionCodec.forName("gzip", -1));
+        RandomAccessFile file = new RandomAccessFile(backupFile, "rw");
+        try {
+            // Sin el último byte el pie no es válido: el backup se lee en forma secuencial
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        assertNull(SqlServerBackupIndex.read(backupFile, objectMapper));
+    }
+
+    @Test
+    void jsonBackupHasNoIndex() throws Exception {
+        String backupFile = new File(tempDir, "backup.json.gz").getPath();
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes");
+        SqlServerBackupWriter writer = new SqlServerBackupWriter(backupFile, objectMapper, false,
+                SqlServerCompressionCodec.forName("gzip", -1), 1);
+        try {
+            writer.writeStructure(exportData);
+            writer.beginTable("dbo.Clientes", exportData.getTables().get("dbo.Clientes"));
+            writer.writeSegment(SqlServerTestData.resultSet(2, SqlServerTestData.rows(0, 10)));
+            writer.endTable();
+            writer.finish(exportData);
+        } finally {
+            writer.close();
+        }
+
+        assertNull(SqlServerBackupIndex.read(backupFile, objectMapper));
+    }
+
+    private String writeBackup(SqlServerCompressionCodec codec) throws Exception {
+        String backupFile = new File(tempDir, "backup" + codec.getFileExtension()).getPath();
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes", "dbo.Pedidos");
+        exportData.getViews().put("dbo.Resumen", "CREATE VIEW dbo.Resumen AS SELECT 1 AS x");
+
+        Map<String, List<Object[][]>> segments = new HashMap<String, List<Object[][]>>();
+        segments.put("dbo.Clientes", clientesSegments());
+        segments.put("dbo.Pedidos", Collections.<Object[][]>emptyList());
+        SqlServerTestData.writeBackup(backupFile, codec, 1, exportData, segments);
+        return backupFile;
+    }
+
+    private static List<Object[][]> clientesSegments() {
+        return Arrays.asList(SqlServerTestData.rows(0, 2000), SqlServerTestData.rows(2000, 2000),
+                SqlServerTestData.rows(4000, 1000));
+    }
+}
@@ -0,0 +1,224 @@
+package com.migrator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerBinaryRowFormatTest {
+
+    private final TimeZone defaultZone = TimeZone.getDefault();
+
+    @AfterEach
+    void restoreDefaults() {
+        TimeZone.setDefault(defaultZone);
+        SqlServerMemoryBudget.configure(0, 1);
+    }
+
+    @Test
+    void nullBitmapCoversColumnsPastTheFirstByte() throws Exception {
+        // Diez columnas: el mapa de nulos ocupa dos bytes
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "c1 int", "c2 bigint", "c3 smallint", "c4 tinyint", "c5 bit", "c6 real", "c7 float",
+                "c8 decimal", "c9 nvarchar 20", "c10 varbinary 20"));
+        Object[] full = {1, 2L, (short) 3, (short) 250, true, 1.5f, 2.25d, new BigDecimal("-12345678901234567890.0125"),
+                "ñandú", new byte[]{0, 1, (byte) 0xff}};
+        Object[] sparse = {null, 5L, null, null, null, null, null, null, null, new byte[0]};
+
+        Object[][] read = writeAndRead(rowFormat, full, sparse);
+
+        assertArrayEquals(full, read[0]);
+        assertArrayEquals(sparse, read[1]);
+    }
+
+    @Test
+    void varIntsUseSevenBitsPerByte() throws Exception {
+        int[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 5};
+
+        for (int i = 0; i < values.length; i++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            SqlServerBinaryRowFormat.writeVarInt(new DataOutputStream(bytes), values[i]);
+            assertEquals(sizes[i], bytes.size(), "bytes de " + values[i]);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals(values[i], SqlServerBinaryRowFormat.readVarInt(in));
+        }
+    }
+
+    @Test
+    void largeObjectsAreStreamedInChunks() throws Exception {
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "id int", "body nvarchar -1", "data varbinary -1"));
+        assertTrue(rowFormat.isLob(1));
+        assertTrue(rowFormat.isLob(2));
+
+        // Un par sustituto justo en el límite del primer trozo de texto
+        StringBuilder text = new StringBuilder();
+        while (text.length() < SqlServerBinaryRowFormat.LOB_CHUNK_SIZE / 4 - 1) {
+            text.append('a');
+        }
+        text.append("😀");
+        for (int i = 0; i < 100000; i++) {
+            text.append((char) ('a' + i % 26));
+        }
+        byte[] data = new byte[3 * SqlServerBinaryRowFormat.LOB_CHUNK_SIZE + 17];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ResultSet rs = SqlServerTestData.resultSet(3,
+                new Object[]{1, text.toString(), data}, new Object[]{2, null, null});
+        while (rs.next()) {
+            rowFormat.writeRow(out, rs);
+        }
+        out.writeByte(SqlServerBinaryRowFormat.ROW_END);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        int marker = in.readUnsignedByte();
+        assertEquals(SqlServerBinaryRowFormat.ROW_STREAMED, marker);
+        Object[] first = rowFormat.readRow(in, marker);
+        assertEquals(1, first[0]);
+        assertEquals(text.toString(), first[1]);
+        assertArrayEquals(data, (byte[]) first[2]);
+
+        Object[] second = rowFormat.readRow(in, in.readUnsignedByte());
+        assertArrayEquals(new Object[]{2, null, null}, second);
+        assertEquals(SqlServerBinaryRowFormat.ROW_END, in.readUnsignedByte());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void largeObjectsOverTheInlineLimitSpillToDisk() throws Exception {
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "data varbinary -1"));
+        byte[] data = new byte[SqlServerLobValue.INLINE_LIMIT + 1000];
+        Arrays.fill(data, (byte) 7);
+
+        Object[][] read = writeAndRead(rowFormat, new Object[]{data});
+
+        assertTrue(read[0][0] instanceof SqlServerLobValue);
+        SqlServerLobValue lob = (SqlServerLobValue) read[0][0];
+        try {
+            assertTrue(lob.isBinary());
+            assertEquals(data.length, lob.getLength());
+            assertArrayEquals(data, readAll(lob.openStream()));
+        } finally {
+            SqlServerLobValue.release(read[0]);
+        }
+    }
+
+    @Test
+    void copyRowReproducesTheEncodedRow() throws Exception {
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "id int", "amount money", "created datetime2", "body nvarchar -1", "changed datetimeoffset"));
+        byte[] encoded = encode(rowFormat,
+                new Object[]{1, new BigDecimal("10.5000"), LocalDateTime.of(2024, 1, 2, 3, 4, 5, 600),
+                        "texto", OffsetDateTime.of(2024, 1, 2, 3, 4, 5, 0, ZoneOffset.ofHours(-3))},
+                new Object[]{2, null, null, null, null});
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(copy);
+        int marker;
+        while ((marker = in.readUnsignedByte()) != SqlServerBinaryRowFormat.ROW_END) {
+            rowFormat.copyRow(in, out, marker);
+        }
+        out.writeByte(SqlServerBinaryRowFormat.ROW_END);
+
+        assertArrayEquals(encoded, copy.toByteArray());
+    }
+
+    @Test
+    void datesDoNotShiftInTheLocalZone() throws Exception {
+        // 02:30 del 10/03/2024 no existe en Nueva York (cambio de horario)
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "created datetime2", "day date", "at time", "changed datetimeoffset"));
+        LocalDateTime gap = LocalDateTime.of(2024, 3, 10, 2, 30, 0, 123456700);
+
+        Object[][] read = writeAndRead(rowFormat, new Object[]{gap, LocalDate.of(2024, 3, 10),
+                LocalTime.of(2, 30, 0, 100), OffsetDateTime.of(gap, ZoneOffset.ofHoursMinutes(-5, -30))});
+
+        assertEquals(gap, read[0][0]);
+        assertEquals("2024-03-10T02:30:00.1234567", SqlServerBinaryRowFormat.formatDateTime(gap, 'T'));
+        assertEquals(Date.valueOf("2024-03-10"), read[0][1]);
+        assertEquals("02:30:00.0000001", read[0][2]);
+        assertEquals("2024-03-10T02:30:00.1234567-05:30", read[0][3]);
+    }
+
+    @Test
+    void clrTypesAreKeptAsBytes() throws Exception {
+        SqlServerBinaryRowFormat rowFormat = SqlServerBinaryRowFormat.forTable(SqlServerTestData.table("dbo", "T",
+                "node hierarchyid", "shape geometry", "place geography", "doc xml"));
+        Object[] row = {new byte[]{0x58}, new byte[]{1, 2, 3}, new byte[]{4, 5}, "<a/>"};
+
+        assertTrue(rowFormat.isBinary(0));
+        assertArrayEquals(row, writeAndRead(rowFormat, row)[0]);
+    }
+
+    @Test
+    void unsupportedTypesAreRejected() {
+        final SqlServerExportData.TableInfo tableInfo = SqlServerTestData.table("dbo", "T", "id int", "value sql_variant");
+
+        assertEquals(Collections.singletonList("value (sql_variant)"),
+                SqlServerBinaryRowFormat.findUnsupportedColumns(tableInfo));
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                SqlServerBinaryRowFormat.forTable(tableInfo);
+            }
+        });
+    }
+
+    private static Object[][] writeAndRead(SqlServerBinaryRowFormat rowFormat, Object[]... rows) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encode(rowFormat, rows)));
+        Object[][] read = new Object[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            read[i] = rowFormat.readRow(in, in.readUnsignedByte());
+        }
+        assertEquals(SqlServerBinaryRowFormat.ROW_END, in.readUnsignedByte());
+        return read;
+    }
+
+    private static byte[] encode(SqlServerBinaryRowFormat rowFormat, Object[]... rows) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        ResultSet rs = SqlServerTestData.resultSet(rowFormat.getColumnNames().size(), rows);
+        while (rs.next()) {
+            rowFormat.writeRow(out, rs);
+        }
+        out.writeByte(SqlServerBinaryRowFormat.ROW_END);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.migrator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerBlockStreamTest {
+
+    @TempDir
+    File tempDir;
+
+    private final SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName("gzip", -1);
+    private ExecutorService executor;
+
+    @BeforeEach
+    void startExecutor() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void blocksFormAMultiMemberStream() throws Exception {
+        byte[] data = data(2 * SqlServerBlockOutputStream.BLOCK_SIZE + 12345);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Long> blockSizes = compress(data, output, executor);
+
+        assertEquals(3, blockSizes.size());
+        long total = 0;
+        for (Long size : blockSizes) {
+            total += size;
+        }
+        assertEquals(output.size(), total);
+        assertArrayEquals(data, readAll(codec.decompress(new ByteArrayInputStream(output.toByteArray()))));
+    }
+
+    @Test
+    void parallelOutputMatchesSequentialOutput() throws Exception {
+        byte[] data = data(3 * SqlServerBlockOutputStream.BLOCK_SIZE + 1);
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        assertEquals(compress(data, parallel, executor), compress(data, sequential, null));
+
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+    }
+
+    @Test
+    void blocksAreDecompressedFromTheirRanges() throws Exception {
+        byte[] data = data(2 * SqlServerBlockOutputStream.BLOCK_SIZE + 999);
+        // Los bloques empiezan después de un encabezado, como dentro del backup
+        byte[] header = "ENCABEZADO".getBytes("UTF-8");
+
+        File file = new File(tempDir, "bloques.gz");
+        FileOutputStream out = new FileOutputStream(file);
+        List<Long> blockSizes;
+        try {
+            out.write(header);
+            blockSizes = compress(data, out, executor);
+        } finally {
+            out.close();
+        }
+
+        List<SqlServerBackupIndex.Section> ranges = new ArrayList<SqlServerBackupIndex.Section>();
+        long offset = header.length;
+        for (Long size : blockSizes) {
+            ranges.add(new SqlServerBackupIndex.Section(offset, size, 0));
+            offset += size;
+        }
+
+        // Menos rangos pendientes que bloques: la lectura espera a los primeros
+        InputStream in = new SqlServerBlockInputStream(file.getPath(), ranges, codec, executor, 2);
+        assertArrayEquals(data, readAll(in));
+    }
+
+    @Test
+    void emptyStreamWritesOneMember() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        List<Long> blockSizes = compress(new byte[0], output, executor);
+
+        assertEquals(1, blockSizes.size());
+        assertEquals(0, readAll(codec.decompress(new ByteArrayInputStream(output.toByteArray()))).length);
+    }
+
+    private List<Long> compress(byte[] data, OutputStream target, ExecutorService blockExecutor) throws IOException {
+        SqlServerBlockOutputStream out = new SqlServerBlockOutputStream(target, codec, blockExecutor, 4);
+        // Escrituras de distintos tamaños para cruzar los límites de bloque
+        int position = 0;
+        int chunk = 1;
+        while (position < data.length) {
+            int count = Math.min(chunk, data.length - position);
+            if (count == 1) {
+                out.write(data[position]);
+            } else {
+                out.write(data, position, count);
+            }
+            position += count;
+            chunk = chunk * 7 % 500009 + 1;
+        }
+        out.close();
+        return out.getBlockSizes();
+    }
+
+    // Datos comprimibles pero no triviales
+    private static byte[] data(int length) {
+        Random random = new Random(42);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i % 64 == 0 ? random.nextInt() : 'a' + i % 13);
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
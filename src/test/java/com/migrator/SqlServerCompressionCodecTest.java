@@ -0,0 +1,169 @@
+package com.migrator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerCompressionCodecTest {
+
+    private static final String[] CODECS = {"gzip", "zstd", "lz4", "none"};
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void footerFramingMatchesItsSize() throws Exception {
+        byte[] payload = "{\"format_version\":2,\"tables\":[]}".getBytes("UTF-8");
+        for (String name : CODECS) {
+            SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName(name, -1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            codec.writeFooter(out, payload);
+            byte[] footer = out.toByteArray();
+
+            assertEquals(codec.getFooterSize(payload.length), footer.length, name);
+            assertTrue(codec.isFooter(footer), name);
+            assertArrayEquals(payload, Arrays.copyOfRange(footer, codec.getFooterPayloadOffset(),
+                    codec.getFooterPayloadOffset() + payload.length), name);
+        }
+    }
+
+    @Test
+    void uncompressedFooterNeedsItsTrailer() {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName("none", -1);
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            byte[] tail = new byte[codec.getFooterSize(64)];
+            random.nextBytes(tail);
+            assertFalse(codec.isFooter(tail));
+        }
+    }
+
+    @Test
+    void gzipFooterIsAValidMember() throws Exception {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName("gzip", -1);
+        byte[] payload = "índice".getBytes("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream data = codec.compress(out);
+        data.write("datos".getBytes("UTF-8"));
+        data.close();
+        codec.writeFooter(out, payload);
+
+        // El descompresor estándar lee el pie como un miembro más
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("datosíndice", new String(readAll(in), "UTF-8"));
+    }
+
+    @Test
+    void skippableFooterIsIgnoredByTheDecompressor() throws Exception {
+        for (String name : new String[]{"zstd", "lz4"}) {
+            SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName(name, -1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            OutputStream data = codec.compress(out);
+            data.write("datos".getBytes("UTF-8"));
+            data.close();
+            codec.writeFooter(out, "índice".getBytes("UTF-8"));
+            // Un miembro después del pie, como si el archivo siguiera
+            data = codec.compress(out);
+            data.write("-fin".getBytes("UTF-8"));
+            data.close();
+
+            // El frame skippable no forma parte del contenido
+            InputStream in = codec.decompress(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals("datos-fin", new String(readAll(in), "UTF-8"), name);
+        }
+    }
+
+    @Test
+    void gzipIsDetected() throws Exception {
+        assertDetected("gzip");
+    }
+
+    @Test
+    void zstdIsDetected() throws Exception {
+        assertDetected("zstd");
+    }
+
+    @Test
+    void lz4IsDetected() throws Exception {
+        assertDetected("lz4");
+    }
+
+    @Test
+    void uncompressedIsDetected() throws Exception {
+        assertDetected("none");
+    }
+
+    @Test
+    void invalidNamesAndLevelsAreRejected() {
+        assertThrowsIllegalArgument("brotli", -1);
+        assertThrowsIllegalArgument("gzip", 10);
+        assertThrowsIllegalArgument("zstd", 23);
+        assertThrowsIllegalArgument("none", 1);
+        assertEquals(12, SqlServerCompressionCodec.forName("lz4", 12).getLevel());
+    }
+
+    // Contenido comprimido y backup completo: el códec se reconoce por los primeros bytes y el
+    // backup tiene índice
+    private void assertDetected(String name) throws Exception {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName(name, -1);
+        byte[] content = "fila;fila;fila;fila".getBytes("UTF-8");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream compressed = codec.compress(out);
+        compressed.write(content);
+        compressed.close();
+
+        byte[] bytes = out.toByteArray();
+        assertEquals(name, SqlServerCompressionCodec.detect(bytes, bytes.length).getName());
+        assertArrayEquals(content, readAll(codec.decompress(new ByteArrayInputStream(bytes))));
+
+        String backupFile = new File(tempDir, "backup" + codec.getFileExtension()).getPath();
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes");
+        Map<String, List<Object[][]>> segments = new HashMap<String, List<Object[][]>>();
+        segments.put("dbo.Clientes", Collections.singletonList(SqlServerTestData.rows(0, 100)));
+        SqlServerTestData.writeBackup(backupFile, codec, 1, exportData, segments);
+
+        assertEquals(name, SqlServerCompressionCodec.detect(backupFile).getName());
+        SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, SqlServerTestData.objectMapper());
+        assertNotNull(index);
+        assertEquals(100, index.getTable("dbo.Clientes").getRowCount());
+
+        SqlServerSegmentReader reader = SqlServerSegmentReader.openTable(backupFile, index.getTable("dbo.Clientes"),
+                SqlServerCompressionCodec.detect(backupFile), null, 1, SqlServerTestData.objectMapper(),
+                SqlServerBinaryRowFormat.forTable(exportData.getTables().get("dbo.Clientes")));
+        try {
+            assertArrayEquals(SqlServerTestData.rows(0, 100), reader.readRows(1000).toArray());
+            assertTrue(reader.readRows(1000).isEmpty());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void assertThrowsIllegalArgument(final String name, final int level) {
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() {
+                SqlServerCompressionCodec.forName(name, level);
+            }
+        });
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
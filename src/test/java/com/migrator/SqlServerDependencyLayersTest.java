@@ -0,0 +1,70 @@
+package com.migrator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerDependencyLayersTest {
+
+    private final SqlServerMigrationService service = new SqlServerMigrationService();
+    private final SqlServerExportData exportData = new SqlServerExportData();
+
+    @Test
+    void tablesFollowTheirParents() {
+        addTable("dbo.Lineas", "dbo.Pedidos", "dbo.Productos");
+        addTable("dbo.Pedidos", "dbo.Clientes");
+        addTable("dbo.Productos");
+        addTable("dbo.Clientes");
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("dbo.Clientes", "dbo.Productos"),
+                Collections.singletonList("dbo.Pedidos"),
+                Collections.singletonList("dbo.Lineas")), service.buildDependencyLayers(exportData));
+    }
+
+    @Test
+    void selfAndExternalReferencesDoNotDelayATable() {
+        // Empleados se referencia a sí misma; Pedidos referencia una tabla que no está en el backup
+        addTable("dbo.Empleados", "dbo.Empleados");
+        addTable("dbo.Pedidos", "ventas.Clientes");
+
+        assertEquals(Collections.singletonList(Arrays.asList("dbo.Empleados", "dbo.Pedidos")),
+                service.buildDependencyLayers(exportData));
+    }
+
+    @Test
+    void circularDependenciesGoToTheLastLayer() {
+        addTable("dbo.A", "dbo.B");
+        addTable("dbo.B", "dbo.A");
+        addTable("dbo.C", "dbo.A");
+        addTable("dbo.D");
+
+        // C no forma parte del ciclo, pero depende de él
+        List<List<String>> layers = service.buildDependencyLayers(exportData);
+        assertEquals(Arrays.asList(
+                Collections.singletonList("dbo.D"),
+                Arrays.asList("dbo.A", "dbo.B", "dbo.C")), layers);
+    }
+
+    // Tabla "esquema.tabla" con una foreign key a cada tabla referenciada
+    private void addTable(String tableName, String... referencedTables) {
+        String[] parts = tableName.split("\\.");
+        SqlServerExportData.TableInfo tableInfo = SqlServerTestData.table(parts[0], parts[1], "id int");
+        for (String referencedTable : referencedTables) {
+            String[] referenced = referencedTable.split("\\.");
+            SqlServerExportData.ForeignKeyInfo foreignKey = new SqlServerExportData.ForeignKeyInfo();
+            foreignKey.setConstraintName("FK_" + parts[1] + "_" + referenced[1]);
+            foreignKey.setColumnName(referenced[1].toLowerCase() + "_id");
+            foreignKey.setReferencedSchema(referenced[0]);
+            foreignKey.setReferencedTable(referenced[1]);
+            foreignKey.setReferencedColumn("id");
+            tableInfo.getForeignKeys().add(foreignKey);
+        }
+        exportData.getTables().put(tableName, tableInfo);
+        exportData.getTableOrder().add(tableName);
+    }
+}
@@ -0,0 +1,194 @@
+package com.migrator;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerImportJournalTest {
+
+    private static final String BACKUP_KEY = "backup.sqlbak.gz:1024";
+
+    private final JournalTable journalTable = new JournalTable();
+    private final Connection connection = journalTable.connect();
+
+    @Test
+    void completedUnitsAreResumed() throws Exception {
+        SqlServerImportJournal journal = SqlServerImportJournal.open(connection, BACKUP_KEY);
+        assertTrue(journalTable.exists);
+        assertFalse(journal.hasEntries());
+
+        journal.markCompleted(connection, SqlServerImportJournal.UNIT_STRUCTURE, 0);
+        journal.markCompleted(connection, SqlServerImportJournal.tableUnit("dbo.Clientes"), 5000);
+
+        SqlServerImportJournal resumed = SqlServerImportJournal.open(connection, BACKUP_KEY);
+        assertTrue(resumed.hasEntries());
+        assertTrue(resumed.isCompleted(SqlServerImportJournal.UNIT_STRUCTURE));
+        assertTrue(resumed.isCompleted(SqlServerImportJournal.tableUnit("dbo.Clientes")));
+        assertEquals(5000, resumed.getRowCount(SqlServerImportJournal.tableUnit("dbo.Clientes")));
+        assertFalse(resumed.isCompleted(SqlServerImportJournal.tableUnit("dbo.Pedidos")));
+        assertFalse(resumed.isCompleted(SqlServerImportJournal.UNIT_OBJECTS));
+    }
+
+    @Test
+    void progressKeepsTheLastConfirmedBatch() throws Exception {
+        SqlServerImportJournal journal = SqlServerImportJournal.open(connection, BACKUP_KEY);
+        String unit = SqlServerImportJournal.progressUnit("dbo.Clientes");
+
+        // El primer lote inserta la fila de progreso y los siguientes la actualizan
+        journal.markProgress(connection, "dbo.Clientes", 1000);
+        journal.markProgress(connection, "dbo.Clientes", 2000);
+        journal.markProgress(connection, "dbo.Clientes", 3000);
+        assertEquals(1, journalTable.rows.size());
+        assertEquals(3000, journal.getRowCount(unit));
+
+        SqlServerImportJournal resumed = SqlServerImportJournal.open(connection, BACKUP_KEY);
+        assertEquals(3000, resumed.getRowCount(unit));
+        assertFalse(resumed.isCompleted(SqlServerImportJournal.tableUnit("dbo.Clientes")));
+    }
+
+    @Test
+    void backupsDoNotShareTheirJournal() throws Exception {
+        SqlServerImportJournal journal = SqlServerImportJournal.open(connection, BACKUP_KEY);
+        SqlServerImportJournal other = SqlServerImportJournal.open(connection, "otro.sqlbak.gz:2048");
+        journal.markCompleted(connection, SqlServerImportJournal.UNIT_STRUCTURE, 0);
+        other.markProgress(connection, "dbo.Clientes", 500);
+
+        assertFalse(SqlServerImportJournal.open(connection, "otro.sqlbak.gz:2048")
+                .isCompleted(SqlServerImportJournal.UNIT_STRUCTURE));
+        assertEquals(0, SqlServerImportJournal.open(connection, BACKUP_KEY)
+                .getRowCount(SqlServerImportJournal.progressUnit("dbo.Clientes")));
+
+        // Al terminar se borran sólo las filas del backup; la tabla queda para el otro
+        journal.delete(connection);
+        assertFalse(journal.hasEntries());
+        assertFalse(SqlServerImportJournal.open(connection, BACKUP_KEY).hasEntries());
+        assertTrue(journalTable.exists);
+
+        other.delete(connection);
+        assertFalse(journalTable.exists);
+    }
+
+    // Tabla del journal en memoria detrás de una Connection que entiende las sentencias que
+    // usa SqlServerImportJournal
+    private static class JournalTable {
+        // backup_key y unit_name -> row_count, en orden de inserción
+        final Map<List<String>, Long> rows = new LinkedHashMap<List<String>, Long>();
+        boolean exists;
+
+        Connection connect() {
+            return proxy(Connection.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    if ("createStatement".equals(method.getName())) {
+                        return statement(null);
+                    } else if ("prepareStatement".equals(method.getName())) {
+                        return statement((String) args[0]);
+                    }
+                    throw new SQLException("No soportado en la prueba: " + method.getName());
+                }
+            });
+        }
+
+        private PreparedStatement statement(final String sql) {
+            final Map<Integer, Object> parameters = new HashMap<Integer, Object>();
+            return proxy(PreparedStatement.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    String name = method.getName();
+                    if (name.startsWith("set")) {
+                        parameters.put((Integer) args[0], args[1]);
+                        return null;
+                    } else if ("close".equals(name)) {
+                        return null;
+                    } else if ("execute".equals(name)) {
+                        execute((String) args[0]);
+                        return false;
+                    } else if ("executeUpdate".equals(name)) {
+                        return executeUpdate(sql, parameters);
+                    } else if ("executeQuery".equals(name)) {
+                        return executeQuery((String) parameters.get(1));
+                    }
+                    throw new SQLException("No soportado en la prueba: " + name);
+                }
+            });
+        }
+
+        private void execute(String sql) {
+            if (sql.contains("CREATE TABLE")) {
+                exists = true;
+            } else if (sql.contains("DROP TABLE") && rows.isEmpty()) {
+                exists = false;
+            }
+        }
+
+        private int executeUpdate(String sql, Map<Integer, Object> parameters) throws SQLException {
+            if (!exists) {
+                throw new SQLException("La tabla del journal no existe");
+            }
+            if (sql.startsWith("INSERT")) {
+                List<String> key = Arrays.asList((String) parameters.get(1), (String) parameters.get(2));
+                if (rows.containsKey(key)) {
+                    throw new SQLException("Clave duplicada: " + key);
+                }
+                rows.put(key, (Long) parameters.get(3));
+                return 1;
+            } else if (sql.startsWith("UPDATE")) {
+                List<String> key = Arrays.asList((String) parameters.get(2), (String) parameters.get(3));
+                if (!rows.containsKey(key)) {
+                    return 0;
+                }
+                rows.put(key, (Long) parameters.get(1));
+                return 1;
+            } else if (sql.startsWith("DELETE")) {
+                int deleted = 0;
+                Iterator<List<String>> keys = rows.keySet().iterator();
+                while (keys.hasNext()) {
+                    if (keys.next().get(0).equals(parameters.get(1))) {
+                        keys.remove();
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            throw new SQLException("Sentencia no soportada en la prueba: " + sql);
+        }
+
+        private ResultSet executeQuery(String backupKey) {
+            final List<Map.Entry<List<String>, Long>> result = new ArrayList<Map.Entry<List<String>, Long>>();
+            for (Map.Entry<List<String>, Long> row : rows.entrySet()) {
+                if (row.getKey().get(0).equals(backupKey)) {
+                    result.add(row);
+                }
+            }
+            final int[] current = {-1};
+            return proxy(ResultSet.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    String name = method.getName();
+                    if ("next".equals(name)) {
+                        return ++current[0] < result.size();
+                    } else if ("close".equals(name)) {
+                        return null;
+                    } else if ("getString".equals(name) && "unit_name".equals(args[0])) {
+                        return result.get(current[0]).getKey().get(1);
+                    } else if ("getLong".equals(name) && "row_count".equals(args[0])) {
+                        return result.get(current[0]).getValue();
+                    }
+                    throw new SQLException("No soportado en la prueba: " + name);
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(SqlServerImportJournalTest.class.getClassLoader(),
+                    new Class<?>[]{type}, handler);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.migrator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerIncrementalApplyTest {
+
+    private static final String FK_PEDIDOS = "FK_Pedidos_Clientes";
+
+    @TempDir
+    File tempDir;
+
+    private final Database database = new Database();
+    private final SqlServerMigrationService service = new SqlServerMigrationService();
+
+    @Test
+    void reparentedChildIsMergedBeforeItsForeignKeyIsChecked() throws Exception {
+        database.existingTables.add("[dbo].[Clientes]");
+        database.existingTables.add("[dbo].[Pedidos]");
+        database.foreignKeys.add(new String[]{"dbo.Pedidos", "dbo.Clientes", FK_PEDIDOS, "0"});
+        // Tabla fuera del incremental: su foreign key sigue activa
+        database.foreignKeys.add(new String[]{"dbo.Facturas", "dbo.Clientes", "FK_Facturas_Clientes", "0"});
+
+        // El pedido 10 pasó del cliente 1, borrado en el origen, al cliente 2
+        SqlServerExportData incremental = incremental(true);
+        service.applyIncremental(database.connect(), writeIncremental(incremental), incremental.getMetadata(), null);
+
+        int disabled = database.indexOf("ALTER TABLE [dbo].[Pedidos] NOCHECK CONSTRAINT [" + FK_PEDIDOS + "]");
+        int deleted = database.indexOf("DELETE FROM [dbo].[Clientes] WHERE [id] = ? [1]");
+        int merged = database.indexOf("MERGE [dbo].[Pedidos]");
+        int checked = database.indexOf("ALTER TABLE [dbo].[Pedidos] WITH CHECK CHECK CONSTRAINT [" + FK_PEDIDOS + "]");
+        assertTrue(disabled >= 0 && disabled < deleted, database.log.toString());
+        assertTrue(deleted < merged && merged < checked, database.log.toString());
+        assertTrue(database.indexOf("MERGE [dbo].[Clientes]") < merged, database.log.toString());
+        assertEquals(-1, database.indexOf("ALTER TABLE [dbo].[Facturas]"), database.log.toString());
+    }
+
+    @Test
+    void foreignKeysStayEnabledWithoutDeletes() throws Exception {
+        database.existingTables.add("[dbo].[Clientes]");
+        database.existingTables.add("[dbo].[Pedidos]");
+        database.foreignKeys.add(new String[]{"dbo.Pedidos", "dbo.Clientes", FK_PEDIDOS, "0"});
+
+        SqlServerExportData incremental = incremental(false);
+        service.applyIncremental(database.connect(), writeIncremental(incremental), incremental.getMetadata(), null);
+
+        assertTrue(database.indexOf("MERGE [dbo].[Pedidos]") >= 0, database.log.toString());
+        assertEquals(-1, database.indexOf("ALTER TABLE"), database.log.toString());
+    }
+
+    @Test
+    void untrustedForeignKeyIsEnabledWithoutValidation() throws Exception {
+        database.existingTables.add("[dbo].[Clientes]");
+        database.existingTables.add("[dbo].[Pedidos]");
+        database.foreignKeys.add(new String[]{"dbo.Pedidos", "dbo.Clientes", FK_PEDIDOS, "1"});
+
+        SqlServerExportData incremental = incremental(true);
+        service.applyIncremental(database.connect(), writeIncremental(incremental), incremental.getMetadata(), null);
+
+        assertTrue(database.indexOf("ALTER TABLE [dbo].[Pedidos] CHECK CONSTRAINT [" + FK_PEDIDOS + "]") >
+                database.indexOf("MERGE [dbo].[Pedidos]"), database.log.toString());
+        assertEquals(-1, database.indexOf("ALTER TABLE [dbo].[Pedidos] WITH CHECK"), database.log.toString());
+    }
+
+    @Test
+    void stagedTextColumnsUseTheDatabaseCollation() throws Exception {
+        database.existingTables.add("[dbo].[Clientes]");
+        database.existingTables.add("[dbo].[Pedidos]");
+
+        SqlServerExportData incremental = incremental(false);
+        service.applyIncremental(database.connect(), writeIncremental(incremental), incremental.getMetadata(), null);
+
+        assertTrue(database.log.contains("CREATE TABLE #incr_stage_0 ([id] INT NULL, " +
+                "[name] NVARCHAR(100) COLLATE DATABASE_DEFAULT NULL)"), database.log.toString());
+        assertTrue(database.log.contains("CREATE TABLE #incr_stage_1 ([id] INT NULL, [cliente_id] INT NULL)"),
+                database.log.toString());
+    }
+
+    @Test
+    void tableCreatedMidChainGetsItsObjectsAfterItsRows() throws Exception {
+        database.existingTables.add("[dbo].[Clientes]");
+
+        SqlServerExportData incremental = incremental(false);
+        incremental.getTables().get("dbo.Pedidos").setCreateStatement(
+                "CREATE TABLE [dbo].[Pedidos] ([id] INT NOT NULL, [cliente_id] INT NULL, " +
+                        "CONSTRAINT [PK_Pedidos] PRIMARY KEY ([id]))");
+        incremental.getConstraints().put("dbo.Pedidos.CK_Pedidos_id",
+                "ALTER TABLE [dbo].[Pedidos] ADD CONSTRAINT [CK_Pedidos_id] CHECK ([id] > 0)");
+        incremental.getIndexes().put("dbo.Pedidos.IX_Pedidos_cliente",
+                "CREATE INDEX [IX_Pedidos_cliente] ON [dbo].[Pedidos] ([cliente_id])");
+        incremental.getIndexes().put("dbo.Clientes.IX_Clientes_name",
+                "CREATE INDEX [IX_Clientes_name] ON [dbo].[Clientes] ([name])");
+        service.applyIncremental(database.connect(), writeIncremental(incremental), incremental.getMetadata(), null);
+
+        int created = database.indexOf("CREATE TABLE [dbo].[Pedidos]");
+        int merged = database.indexOf("MERGE [dbo].[Pedidos]");
+        int constraint = database.indexOf("ALTER TABLE [dbo].[Pedidos] ADD CONSTRAINT [CK_Pedidos_id]");
+        int foreignKey = database.indexOf("ALTER TABLE [dbo].[Pedidos] ADD CONSTRAINT [" + FK_PEDIDOS + "] " +
+                "FOREIGN KEY ([cliente_id]) REFERENCES [dbo].[Clientes] ([id])");
+        int index = database.indexOf("CREATE INDEX [IX_Pedidos_cliente]");
+        assertTrue(created >= 0 && created < merged, database.log.toString());
+        assertTrue(merged < constraint && constraint < foreignKey && foreignKey < index, database.log.toString());
+        // Las tablas que ya existían conservan sus objetos
+        assertEquals(-1, database.indexOf("CREATE INDEX [IX_Clientes_name]"), database.log.toString());
+        assertEquals(-1, database.indexOf("ALTER TABLE [dbo].[Clientes]"), database.log.toString());
+    }
+
+    @Test
+    void baseRestoreDoesNotInsertRowversionColumns() throws Exception {
+        SqlServerExportData exportData = new SqlServerExportData();
+        SqlServerExportData.TableInfo tableInfo = SqlServerTestData.table("dbo", "Versiones",
+                "id int", "version timestamp", "name nvarchar 100");
+        exportData.getTables().put("dbo.Versiones", tableInfo);
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        rows.add(new Object[]{1, new byte[]{0, 0, 0, 0, 0, 0, 7, 1}, "uno"});
+        rows.add(new Object[]{2, new byte[]{0, 0, 0, 0, 0, 0, 7, 2}, "dos"});
+        SqlServerRowSource rowSource = new SqlServerRowSource() {
+            @Override
+            public List<Object[]> readRows(int maxRows) {
+                List<Object[]> batch = new ArrayList<Object[]>(rows);
+                rows.clear();
+                return batch;
+            }
+
+            @Override
+            public List<String> getColumns() {
+                return Arrays.asList("id", "version", "name");
+            }
+        };
+
+        SqlServerMigrationOptions options = new SqlServerMigrationOptions();
+        options.setImportEngine("insert");
+        Connection connection = database.connect();
+        long count = service.insertTableData(connection, "dbo.Versiones", exportData, rowSource,
+                SqlServerImportJournal.open(connection, "backup.sqlbak.gz:1024"), options);
+
+        assertEquals(2, count);
+        assertTrue(database.log.contains("INSERT INTO [dbo].[Versiones] ([id], [name]) VALUES (?, ?) [1, uno]"),
+                database.log.toString());
+        assertTrue(database.log.contains("INSERT INTO [dbo].[Versiones] ([id], [name]) VALUES (?, ?) [2, dos]"),
+                database.log.toString());
+        // Con bulk copy la columna se lee pero no se mapea
+        assertTrue(SqlServerBulkRecord.isSupported(tableInfo));
+    }
+
+    // Incremental por change tracking de Clientes (id, name) y Pedidos (id, cliente_id), con el
+    // cliente 2 nuevo, el pedido 10 apuntando a él y, si deleteParent, el cliente 1 borrado
+    private SqlServerExportData incremental(boolean deleteParent) {
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes");
+        exportData.getTables().get("dbo.Clientes").setPrimaryKey(new ArrayList<String>(Collections.singletonList("id")));
+
+        SqlServerExportData.TableInfo pedidos = SqlServerTestData.table("dbo", "Pedidos", "id int", "cliente_id int");
+        pedidos.setPrimaryKey(new ArrayList<String>(Collections.singletonList("id")));
+        SqlServerExportData.ForeignKeyInfo foreignKey = new SqlServerExportData.ForeignKeyInfo();
+        foreignKey.setConstraintName(FK_PEDIDOS);
+        foreignKey.setColumnName("cliente_id");
+        foreignKey.setReferencedSchema("dbo");
+        foreignKey.setReferencedTable("Clientes");
+        foreignKey.setReferencedColumn("id");
+        foreignKey.setDeleteRule("NO_ACTION");
+        foreignKey.setUpdateRule("NO_ACTION");
+        pedidos.getForeignKeys().add(foreignKey);
+        exportData.getTables().put("dbo.Pedidos", pedidos);
+        exportData.getTableOrder().add("dbo.Pedidos");
+
+        Map<String, String> tableChanges = new HashMap<String, String>();
+        tableChanges.put("dbo.Clientes", "change_tracking");
+        tableChanges.put("dbo.Pedidos", "change_tracking");
+        exportData.getMetadata().setTableChanges(tableChanges);
+
+        if (deleteParent) {
+            SqlServerExportData.DeletedRows deletedRows = new SqlServerExportData.DeletedRows();
+            deletedRows.getColumns().add("id");
+            deletedRows.getKeys().add(new ArrayList<Object>(Collections.singletonList(1)));
+            exportData.getDeletedRows().put("dbo.Clientes", deletedRows);
+        }
+        return exportData;
+    }
+
+    private String writeIncremental(SqlServerExportData exportData) throws Exception {
+        Map<String, List<Object[][]>> segments = new HashMap<String, List<Object[][]>>();
+        segments.put("dbo.Clientes", Collections.singletonList(new Object[][]{{2, "nuevo"}}));
+        segments.put("dbo.Pedidos", Collections.singletonList(new Object[][]{{10, 2}}));
+        String incrementalFile = new File(tempDir, "incremental.sqlbak.gz").getPath();
+        SqlServerTestData.writeBackup(incrementalFile, SqlServerCompressionCodec.forName("gzip", -1), 1,
+                exportData, segments);
+        return incrementalFile;
+    }
+
+    // Base de datos de destino detrás de una Connection que registra las sentencias en orden; las
+    // de los PreparedStatement con los parámetros de cada fila del batch
+    private static class Database {
+        final Set<String> existingTables = new HashSet<String>();
+        // tabla, tabla referenciada, nombre, is_not_trusted
+        final List<String[]> foreignKeys = new ArrayList<String[]>();
+        final List<String> log = new ArrayList<String>();
+
+        int indexOf(String prefix) {
+            for (int i = 0; i < log.size(); i++) {
+                if (log.get(i).startsWith(prefix)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Connection connect() {
+            return proxy(Connection.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    if ("createStatement".equals(method.getName())) {
+                        return statement(null);
+                    } else if ("prepareStatement".equals(method.getName())) {
+                        return statement((String) args[0]);
+                    }
+                    throw new SQLException("No soportado en la prueba: " + method.getName());
+                }
+            });
+        }
+
+        private PreparedStatement statement(final String sql) {
+            final Map<Integer, Object> parameters = new TreeMap<Integer, Object>();
+            final int[] batchRows = {0};
+            return proxy(PreparedStatement.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    String name = method.getName();
+                    if (name.startsWith("set")) {
+                        parameters.put((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+                        return null;
+                    } else if ("close".equals(name)) {
+                        return null;
+                    } else if ("execute".equals(name) || "executeUpdate".equals(name)) {
+                        log.add((String) args[0]);
+                        return "execute".equals(name) ? (Object) false : (Object) 0;
+                    } else if ("addBatch".equals(name)) {
+                        log.add(sql + " " + parameters.values());
+                        parameters.clear();
+                        batchRows[0]++;
+                        return null;
+                    } else if ("executeBatch".equals(name)) {
+                        int[] counts = new int[batchRows[0]];
+                        Arrays.fill(counts, 1);
+                        batchRows[0] = 0;
+                        return counts;
+                    } else if ("executeQuery".equals(name)) {
+                        return executeQuery(args != null ? (String) args[0] : sql, parameters);
+                    }
+                    throw new SQLException("No soportado en la prueba: " + name);
+                }
+            });
+        }
+
+        private ResultSet executeQuery(String sql, Map<Integer, Object> parameters) throws SQLException {
+            final List<String[]> rows = new ArrayList<String[]>();
+            if (sql.startsWith("SELECT OBJECT_ID")) {
+                rows.add(new String[]{existingTables.contains(parameters.get(1)) ? "1" : null});
+            } else if (sql.contains("sys.foreign_keys")) {
+                rows.addAll(foreignKeys);
+            } else if (sql.contains(SqlServerImportJournal.TABLE_NAME)) {
+                // Journal sin unidades confirmadas
+            } else {
+                throw new SQLException("Consulta no soportada en la prueba: " + sql);
+            }
+            final int[] current = {-1};
+            return proxy(ResultSet.class, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                    String name = method.getName();
+                    if ("next".equals(name)) {
+                        return ++current[0] < rows.size();
+                    } else if ("close".equals(name)) {
+                        return null;
+                    } else if ("getObject".equals(name)) {
+                        return rows.get(current[0])[(Integer) args[0] - 1];
+                    } else if ("getString".equals(name) && "table_name".equals(args[0])) {
+                        return rows.get(current[0])[0];
+                    } else if ("getString".equals(name) && "referenced_table".equals(args[0])) {
+                        return rows.get(current[0])[1];
+                    } else if ("getString".equals(name) && "constraint_name".equals(args[0])) {
+                        return rows.get(current[0])[2];
+                    } else if ("getBoolean".equals(name) && "is_not_trusted".equals(args[0])) {
+                        return "1".equals(rows.get(current[0])[3]);
+                    }
+                    throw new SQLException("No soportado en la prueba: " + name);
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(SqlServerIncrementalApplyTest.class.getClassLoader(),
+                    new Class<?>[]{type}, handler);
+        }
+    }
+}
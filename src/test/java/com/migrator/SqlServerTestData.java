@@ -0,0 +1,148 @@
+package com.migrator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+// Datos de prueba: tablas, ResultSet en memoria y backups escritos con SqlServerBackupWriter
+final class SqlServerTestData {
+
+    private SqlServerTestData() {
+    }
+
+    static ObjectMapper objectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
+
+    // Columnas como "nombre tipo" o "nombre tipo largo" (-1 = max)
+    static SqlServerExportData.TableInfo table(String schemaName, String tableName, String... columns) {
+        SqlServerExportData.TableInfo tableInfo = new SqlServerExportData.TableInfo();
+        tableInfo.setSchemaName(schemaName);
+        tableInfo.setTableName(tableName);
+        for (String column : columns) {
+            String[] parts = column.split(" ");
+            SqlServerExportData.ColumnInfo columnInfo = new SqlServerExportData.ColumnInfo();
+            columnInfo.setColumnName(parts[0]);
+            columnInfo.setDataType(parts[1]);
+            columnInfo.setMaxLength(parts.length > 2 ? Integer.parseInt(parts[2]) : 0);
+            tableInfo.getColumns().add(columnInfo);
+        }
+        return tableInfo;
+    }
+
+    // ResultSet de sólo avance sobre las filas indicadas; los getters devuelven el valor tal
+    // como está en la fila (las fechas como java.time, los textos grandes como String)
+    static ResultSet resultSet(final int columnCount, final Object[]... rows) {
+        final int[] current = {-1};
+        final boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(SqlServerTestData.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        String name = method.getName();
+                        if ("next".equals(name)) {
+                            return ++current[0] < rows.length;
+                        } else if ("wasNull".equals(name)) {
+                            return wasNull[0];
+                        } else if ("close".equals(name)) {
+                            return null;
+                        } else if ("getMetaData".equals(name)) {
+                            return metaData(columnCount);
+                        }
+
+                        Object value = rows[current[0]][(Integer) args[0] - 1];
+                        wasNull[0] = value == null;
+                        if ("getObject".equals(name) || "getString".equals(name) || "getBytes".equals(name) ||
+                                "getBigDecimal".equals(name)) {
+                            return value;
+                        } else if ("getCharacterStream".equals(name)) {
+                            return value == null ? null : new StringReader((String) value);
+                        } else if ("getBinaryStream".equals(name)) {
+                            return value == null ? null : new ByteArrayInputStream((byte[]) value);
+                        } else if ("getBoolean".equals(name)) {
+                            return value != null && (Boolean) value;
+                        } else if ("getShort".equals(name)) {
+                            return value == null ? (short) 0 : ((Number) value).shortValue();
+                        } else if ("getInt".equals(name)) {
+                            return value == null ? 0 : ((Number) value).intValue();
+                        } else if ("getLong".equals(name)) {
+                            return value == null ? 0L : ((Number) value).longValue();
+                        } else if ("getFloat".equals(name)) {
+                            return value == null ? 0f : ((Number) value).floatValue();
+                        } else if ("getDouble".equals(name)) {
+                            return value == null ? 0d : ((Number) value).doubleValue();
+                        }
+                        throw new SQLException("No soportado en la prueba: " + name);
+                    }
+                });
+    }
+
+    private static ResultSetMetaData metaData(final int columnCount) {
+        return (ResultSetMetaData) Proxy.newProxyInstance(SqlServerTestData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                        if ("getColumnCount".equals(method.getName())) {
+                            return columnCount;
+                        }
+                        throw new SQLException("No soportado en la prueba: " + method.getName());
+                    }
+                });
+    }
+
+    // Escribe un backup en formato binario con los segmentos indicados por tabla, en el orden
+    // de exportData.getTableOrder(), y la metadata con el total de registros
+    static void writeBackup(String backupFile, SqlServerCompressionCodec codec, int compressionThreads,
+                            SqlServerExportData exportData, Map<String, List<Object[][]>> segments) throws Exception {
+        SqlServerBackupWriter writer = new SqlServerBackupWriter(backupFile, objectMapper(), true, codec,
+                compressionThreads);
+        try {
+            writer.writeStructure(exportData);
+            for (String tableName : exportData.getTableOrder()) {
+                SqlServerExportData.TableInfo tableInfo = exportData.getTables().get(tableName);
+                writer.beginTable(tableName, tableInfo);
+                for (Object[][] rows : segments.get(tableName)) {
+                    writer.writeSegment(resultSet(tableInfo.getColumns().size(), rows));
+                }
+                writer.endTable();
+            }
+            exportData.getMetadata().setTotalTables(exportData.getTableOrder().size());
+            exportData.getMetadata().setTotalRecords(writer.getTotalRecords());
+            writer.finish(exportData);
+        } finally {
+            writer.close();
+        }
+    }
+
+    // Estructura con las tablas indicadas ("esquema.tabla"), todas con columnas (id int, name nvarchar)
+    static SqlServerExportData database(String... tableNames) {
+        SqlServerExportData exportData = new SqlServerExportData();
+        for (String tableName : tableNames) {
+            String[] parts = tableName.split("\\.");
+            exportData.getTables().put(tableName, table(parts[0], parts[1], "id int", "name nvarchar 100"));
+            exportData.getTableOrder().add(tableName);
+        }
+        return exportData;
+    }
+
+    // Filas (id int, name nvarchar) con ids consecutivos desde firstId; una de cada tres sin nombre
+    static Object[][] rows(int firstId, int count) {
+        Object[][] rows = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            rows[i] = new Object[]{firstId + i, i % 3 == 0 ? null : "fila " + (firstId + i)};
+        }
+        return rows;
+    }
+}
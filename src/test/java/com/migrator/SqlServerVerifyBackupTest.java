@@ -0,0 +1,102 @@
+package com.migrator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlServerVerifyBackupTest {
+
+    @TempDir
+    File tempDir;
+
+    private final ObjectMapper objectMapper = SqlServerTestData.objectMapper();
+    private final PrintStream originalErr = System.err;
+
+    @AfterEach
+    void restoreDefaults() {
+        System.setErr(originalErr);
+        SqlServerMemoryBudget.configure(0, 1);
+    }
+
+    @Test
+    void segmentChecksumsCoverTheirBytes() throws Exception {
+        String backupFile = writeBackup("gzip", 2);
+        SqlServerBackupIndex index = SqlServerBackupIndex.read(backupFile, objectMapper);
+
+        RandomAccessFile file = new RandomAccessFile(backupFile, "r");
+        try {
+            for (SqlServerBackupIndex.Segment segment : index.getTable("dbo.Clientes").getSegments()) {
+                byte[] bytes = new byte[(int) segment.getCompressedSize()];
+                file.seek(segment.getOffset());
+                file.readFully(bytes);
+                CRC32 checksum = new CRC32();
+                checksum.update(bytes);
+                assertEquals(Long.valueOf(checksum.getValue()), segment.getChecksum());
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    void intactBackupIsValid() throws Exception {
+        assertTrue(new SqlServerMigrationService().verifyBackup(writeBackup("gzip", 2), options()));
+        assertTrue(new SqlServerMigrationService().verifyBackup(writeBackup("none", 1), options()));
+    }
+
+    @Test
+    void corruptedSegmentIsReported() throws Exception {
+        // Sin compresión el byte cambiado sólo lo detecta el checksum
+        String backupFile = writeBackup("none", 1);
+        SqlServerBackupIndex.Segment segment = SqlServerBackupIndex.read(backupFile, objectMapper)
+                .getTable("dbo.Clientes").getSegments().get(1);
+        long position = segment.getOffset() + segment.getCompressedSize() / 2;
+
+        RandomAccessFile file = new RandomAccessFile(backupFile, "rw");
+        try {
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x01);
+        } finally {
+            file.close();
+        }
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true, "UTF-8"));
+        boolean valid = new SqlServerMigrationService().verifyBackup(backupFile, options());
+        System.setErr(originalErr);
+
+        assertFalse(valid);
+        String errors = err.toString("UTF-8");
+        assertTrue(errors.contains("dbo.Clientes: segmento en la posición " + segment.getOffset()), errors);
+        assertTrue(errors.contains("Tablas dañadas (1): dbo.Clientes"), errors);
+    }
+
+    private SqlServerMigrationOptions options() {
+        SqlServerMigrationOptions options = new SqlServerMigrationOptions();
+        options.setVerifyThreads(2);
+        options.setCompressionThreads(2);
+        return options;
+    }
+
+    private String writeBackup(String compression, int compressionThreads) throws Exception {
+        SqlServerCompressionCodec codec = SqlServerCompressionCodec.forName(compression, -1);
+        String backupFile = new File(tempDir, "backup-" + compression + codec.getFileExtension()).getPath();
+        SqlServerExportData exportData = SqlServerTestData.database("dbo.Clientes", "dbo.Pedidos");
+
+        Map<String, List<Object[][]>> segments = new HashMap<String, List<Object[][]>>();
+        segments.put("dbo.Clientes", Arrays.asList(SqlServerTestData.rows(0, 3000),
+                SqlServerTestData.rows(3000, 3000), SqlServerTestData.rows(6000, 500)));
+        segments.put("dbo.Pedidos", Collections.singletonList(SqlServerTestData.rows(0, 10)));
+        SqlServerTestData.writeBackup(backupFile, codec, compressionThreads, exportData, segments);
+        return backupFile;
+    }
+}